@@ -77,6 +77,45 @@ public abstract class LeaderConfig {
         return 5000L;
     }
 
+    /**
+     * If true, the paxos learner and acceptor logs are appended to segment files with batched
+     * fsyncs instead of being written as one file per round. Existing per-round logs are converted
+     * on startup, and cannot be read by nodes with this turned off afterwards.
+     */
+    @Value.Default
+    public boolean useSegmentedPaxosLog() {
+        return false;
+    }
+
+    /**
+     * If true, each node's paxos proposer prepares all of its future rounds with a single request
+     * and then only sends accepts while no other node proposes, batching concurrent accepts.
+     * Proposers fall back to running both phases against nodes without the range prepare endpoints.
+     */
+    @Value.Default
+    public boolean useMultiPaxos() {
+        return false;
+    }
+
+    /**
+     * How long the leader may answer leadership checks without contacting a quorum of acceptors
+     * after one succeeds, or 0 to contact them on every check. A newly elected leader waits this
+     * long before it starts serving, so every leader must be configured with the same value.
+     */
+    @Value.Default
+    public long leaderLeaseMs() {
+        return 0L;
+    }
+
+    /**
+     * How far the clocks of two leaders may drift apart over one {@link #leaderLeaseMs()}.
+     * Leases are cut short by this much.
+     */
+    @Value.Default
+    public long maxAllowedClockDriftMs() {
+        return 500L;
+    }
+
     @Value.Check
     protected final void check() {
         Preconditions.checkState(quorumSize() > leaders().size() / 2,
@@ -87,6 +126,9 @@ public abstract class LeaderConfig {
 
         Preconditions.checkArgument(leaders().contains(localServer()),
                 "The localServer '%s' must included in the leader entries %s.", localServer(), leaders());
+        Preconditions.checkArgument(leaderLeaseMs() == 0 || leaderLeaseMs() > maxAllowedClockDriftMs(),
+                "The leaderLeaseMs '%s' must be longer than the maxAllowedClockDriftMs '%s'.",
+                leaderLeaseMs(), maxAllowedClockDriftMs());
         Preconditions.checkArgument(learnerLogDir().exists() || learnerLogDir().mkdirs(),
                 "Learner log directory '%s' does not exist and cannot be created.", learnerLogDir());
         Preconditions.checkArgument(acceptorLogDir().exists() || acceptorLogDir().mkdirs(),
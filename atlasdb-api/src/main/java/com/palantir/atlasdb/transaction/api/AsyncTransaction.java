@@ -0,0 +1,61 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.transaction.api;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import com.palantir.atlasdb.keyvalue.api.Cell;
+import com.palantir.atlasdb.keyvalue.api.ColumnSelection;
+import com.palantir.atlasdb.keyvalue.api.RowResult;
+import com.palantir.atlasdb.keyvalue.api.TableReference;
+import com.palantir.common.annotation.Idempotent;
+
+/**
+ * A {@link Transaction} whose reads can be issued without blocking the calling thread, so that
+ * a task can have many independent reads outstanding at once and compose their results.
+ * <p>
+ * The futures returned by this interface complete with the same results (or exceptions) that the
+ * corresponding synchronous methods would have returned or thrown. Reads must complete before the
+ * transaction commits.
+ *
+ * @see TransactionManager#runTaskAsync(AsyncTransactionTask, java.util.concurrent.Executor)
+ */
+public interface AsyncTransaction extends Transaction {
+
+    /**
+     * Runs {@code read}, which reads through this transaction or through a transaction wrapping it,
+     * without blocking the calling thread. The transaction is not committed until every read started
+     * this way has finished.
+     */
+    <T> CompletableFuture<T> readAsync(Supplier<T> read);
+
+    @Idempotent
+    default CompletableFuture<Map<Cell, byte[]>> getAsync(TableReference tableRef, Set<Cell> cells) {
+        return readAsync(() -> get(tableRef, cells));
+    }
+
+    @Idempotent
+    default CompletableFuture<SortedMap<byte[], RowResult<byte[]>>> getRowsAsync(
+            TableReference tableRef,
+            Iterable<byte[]> rows,
+            ColumnSelection columnSelection) {
+        return readAsync(() -> getRows(tableRef, rows, columnSelection));
+    }
+}
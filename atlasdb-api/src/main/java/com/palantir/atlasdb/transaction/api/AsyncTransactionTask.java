@@ -0,0 +1,29 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.transaction.api;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A transaction task which reads through an {@link AsyncTransaction}, and returns a future which
+ * completes once all of its reads and writes have been issued and their results composed.
+ * <p>
+ * As with {@link TransactionTask}, the task should not modify any of its input state in a
+ * non-idempotent way.
+ */
+public interface AsyncTransactionTask<T> {
+    CompletableFuture<T> execute(AsyncTransaction transaction);
+}
@@ -0,0 +1,34 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.transaction.api;
+
+/**
+ * Controls what a serializable transaction remembers about its reads in order to detect read-write
+ * conflicts at commit time.
+ */
+public enum SerializableReadTracking {
+    /**
+     * Remember every value read and re-read all of them at commit time, comparing the bytes.
+     * This is the default value.
+     */
+    VALUES,
+    /**
+     * Remember only the cells read and the timestamp of the version that was visible for each of them.
+     * At commit time only timestamps are loaded from the key value service, which keeps the memory and
+     * I/O cost of large read sets proportional to the number of cells rather than the size of the values.
+     */
+    TIMESTAMPS
+}
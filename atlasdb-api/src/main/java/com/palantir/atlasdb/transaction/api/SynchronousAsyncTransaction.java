@@ -0,0 +1,174 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.transaction.api;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+import com.palantir.atlasdb.keyvalue.api.BatchColumnRangeSelection;
+import com.palantir.atlasdb.keyvalue.api.Cell;
+import com.palantir.atlasdb.keyvalue.api.ColumnRangeSelection;
+import com.palantir.atlasdb.keyvalue.api.ColumnSelection;
+import com.palantir.atlasdb.keyvalue.api.RangeRequest;
+import com.palantir.atlasdb.keyvalue.api.RowResult;
+import com.palantir.atlasdb.keyvalue.api.TableReference;
+import com.palantir.atlasdb.transaction.service.TransactionService;
+import com.palantir.common.base.BatchingVisitable;
+import com.palantir.common.base.Throwables;
+
+/**
+ * Adapts a {@link Transaction} to {@link AsyncTransaction} by running every read on the calling
+ * thread and returning an already completed future.
+ */
+final class SynchronousAsyncTransaction implements AsyncTransaction {
+    private final Transaction delegate;
+
+    SynchronousAsyncTransaction(Transaction delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Waits for the future returned by a task, rethrowing the exception it failed with.
+     */
+    static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw Throwables.throwUncheckedException(e.getCause() == null ? e : e.getCause());
+        }
+    }
+
+    @Override
+    public <T> CompletableFuture<T> readAsync(Supplier<T> read) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            future.complete(read.get());
+        } catch (Throwable t) {
+            future.completeExceptionally(t);
+        }
+        return future;
+    }
+
+    @Override
+    public SortedMap<byte[], RowResult<byte[]>> getRows(TableReference tableRef,
+                                                        Iterable<byte[]> rows,
+                                                        ColumnSelection columnSelection) {
+        return delegate.getRows(tableRef, rows, columnSelection);
+    }
+
+    @Override
+    public Map<TableReference, SortedMap<byte[], RowResult<byte[]>>> getRowsFromTables(
+            Map<TableReference, ? extends Iterable<byte[]>> rowsByTable,
+            ColumnSelection columnSelection) {
+        return delegate.getRowsFromTables(rowsByTable, columnSelection);
+    }
+
+    @Override
+    public Map<byte[], BatchingVisitable<Map.Entry<Cell, byte[]>>> getRowsColumnRange(TableReference tableRef,
+            Iterable<byte[]> rows,
+            BatchColumnRangeSelection columnRangeSelection) {
+        return delegate.getRowsColumnRange(tableRef, rows, columnRangeSelection);
+    }
+
+    @Override
+    public Iterator<Map.Entry<Cell, byte[]>> getRowsColumnRange(TableReference tableRef,
+            Iterable<byte[]> rows,
+            ColumnRangeSelection columnRangeSelection,
+            int batchHint) {
+        return delegate.getRowsColumnRange(tableRef, rows, columnRangeSelection, batchHint);
+    }
+
+    @Override
+    public Map<Cell, byte[]> get(TableReference tableRef, Set<Cell> cells) {
+        return delegate.get(tableRef, cells);
+    }
+
+    @Override
+    public BatchingVisitable<RowResult<byte[]>> getRange(TableReference tableRef, RangeRequest rangeRequest) {
+        return delegate.getRange(tableRef, rangeRequest);
+    }
+
+    @Override
+    public Iterable<BatchingVisitable<RowResult<byte[]>>> getRanges(TableReference tableRef,
+                                                                    Iterable<RangeRequest> rangeRequests) {
+        return delegate.getRanges(tableRef, rangeRequests);
+    }
+
+    @Override
+    public void put(TableReference tableRef, Map<Cell, byte[]> values) {
+        delegate.put(tableRef, values);
+    }
+
+    @Override
+    public void delete(TableReference tableRef, Set<Cell> keys) {
+        delegate.delete(tableRef, keys);
+    }
+
+    @Override
+    public TransactionType getTransactionType() {
+        return delegate.getTransactionType();
+    }
+
+    @Override
+    public void setTransactionType(TransactionType transactionType) {
+        delegate.setTransactionType(transactionType);
+    }
+
+    @Override
+    public void abort() {
+        delegate.abort();
+    }
+
+    @Override
+    public void commit() throws TransactionFailedException {
+        delegate.commit();
+    }
+
+    @Override
+    public void commit(TransactionService transactionService) throws TransactionFailedException {
+        delegate.commit(transactionService);
+    }
+
+    @Override
+    public boolean isAborted() {
+        return delegate.isAborted();
+    }
+
+    @Override
+    public boolean isUncommitted() {
+        return delegate.isUncommitted();
+    }
+
+    @Override
+    public long getTimestamp() {
+        return delegate.getTimestamp();
+    }
+
+    @Override
+    public TransactionReadSentinelBehavior getReadSentinelBehavior() {
+        return delegate.getReadSentinelBehavior();
+    }
+
+    @Override
+    public void useTable(TableReference tableRef, ConstraintCheckable table) {
+        delegate.useTable(tableRef, table);
+    }
+}
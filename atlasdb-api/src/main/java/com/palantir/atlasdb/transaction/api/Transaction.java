@@ -16,6 +16,7 @@
 package com.palantir.atlasdb.transaction.api;
 
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
@@ -43,6 +44,21 @@ public interface Transaction {
             Iterable<byte[]> rows,
             ColumnSelection columnSelection);
 
+    /**
+     * Reads rows from several tables at once, returning the results keyed by table. This is equivalent to
+     * calling {@link #getRows} for each table, but implementations may read the tables in parallel.
+     */
+    @Idempotent
+    default Map<TableReference, SortedMap<byte[], RowResult<byte[]>>> getRowsFromTables(
+            Map<TableReference, ? extends Iterable<byte[]>> rowsByTable,
+            ColumnSelection columnSelection) {
+        Map<TableReference, SortedMap<byte[], RowResult<byte[]>>> results = new LinkedHashMap<>();
+        for (Map.Entry<TableReference, ? extends Iterable<byte[]>> entry : rowsByTable.entrySet()) {
+            results.put(entry.getKey(), getRows(entry.getKey(), entry.getValue(), columnSelection));
+        }
+        return results;
+    }
+
     @Idempotent
     Map<byte[], BatchingVisitable<Map.Entry<Cell, byte[]>>> getRowsColumnRange(
             TableReference tableRef,
@@ -15,6 +15,9 @@
  */
 package com.palantir.atlasdb.transaction.api;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 public interface TransactionManager extends AutoCloseable {
     /**
      * Runs the given {@link TransactionTask}. If the task completes successfully
@@ -87,6 +90,33 @@ public interface TransactionManager extends AutoCloseable {
      */
     <T, E extends Exception> T runTaskReadOnly(TransactionTask<T, E> task) throws E;
 
+    /**
+     * Runs the given {@link AsyncTransactionTask} in a new transaction, without blocking the calling
+     * thread. Once the future returned by the task completes, and all reads it issued have completed,
+     * the transaction is committed (unless the task already committed or aborted it), or rolled back
+     * if the task failed.
+     * <p>
+     * Starting and committing the transaction block on the timestamp and lock services and the key
+     * value service, so they run on the given executor. Transaction managers without asynchronous reads
+     * run the whole task there, with its reads completing synchronously.
+     * <p>
+     * Like {@link #runTaskThrowOnConflict(TransactionTask)}, the task is not retried: if a conflict is
+     * detected, the returned future fails with a {@link TransactionConflictException}.
+     *
+     * @param task task to run
+     * @param executor executor to start and commit the transaction on
+     *
+     * @return future which completes with the value returned by the task once the transaction has
+     * been committed
+     *
+     * @throws IllegalStateException if the transaction manager has been closed.
+     */
+    default <T> CompletableFuture<T> runTaskAsync(AsyncTransactionTask<T> task, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> runTaskThrowOnConflict(
+                transaction -> SynchronousAsyncTransaction.join(
+                        task.execute(new SynchronousAsyncTransaction(transaction)))), executor);
+    }
+
     /**
      * Most AtlasDB TransactionManagers will provide {@link Transaction} objects that have less than full
      * serializability. The most common is snapshot isolation (SI).  SI has a start timestamp and a commit timestamp
@@ -24,6 +24,7 @@ import com.google.common.collect.ImmutableSet;
 import com.palantir.atlasdb.encoding.PtBytes;
 import com.palantir.atlasdb.keyvalue.api.TableReference;
 import com.palantir.atlasdb.table.description.TableMetadata;
+import com.palantir.atlasdb.transaction.api.SerializableReadTracking;
 import com.palantir.atlasdb.transaction.impl.TransactionConstants;
 
 public class AtlasDbConstants {
@@ -82,4 +83,12 @@ public class AtlasDbConstants {
     public static final long DEFAULT_SWEEP_PAUSE_MILLIS = 5 * 1000;
     public static final int DEFAULT_SWEEP_BATCH_SIZE = 1000;
     public static final int DEFAULT_STREAM_IN_MEMORY_THRESHOLD = 4 * 1024 * 1024;
+    public static final int DEFAULT_COMMIT_TIMESTAMP_CACHE_SIZE = 1 << 16;
+    public static final boolean DEFAULT_ENABLE_TRANSACTION_GROUP_COMMIT = false;
+    public static final int DEFAULT_TRANSACTION_TABLE_PARALLELISM = 8;
+    public static final int DEFAULT_ASYNC_READ_THREADS = 16;
+    public static final long DEFAULT_READ_ONLY_TIMESTAMP_STALENESS_MILLIS = 0;
+    public static final SerializableReadTracking DEFAULT_SERIALIZABLE_READ_TRACKING = SerializableReadTracking.VALUES;
+    public static final long DEFAULT_LOCK_LEASE_MARGIN_MILLIS = 0;
+    public static final boolean DEFAULT_ENABLE_REMOTE_TRANSACTION_STARTS = false;
 }
@@ -110,6 +110,18 @@ public class CachingTransaction extends ForwardingTransaction {
         }
     }
 
+    @Override
+    public Map<TableReference, SortedMap<byte[], RowResult<byte[]>>> getRowsFromTables(
+            Map<TableReference, ? extends Iterable<byte[]>> rowsByTable,
+            ColumnSelection columnSelection) {
+        // Go through our own getRows so that the cache is consulted and populated.
+        Map<TableReference, SortedMap<byte[], RowResult<byte[]>>> results = Maps.newLinkedHashMap();
+        for (Map.Entry<TableReference, ? extends Iterable<byte[]>> entry : rowsByTable.entrySet()) {
+            results.put(entry.getKey(), getRows(entry.getKey(), entry.getValue(), columnSelection));
+        }
+        return results;
+    }
+
     private void cacheLoadedRows(ConcurrentMap<Cell, byte[]> colCache,
                                  Iterable<RowResult<byte[]>> rowView) {
         for (RowResult<byte[]> loadedRow : rowView) {
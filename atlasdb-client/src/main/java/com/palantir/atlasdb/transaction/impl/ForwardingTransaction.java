@@ -53,6 +53,13 @@ public abstract class ForwardingTransaction extends ForwardingObject implements
         return delegate().getRows(tableRef, rows, columnSelection);
     }
 
+    @Override
+    public Map<TableReference, SortedMap<byte[], RowResult<byte[]>>> getRowsFromTables(
+            Map<TableReference, ? extends Iterable<byte[]>> rowsByTable,
+            ColumnSelection columnSelection) {
+        return delegate().getRowsFromTables(rowsByTable, columnSelection);
+    }
+
     @Override
     public Map<byte[], BatchingVisitable<Map.Entry<Cell, byte[]>>> getRowsColumnRange(TableReference tableRef,
                                                                                      Iterable<byte[]> rows,
@@ -15,7 +15,11 @@
  */
 package com.palantir.atlasdb.transaction.impl;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 import com.google.common.collect.ForwardingObject;
+import com.palantir.atlasdb.transaction.api.AsyncTransactionTask;
 import com.palantir.atlasdb.transaction.api.TransactionFailedRetriableException;
 import com.palantir.atlasdb.transaction.api.TransactionManager;
 import com.palantir.atlasdb.transaction.api.TransactionTask;
@@ -36,6 +40,11 @@ public abstract class ForwardingTransactionManager extends ForwardingObject impl
         return delegate().runTaskThrowOnConflict(task);
     }
 
+    @Override
+    public <T> CompletableFuture<T> runTaskAsync(AsyncTransactionTask<T> task, Executor executor) {
+        return delegate().runTaskAsync(task, executor);
+    }
+
     @Override
     public long getImmutableTimestamp() {
         return delegate().getImmutableTimestamp();
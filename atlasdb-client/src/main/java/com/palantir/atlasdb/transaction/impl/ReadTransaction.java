@@ -51,6 +51,16 @@ public class ReadTransaction extends ForwardingTransaction {
         return delegate().getRows(tableRef, rows, columnSelection);
     }
 
+    @Override
+    public Map<TableReference, SortedMap<byte[], RowResult<byte[]>>> getRowsFromTables(
+            Map<TableReference, ? extends Iterable<byte[]>> rowsByTable,
+            ColumnSelection columnSelection) {
+        for (TableReference tableRef : rowsByTable.keySet()) {
+            checkTableName(tableRef);
+        }
+        return delegate().getRowsFromTables(rowsByTable, columnSelection);
+    }
+
     @Override
     public Map<Cell, byte[]> get(TableReference tableRef, Set<Cell> cells) {
         checkTableName(tableRef);
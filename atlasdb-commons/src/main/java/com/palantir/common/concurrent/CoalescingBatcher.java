@@ -0,0 +1,149 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.common.concurrent;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.palantir.common.base.Throwables;
+
+/**
+ * Coalesces concurrent requests into batches, so that a single call handles many requests.
+ * <p>
+ * At most one batch is in flight at a time, and requests that arrive while it is in flight join the
+ * next batch, which one of its callers sends as soon as the outstanding one returns. A batch is closed
+ * to new requests before it is sent, so every caller gets a result that is fresh with respect to the
+ * moment it asked. Under low load every request is sent on its own, without any added delay.
+ *
+ * @param <R> the type of a single request
+ * @param <T> the type of the result of a single request
+ */
+@ThreadSafe
+public final class CoalescingBatcher<R, T> {
+    private final Function<List<R>, List<T>> batchFunction;
+
+    @GuardedBy("this") private Batch<R, T> pendingBatch = null;
+    @GuardedBy("this") private boolean isSending = false;
+
+    /**
+     * @param batchFunction handles a batch of requests and returns the result of each request, in the
+     *        same order as the requests
+     */
+    public CoalescingBatcher(Function<List<R>, List<T>> batchFunction) {
+        this.batchFunction = Preconditions.checkNotNull(batchFunction);
+    }
+
+    /**
+     * Adds the given request to the next batch and returns its result once that batch has been handled.
+     * If the batch function throws, every request in the batch rethrows the same exception.
+     */
+    public T apply(R request) {
+        Batch<R, T> batch;
+        int index;
+        boolean isSender;
+        synchronized (this) {
+            if (pendingBatch == null) {
+                pendingBatch = new Batch<R, T>();
+            }
+            batch = pendingBatch;
+            index = batch.requests.size();
+            batch.requests.add(request);
+            if (!isSending) {
+                startSending(batch);
+            }
+            boolean interrupted = false;
+            while (batch.state == BatchState.WAITING) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            isSender = batch.state == BatchState.READY;
+            if (isSender) {
+                batch.state = BatchState.SENT;
+            }
+        }
+        if (isSender) {
+            send(batch);
+        }
+        try {
+            return Uninterruptibles.getUninterruptibly(batch.result).get(index);
+        } catch (ExecutionException e) {
+            throw Throwables.throwUncheckedException(e.getCause());
+        }
+    }
+
+    @VisibleForTesting
+    synchronized int getNumberOfPendingRequests() {
+        return pendingBatch == null ? 0 : pendingBatch.requests.size();
+    }
+
+    @GuardedBy("this")
+    private void startSending(Batch<R, T> batch) {
+        pendingBatch = null;
+        isSending = true;
+        batch.state = BatchState.READY;
+        notifyAll();
+    }
+
+    private void send(Batch<R, T> batch) {
+        try {
+            List<R> requests = ImmutableList.copyOf(batch.requests);
+            List<T> results = batchFunction.apply(requests);
+            Preconditions.checkState(results.size() == requests.size(),
+                    "expected %s results but got %s", requests.size(), results.size());
+            batch.result.set(results);
+        } catch (Throwable t) {
+            batch.result.setException(t);
+        } finally {
+            synchronized (this) {
+                isSending = false;
+                if (pendingBatch != null) {
+                    startSending(pendingBatch);
+                }
+            }
+        }
+    }
+
+    private enum BatchState {
+        /** Collecting requests while an earlier batch is in flight. */
+        WAITING,
+        /** Closed to new requests; the first of its callers to notice sends it. */
+        READY,
+        /** The batch has been sent. */
+        SENT
+    }
+
+    private static final class Batch<R, T> {
+        final List<R> requests = Lists.newArrayList();
+        final SettableFuture<List<T>> result = SettableFuture.create();
+        @GuardedBy("CoalescingBatcher.this") BatchState state = BatchState.WAITING;
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.common.concurrent;
+
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+public class CoalescingBatcherTest {
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final List<List<Integer>> batches = Lists.newCopyOnWriteArrayList();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void returnsTheResultOfEachRequest() {
+        CoalescingBatcher<Integer, Integer> batcher = new CoalescingBatcher<Integer, Integer>(doubling());
+        assertEquals(2, (int) batcher.apply(1));
+        assertEquals(4, (int) batcher.apply(2));
+        assertEquals(ImmutableList.of(ImmutableList.of(1), ImmutableList.of(2)), batches);
+    }
+
+    @Test
+    public void coalescesRequestsMadeWhileABatchIsInFlight() throws Exception {
+        final CountDownLatch firstBatchStarted = new CountDownLatch(1);
+        final CountDownLatch firstBatchMayFinish = new CountDownLatch(1);
+        final CoalescingBatcher<Integer, Integer> batcher = new CoalescingBatcher<Integer, Integer>(
+                new Function<List<Integer>, List<Integer>>() {
+                    @Override
+                    public List<Integer> apply(List<Integer> requests) {
+                        if (requests.contains(0)) {
+                            firstBatchStarted.countDown();
+                            Uninterruptibles.awaitUninterruptibly(firstBatchMayFinish);
+                        }
+                        return doubling().apply(requests);
+                    }
+                });
+
+        Future<Integer> first = apply(batcher, 0);
+        assertTrue(firstBatchStarted.await(10, TimeUnit.SECONDS));
+        List<Future<Integer>> waiting = Lists.newArrayList();
+        for (int i = 1; i <= 3; i++) {
+            waiting.add(apply(batcher, i));
+        }
+        while (batcher.getNumberOfPendingRequests() < 3) {
+            Thread.sleep(10);
+        }
+        firstBatchMayFinish.countDown();
+
+        assertEquals(0, (int) first.get(10, TimeUnit.SECONDS));
+        for (int i = 1; i <= 3; i++) {
+            assertEquals(2 * i, (int) waiting.get(i - 1).get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(2, batches.size());
+        assertThat(batches.get(0), contains(0));
+        assertEquals(3, batches.get(1).size());
+    }
+
+    @Test
+    public void rethrowsFailuresToEveryRequestInTheBatch() {
+        CoalescingBatcher<Integer, Integer> batcher = new CoalescingBatcher<Integer, Integer>(
+                new Function<List<Integer>, List<Integer>>() {
+                    @Override
+                    public List<Integer> apply(List<Integer> requests) {
+                        throw new IllegalStateException("batch failed");
+                    }
+                });
+        try {
+            batcher.apply(1);
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("batch failed", e.getMessage());
+        }
+        // the failed batch must not keep later requests from being sent
+        try {
+            batcher.apply(2);
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("batch failed", e.getMessage());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsBatchResultsOfTheWrongSize() {
+        CoalescingBatcher<Integer, Integer> batcher = new CoalescingBatcher<Integer, Integer>(
+                new Function<List<Integer>, List<Integer>>() {
+                    @Override
+                    public List<Integer> apply(List<Integer> requests) {
+                        return ImmutableList.of();
+                    }
+                });
+        batcher.apply(1);
+    }
+
+    private Function<List<Integer>, List<Integer>> doubling() {
+        return new Function<List<Integer>, List<Integer>>() {
+            @Override
+            public List<Integer> apply(List<Integer> requests) {
+                batches.add(requests);
+                List<Integer> results = Lists.newArrayList();
+                for (int request : requests) {
+                    results.add(2 * request);
+                }
+                return results;
+            }
+        };
+    }
+
+    private Future<Integer> apply(final CoalescingBatcher<Integer, Integer> batcher, final int request) {
+        return executor.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return batcher.apply(request);
+            }
+        });
+    }
+}
@@ -23,6 +23,7 @@ import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.palantir.atlasdb.AtlasDbConstants;
 import com.palantir.atlasdb.spi.KeyValueServiceConfig;
+import com.palantir.atlasdb.transaction.api.SerializableReadTracking;
 
 @JsonDeserialize(as = ImmutableAtlasDbConfig.class)
 @JsonSerialize(as = ImmutableAtlasDbConfig.class)
@@ -150,6 +151,94 @@ public abstract class AtlasDbConfig {
         return AtlasDbConstants.DEFAULT_SWEEP_BATCH_SIZE;
     }
 
+    /**
+     * The maximum number of start timestamp to commit timestamp mappings
+     * cached by the transaction manager. The cache is shared by all
+     * transactions, so that commit timestamps of recent writers only
+     * need to be read from the _transactions table once.
+     */
+    @Value.Default
+    public int getCommitTimestampCacheSize() {
+        return AtlasDbConstants.DEFAULT_COMMIT_TIMESTAMP_CACHE_SIZE;
+    }
+
+    /**
+     * If true, commit timestamps of concurrently committing transactions
+     * are written to the _transactions table together, in a single
+     * putUnlessExists call. This mostly benefits key value services
+     * which can write many cells in one statement, such as DbKvs.
+     */
+    @Value.Default
+    public boolean enableTransactionGroupCommit() {
+        return AtlasDbConstants.DEFAULT_ENABLE_TRANSACTION_GROUP_COMMIT;
+    }
+
+    /**
+     * The maximum number of tables a transaction works on in parallel when
+     * checking for conflicts and writing at commit time, and when reading
+     * rows from several tables at once. A value of 1 makes all of these
+     * sequential.
+     */
+    @Value.Default
+    public int getTransactionTableParallelism() {
+        return AtlasDbConstants.DEFAULT_TRANSACTION_TABLE_PARALLELISM;
+    }
+
+    /**
+     * The number of threads running the reads of asynchronous transactions.
+     * Reads issued while every thread is busy wait for one to become free.
+     */
+    @Value.Default
+    public int getAsyncReadThreads() {
+        return AtlasDbConstants.DEFAULT_ASYNC_READ_THREADS;
+    }
+
+    /**
+     * How long, in milliseconds, read only transactions may reuse a start
+     * timestamp issued to an earlier transaction instead of getting a fresh
+     * one. Such transactions may not see writes committed by other clients
+     * within this window, but always see writes committed through the same
+     * transaction manager. Zero means always get a fresh timestamp.
+     */
+    @Value.Default
+    public long getReadOnlyTimestampStalenessMillis() {
+        return AtlasDbConstants.DEFAULT_READ_ONLY_TIMESTAMP_STALENESS_MILLIS;
+    }
+
+    /**
+     * What serializable transactions remember about their reads. {@code TIMESTAMPS}
+     * keeps only the cells read and the versions seen, and checks for newer
+     * versions at commit time instead of reading every value again.
+     */
+    @Value.Default
+    public SerializableReadTracking getSerializableReadTracking() {
+        return AtlasDbConstants.DEFAULT_SERIALIZABLE_READ_TRACKING;
+    }
+
+    /**
+     * If positive, transactions do not ask the lock server whether their
+     * locks are still valid when committing while every lock has at least
+     * this many milliseconds of its local lease left. Locks can then only
+     * be lost unnoticed if the lock server restarts or fails over. Zero
+     * means always ask the lock server.
+     */
+    @Value.Default
+    public long getLockLeaseMarginMillis() {
+        return AtlasDbConstants.DEFAULT_LOCK_LEASE_MARGIN_MILLIS;
+    }
+
+    /**
+     * If true, clients using remote or leader-elected lock and timestamp
+     * services start read-write transactions in batches, with one call to
+     * the transactions/start-transactions endpoint. Only enable this once
+     * every server in the lock and timestamp blocks serves that endpoint.
+     * Embedded services always start transactions this way.
+     */
+    @Value.Default
+    public boolean enableRemoteTransactionStarts() {
+        return AtlasDbConstants.DEFAULT_ENABLE_REMOTE_TRANSACTION_STARTS;
+    }
+
     @Value.Check
     protected final void check() {
         if (leader().isPresent()) {
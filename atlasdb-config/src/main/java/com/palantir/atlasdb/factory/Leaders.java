@@ -56,8 +56,10 @@ public final class Leaders {
             Environment env,
             LeaderConfig config) {
 
-        PaxosAcceptor ourAcceptor = PaxosAcceptorImpl.newAcceptor(config.acceptorLogDir().getPath());
-        PaxosLearner ourLearner = PaxosLearnerImpl.newLearner(config.learnerLogDir().getPath());
+        PaxosAcceptor ourAcceptor = PaxosAcceptorImpl.newAcceptor(
+                config.acceptorLogDir().getPath(), config.useSegmentedPaxosLog());
+        PaxosLearner ourLearner = PaxosLearnerImpl.newLearner(
+                config.learnerLogDir().getPath(), config.useSegmentedPaxosLog());
 
         Set<String> remoteLeaderUris = Sets.newHashSet(config.leaders());
         remoteLeaderUris.remove(config.localServer());
@@ -82,7 +84,8 @@ public final class Leaders {
                 ImmutableList.copyOf(acceptors),
                 ImmutableList.copyOf(learners),
                 config.quorumSize(),
-                executor);
+                executor,
+                config.useMultiPaxos());
 
         PaxosLeaderElectionService leader = new PaxosLeaderElectionService(
                 proposer,
@@ -93,7 +96,9 @@ public final class Leaders {
                 executor,
                 config.pingRateMs(),
                 config.randomWaitBeforeProposingLeadershipMs(),
-                config.leaderPingResponseWaitMs());
+                config.leaderPingResponseWaitMs(),
+                config.leaderLeaseMs(),
+                config.maxAllowedClockDriftMs());
 
         env.register(ourAcceptor);
         env.register(ourLearner);
@@ -54,21 +54,30 @@ import com.palantir.atlasdb.table.description.Schema;
 import com.palantir.atlasdb.table.description.Schemas;
 import com.palantir.atlasdb.transaction.api.AtlasDbConstraintCheckingMode;
 import com.palantir.atlasdb.transaction.api.TransactionManager;
+import com.palantir.atlasdb.transaction.impl.CommitTimestampCache;
 import com.palantir.atlasdb.transaction.impl.ConflictDetectionManager;
 import com.palantir.atlasdb.transaction.impl.ConflictDetectionManagers;
+import com.palantir.atlasdb.transaction.impl.ParallelTaskRunner;
 import com.palantir.atlasdb.transaction.impl.SerializableTransactionManager;
 import com.palantir.atlasdb.transaction.impl.SweepStrategyManager;
 import com.palantir.atlasdb.transaction.impl.SweepStrategyManagers;
+import com.palantir.atlasdb.transaction.impl.TransactionOptions;
 import com.palantir.atlasdb.transaction.impl.TransactionTables;
 import com.palantir.atlasdb.transaction.service.TransactionService;
 import com.palantir.atlasdb.transaction.service.TransactionServices;
+import com.palantir.common.concurrent.NamedThreadFactory;
+import com.palantir.common.concurrent.PTExecutors;
 import com.palantir.leader.LeaderElectionService;
 import com.palantir.leader.proxy.AwaitingLeadershipProxy;
 import com.palantir.lock.LockClient;
 import com.palantir.lock.LockServerOptions;
 import com.palantir.lock.RemoteLockService;
+import com.palantir.lock.TransactionStartService;
+import com.palantir.lock.client.CoalescingTransactionStartService;
 import com.palantir.lock.client.LockRefreshingRemoteLockService;
+import com.palantir.lock.client.LockRefreshingTransactionStartService;
 import com.palantir.lock.impl.LockServiceImpl;
+import com.palantir.lock.impl.TransactionStartServiceImpl;
 import com.palantir.remoting.ssl.SslConfiguration;
 import com.palantir.remoting.ssl.SslSocketFactories;
 import com.palantir.timestamp.TimestampService;
@@ -134,7 +143,9 @@ public final class TransactionManagers {
 
         TransactionTables.createTables(kvs);
 
-        TransactionService transactionService = TransactionServices.createTransactionService(kvs);
+        TransactionService transactionService = config.enableTransactionGroupCommit()
+                ? TransactionServices.createGroupCommitTransactionService(kvs)
+                : TransactionServices.createTransactionService(kvs);
         ConflictDetectionManager conflictManager = ConflictDetectionManagers.createDefault(kvs);
         SweepStrategyManager sweepStrategyManager = SweepStrategyManagers.createDefault(kvs);
 
@@ -163,6 +174,9 @@ public final class TransactionManagers {
                 .setTransactionReadTimeout(config.getTransactionReadTimeoutMillis())
                 .buildCleaner();
 
+        CommitTimestampCache commitTimestampCache = new CommitTimestampCache(config.getCommitTimestampCacheSize());
+        commitTimestampCache.registerMBean();
+
         SerializableTransactionManager transactionManager = new SerializableTransactionManager(kvs,
                 lts.time(),
                 LOCK_CLIENT,
@@ -172,7 +186,16 @@ public final class TransactionManagers {
                 conflictManager,
                 sweepStrategyManager,
                 cleaner,
-                allowHiddenTableAccess);
+                allowHiddenTableAccess,
+                TransactionOptions.builder()
+                        .commitTimestampCache(commitTimestampCache)
+                        .transactionStartService(lts.transactionStart())
+                        .tableTaskRunner(ParallelTaskRunner.create(config.getTransactionTableParallelism()))
+                        .asyncReadExecutor(PTExecutors.newFixedThreadPool(config.getAsyncReadThreads(),
+                                new NamedThreadFactory("transaction-async-read", true /* daemon */)))
+                        .readOnlyTimestampStalenessMillis(config.getReadOnlyTimestampStalenessMillis())
+                        .readTracking(config.getSerializableReadTracking())
+                        .build());
 
         SweepTaskRunner sweepRunner = new SweepTaskRunnerImpl(
                 transactionManager,
@@ -210,14 +233,22 @@ public final class TransactionManagers {
             Supplier<TimestampService> time) {
         LockAndTimestampServices lockAndTimestampServices =
                 createRawServices(config, env, lock, time);
-        return withRefreshingLockService(lockAndTimestampServices);
+        return withRefreshingLockService(lockAndTimestampServices, config.getLockLeaseMarginMillis());
     }
 
     private static LockAndTimestampServices withRefreshingLockService(
-            LockAndTimestampServices lockAndTimestampServices) {
+            LockAndTimestampServices lockAndTimestampServices,
+            long lockLeaseMarginMillis) {
+        LockRefreshingRemoteLockService lockService = LockRefreshingRemoteLockService.create(
+                lockAndTimestampServices.lock(), lockLeaseMarginMillis);
+        // Coalesce outside the refreshing layer so that only locks actually handed to a caller get refreshed.
+        Optional<TransactionStartService> transactionStartService = lockAndTimestampServices.transactionStart()
+                .<TransactionStartService>transform(service -> new LockRefreshingTransactionStartService(
+                        new CoalescingTransactionStartService(service), lockService));
         return ImmutableLockAndTimestampServices.builder()
                 .from(lockAndTimestampServices)
-                .lock(LockRefreshingRemoteLockService.create(lockAndTimestampServices.lock()))
+                .lock(lockService)
+                .transactionStart(transactionStartService)
                 .build();
     }
 
@@ -227,7 +258,8 @@ public final class TransactionManagers {
             Supplier<RemoteLockService> lock,
             Supplier<TimestampService> time) {
         if (config.leader().isPresent()) {
-            return createRawLeaderServices(config.leader().get(), env, lock, time);
+            return createRawLeaderServices(
+                    config.leader().get(), config.enableRemoteTransactionStarts(), env, lock, time);
         } else if (config.timestamp().isPresent() && config.lock().isPresent()) {
             return createRawRemoteServices(config);
         } else {
@@ -237,30 +269,44 @@ public final class TransactionManagers {
 
     private static LockAndTimestampServices createRawLeaderServices(
             LeaderConfig leaderConfig,
+            boolean enableRemoteTransactionStarts,
             Environment env,
             Supplier<RemoteLockService> lock,
             Supplier<TimestampService> time) {
         LeaderElectionService leader = Leaders.create(env, leaderConfig);
 
-        env.register(AwaitingLeadershipProxy.newProxyInstance(RemoteLockService.class, lock, leader));
-        env.register(AwaitingLeadershipProxy.newProxyInstance(TimestampService.class, time, leader));
+        RemoteLockService localLock = AwaitingLeadershipProxy.newProxyInstance(RemoteLockService.class, lock, leader);
+        TimestampService localTime = AwaitingLeadershipProxy.newProxyInstance(TimestampService.class, time, leader);
+        env.register(localLock);
+        env.register(localTime);
+        env.register(new TransactionStartServiceImpl(localTime, localLock));
 
         Optional<SSLSocketFactory> sslSocketFactory = createSslSocketFactory(leaderConfig.sslConfiguration());
 
-        return ImmutableLockAndTimestampServices.builder()
+        ImmutableLockAndTimestampServices.Builder builder = ImmutableLockAndTimestampServices.builder()
                 .lock(createService(sslSocketFactory, leaderConfig.leaders(), RemoteLockService.class))
-                .time(createService(sslSocketFactory, leaderConfig.leaders(), TimestampService.class))
-                .build();
+                .time(createService(sslSocketFactory, leaderConfig.leaders(), TimestampService.class));
+        if (enableRemoteTransactionStarts) {
+            // Other leaders may not serve the endpoint yet during a rolling upgrade, so this is opt-in.
+            builder.transactionStart(
+                    createService(sslSocketFactory, leaderConfig.leaders(), TransactionStartService.class));
+        }
+        return builder.build();
     }
 
     private static LockAndTimestampServices createRawRemoteServices(AtlasDbConfig config) {
         RemoteLockService lockService = new ServiceCreator<>(RemoteLockService.class).apply(config.lock().get());
         TimestampService timeService = new ServiceCreator<>(TimestampService.class).apply(config.timestamp().get());
 
-        return ImmutableLockAndTimestampServices.builder()
+        ImmutableLockAndTimestampServices.Builder builder = ImmutableLockAndTimestampServices.builder()
                 .lock(lockService)
-                .time(timeService)
-                .build();
+                .time(timeService);
+        if (config.enableRemoteTransactionStarts() && config.lock().get().equals(config.timestamp().get())) {
+            // Transactions can only be started in one call if the lock and timestamp services live together.
+            builder.transactionStart(
+                    new ServiceCreator<>(TransactionStartService.class).apply(config.lock().get()));
+        }
+        return builder.build();
     }
 
     private static LockAndTimestampServices createRawEmbeddedServices(
@@ -270,12 +316,16 @@ public final class TransactionManagers {
         RemoteLockService lockService = lock.get();
         TimestampService timeService = time.get();
 
+        TransactionStartService transactionStartService = new TransactionStartServiceImpl(timeService, lockService);
+
         env.register(lockService);
         env.register(timeService);
+        env.register(transactionStartService);
 
         return ImmutableLockAndTimestampServices.builder()
                 .lock(lockService)
                 .time(timeService)
+                .transactionStart(transactionStartService)
                 .build();
     }
 
@@ -311,6 +361,7 @@ public final class TransactionManagers {
     public interface LockAndTimestampServices {
         RemoteLockService lock();
         TimestampService time();
+        Optional<TransactionStartService> transactionStart();
     }
 
     public interface Environment {
@@ -54,6 +54,14 @@ public abstract class DdlConfig {
         return 256;
     }
 
+    /**
+     * Whether range scans load the next page of rows in the background while the current page is consumed.
+     */
+    @Value.Default
+    public boolean prefetchRangePages() {
+        return false;
+    }
+
     @Value.Default
     public int mutationBatchCount() {
         return 1000;
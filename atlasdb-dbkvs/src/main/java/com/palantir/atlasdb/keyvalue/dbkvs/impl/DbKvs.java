@@ -402,21 +402,33 @@ public class DbKvs extends AbstractKeyValueService {
             TableReference tableRef,
             RangeRequest rangeRequest,
             long timestamp) {
-        Iterable<RowResult<Value>> rows =
-                new AbstractPagingIterable<RowResult<Value>, TokenBackedBasicResultsPage<RowResult<Value>, byte[]>>() {
-                    @Override
-                    protected TokenBackedBasicResultsPage<RowResult<Value>, byte[]> getFirstPage() {
-                        return getPage(tableRef, rangeRequest, timestamp);
-                    }
+        return iteratePages(
+                () -> getPage(tableRef, rangeRequest, timestamp),
+                previous -> {
+                    byte[] newStartRow = previous.getTokenForNextPage();
+                    RangeRequest newRange = rangeRequest.getBuilder().startRowInclusive(newStartRow).build();
+                    return getPage(tableRef, newRange, timestamp);
+                });
+    }
 
-                    @Override
-                    protected TokenBackedBasicResultsPage<RowResult<Value>, byte[]> getNextPage(
-                            TokenBackedBasicResultsPage<RowResult<Value>, byte[]> previous) {
-                        byte[] newStartRow = previous.getTokenForNextPage();
-                        RangeRequest newRange = rangeRequest.getBuilder().startRowInclusive(newStartRow).build();
-                        return getPage(tableRef, newRange, timestamp);
-                    }
-                };
+    private <T> ClosableIterator<T> iteratePages(
+            Supplier<TokenBackedBasicResultsPage<T, byte[]>> firstPageLoader,
+            Function<TokenBackedBasicResultsPage<T, byte[]>, TokenBackedBasicResultsPage<T, byte[]>> nextPageLoader) {
+        if (config.prefetchRangePages()) {
+            return new PrefetchingPagingIterator<>(executor, firstPageLoader, nextPageLoader);
+        }
+        Iterable<T> rows = new AbstractPagingIterable<T, TokenBackedBasicResultsPage<T, byte[]>>() {
+            @Override
+            protected TokenBackedBasicResultsPage<T, byte[]> getFirstPage() {
+                return firstPageLoader.get();
+            }
+
+            @Override
+            protected TokenBackedBasicResultsPage<T, byte[]> getNextPage(
+                    TokenBackedBasicResultsPage<T, byte[]> previous) {
+                return nextPageLoader.apply(previous);
+            }
+        };
         return ClosableIterators.wrap(rows.iterator());
     }
 
@@ -493,23 +505,13 @@ public class DbKvs extends AbstractKeyValueService {
             TableReference tableRef,
             RangeRequest rangeRequest,
             long timestamp) {
-        Iterable<RowResult<Set<Long>>> rows = new AbstractPagingIterable<
-                RowResult<Set<Long>>,
-                TokenBackedBasicResultsPage<RowResult<Set<Long>>, byte[]>>() {
-            @Override
-            protected TokenBackedBasicResultsPage<RowResult<Set<Long>>, byte[]> getFirstPage() {
-                return getTimestampsPage(tableRef, rangeRequest, timestamp);
-            }
-
-            @Override
-            protected TokenBackedBasicResultsPage<RowResult<Set<Long>>, byte[]> getNextPage(
-                    TokenBackedBasicResultsPage<RowResult<Set<Long>>, byte[]> previous) {
-                byte[] newStartRow = previous.getTokenForNextPage();
-                RangeRequest newRange = rangeRequest.getBuilder().startRowInclusive(newStartRow).build();
-                return getTimestampsPage(tableRef, newRange, timestamp);
-            }
-        };
-        return ClosableIterators.wrap(rows.iterator());
+        return iteratePages(
+                () -> getTimestampsPage(tableRef, rangeRequest, timestamp),
+                previous -> {
+                    byte[] newStartRow = previous.getTokenForNextPage();
+                    RangeRequest newRange = rangeRequest.getBuilder().startRowInclusive(newStartRow).build();
+                    return getTimestampsPage(tableRef, newRange, timestamp);
+                });
     }
 
     private TokenBackedBasicResultsPage<RowResult<Set<Long>>, byte[]> getTimestampsPage(
@@ -0,0 +1,101 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.keyvalue.dbkvs.impl;
+
+import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Function;
+import com.google.common.collect.AbstractIterator;
+import com.palantir.common.base.ClosableIterator;
+import com.palantir.common.base.Throwables;
+import com.palantir.util.paging.AbstractPagingIterable;
+import com.palantir.util.paging.TokenBackedBasicResultsPage;
+
+/**
+ * Pages through results like {@link AbstractPagingIterable}, but loads the next page on the
+ * executor as soon as the current page arrives, so the queries for the next page overlap
+ * with the consumption of the current one. Only one page is loaded ahead of the consumer.
+ */
+public class PrefetchingPagingIterator<T> extends AbstractIterator<T> implements ClosableIterator<T> {
+    private static final Logger log = LoggerFactory.getLogger(PrefetchingPagingIterator.class);
+    private final ExecutorService executor;
+    private final Supplier<TokenBackedBasicResultsPage<T, byte[]>> firstPageLoader;
+    private final Function<TokenBackedBasicResultsPage<T, byte[]>, TokenBackedBasicResultsPage<T, byte[]>> nextPageLoader;
+    private Iterator<T> currentPage = null;
+    private Future<TokenBackedBasicResultsPage<T, byte[]>> nextPage = null;
+    private boolean closed = false;
+
+    public PrefetchingPagingIterator(
+            ExecutorService executor,
+            Supplier<TokenBackedBasicResultsPage<T, byte[]>> firstPageLoader,
+            Function<TokenBackedBasicResultsPage<T, byte[]>, TokenBackedBasicResultsPage<T, byte[]>> nextPageLoader) {
+        this.executor = executor;
+        this.firstPageLoader = firstPageLoader;
+        this.nextPageLoader = nextPageLoader;
+    }
+
+    @Override
+    protected T computeNext() {
+        if (closed) {
+            return endOfData();
+        }
+        if (currentPage == null) {
+            startPage(firstPageLoader.get());
+        }
+        while (!currentPage.hasNext()) {
+            if (nextPage == null) {
+                return endOfData();
+            }
+            startPage(getPage(nextPage));
+        }
+        return currentPage.next();
+    }
+
+    private void startPage(TokenBackedBasicResultsPage<T, byte[]> page) {
+        nextPage = page.moreResultsAvailable() ? executor.submit(() -> nextPageLoader.apply(page)) : null;
+        currentPage = page.getResults().iterator();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (nextPage != null) {
+            // Interrupting a query can leave its connection unusable, so an in-flight page
+            // is left to finish and then discarded.
+            nextPage.cancel(false);
+            nextPage = null;
+        }
+    }
+
+    private TokenBackedBasicResultsPage<T, byte[]> getPage(Future<TokenBackedBasicResultsPage<T, byte[]>> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            throw Throwables.rewrapAndThrowUncheckedException(e);
+        } catch (ExecutionException e) {
+            log.error("Failed to load the next page.", e.getCause());
+            throw Throwables.rewrapAndThrowUncheckedException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.keyvalue.dbkvs.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Ints;
+import com.palantir.util.paging.SimpleTokenBackedResultsPage;
+import com.palantir.util.paging.TokenBackedBasicResultsPage;
+
+public class PrefetchingPagingIteratorTest {
+    private static final List<List<Integer>> PAGES = ImmutableList.<List<Integer>>of(
+            ImmutableList.of(1, 2),
+            ImmutableList.<Integer>of(),
+            ImmutableList.of(3),
+            ImmutableList.of(4, 5));
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final AtomicInteger pagesLoaded = new AtomicInteger();
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        executor.awaitTermination(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testReturnsEveryPageInOrder() {
+        PrefetchingPagingIterator<Integer> iter = new PrefetchingPagingIterator<>(
+                executor, () -> loadPage(0), previous -> loadPage(Ints.fromByteArray(previous.getTokenForNextPage())));
+
+        List<Integer> results = Lists.newArrayList(iter);
+
+        assertEquals(ImmutableList.of(1, 2, 3, 4, 5), results);
+        assertEquals(PAGES.size(), pagesLoaded.get());
+    }
+
+    @Test
+    public void testLoadsNextPageBeforeCurrentPageIsConsumed() throws Exception {
+        CountDownLatch secondPageLoaded = new CountDownLatch(1);
+        PrefetchingPagingIterator<Integer> iter = new PrefetchingPagingIterator<>(executor, () -> loadPage(0),
+                previous -> {
+                    TokenBackedBasicResultsPage<Integer, byte[]> page = loadPage(1);
+                    secondPageLoaded.countDown();
+                    return page;
+                });
+
+        assertEquals(1, (int) iter.next());
+        assertTrue(secondPageLoaded.await(5, TimeUnit.SECONDS));
+        iter.close();
+    }
+
+    @Test
+    public void testCloseStopsLoadingPages() throws Exception {
+        PrefetchingPagingIterator<Integer> iter = new PrefetchingPagingIterator<>(
+                executor, () -> loadPage(0), previous -> loadPage(Ints.fromByteArray(previous.getTokenForNextPage())));
+
+        assertEquals(1, (int) iter.next());
+        iter.close();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertFalse(iter.hasNext());
+        assertTrue(pagesLoaded.get() <= 2);
+    }
+
+    private TokenBackedBasicResultsPage<Integer, byte[]> loadPage(int index) {
+        pagesLoaded.incrementAndGet();
+        boolean hasMore = index + 1 < PAGES.size();
+        return SimpleTokenBackedResultsPage.create(Ints.toByteArray(index + 1), PAGES.get(index), hasMore);
+    }
+}
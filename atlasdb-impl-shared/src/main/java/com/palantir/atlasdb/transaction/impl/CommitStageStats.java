@@ -0,0 +1,137 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.transaction.impl;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.palantir.util.JMXUtils;
+
+/**
+ * MXBean which tracks how long each stage of {@link SnapshotTransaction#commit()} takes
+ * across all transactions in this JVM.
+ */
+public final class CommitStageStats implements CommitStageStatsMBean {
+    public static final CommitStageStats INSTANCE = createCommitStageStats();
+
+    private static final String OBJECT_NAME = "com.palantir.atlasdb.transaction:type=CommitStageStats";
+
+    enum Stage {
+        ACQUIRE_LOCKS,
+        CHECK_CONFLICTS,
+        WRITE,
+        GET_COMMIT_TIMESTAMP,
+        VALIDATE,
+        PUT_COMMIT_TIMESTAMP,
+        PUNCH,
+        TOTAL
+    }
+
+    private final Map<Stage, LongAdder> nanosByStage = new EnumMap<>(Stage.class);
+    private final LongAdder commitCount = new LongAdder();
+    private final AtomicLong maxCommitNanos = new AtomicLong();
+
+    private static CommitStageStats createCommitStageStats() {
+        CommitStageStats stats = new CommitStageStats();
+        JMXUtils.registerMBeanCatchAndLogExceptions(stats, OBJECT_NAME);
+        return stats;
+    }
+
+    CommitStageStats() {
+        for (Stage stage : Stage.values()) {
+            nanosByStage.put(stage, new LongAdder());
+        }
+    }
+
+    void recordStage(Stage stage, long nanos) {
+        nanosByStage.get(stage).add(nanos);
+    }
+
+    void recordCommit(long nanos) {
+        commitCount.increment();
+        recordStage(Stage.TOTAL, nanos);
+        long max = maxCommitNanos.get();
+        while (nanos > max && !maxCommitNanos.compareAndSet(max, nanos)) {
+            max = maxCommitNanos.get();
+        }
+    }
+
+    long getTotalMillis(Stage stage) {
+        return TimeUnit.NANOSECONDS.toMillis(nanosByStage.get(stage).sum());
+    }
+
+    @Override
+    public long getCommitCount() {
+        return commitCount.sum();
+    }
+
+    @Override
+    public long getTotalCommitMillis() {
+        return getTotalMillis(Stage.TOTAL);
+    }
+
+    @Override
+    public long getMaxCommitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxCommitNanos.get());
+    }
+
+    @Override
+    public long getTotalMillisAcquiringLocks() {
+        return getTotalMillis(Stage.ACQUIRE_LOCKS);
+    }
+
+    @Override
+    public long getTotalMillisCheckingForConflicts() {
+        return getTotalMillis(Stage.CHECK_CONFLICTS);
+    }
+
+    @Override
+    public long getTotalMillisWriting() {
+        return getTotalMillis(Stage.WRITE);
+    }
+
+    @Override
+    public long getTotalMillisGettingCommitTimestamp() {
+        return getTotalMillis(Stage.GET_COMMIT_TIMESTAMP);
+    }
+
+    @Override
+    public long getTotalMillisValidating() {
+        return getTotalMillis(Stage.VALIDATE);
+    }
+
+    @Override
+    public long getTotalMillisPuttingCommitTimestamp() {
+        return getTotalMillis(Stage.PUT_COMMIT_TIMESTAMP);
+    }
+
+    @Override
+    public long getTotalMillisPunching() {
+        return getTotalMillis(Stage.PUNCH);
+    }
+
+    @Override
+    public void clearStats() {
+        for (LongAdder nanos : nanosByStage.values()) {
+            nanos.reset();
+        }
+        commitCount.reset();
+        maxCommitNanos.set(0);
+    }
+}
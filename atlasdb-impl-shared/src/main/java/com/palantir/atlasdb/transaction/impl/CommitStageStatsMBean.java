@@ -0,0 +1,53 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.transaction.impl;
+
+import javax.management.MXBean;
+
+/**
+ * Cumulative timings for each stage of committing a transaction with writes.
+ * Stages that overlap are timed separately, so the stage totals can add up to
+ * more than the total commit time.
+ */
+@MXBean
+public interface CommitStageStatsMBean {
+    long getCommitCount();
+
+    long getTotalCommitMillis();
+
+    long getMaxCommitMillis();
+
+    long getTotalMillisAcquiringLocks();
+
+    long getTotalMillisCheckingForConflicts();
+
+    long getTotalMillisWriting();
+
+    long getTotalMillisGettingCommitTimestamp();
+
+    /**
+     * Time spent waiting for both the read-write conflict check of serializable
+     * transactions and the validation of the transaction's locks, which run concurrently.
+     */
+    long getTotalMillisValidating();
+
+    long getTotalMillisPuttingCommitTimestamp();
+
+    /** Time spent punching the commit timestamp, which happens off the commit path. */
+    long getTotalMillisPunching();
+
+    void clearStats();
+}
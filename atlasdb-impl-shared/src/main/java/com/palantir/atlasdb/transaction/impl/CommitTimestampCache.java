@@ -0,0 +1,214 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.transaction.impl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.google.common.base.Preconditions;
+import com.palantir.atlasdb.AtlasDbConstants;
+import com.palantir.util.CacheStatsMBean;
+import com.palantir.util.MBeanCache;
+
+/**
+ * A bounded, lock-free cache from start timestamp to commit timestamp.
+ * <p>
+ * Once a commit timestamp has been written to the _transactions table it never changes, so a single
+ * instance of this cache can safely be shared by every transaction created by a transaction manager.
+ * <p>
+ * Entries live in a flat {@link AtomicLongArray} organised as a two-way set associative table. Each slot
+ * is guarded by a sequence number (a seqlock): readers never block, a lookup that races with a writer
+ * simply misses, and a writer that loses the race for a slot drops its entry instead of waiting.
+ * When both ways of a set are occupied, the entry with the older start timestamp is evicted, since
+ * recently started transactions are the ones most likely to be read again.
+ */
+public class CommitTimestampCache extends MBeanCache<Long, Long> {
+    /**
+     * Returned by {@link #getCommitTimestamp(long)} when the start timestamp is not cached.
+     */
+    public static final long NO_ENTRY = Long.MIN_VALUE;
+
+    private static final long EMPTY_KEY = Long.MIN_VALUE;
+    private static final int WAYS = 2;
+    private static final int LONGS_PER_SLOT = 3;
+    private static final int VERSION_OFFSET = 0;
+    private static final int KEY_OFFSET = 1;
+    private static final int VALUE_OFFSET = 2;
+    private static final int MAX_CAPACITY = 1 << 24;
+
+    private volatile Table table;
+
+    public CommitTimestampCache() {
+        this(AtlasDbConstants.DEFAULT_COMMIT_TIMESTAMP_CACHE_SIZE);
+    }
+
+    public CommitTimestampCache(int maxSize) {
+        this.table = new Table(maxSize);
+        setName("CommitTimestampCache");
+    }
+
+    /**
+     * Returns the commit timestamp for the given start timestamp, or {@link #NO_ENTRY} if it is not cached.
+     */
+    public long getCommitTimestamp(long startTs) {
+        long commitTs = table.get(startTs);
+        if (commitTs == NO_ENTRY) {
+            mbean.incrementMisses();
+        } else {
+            mbean.incrementHits();
+        }
+        return commitTs;
+    }
+
+    public void putCommitTimestamp(long startTs, long commitTs) {
+        Preconditions.checkArgument(startTs != EMPTY_KEY, "Invalid start timestamp %s", startTs);
+        if (table.put(startTs, commitTs)) {
+            mbean.incrementPuts();
+        }
+    }
+
+    public CacheStatsMBean getCacheStats() {
+        return mbean;
+    }
+
+    @Override
+    public Long get(Long startTs) {
+        long commitTs = getCommitTimestamp(startTs);
+        return commitTs == NO_ENTRY ? null : commitTs;
+    }
+
+    @Override
+    public Long put(Long startTs, Long commitTs) {
+        putCommitTimestamp(startTs, commitTs);
+        return null;
+    }
+
+    @Override
+    public boolean containsKey(Long startTs) {
+        return table.get(startTs) != NO_ENTRY;
+    }
+
+    @Override
+    public int size() {
+        return table.size.get();
+    }
+
+    @Override
+    public void clear() {
+        table = new Table(table.capacity);
+    }
+
+    @Override
+    public int getMaxCacheSize() {
+        return table.capacity;
+    }
+
+    /**
+     * Resizing drops all cached entries.
+     */
+    @Override
+    public void setMaxCacheSize(int size) {
+        table = new Table(size);
+    }
+
+    private static final class Table {
+        final int capacity;
+        final int setMask;
+        final int setBits;
+        final AtomicLongArray slots;
+        final AtomicInteger size = new AtomicInteger();
+
+        Table(int requestedCapacity) {
+            Preconditions.checkArgument(requestedCapacity > 0 && requestedCapacity <= MAX_CAPACITY,
+                    "Cache size must be between 1 and %s but was %s", MAX_CAPACITY, requestedCapacity);
+            int numSets = Math.max(1, Integer.highestOneBit((requestedCapacity + WAYS - 1) / WAYS));
+            if (numSets * WAYS < requestedCapacity) {
+                numSets <<= 1;
+            }
+            this.capacity = numSets * WAYS;
+            this.setMask = numSets - 1;
+            this.setBits = Integer.numberOfTrailingZeros(numSets);
+            this.slots = new AtomicLongArray(capacity * LONGS_PER_SLOT);
+            for (int i = 0; i < capacity; i++) {
+                slots.set(i * LONGS_PER_SLOT + KEY_OFFSET, EMPTY_KEY);
+            }
+        }
+
+        long get(long key) {
+            int firstSlot = firstSlotFor(key);
+            for (int way = 0; way < WAYS; way++) {
+                long value = readSlot(firstSlot + way * LONGS_PER_SLOT, key);
+                if (value != NO_ENTRY) {
+                    return value;
+                }
+            }
+            return NO_ENTRY;
+        }
+
+        boolean put(long key, long value) {
+            int firstSlot = firstSlotFor(key);
+            int victim = -1;
+            long victimKey = Long.MAX_VALUE;
+            for (int way = 0; way < WAYS; way++) {
+                int slot = firstSlot + way * LONGS_PER_SLOT;
+                long existingKey = slots.get(slot + KEY_OFFSET);
+                if (existingKey == key) {
+                    // Commit timestamps never change, so whatever is (being) stored here is already correct.
+                    return false;
+                }
+                if (victim == -1 || existingKey < victimKey) {
+                    victim = slot;
+                    victimKey = existingKey;
+                }
+            }
+            return writeSlot(victim, key, value);
+        }
+
+        private long readSlot(int slot, long key) {
+            long version = slots.get(slot + VERSION_OFFSET);
+            if ((version & 1) != 0) {
+                return NO_ENTRY;
+            }
+            long storedKey = slots.get(slot + KEY_OFFSET);
+            long storedValue = slots.get(slot + VALUE_OFFSET);
+            if (storedKey != key || slots.get(slot + VERSION_OFFSET) != version) {
+                return NO_ENTRY;
+            }
+            return storedValue;
+        }
+
+        private boolean writeSlot(int slot, long key, long value) {
+            long version = slots.get(slot + VERSION_OFFSET);
+            if ((version & 1) != 0 || !slots.compareAndSet(slot + VERSION_OFFSET, version, version + 1)) {
+                // Someone else is writing to this slot; this is only a cache so we just drop the entry.
+                return false;
+            }
+            if (slots.get(slot + KEY_OFFSET) == EMPTY_KEY) {
+                size.incrementAndGet();
+            }
+            slots.set(slot + KEY_OFFSET, key);
+            slots.set(slot + VALUE_OFFSET, value);
+            slots.set(slot + VERSION_OFFSET, version + 2);
+            return true;
+        }
+
+        private int firstSlotFor(long key) {
+            // Fibonacci hashing spreads the (mostly sequential) timestamps evenly over the sets.
+            int set = setBits == 0 ? 0 : (int) ((key * 0x9E3779B97F4A7C15L) >>> (Long.SIZE - setBits)) & setMask;
+            return set * WAYS * LONGS_PER_SLOT;
+        }
+    }
+}
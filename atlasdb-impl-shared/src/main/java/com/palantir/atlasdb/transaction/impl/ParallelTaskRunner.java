@@ -0,0 +1,179 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.transaction.impl;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import javax.annotation.concurrent.GuardedBy;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.palantir.common.base.Throwables;
+import com.palantir.common.concurrent.NamedThreadFactory;
+import com.palantir.common.concurrent.PTExecutors;
+
+/**
+ * Runs a transaction's independent per-table operations in parallel, on at most
+ * {@code parallelism} threads including the calling thread.
+ * <p>
+ * The calling thread always works through the tasks itself, and pool threads only help it,
+ * so a transaction never waits for a pool thread to become free. This matters because tasks
+ * can block on other transactions (for example while waiting for a commit to complete), and
+ * those transactions may need the same pool to make progress.
+ */
+public final class ParallelTaskRunner {
+    private static final ParallelTaskRunner SEQUENTIAL = new ParallelTaskRunner(Runnable::run, 1);
+
+    private final Executor executor;
+    private final int parallelism;
+
+    public ParallelTaskRunner(Executor executor, int parallelism) {
+        Preconditions.checkArgument(parallelism > 0, "parallelism must be positive");
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Returns a runner which runs every task on the calling thread.
+     */
+    public static ParallelTaskRunner sequential() {
+        return SEQUENTIAL;
+    }
+
+    /**
+     * Returns a runner backed by its own pool of daemon threads, which is shared by all transactions
+     * using the runner. A parallelism of one or less runs every task on the calling thread.
+     */
+    public static ParallelTaskRunner create(int parallelism) {
+        if (parallelism <= 1) {
+            return sequential();
+        }
+        return new ParallelTaskRunner(
+                PTExecutors.newFixedThreadPool(parallelism, new NamedThreadFactory("transaction-tables", true)),
+                parallelism);
+    }
+
+    public boolean isParallel() {
+        return parallelism > 1;
+    }
+
+    /**
+     * Applies {@code function} to each input and returns the results in the same order. If any
+     * task throws, no new tasks are started and the first exception is rethrown once the tasks
+     * already running have finished.
+     */
+    public <T, R> List<R> transform(List<T> inputs, Function<? super T, ? extends R> function) {
+        if (inputs.size() <= 1 || parallelism <= 1) {
+            List<R> results = Lists.newArrayListWithCapacity(inputs.size());
+            for (T input : inputs) {
+                results.add(function.apply(input));
+            }
+            return results;
+        }
+        Batch<T, R> batch = new Batch<>(inputs, function);
+        int helpers = Math.min(parallelism, inputs.size()) - 1;
+        for (int i = 0; i < helpers; i++) {
+            try {
+                executor.execute(batch::runTasks);
+            } catch (RejectedExecutionException e) {
+                break;
+            }
+        }
+        batch.runTasks();
+        return batch.awaitResults();
+    }
+
+    public <T> void forEach(List<T> inputs, Consumer<? super T> consumer) {
+        transform(inputs, input -> {
+            consumer.accept(input);
+            return null;
+        });
+    }
+
+    private static final class Batch<T, R> {
+        private final List<T> inputs;
+        private final Function<? super T, ? extends R> function;
+        private final Object[] results;
+        @GuardedBy("this") private int nextTask = 0;
+        @GuardedBy("this") private int runningTasks = 0;
+        @GuardedBy("this") private Throwable failure = null;
+
+        Batch(List<T> inputs, Function<? super T, ? extends R> function) {
+            this.inputs = inputs;
+            this.function = function;
+            this.results = new Object[inputs.size()];
+        }
+
+        void runTasks() {
+            int task;
+            while ((task = claimTask()) >= 0) {
+                Object result = null;
+                Throwable error = null;
+                try {
+                    result = function.apply(inputs.get(task));
+                } catch (Throwable t) {
+                    error = t;
+                }
+                finishTask(task, result, error);
+            }
+        }
+
+        private synchronized int claimTask() {
+            if (failure != null || nextTask >= inputs.size()) {
+                return -1;
+            }
+            runningTasks++;
+            return nextTask++;
+        }
+
+        private synchronized void finishTask(int task, Object result, Throwable error) {
+            results[task] = result;
+            if (error != null && failure == null) {
+                failure = error;
+            }
+            runningTasks--;
+            if (runningTasks == 0) {
+                notifyAll();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized List<R> awaitResults() {
+            boolean interrupted = false;
+            // Tasks are short reads and writes, so wait for them even if interrupted, to
+            // make sure none of them is still running when the caller moves on.
+            while (runningTasks > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure != null) {
+                throw Throwables.throwUncheckedException(failure);
+            }
+            return (List<R>) Arrays.asList(results);
+        }
+    }
+}
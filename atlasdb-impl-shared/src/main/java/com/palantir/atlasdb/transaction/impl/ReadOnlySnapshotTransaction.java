@@ -0,0 +1,124 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.transaction.impl;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Supplier;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.palantir.atlasdb.cleaner.NoOpCleaner;
+import com.palantir.atlasdb.keyvalue.api.KeyValueService;
+import com.palantir.atlasdb.keyvalue.api.TableReference;
+import com.palantir.atlasdb.transaction.api.AtlasDbConstraintCheckingMode;
+import com.palantir.atlasdb.transaction.api.TransactionReadSentinelBehavior;
+import com.palantir.atlasdb.transaction.service.TransactionService;
+import com.palantir.common.base.Throwables;
+import com.palantir.lock.LockRefreshToken;
+import com.palantir.lock.RemoteLockService;
+
+/**
+ * A snapshot transaction for read only tasks which normally never talks to the lock or timestamp services.
+ * <p>
+ * When a read finds a value written by a transaction that started after the immutable timestamp and has
+ * not yet written its commit timestamp, {@link SnapshotTransaction} waits on the lock server for that
+ * transaction's commit locks. This transaction instead polls the _transactions table for the commit
+ * timestamp. Only if the writer still hasn't committed after {@link #MAX_WAIT_FOR_COMMIT_MILLIS} does it
+ * fall back to waiting for the commit locks, since a slow writer may still be alive, and only then is the
+ * writer rolled back.
+ * <p>
+ * Reading from tables with a thorough sweep strategy needs lock validation, so this must be wrapped in a
+ * {@link ReadTransaction}, which forbids those reads as well as all writes.
+ */
+final class ReadOnlySnapshotTransaction extends SnapshotTransaction {
+    static final long MAX_WAIT_FOR_COMMIT_MILLIS = 10_000;
+    private static final long INITIAL_BACKOFF_MILLIS = 1;
+    private static final long MAX_BACKOFF_MILLIS = 100;
+
+    ReadOnlySnapshotTransaction(KeyValueService keyValueService,
+                                RemoteLockService lockService,
+                                TransactionService transactionService,
+                                Supplier<Long> startTimestamp,
+                                SweepStrategyManager sweepStrategyManager,
+                                long immutableTimestamp,
+                                AtlasDbConstraintCheckingMode constraintCheckingMode,
+                                Long transactionTimeoutMillis,
+                                TransactionReadSentinelBehavior readSentinelBehavior,
+                                boolean allowHiddenTableAccess,
+                                TransactionOptions options) {
+        super(keyValueService,
+              lockService,
+              null,
+              transactionService,
+              NoOpCleaner.INSTANCE,
+              startTimestamp,
+              ConflictDetectionManagers.withoutConflictDetection(keyValueService),
+              sweepStrategyManager,
+              immutableTimestamp,
+              Collections.<LockRefreshToken>emptyList(),
+              constraintCheckingMode,
+              transactionTimeoutMillis,
+              readSentinelBehavior,
+              allowHiddenTableAccess,
+              options);
+    }
+
+    @Override
+    protected Map<Long, Long> getCommitTimestamps(@Nullable TableReference tableRef,
+                                                  Iterable<Long> startTimestamps,
+                                                  boolean waitForCommitterToComplete) {
+        Map<Long, Long> result = super.getCommitTimestamps(tableRef, startTimestamps, false);
+        if (!waitForCommitterToComplete) {
+            return result;
+        }
+        Set<Long> pending = Sets.newHashSet();
+        for (long startTs : startTimestamps) {
+            // Transactions that started before the immutable timestamp are no longer running.
+            if (startTs >= immutableTimestamp && !result.containsKey(startTs)) {
+                pending.add(startTs);
+            }
+        }
+        if (pending.isEmpty()) {
+            return result;
+        }
+
+        Map<Long, Long> resultWithPending = Maps.newHashMap(result);
+        Stopwatch watch = Stopwatch.createStarted();
+        long backoffMillis = INITIAL_BACKOFF_MILLIS;
+        while (!pending.isEmpty() && watch.elapsed(TimeUnit.MILLISECONDS) < MAX_WAIT_FOR_COMMIT_MILLIS) {
+            try {
+                Thread.sleep(backoffMillis);
+            } catch (InterruptedException e) {
+                throw Throwables.throwUncheckedException(e);
+            }
+            backoffMillis = Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS);
+            Map<Long, Long> committed = super.getCommitTimestamps(tableRef, pending, false);
+            resultWithPending.putAll(committed);
+            pending.removeAll(committed.keySet());
+        }
+        if (!pending.isEmpty()) {
+            // Only roll back writers that the lock server agrees are no longer committing.
+            resultWithPending.putAll(super.getCommitTimestamps(tableRef, pending, true));
+        }
+        return resultWithPending;
+    }
+}
@@ -43,6 +43,7 @@ public class ReadOnlyTransactionManager extends AbstractTransactionManager imple
     protected final Supplier<Long> startTimestamp;
     protected final TransactionReadSentinelBehavior readSentinelBehavior;
     protected final boolean allowHiddenTableAccess;
+    protected final TransactionOptions options = TransactionOptions.defaults();
 
     public ReadOnlyTransactionManager(KeyValueService keyValueService,
                                       TransactionService transactionService,
@@ -87,7 +88,8 @@ public class ReadOnlyTransactionManager extends AbstractTransactionManager imple
                 startTimestamp.get(),
                 constraintCheckingMode,
                 readSentinelBehavior,
-                allowHiddenTableAccess);
+                allowHiddenTableAccess,
+                options);
         return runTaskThrowOnConflict(task, new ReadTransaction(txn, txn.sweepStrategyManager));
     }
 
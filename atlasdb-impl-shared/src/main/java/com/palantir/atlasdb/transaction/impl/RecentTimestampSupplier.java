@@ -0,0 +1,137 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.transaction.impl;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.concurrent.GuardedBy;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.base.Ticker;
+import com.palantir.timestamp.TimestampService;
+
+/**
+ * Supplies start timestamps for read only transactions, reusing a timestamp for up to
+ * {@code maxStalenessMillis} after it was issued instead of asking the timestamp service for a new one.
+ * <p>
+ * Reading at a reused timestamp is equivalent to having started the transaction when the timestamp was
+ * issued, so read only transactions may miss writes committed within the staleness bound. To keep
+ * read-your-writes within this process, {@link #invalidateUpTo(long)} should be called with the commit
+ * timestamp of every transaction committed through the same transaction manager; no timestamp at or
+ * below an invalidated one is reused afterwards, even if it is recorded later.
+ */
+final class RecentTimestampSupplier implements Supplier<Long> {
+    private final TimestampService timestampService;
+    private final long maxStalenessNanos;
+    private final Ticker ticker;
+
+    private volatile Issued latest = null;
+    @GuardedBy("this") private long invalidatedUpTo = Long.MIN_VALUE;
+
+    RecentTimestampSupplier(TimestampService timestampService, long maxStalenessMillis) {
+        this(timestampService, maxStalenessMillis, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    RecentTimestampSupplier(TimestampService timestampService, long maxStalenessMillis, Ticker ticker) {
+        Preconditions.checkArgument(maxStalenessMillis >= 0, "maxStalenessMillis must not be negative");
+        this.timestampService = timestampService;
+        this.maxStalenessNanos = TimeUnit.MILLISECONDS.toNanos(maxStalenessMillis);
+        this.ticker = ticker;
+    }
+
+    @Override
+    public Long get() {
+        return getAtLeast(Long.MIN_VALUE);
+    }
+
+    /**
+     * Like {@link #get()}, but only reuses a timestamp which is at least {@code minTimestamp}. Read only
+     * transactions pass their immutable timestamp, so that they never read at a timestamp which sweep
+     * may already have cleaned up after.
+     */
+    long getAtLeast(long minTimestamp) {
+        if (maxStalenessNanos == 0) {
+            return timestampService.getFreshTimestamp();
+        }
+        Issued current = latest;
+        if (current != null && current.timestamp >= minTimestamp && isFresh(current)) {
+            return current.timestamp;
+        }
+        return refresh(current, minTimestamp);
+    }
+
+    /**
+     * Records a timestamp that was just issued by the timestamp service for some other purpose, so that
+     * it can be reused.
+     */
+    void recordIssued(long timestamp) {
+        if (maxStalenessNanos > 0) {
+            update(new Issued(timestamp, ticker.read()));
+        }
+    }
+
+    /**
+     * Stops reusing timestamps that are not greater than {@code timestamp}, including ones recorded later
+     * on, so that later reads see a transaction which committed at {@code timestamp}.
+     */
+    synchronized void invalidateUpTo(long timestamp) {
+        invalidatedUpTo = Math.max(invalidatedUpTo, timestamp);
+        Issued current = latest;
+        if (current != null && current.timestamp <= invalidatedUpTo) {
+            latest = null;
+        }
+    }
+
+    private synchronized long refresh(Issued stale, long minTimestamp) {
+        // Only one thread asks for a new timestamp; the others reuse the one it got.
+        Issued current = latest;
+        if (current != stale && current != null && current.timestamp >= minTimestamp && isFresh(current)) {
+            return current.timestamp;
+        }
+        long readAt = ticker.read();
+        long timestamp = timestampService.getFreshTimestamp();
+        update(new Issued(timestamp, readAt));
+        return timestamp;
+    }
+
+    private synchronized void update(Issued issued) {
+        if (issued.timestamp <= invalidatedUpTo) {
+            // Issued before a commit we have to let readers see.
+            return;
+        }
+        Issued current = latest;
+        if (current == null || current.timestamp < issued.timestamp) {
+            latest = issued;
+        }
+    }
+
+    private boolean isFresh(Issued issued) {
+        return ticker.read() - issued.issuedAtNanos <= maxStalenessNanos;
+    }
+
+    private static final class Issued {
+        final long timestamp;
+        final long issuedAtNanos;
+
+        Issued(long timestamp, long issuedAtNanos) {
+            this.timestamp = timestamp;
+            this.issuedAtNanos = issuedAtNanos;
+        }
+    }
+}
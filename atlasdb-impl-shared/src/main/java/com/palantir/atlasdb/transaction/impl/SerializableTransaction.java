@@ -16,6 +16,7 @@
 package com.palantir.atlasdb.transaction.impl;
 
 import java.nio.ByteBuffer;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -36,6 +37,7 @@ import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
+import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
@@ -57,9 +59,11 @@ import com.palantir.atlasdb.keyvalue.api.RangeRequest;
 import com.palantir.atlasdb.keyvalue.api.RangeRequests;
 import com.palantir.atlasdb.keyvalue.api.RowResult;
 import com.palantir.atlasdb.keyvalue.api.TableReference;
+import com.palantir.atlasdb.keyvalue.api.Value;
 import com.palantir.atlasdb.keyvalue.impl.Cells;
 import com.palantir.atlasdb.transaction.api.AtlasDbConstraintCheckingMode;
 import com.palantir.atlasdb.transaction.api.ConflictHandler;
+import com.palantir.atlasdb.transaction.api.SerializableReadTracking;
 import com.palantir.atlasdb.transaction.api.Transaction;
 import com.palantir.atlasdb.transaction.api.TransactionReadSentinelBehavior;
 import com.palantir.atlasdb.transaction.api.TransactionSerializableConflictException;
@@ -68,6 +72,7 @@ import com.palantir.common.annotation.Idempotent;
 import com.palantir.common.base.AbortingVisitor;
 import com.palantir.common.base.BatchingVisitable;
 import com.palantir.common.base.BatchingVisitableView;
+import com.palantir.common.base.ClosableIterator;
 import com.palantir.common.collect.IterableUtils;
 import com.palantir.common.collect.Maps2;
 import com.palantir.lock.LockRefreshToken;
@@ -84,6 +89,10 @@ import com.palantir.util.Pair;
  * If every table was marked as Serializable then we wouldn't need to also do write write conflict checking.
  * However, it is very common that we will be running in a mixed mode so this implementation does the standard
  * write/write conflict checking as well as preventing read/write conflicts to attain serializability.
+ * <p>
+ * By default every value read is kept in memory and read again at commit time. With
+ * {@link SerializableReadTracking#TIMESTAMPS} we only keep the cells read and the version of each value we saw,
+ * and at commit time we load timestamps instead of values to find versions committed since our start.
  */
 public class SerializableTransaction extends SnapshotTransaction {
     private static final Logger log = LoggerFactory.getLogger(SerializableTransaction.class);
@@ -96,6 +105,9 @@ public class SerializableTransaction extends SnapshotTransaction {
             columnRangeEndsByTable = Maps.newConcurrentMap();
     final ConcurrentMap<TableReference, Set<Cell>> cellsRead = Maps.newConcurrentMap();
     final ConcurrentMap<TableReference, Set<RowRead>> rowsRead = Maps.newConcurrentMap();
+    final ConcurrentMap<TableReference, ConcurrentMap<Cell, Long>> readVersionsByTable = Maps.newConcurrentMap();
+
+    private final SerializableReadTracking readTracking;
 
     public SerializableTransaction(KeyValueService keyValueService,
                                    RemoteLockService lockService,
@@ -111,6 +123,38 @@ public class SerializableTransaction extends SnapshotTransaction {
                                    Long transactionTimeoutMillis,
                                    TransactionReadSentinelBehavior readSentinelBehavior,
                                    boolean allowHiddenTableAccess) {
+        this(keyValueService,
+             lockService,
+             timestampService,
+             transactionService,
+             cleaner,
+             startTimeStamp,
+             conflictDetectionManager,
+             sweepStrategyManager,
+             immutableTimestamp,
+             tokensValidForCommit,
+             constraintCheckingMode,
+             transactionTimeoutMillis,
+             readSentinelBehavior,
+             allowHiddenTableAccess,
+             transactionLocalOptions());
+    }
+
+    public SerializableTransaction(KeyValueService keyValueService,
+                                   RemoteLockService lockService,
+                                   TimestampService timestampService,
+                                   TransactionService transactionService,
+                                   Cleaner cleaner,
+                                   Supplier<Long> startTimeStamp,
+                                   ConflictDetectionManager conflictDetectionManager,
+                                   SweepStrategyManager sweepStrategyManager,
+                                   long immutableTimestamp,
+                                   Iterable<LockRefreshToken> tokensValidForCommit,
+                                   AtlasDbConstraintCheckingMode constraintCheckingMode,
+                                   Long transactionTimeoutMillis,
+                                   TransactionReadSentinelBehavior readSentinelBehavior,
+                                   boolean allowHiddenTableAccess,
+                                   TransactionOptions options) {
         super(keyValueService,
               lockService,
               timestampService,
@@ -124,7 +168,9 @@ public class SerializableTransaction extends SnapshotTransaction {
               constraintCheckingMode,
               transactionTimeoutMillis,
               readSentinelBehavior,
-              allowHiddenTableAccess);
+              allowHiddenTableAccess,
+              options);
+        this.readTracking = options.readTracking();
     }
 
     @Override
@@ -229,6 +275,19 @@ public class SerializableTransaction extends SnapshotTransaction {
         return reads;
     }
 
+    private ConcurrentMap<Cell, Long> getReadVersionsForTable(TableReference table) {
+        ConcurrentMap<Cell, Long> versions = readVersionsByTable.get(table);
+        if (versions == null) {
+            readVersionsByTable.putIfAbsent(table, Maps.newConcurrentMap());
+            versions = readVersionsByTable.get(table);
+        }
+        return versions;
+    }
+
+    private boolean isTrackingValues() {
+        return readTracking == SerializableReadTracking.VALUES;
+    }
+
     private void setRangeEnd(TableReference table, RangeRequest range, byte[] maxRow) {
         Validate.notNull(maxRow, "maxRow cannot be null");
         ConcurrentMap<RangeRequest, byte[]> rangeEnds = rangeEndByTable.get(table);
@@ -323,7 +382,9 @@ public class SerializableTransaction extends SnapshotTransaction {
         if (!isSerializableTable(table)) {
             return;
         }
-        getReadsForTable(table).putAll(transformGetsForTesting(result));
+        if (isTrackingValues()) {
+            getReadsForTable(table).putAll(transformGetsForTesting(result));
+        }
         Set<Cell> cellsForTable = cellsRead.get(table);
         if (cellsForTable == null) {
             cellsRead.putIfAbsent(table, Sets.newConcurrentHashSet());
@@ -336,11 +397,13 @@ public class SerializableTransaction extends SnapshotTransaction {
         if (!isSerializableTable(table)) {
             return;
         }
-        ConcurrentNavigableMap<Cell, byte[]> reads = getReadsForTable(table);
-        for (RowResult<byte[]> row : result) {
-            Map<Cell, byte[]> map = Maps2.fromEntries(row.getCells());
-            map = transformGetsForTesting(map);
-            reads.putAll(map);
+        if (isTrackingValues()) {
+            ConcurrentNavigableMap<Cell, byte[]> reads = getReadsForTable(table);
+            for (RowResult<byte[]> row : result) {
+                Map<Cell, byte[]> map = Maps2.fromEntries(row.getCells());
+                map = transformGetsForTesting(map);
+                reads.putAll(map);
+            }
         }
         setRangeEnd(table, range, Iterables.getLast(result).getRowName());
     }
@@ -353,10 +416,12 @@ public class SerializableTransaction extends SnapshotTransaction {
         if (!isSerializableTable(table)) {
             return;
         }
-        ConcurrentNavigableMap<Cell, byte[]> reads = getReadsForTable(table);
-        Map<Cell, byte[]> map = Maps2.fromEntries(result);
-        map = transformGetsForTesting(map);
-        reads.putAll(map);
+        if (isTrackingValues()) {
+            ConcurrentNavigableMap<Cell, byte[]> reads = getReadsForTable(table);
+            Map<Cell, byte[]> map = Maps2.fromEntries(result);
+            map = transformGetsForTesting(map);
+            reads.putAll(map);
+        }
         setColumnRangeEnd(table, row, range, Iterables.getLast(result).getKey().getColumnName());
     }
 
@@ -378,11 +443,13 @@ public class SerializableTransaction extends SnapshotTransaction {
         if (!isSerializableTable(table)) {
             return;
         }
-        ConcurrentNavigableMap<Cell, byte[]> reads = getReadsForTable(table);
-        for (RowResult<byte[]> row : result) {
-            Map<Cell, byte[]> map = Maps2.fromEntries(row.getCells());
-            map = transformGetsForTesting(map);
-            reads.putAll(map);
+        if (isTrackingValues()) {
+            ConcurrentNavigableMap<Cell, byte[]> reads = getReadsForTable(table);
+            for (RowResult<byte[]> row : result) {
+                Map<Cell, byte[]> map = Maps2.fromEntries(row.getCells());
+                map = transformGetsForTesting(map);
+                reads.putAll(map);
+            }
         }
         Set<RowRead> rowReads = rowsRead.get(table);
         if (rowReads == null) {
@@ -392,6 +459,14 @@ public class SerializableTransaction extends SnapshotTransaction {
         rowReads.add(new RowRead(rows, cols));
     }
 
+    @Override
+    protected void markVersionRead(TableReference table, Cell cell, long versionTimestamp) {
+        if (isTrackingValues() || !isSerializableTable(table)) {
+            return;
+        }
+        getReadVersionsForTable(table).put(cell, versionTimestamp);
+    }
+
     private void reachedEndOfRange(TableReference table, RangeRequest range) {
         if (!isSerializableTable(table)) {
             return;
@@ -415,9 +490,18 @@ public class SerializableTransaction extends SnapshotTransaction {
         super.put(tableRef, values);
     }
 
+    @Override
+    protected boolean checksReadWriteConflictsForSerializable() {
+        return true;
+    }
+
     @Override
     protected void throwIfReadWriteConflictForSerializable(long commitTimestamp) {
-        Transaction ro = getReadOnlyTransaction(commitTimestamp);
+        SnapshotTransaction ro = getReadOnlyTransaction(commitTimestamp);
+        if (!isTrackingValues()) {
+            verifyReadVersions(ro, commitTimestamp);
+            return;
+        }
         verifyRanges(ro);
         verifyColumnRanges(ro);
         verifyCells(ro);
@@ -701,7 +785,253 @@ public class SerializableTransaction extends SnapshotTransaction {
         return reads;
     }
 
-    private Transaction getReadOnlyTransaction(final long commitTs) {
+    /**
+     * Used instead of the value comparisons above when we only track read versions. A read was invalidated if
+     * any cell in the read set has a version newer than the one we saw that committed after our start
+     * timestamp and before our commit timestamp. Cells we wrote ourselves are skipped for the same reason as
+     * above: write-write conflict checking already covers them.
+     */
+    private void verifyReadVersions(SnapshotTransaction readOnlyTransaction, long commitTimestamp) {
+        Set<TableReference> tables = Sets.newHashSet();
+        tables.addAll(cellsRead.keySet());
+        tables.addAll(rowsRead.keySet());
+        tables.addAll(rangeEndByTable.keySet());
+        tables.addAll(columnRangeEndsByTable.keySet());
+        for (TableReference table : tables) {
+            Multimap<Cell, Long> newerVersions = HashMultimap.create();
+            Set<Cell> cells = cellsRead.get(table);
+            if (cells != null) {
+                collectNewerVersionsOfCells(table, cells, commitTimestamp, newerVersions);
+            }
+            collectNewerVersionsOfRows(table, commitTimestamp, newerVersions);
+            collectNewerVersionsOfRanges(table, commitTimestamp, newerVersions);
+            collectNewerVersionsOfColumnRanges(table, commitTimestamp, newerVersions);
+            throwIfNewerVersionCommitted(readOnlyTransaction, table, newerVersions, commitTimestamp);
+        }
+    }
+
+    private void collectNewerVersionsOfCells(TableReference table,
+                                             Iterable<Cell> cells,
+                                             long commitTimestamp,
+                                             Multimap<Cell, Long> newerVersions) {
+        Map<Cell, Long> readVersions = getReadVersionsForTable(table);
+        Iterable<Cell> cellsWithoutWrites = Iterables.filter(cells, cell -> !isWrittenByUs(table, cell));
+        for (List<Cell> batch : Iterables.partition(cellsWithoutWrites, BATCH_SIZE)) {
+            Map<Cell, Long> latestTimestamps = keyValueService.getLatestTimestamps(
+                    table,
+                    Maps.toMap(ImmutableSet.copyOf(batch), Functions.constant(commitTimestamp)));
+            Set<Cell> overwritten = Sets.newHashSet();
+            for (Entry<Cell, Long> e : latestTimestamps.entrySet()) {
+                if (e.getValue() > readVersions.getOrDefault(e.getKey(), Value.INVALID_VALUE_TIMESTAMP)) {
+                    overwritten.add(e.getKey());
+                }
+            }
+            if (!overwritten.isEmpty()) {
+                // The latest version may belong to a transaction that never committed, so we have to look at
+                // every version written since the one we read.
+                Multimap<Cell, Long> allTimestamps =
+                        keyValueService.getAllTimestamps(table, overwritten, commitTimestamp);
+                for (Entry<Cell, Collection<Long>> e : allTimestamps.asMap().entrySet()) {
+                    addNewerVersions(table, e.getKey(), e.getValue(), newerVersions);
+                }
+            }
+        }
+    }
+
+    private void collectNewerVersionsOfRows(TableReference table,
+                                            long commitTimestamp,
+                                            Multimap<Cell, Long> newerVersions) {
+        Set<RowRead> rowReads = rowsRead.get(table);
+        if (rowReads == null) {
+            return;
+        }
+        Set<byte[]> wholeRows = Sets.newTreeSet(UnsignedBytes.lexicographicalComparator());
+        Set<Cell> cells = Sets.newHashSet();
+        for (RowRead rowRead : rowReads) {
+            for (byte[] row : rowRead.rows) {
+                if (rowRead.cols.allColumnsSelected()) {
+                    wholeRows.add(row);
+                } else {
+                    for (byte[] col : rowRead.cols.getSelectedColumns()) {
+                        cells.add(Cell.create(row, col));
+                    }
+                }
+            }
+        }
+        for (byte[] row : wholeRows) {
+            collectNewerVersionsInRange(table, getRangeForRow(row), Predicates.alwaysTrue(), commitTimestamp,
+                    newerVersions);
+        }
+        collectNewerVersionsOfCells(table, cells, commitTimestamp, newerVersions);
+    }
+
+    private void collectNewerVersionsOfRanges(TableReference table,
+                                              long commitTimestamp,
+                                              Multimap<Cell, Long> newerVersions) {
+        Map<RangeRequest, byte[]> rangeEnds = rangeEndByTable.get(table);
+        if (rangeEnds == null) {
+            return;
+        }
+        for (Entry<RangeRequest, byte[]> rangeAndRangeEndEntry : rangeEnds.entrySet()) {
+            RangeRequest range = rangeAndRangeEndEntry.getKey();
+            byte[] rangeEnd = rangeAndRangeEndEntry.getValue();
+
+            if (rangeEnd.length != 0 && !RangeRequests.isTerminalRow(range.isReverse(), rangeEnd)) {
+                range = range.getBuilder()
+                        .endRowExclusive(RangeRequests.getNextStartRow(range.isReverse(), rangeEnd))
+                        .build();
+            }
+            if (range.isEmptyRange()) {
+                continue;
+            }
+            RangeRequest rangeRead = range;
+            collectNewerVersionsInRange(
+                    table,
+                    toForwardRange(rangeRead),
+                    cell -> rangeRead.inRange(cell.getRowName()) && rangeRead.containsColumn(cell.getColumnName()),
+                    commitTimestamp,
+                    newerVersions);
+        }
+    }
+
+    private void collectNewerVersionsOfColumnRanges(TableReference table,
+                                                    long commitTimestamp,
+                                                    Multimap<Cell, Long> newerVersions) {
+        Map<byte[], ConcurrentMap<BatchColumnRangeSelection, byte[]>> columnRangeEnds =
+                columnRangeEndsByTable.get(table);
+        if (columnRangeEnds == null) {
+            return;
+        }
+        for (Entry<byte[], ConcurrentMap<BatchColumnRangeSelection, byte[]>> rowAndRangeEnds :
+                columnRangeEnds.entrySet()) {
+            byte[] row = rowAndRangeEnds.getKey();
+            for (Entry<BatchColumnRangeSelection, byte[]> e : rowAndRangeEnds.getValue().entrySet()) {
+                BatchColumnRangeSelection range = e.getKey();
+                byte[] rangeEnd = e.getValue();
+                byte[] endCol = range.getEndCol();
+                if (rangeEnd.length != 0 && !RangeRequests.isTerminalRow(false, rangeEnd)) {
+                    endCol = RangeRequests.getNextStartRow(false, rangeEnd);
+                }
+                byte[] startCol = range.getStartCol();
+                byte[] endColExclusive = endCol;
+                collectNewerVersionsInRange(
+                        table,
+                        getRangeForRow(row),
+                        cell -> isInColumnRange(cell.getColumnName(), startCol, endColExclusive),
+                        commitTimestamp,
+                        newerVersions);
+            }
+        }
+    }
+
+    private void collectNewerVersionsInRange(TableReference table,
+                                             RangeRequest range,
+                                             Predicate<Cell> cellsToCheck,
+                                             long commitTimestamp,
+                                             Multimap<Cell, Long> newerVersions) {
+        ClosableIterator<RowResult<Set<Long>>> timestamps =
+                keyValueService.getRangeOfTimestamps(table, range, commitTimestamp);
+        try {
+            while (timestamps.hasNext()) {
+                for (Entry<Cell, Set<Long>> e : timestamps.next().getCells()) {
+                    if (cellsToCheck.apply(e.getKey())) {
+                        addNewerVersions(table, e.getKey(), e.getValue(), newerVersions);
+                    }
+                }
+            }
+        } finally {
+            timestamps.close();
+        }
+    }
+
+    private void addNewerVersions(TableReference table,
+                                  Cell cell,
+                                  Iterable<Long> versions,
+                                  Multimap<Cell, Long> newerVersions) {
+        if (isWrittenByUs(table, cell)) {
+            return;
+        }
+        // Cells that were absent when we read them have no recorded version, so any version may be newer.
+        long readVersion = getReadVersionsForTable(table).getOrDefault(cell, Value.INVALID_VALUE_TIMESTAMP);
+        for (long version : versions) {
+            if (version > readVersion) {
+                newerVersions.put(cell, version);
+            }
+        }
+    }
+
+    private void throwIfNewerVersionCommitted(SnapshotTransaction readOnlyTransaction,
+                                              TableReference table,
+                                              Multimap<Cell, Long> newerVersions,
+                                              long commitTimestamp) {
+        if (newerVersions.isEmpty()) {
+            return;
+        }
+        Set<Long> startTimestamps = ImmutableSet.copyOf(newerVersions.values());
+        Map<Long, Long> commitTimestamps =
+                Maps.newHashMap(readOnlyTransaction.getCommitTimestamps(table, startTimestamps, true));
+        Set<Long> uncommitted = ImmutableSet.copyOf(Sets.difference(startTimestamps, commitTimestamps.keySet()));
+        if (!uncommitted.isEmpty()) {
+            // These writers are no longer committing.  Roll them back, as a regular read would, so that they
+            // cannot commit behind our back once we have decided their writes are invisible.
+            for (long startTs : uncommitted) {
+                rollbackOtherTransaction(startTs, defaultTransactionService);
+            }
+            commitTimestamps.putAll(readOnlyTransaction.getCommitTimestamps(table, uncommitted, false));
+        }
+        for (long theirCommitTimestamp : commitTimestamps.values()) {
+            if (theirCommitTimestamp != TransactionConstants.FAILED_COMMIT_TS
+                    && theirCommitTimestamp > getTimestamp()
+                    && theirCommitTimestamp < commitTimestamp) {
+                throw TransactionSerializableConflictException.create(
+                        table,
+                        getTimestamp(),
+                        System.currentTimeMillis() - timeCreated);
+            }
+        }
+    }
+
+    private boolean isWrittenByUs(TableReference table, Cell cell) {
+        Map<Cell, byte[]> writes = writesByTable.get(table);
+        return writes != null && writes.containsKey(cell);
+    }
+
+    private static boolean isInColumnRange(byte[] col, byte[] startCol, byte[] endColExclusive) {
+        if (startCol != null && startCol.length > 0
+                && UnsignedBytes.lexicographicalComparator().compare(startCol, col) > 0) {
+            return false;
+        }
+        return endColExclusive == null || endColExclusive.length == 0
+                || UnsignedBytes.lexicographicalComparator().compare(col, endColExclusive) < 0;
+    }
+
+    private static RangeRequest getRangeForRow(byte[] row) {
+        RangeRequest.Builder builder = RangeRequest.builder().startRowInclusive(row);
+        if (!RangeRequests.isLastRowName(row)) {
+            builder.endRowExclusive(RangeRequests.nextLexicographicName(row));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns a forward range covering at least the rows of the given range, since not every key value
+     * service can load timestamps in reverse.  Callers filter out the extra start row.
+     */
+    private static RangeRequest toForwardRange(RangeRequest range) {
+        if (!range.isReverse()) {
+            return range;
+        }
+        byte[] lastRow = range.getStartInclusive();
+        RangeRequest.Builder builder = RangeRequest.builder()
+                .startRowInclusive(range.getEndExclusive())
+                .retainColumns(range.getColumnNames());
+        if (lastRow.length != 0 && !RangeRequests.isLastRowName(lastRow)) {
+            builder.endRowExclusive(RangeRequests.nextLexicographicName(lastRow));
+        }
+        return builder.build();
+    }
+
+    private SnapshotTransaction getReadOnlyTransaction(final long commitTs) {
         return new SnapshotTransaction(
                 keyValueService,
                 lockService,
@@ -716,7 +1046,8 @@ public class SerializableTransaction extends SnapshotTransaction {
                 AtlasDbConstraintCheckingMode.NO_CONSTRAINT_CHECKING,
                 transactionReadTimeoutMillis,
                 getReadSentinelBehavior(),
-                allowHiddenTableAccess) {
+                allowHiddenTableAccess,
+                options) {
             @Override
             protected Map<Long, Long> getCommitTimestamps(TableReference tableRef,
                                                           Iterable<Long> startTimestamps,
@@ -40,6 +40,23 @@ public class ShouldNotDeleteAndRollbackTransaction extends SnapshotTransaction {
               allowHiddenTableAccess);
     }
 
+    public ShouldNotDeleteAndRollbackTransaction(KeyValueService keyValueService,
+                               TransactionService transactionService,
+                               long startTimeStamp,
+                               AtlasDbConstraintCheckingMode constraintCheckingMode,
+                               TransactionReadSentinelBehavior readSentinelBehavior,
+                               boolean allowHiddenTableAccess,
+                               TransactionOptions options) {
+        super(keyValueService,
+              transactionService,
+              null,
+              startTimeStamp,
+              constraintCheckingMode,
+              readSentinelBehavior,
+              allowHiddenTableAccess,
+              options);
+    }
+
     @Override
     protected boolean shouldDeleteAndRollback() {
         // We don't want to delete any data or roll back any transactions because we don't participate in the
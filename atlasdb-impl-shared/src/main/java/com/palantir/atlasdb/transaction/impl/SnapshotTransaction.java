@@ -25,9 +25,15 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentNavigableMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
@@ -88,6 +94,7 @@ import com.palantir.atlasdb.keyvalue.impl.LocalRowColumnRangeIterator;
 import com.palantir.atlasdb.keyvalue.impl.RowResults;
 import com.palantir.atlasdb.protos.generated.TableMetadataPersistence.SweepStrategy;
 import com.palantir.atlasdb.table.description.exceptions.AtlasDbConstraintException;
+import com.palantir.atlasdb.transaction.api.AsyncTransaction;
 import com.palantir.atlasdb.transaction.api.AtlasDbConstraintCheckingMode;
 import com.palantir.atlasdb.transaction.api.ConflictHandler;
 import com.palantir.atlasdb.transaction.api.ConstraintCheckable;
@@ -113,6 +120,8 @@ import com.palantir.common.base.Throwables;
 import com.palantir.common.collect.IterableUtils;
 import com.palantir.common.collect.IteratorUtils;
 import com.palantir.common.collect.MapEntries;
+import com.palantir.common.concurrent.NamedThreadFactory;
+import com.palantir.common.concurrent.PTExecutors;
 import com.palantir.lock.AtlasCellLockDescriptor;
 import com.palantir.lock.AtlasRowLockDescriptor;
 import com.palantir.lock.LockClient;
@@ -123,8 +132,6 @@ import com.palantir.lock.LockRequest;
 import com.palantir.lock.RemoteLockService;
 import com.palantir.timestamp.TimestampService;
 import com.palantir.util.AssertUtils;
-import com.palantir.util.DistributedCacheMgrCache;
-import com.palantir.util.SoftCache;
 import com.palantir.util.paging.TokenBackedBasicResultsPage;
 
 /**
@@ -142,13 +149,18 @@ import com.palantir.util.paging.TokenBackedBasicResultsPage;
  *    all columns of the row.  If you are thinking about making your row bigger than like 10MB, you
  *    should think about breaking these up into different rows and using range scans.
  */
-public class SnapshotTransaction extends AbstractTransaction implements ConstraintCheckingTransaction {
+public class SnapshotTransaction extends AbstractTransaction
+        implements ConstraintCheckingTransaction, AsyncTransaction {
     private static final Logger log = LoggerFactory.getLogger(SnapshotTransaction.class);
     private static final Logger perfLogger = LoggerFactory.getLogger("dualschema.perf");
     private static final Logger constraintLogger = LoggerFactory.getLogger("dualschema.constraints");
 
     private static final int BATCH_SIZE_GET_FIRST_PAGE = 1000;
 
+    private static final ExecutorService commitExecutor = PTExecutors.newCachedThreadPool(
+            new NamedThreadFactory("transaction-commit", true /* daemon */));
+    static final int TRANSACTION_LOCAL_COMMIT_TIMESTAMP_CACHE_SIZE = 1024;
+
     private enum State {
         UNCOMMITTED,
         COMMITTED,
@@ -175,7 +187,7 @@ public class SnapshotTransaction extends AbstractTransaction implements Constrai
     protected final ConcurrentMap<TableReference, ConcurrentNavigableMap<Cell, byte[]>> writesByTable =
             Maps.newConcurrentMap();
     private final ConflictDetectionManager conflictDetectionManager;
-    private final DistributedCacheMgrCache<Long, Long> cachedCommitTimes = new SoftCache<>();
+    final CommitTimestampCache cachedCommitTimes;
     private final AtomicLong byteCount = new AtomicLong();
 
     private final AtlasDbConstraintCheckingMode constraintCheckingMode;
@@ -184,18 +196,25 @@ public class SnapshotTransaction extends AbstractTransaction implements Constrai
 
     private final AtomicReference<State> state = new AtomicReference<>(State.UNCOMMITTED);
     private final AtomicLong numWriters = new AtomicLong();
+    private final AtomicLong numPendingAsyncReads = new AtomicLong();
+    private final Set<CompletableFuture<?>> pendingAsyncReads = ConcurrentHashMap.newKeySet();
     protected final SweepStrategyManager sweepStrategyManager;
     protected final Long transactionReadTimeoutMillis;
     private final TransactionReadSentinelBehavior readSentinelBehavior;
     private volatile long commitTsForScrubbing = TransactionConstants.FAILED_COMMIT_TS;
     protected final boolean allowHiddenTableAccess;
     protected final Stopwatch transactionTimer = Stopwatch.createStarted();
+    protected final ParallelTaskRunner tableTaskRunner;
+    final TransactionOptions options;
+    private final Executor asyncReadExecutor;
 
     /**
      * @param immutableTimestamp If we find a row written before the immutableTimestamp we don't need to
      *                           grab a read lock for it because we know that no writers exist.
      * @param tokensValidForCommit These tokens need to be valid with {@link #lockService} for this transaction
      *                             to commit.  If these locks have expired then the commit will fail.
+     * @param options Settings that are usually shared with all other transactions from the same transaction
+     *                manager, such as the commit timestamp cache.
      */
     /* package */ SnapshotTransaction(KeyValueService keyValueService,
                                RemoteLockService lockService,
@@ -210,7 +229,8 @@ public class SnapshotTransaction extends AbstractTransaction implements Constrai
                                AtlasDbConstraintCheckingMode constraintCheckingMode,
                                Long transactionTimeoutMillis,
                                TransactionReadSentinelBehavior readSentinelBehavior,
-                               boolean allowHiddenTableAccess) {
+                               boolean allowHiddenTableAccess,
+                               TransactionOptions options) {
         this.keyValueService = keyValueService;
         this.timestampService = timestampService;
         this.defaultTransactionService = transactionService;
@@ -225,6 +245,10 @@ public class SnapshotTransaction extends AbstractTransaction implements Constrai
         this.transactionReadTimeoutMillis = transactionTimeoutMillis;
         this.readSentinelBehavior = readSentinelBehavior;
         this.allowHiddenTableAccess = allowHiddenTableAccess;
+        this.options = options;
+        this.cachedCommitTimes = options.commitTimestampCache();
+        this.tableTaskRunner = options.tableTaskRunner();
+        this.asyncReadExecutor = options.asyncReadExecutor();
     }
 
     // TEST ONLY
@@ -251,6 +275,10 @@ public class SnapshotTransaction extends AbstractTransaction implements Constrai
         this.transactionReadTimeoutMillis = null;
         this.readSentinelBehavior = readSentinelBehavior;
         this.allowHiddenTableAccess = false;
+        this.options = transactionLocalOptions();
+        this.cachedCommitTimes = options.commitTimestampCache();
+        this.tableTaskRunner = options.tableTaskRunner();
+        this.asyncReadExecutor = options.asyncReadExecutor();
     }
 
     /**
@@ -274,6 +302,19 @@ public class SnapshotTransaction extends AbstractTransaction implements Constrai
                                   AtlasDbConstraintCheckingMode constraintCheckingMode,
                                   TransactionReadSentinelBehavior readSentinelBehavior,
                                   boolean allowHiddenTableAccess) {
+        this(keyValueService, transactionService, lockService, startTimeStamp,
+                constraintCheckingMode, readSentinelBehavior, allowHiddenTableAccess,
+                transactionLocalOptions());
+    }
+
+    protected SnapshotTransaction(KeyValueService keyValueService,
+                                  TransactionService transactionService,
+                                  RemoteLockService lockService,
+                                  long startTimeStamp,
+                                  AtlasDbConstraintCheckingMode constraintCheckingMode,
+                                  TransactionReadSentinelBehavior readSentinelBehavior,
+                                  boolean allowHiddenTableAccess,
+                                  TransactionOptions options) {
         this.keyValueService = keyValueService;
         this.defaultTransactionService = transactionService;
         this.cleaner = NoOpCleaner.INSTANCE;
@@ -288,6 +329,20 @@ public class SnapshotTransaction extends AbstractTransaction implements Constrai
         this.transactionReadTimeoutMillis = null;
         this.readSentinelBehavior = readSentinelBehavior;
         this.allowHiddenTableAccess = allowHiddenTableAccess;
+        this.options = options;
+        this.cachedCommitTimes = options.commitTimestampCache();
+        this.tableTaskRunner = options.tableTaskRunner();
+        this.asyncReadExecutor = options.asyncReadExecutor();
+    }
+
+    /**
+     * Options for a transaction that is not created by a transaction manager, so has a small commit timestamp
+     * cache of its own.
+     */
+    static TransactionOptions transactionLocalOptions() {
+        return TransactionOptions.builder()
+                .commitTimestampCache(new CommitTimestampCache(TRANSACTION_LOCAL_COMMIT_TIMESTAMP_CACHE_SIZE))
+                .build();
     }
 
     @Override
@@ -348,6 +403,23 @@ public class SnapshotTransaction extends AbstractTransaction implements Constrai
         return results;
     }
 
+    /**
+     * Reads from each table through {@link #getRows}, running the reads for different tables in parallel.
+     */
+    @Override
+    public Map<TableReference, SortedMap<byte[], RowResult<byte[]>>> getRowsFromTables(
+            Map<TableReference, ? extends Iterable<byte[]>> rowsByTable,
+            ColumnSelection columnSelection) {
+        List<TableReference> tableRefs = ImmutableList.copyOf(rowsByTable.keySet());
+        List<SortedMap<byte[], RowResult<byte[]>>> results = tableTaskRunner.transform(tableRefs,
+                tableRef -> getRows(tableRef, rowsByTable.get(tableRef), columnSelection));
+        Map<TableReference, SortedMap<byte[], RowResult<byte[]>>> resultsByTable = Maps.newLinkedHashMap();
+        for (int i = 0; i < tableRefs.size(); i++) {
+            resultsByTable.put(tableRefs.get(i), results.get(i));
+        }
+        return resultsByTable;
+    }
+
     @Override
     public Map<byte[], BatchingVisitable<Map.Entry<Cell, byte[]>>> getRowsColumnRange(
             TableReference tableRef,
@@ -566,6 +638,42 @@ public class SnapshotTransaction extends AbstractTransaction implements Constrai
         return Maps.filterValues(result, Predicates.not(Value.IS_EMPTY));
     }
 
+    /**
+     * None of our key value services have non-blocking clients, so asynchronous reads run the normal
+     * (post-filtering) read path on the transaction manager's async read executor, which is kept apart
+     * from the commit and per-table pools so that outstanding reads never hold up commits. Reads are counted until they have
+     * finished so that commit can make sure none of them is still running, which matters for
+     * serializable transactions that record what they read.
+     */
+    @Override
+    public <T> CompletableFuture<T> readAsync(java.util.function.Supplier<T> read) {
+        numPendingAsyncReads.incrementAndGet();
+        CompletableFuture<T> future;
+        try {
+            future = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return read.get();
+                } finally {
+                    numPendingAsyncReads.decrementAndGet();
+                }
+            }, asyncReadExecutor);
+        } catch (RuntimeException e) {
+            numPendingAsyncReads.decrementAndGet();
+            throw e;
+        }
+        pendingAsyncReads.add(future);
+        future.whenComplete((result, error) -> pendingAsyncReads.remove(future));
+        return future;
+    }
+
+    /**
+     * Returns a future which completes once every asynchronous read issued so far has finished.
+     */
+    CompletableFuture<Void> awaitPendingAsyncReads() {
+        CompletableFuture<?>[] pending = pendingAsyncReads.toArray(new CompletableFuture<?>[0]);
+        return CompletableFuture.allOf(pending).handle((result, error) -> null);
+    }
+
     @Override
     public Map<Cell, byte[]> getIgnoringLocalWrites(TableReference tableRef, Set<Cell> cells) {
         checkGetPreconditions(tableRef);
@@ -993,6 +1101,7 @@ public class SnapshotTransaction extends AbstractTransaction implements Constrai
                     keysToReload.put(key, value.getTimestamp());
                 } else {
                     // The value has a commit timestamp less than our start timestamp, and is visible and valid.
+                    markVersionRead(tableRef, key, value.getTimestamp());
                     if (value.getContents().length != 0) {
                         results.put(key, transformer.apply(value));
                     }
@@ -1015,6 +1124,14 @@ public class SnapshotTransaction extends AbstractTransaction implements Constrai
         }
     }
 
+    /**
+     * Called for every cell whose visible version was loaded from the key value service, including
+     * deletes.  This is protected to allow subclasses to track the versions they read.
+     */
+    protected void markVersionRead(TableReference tableRef, Cell cell, long versionTimestamp) {
+        // do nothing by default
+    }
+
     /**
      * This is protected to allow for different post filter behavior.
      */
@@ -1178,6 +1295,9 @@ public class SnapshotTransaction extends AbstractTransaction implements Constrai
                 // After we set state to committing we need to make sure no one is still writing.
                 throw new IllegalStateException("Cannot commit while other threads are still calling put.");
             }
+            if (numPendingAsyncReads.get() > 0) {
+                throw new IllegalStateException("Cannot commit while asynchronous reads are still outstanding.");
+            }
 
             checkConstraints();
             commitWrites(transactionService);
@@ -1209,45 +1329,69 @@ public class SnapshotTransaction extends AbstractTransaction implements Constrai
         }
     }
 
+    /**
+     * Commits this transaction's writes. The stages which the protocol requires to be ordered (locking,
+     * checking for conflicts, writing, getting the commit timestamp, validating and putting the commit
+     * timestamp) run one after the other. The only work overlapped is the read-write conflict check of
+     * serializable transactions, which runs concurrently with the validation of our locks. The final lock
+     * refresh and the release of the commit locks happen before this returns. Stage timings are recorded
+     * in {@link CommitStageStats}.
+     */
     private void commitWrites(TransactionService transactionService) {
         if (!hasWrites()) {
             return;
         }
+        Stopwatch commitWatch = Stopwatch.createStarted();
         Stopwatch watch = Stopwatch.createStarted();
         LockRefreshToken commitLocksToken = acquireLocksForCommit();
-        long millisForLocks = watch.elapsed(TimeUnit.MILLISECONDS);
+        long millisForLocks = recordStage(CommitStageStats.Stage.ACQUIRE_LOCKS, watch);
         try {
             watch.reset().start();
             throwIfConflictOnCommit(commitLocksToken, transactionService);
-            long millisCheckingForConflicts = watch.elapsed(TimeUnit.MILLISECONDS);
+            long millisCheckingForConflicts = recordStage(CommitStageStats.Stage.CHECK_CONFLICTS, watch);
 
             watch.reset().start();
-            keyValueService.multiPut(writesByTable, getStartTimestamp());
-            long millisForWrites = watch.elapsed(TimeUnit.MILLISECONDS);
+            writeToKeyValueService();
+            long millisForWrites = recordStage(CommitStageStats.Stage.WRITE, watch);
 
             // Now that all writes are done, get the commit timestamp
             // We must do this before we check that our locks are still valid to ensure that
             // other transactions that will hold these locks are sure to have start
             // timestamps after our commit timestamp.
+            watch.reset().start();
             long commitTimestamp = timestampService.getFreshTimestamp();
             commitTsForScrubbing = commitTimestamp;
+            recordStage(CommitStageStats.Stage.GET_COMMIT_TIMESTAMP, watch);
 
             // punch on commit so that if hard delete is the only thing happening on a system,
             // we won't block forever waiting for the unreadable timestamp to advance past the
             // scrub timestamp (same as the hard delete transaction's start timestamp)
             watch.reset().start();
             cleaner.punch(commitTimestamp);
-            long millisForPunch = watch.elapsed(TimeUnit.MILLISECONDS);
-
-            throwIfReadWriteConflictForSerializable(commitTimestamp);
+            recordStage(CommitStageStats.Stage.PUNCH, watch);
 
             // Verify that our locks are still valid before we actually commit;
             // this check is required by the transaction protocol for correctness
-            throwIfExternalAndCommitLocksNotValid(commitLocksToken);
+            watch.reset().start();
+            if (checksReadWriteConflictsForSerializable()) {
+                Future<?> lockValidation = commitExecutor.submit(
+                        () -> throwIfExternalAndCommitLocksNotValid(commitLocksToken));
+                try {
+                    throwIfReadWriteConflictForSerializable(commitTimestamp);
+                } catch (RuntimeException | Error e) {
+                    // Let the refresh finish before the commit locks are released, so it doesn't report them as expired.
+                    awaitQuietly(lockValidation);
+                    throw e;
+                }
+                getUnchecked(lockValidation);
+            } else {
+                throwIfExternalAndCommitLocksNotValid(commitLocksToken);
+            }
+            long millisValidating = recordStage(CommitStageStats.Stage.VALIDATE, watch);
 
             watch.reset().start();
             putCommitTimestamp(commitTimestamp, commitLocksToken, transactionService);
-            long millisForCommitTs = watch.elapsed(TimeUnit.MILLISECONDS);
+            long millisForCommitTs = recordStage(CommitStageStats.Stage.PUT_COMMIT_TIMESTAMP, watch);
 
             Set<LockRefreshToken> expiredLocks = refreshExternalAndCommitLocks(commitLocksToken);
             if (!expiredLocks.isEmpty()) {
@@ -1257,25 +1401,58 @@ public class SnapshotTransaction extends AbstractTransaction implements Constrai
                         + getExpiredLocksErrorString(commitLocksToken, expiredLocks);
                 log.error(errorMessage, new TransactionFailedRetriableException(errorMessage));
             }
+
+            CommitStageStats.INSTANCE.recordCommit(commitWatch.elapsed(TimeUnit.NANOSECONDS));
             long millisSinceCreation = System.currentTimeMillis() - timeCreated;
             if (perfLogger.isDebugEnabled()) {
                 perfLogger.debug("Committed {} bytes with locks, start ts {}, commit ts {}, "
                         + "acquiring locks took {} ms, checking for conflicts took {} ms, "
-                        + "writing took {} ms, punch took {} ms, putCommitTs took {} ms, "
+                        + "writing took {} ms, validating took {} ms, putCommitTs took {} ms, "
                         + "total time since tx creation {} ms, tables: {}.",
                         byteCount.get(), getStartTimestamp(),
                         commitTimestamp, millisForLocks, millisCheckingForConflicts, millisForWrites,
-                        millisForPunch, millisForCommitTs, millisSinceCreation, writesByTable.keySet());
+                        millisValidating, millisForCommitTs, millisSinceCreation, writesByTable.keySet());
             }
         } finally {
             lockService.unlock(commitLocksToken);
         }
     }
 
+    private static long recordStage(CommitStageStats.Stage stage, Stopwatch watch) {
+        CommitStageStats.INSTANCE.recordStage(stage, watch.elapsed(TimeUnit.NANOSECONDS));
+        return watch.elapsed(TimeUnit.MILLISECONDS);
+    }
+
+    private static void getUnchecked(Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            throw Throwables.throwUncheckedException(e);
+        } catch (ExecutionException e) {
+            throw Throwables.throwUncheckedException(e.getCause());
+        }
+    }
+
+    private static void awaitQuietly(Future<?> future) {
+        try {
+            getUnchecked(future);
+        } catch (RuntimeException e) {
+            // The caller is already failing the commit for another reason.
+        }
+    }
+
     protected void throwIfReadWriteConflictForSerializable(long commitTimestamp) {
         // This is for overriding to get serializable transactions
     }
 
+    /**
+     * Whether {@link #throwIfReadWriteConflictForSerializable} does any work, which is then overlapped
+     * with the validation of our locks.
+     */
+    protected boolean checksReadWriteConflictsForSerializable() {
+        return false;
+    }
+
     private boolean hasWrites() {
         boolean hasWrites = false;
         for (SortedMap<?, ?> map : writesByTable.values()) {
@@ -1333,12 +1510,21 @@ public class SnapshotTransaction extends AbstractTransaction implements Constrai
         return Sets.difference(toRefresh, lockService.refreshLockRefreshTokens(toRefresh)).immutableCopy();
     }
 
+    private void writeToKeyValueService() {
+        if (!tableTaskRunner.isParallel() || writesByTable.size() <= 1) {
+            keyValueService.multiPut(writesByTable, getStartTimestamp());
+            return;
+        }
+        tableTaskRunner.forEach(ImmutableList.copyOf(writesByTable.entrySet()),
+                write -> keyValueService.put(write.getKey(), write.getValue(), getStartTimestamp()));
+    }
+
     /**
      * Make sure we have all the rows we are checking already locked before calling this.
      */
     protected void throwIfConflictOnCommit(LockRefreshToken commitLocksToken, TransactionService transactionService)
             throws TransactionConflictException {
-        for (Entry<TableReference, ConcurrentNavigableMap<Cell, byte[]>> write : writesByTable.entrySet()) {
+        tableTaskRunner.forEach(ImmutableList.copyOf(writesByTable.entrySet()), write -> {
             ConflictHandler conflictHandler = getConflictHandlerForTable(write.getKey());
             throwIfWriteAlreadyCommitted(
                     write.getKey(),
@@ -1346,7 +1532,7 @@ public class SnapshotTransaction extends AbstractTransaction implements Constrai
                     conflictHandler,
                     commitLocksToken,
                     transactionService);
-        }
+        });
     }
 
     protected void throwIfWriteAlreadyCommitted(TableReference tableRef,
@@ -1552,7 +1738,7 @@ public class SnapshotTransaction extends AbstractTransaction implements Constrai
      * Rollback a someone else's transaction.
      * @return true if the other transaction was rolled back
      */
-    private boolean rollbackOtherTransaction(long startTs, TransactionService transactionService) {
+    boolean rollbackOtherTransaction(long startTs, TransactionService transactionService) {
         try {
             transactionService.putUnlessExists(startTs, TransactionConstants.FAILED_COMMIT_TS);
             return true;
@@ -1625,31 +1811,24 @@ public class SnapshotTransaction extends AbstractTransaction implements Constrai
      * it back.
      */
     private void waitForCommitToComplete(Iterable<Long> startTimestamps) {
-        boolean isEmpty = true;
-        Builder<LockDescriptor, LockMode> builder = ImmutableSortedMap.naturalOrder();
+        Set<LockDescriptor> commitLocks = Sets.newHashSet();
         for (long start : startTimestamps) {
             if (start < immutableTimestamp) {
                 // We don't need to block in this case because this transaction is already complete
                 continue;
             }
-            isEmpty = false;
-            builder.put(
+            commitLocks.add(
                     AtlasRowLockDescriptor.of(
                             TransactionConstants.TRANSACTION_TABLE.getQualifiedName(),
-                            TransactionConstants.getValueForTimestamp(start)),
-                    LockMode.READ);
+                            TransactionConstants.getValueForTimestamp(start)));
         }
 
-        if (isEmpty) {
+        if (commitLocks.isEmpty()) {
             return;
         }
 
-        // TODO: This can have better performance if we have a blockAndReturn method in lock server
-        // However lock server blocking is an issue if we fill up all our requests
         try {
-            lockService.lock(
-                    LockClient.ANONYMOUS.getClientId(),
-                    LockRequest.builder(builder.build()).lockAndRelease().build());
+            lockService.waitForWriteLocksToBeReleased(commitLocks);
         } catch (InterruptedException e) {
             throw Throwables.throwUncheckedException(e);
         }
@@ -1681,8 +1860,8 @@ public class SnapshotTransaction extends AbstractTransaction implements Constrai
         Map<Long, Long> result = Maps.newHashMap();
         Set<Long> gets = Sets.newHashSet();
         for (long startTs : startTimestamps) {
-            Long cached = cachedCommitTimes.get(startTs);
-            if (cached != null) {
+            long cached = cachedCommitTimes.getCommitTimestamp(startTs);
+            if (cached != CommitTimestampCache.NO_ENTRY) {
                 result.put(startTs, cached);
             } else {
                 gets.add(startTs);
@@ -1696,7 +1875,7 @@ public class SnapshotTransaction extends AbstractTransaction implements Constrai
         // Before we do the reads, we need to make sure the committer is done writing.
         if (waitForCommitterToComplete) {
             Stopwatch watch = Stopwatch.createStarted();
-            waitForCommitToComplete(startTimestamps);
+            waitForCommitToComplete(gets);
             perfLogger.debug("Waited {} ms to get commit timestamps for table {}.",
                     watch.elapsed(TimeUnit.MILLISECONDS), tableRef);
         }
@@ -1709,7 +1888,7 @@ public class SnapshotTransaction extends AbstractTransaction implements Constrai
                 long startTs = e.getKey();
                 long commitTs = e.getValue();
                 result.put(startTs, commitTs);
-                cachedCommitTimes.put(startTs, commitTs);
+                cachedCommitTimes.putCommitTimestamp(startTs, commitTs);
             }
         }
         return result;
@@ -15,12 +15,15 @@
  */
 package com.palantir.atlasdb.transaction.impl;
 
-import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Nullable;
 
 import com.google.common.base.Function;
+import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
@@ -28,8 +31,8 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.Iterables;
 import com.palantir.atlasdb.cleaner.Cleaner;
-import com.palantir.atlasdb.cleaner.NoOpCleaner;
 import com.palantir.atlasdb.keyvalue.api.KeyValueService;
+import com.palantir.atlasdb.transaction.api.AsyncTransactionTask;
 import com.palantir.atlasdb.transaction.api.AtlasDbConstraintCheckingMode;
 import com.palantir.atlasdb.transaction.api.LockAwareTransactionTask;
 import com.palantir.atlasdb.transaction.api.LockAwareTransactionTasks;
@@ -37,6 +40,7 @@ import com.palantir.atlasdb.transaction.api.Transaction.TransactionType;
 import com.palantir.atlasdb.transaction.api.TransactionFailedRetriableException;
 import com.palantir.atlasdb.transaction.api.TransactionReadSentinelBehavior;
 import com.palantir.atlasdb.transaction.api.TransactionTask;
+import com.palantir.atlasdb.transaction.service.CoalescingTransactionService;
 import com.palantir.atlasdb.transaction.service.TransactionService;
 import com.palantir.common.base.Throwables;
 import com.palantir.lock.AtlasTimestampLockDescriptor;
@@ -47,6 +51,8 @@ import com.palantir.lock.LockMode;
 import com.palantir.lock.LockRefreshToken;
 import com.palantir.lock.LockRequest;
 import com.palantir.lock.RemoteLockService;
+import com.palantir.lock.StartedTransaction;
+import com.palantir.lock.TransactionStartService;
 import com.palantir.timestamp.TimestampService;
 
 /* package */ class SnapshotTransactionManager extends AbstractLockAwareTransactionManager {
@@ -63,6 +69,12 @@ import com.palantir.timestamp.TimestampService;
     final AtomicLong recentImmutableTs = new AtomicLong(-1L);
     final Cleaner cleaner;
     final boolean allowHiddenTableAccess;
+    final TransactionOptions options;
+    final CommitTimestampCache commitTimestampCache;
+    final Optional<TransactionStartService> transactionStartService;
+    final ParallelTaskRunner tableTaskRunner;
+    final RecentTimestampSupplier readOnlyStartTimestamps;
+    final TransactionService readOnlyTransactionService;
 
     protected SnapshotTransactionManager(
             KeyValueService keyValueService,
@@ -89,6 +101,23 @@ import com.palantir.timestamp.TimestampService;
             SweepStrategyManager sweepStrategyManager,
             Cleaner cleaner,
             boolean allowHiddenTableAccess) {
+        this(keyValueService, timestampService, lockClient, lockService, transactionService,
+                constraintModeSupplier, conflictDetectionManager, sweepStrategyManager, cleaner,
+                allowHiddenTableAccess, TransactionOptions.defaults());
+    }
+
+    protected SnapshotTransactionManager(
+            KeyValueService keyValueService,
+            TimestampService timestampService,
+            LockClient lockClient,
+            RemoteLockService lockService,
+            TransactionService transactionService,
+            Supplier<AtlasDbConstraintCheckingMode> constraintModeSupplier,
+            ConflictDetectionManager conflictDetectionManager,
+            SweepStrategyManager sweepStrategyManager,
+            Cleaner cleaner,
+            boolean allowHiddenTableAccess,
+            TransactionOptions options) {
         Preconditions.checkArgument(lockClient != LockClient.ANONYMOUS);
         this.keyValueService = keyValueService;
         this.timestampService = timestampService;
@@ -100,6 +129,13 @@ import com.palantir.timestamp.TimestampService;
         this.constraintModeSupplier = constraintModeSupplier;
         this.cleaner = cleaner;
         this.allowHiddenTableAccess = allowHiddenTableAccess;
+        this.options = options;
+        this.commitTimestampCache = options.commitTimestampCache();
+        this.transactionStartService = options.transactionStartService();
+        this.tableTaskRunner = options.tableTaskRunner();
+        this.readOnlyStartTimestamps = new RecentTimestampSupplier(
+                timestampService, options.readOnlyTimestampStalenessMillis());
+        this.readOnlyTransactionService = new CoalescingTransactionService(transactionService);
     }
 
     @Override
@@ -126,6 +162,9 @@ import com.palantir.timestamp.TimestampService;
     }
 
     public RawTransaction setupRunTaskWithLocksThrowOnConflict(Iterable<LockRefreshToken> lockTokens) {
+        if (transactionStartService.isPresent()) {
+            return setupStartedTransaction(lockTokens);
+        }
         long immutableLockTs = timestampService.getFreshTimestamp();
         Supplier<Long> startTimestampSupplier = getStartTimestampSupplier();
         LockDescriptor lockDesc = AtlasTimestampLockDescriptor.of(immutableLockTs);
@@ -142,7 +181,10 @@ import com.palantir.timestamp.TimestampService;
                     .add(lock)
                     .addAll(lockTokens)
                     .build();
-            SnapshotTransaction transaction = createTransaction(immutableLockTs, startTimestampSupplier, allTokens);
+            SnapshotTransaction transaction = createTransaction(
+                    getImmutableTimestampInternal(immutableLockTs),
+                    startTimestampSupplier,
+                    allTokens);
             return new RawTransaction(transaction, lock);
         } catch (Throwable e) {
             if (lock != null) {
@@ -152,6 +194,34 @@ import com.palantir.timestamp.TimestampService;
         }
     }
 
+    private RawTransaction setupStartedTransaction(Iterable<LockRefreshToken> lockTokens) {
+        StartedTransaction started;
+        try {
+            started = Iterables.getOnlyElement(
+                    transactionStartService.get().startTransactions(lockClient.getClientId(), 1));
+        } catch (InterruptedException e) {
+            throw Throwables.throwUncheckedException(e);
+        }
+        LockRefreshToken lock = started.getImmutableTimestampLock();
+        try {
+            updateRecentImmutableTimestamp(started.getImmutableTimestamp());
+            cleaner.punch(started.getStartTimestamp());
+            readOnlyStartTimestamps.recordIssued(started.getStartTimestamp());
+            ImmutableList<LockRefreshToken> allTokens = ImmutableList.<LockRefreshToken>builder()
+                    .add(lock)
+                    .addAll(lockTokens)
+                    .build();
+            SnapshotTransaction transaction = createTransaction(
+                    started.getImmutableTimestamp(),
+                    Suppliers.ofInstance(started.getStartTimestamp()),
+                    allTokens);
+            return new RawTransaction(transaction, lock);
+        } catch (Throwable e) {
+            lockService.unlock(lock);
+            throw Throwables.rewrapAndThrowUncheckedException(e);
+        }
+    }
+
     public <T, E extends Exception> T finishRunTaskWithLockThrowOnConflict(RawTransaction tx,
                                                                            TransactionTask<T, E> task)
             throws E, TransactionFailedRetriableException {
@@ -161,6 +231,10 @@ import com.palantir.timestamp.TimestampService;
         } finally {
             lockService.unlock(tx.getImmutableTsLock());
         }
+        long commitTimestamp = tx.delegate().getCommitTimestamp();
+        if (commitTimestamp != TransactionConstants.FAILED_COMMIT_TS) {
+            readOnlyStartTimestamps.invalidateUpTo(commitTimestamp);
+        }
         if ((tx.getTransactionType() == TransactionType.AGGRESSIVE_HARD_DELETE) && !tx.isAborted()) {
             // t.getCellsToScrubImmediately() checks that t has been committed
             cleaner.scrubImmediately(this,
@@ -171,8 +245,65 @@ import com.palantir.timestamp.TimestampService;
         return result;
     }
 
+    /**
+     * The transaction is set up on the given executor, and the task's reads run on the async read executor
+     * from the {@link TransactionOptions}. Once the task's future and all of its reads have completed, the
+     * transaction is finished exactly as in {@link #finishRunTaskWithLockThrowOnConflict}, again on the
+     * given executor, so that only reads ever run on the async read executor.
+     */
+    @Override
+    public <T> CompletableFuture<T> runTaskAsync(AsyncTransactionTask<T> task, Executor executor) {
+        checkOpen();
+        return CompletableFuture.supplyAsync(
+                () -> setupRunTaskWithLocksThrowOnConflict(ImmutableList.<LockRefreshToken>of()),
+                executor)
+                .thenCompose(tx -> runTaskAsync(tx, task, executor));
+    }
+
+    private <T> CompletableFuture<T> runTaskAsync(
+            RawTransaction tx,
+            AsyncTransactionTask<T> task,
+            Executor executor) {
+        CompletableFuture<T> taskFuture;
+        try {
+            taskFuture = task.execute(tx.delegate());
+        } catch (Throwable t) {
+            taskFuture = new CompletableFuture<>();
+            taskFuture.completeExceptionally(t);
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        taskFuture.whenComplete((value, error) -> {
+            Runnable finish = () -> {
+                try {
+                    result.complete(finishRunTaskWithLockThrowOnConflict(tx, transaction -> {
+                        if (error != null) {
+                            throw Throwables.throwUncheckedException(unwrapCompletionException(error));
+                        }
+                        return value;
+                    }));
+                } catch (Throwable t) {
+                    result.completeExceptionally(t);
+                }
+            };
+            // finish never throws, so this only fails if the executor rejects it; the transaction must still
+            // be finished to release its locks.
+            tx.delegate().awaitPendingAsyncReads().thenRunAsync(finish, executor).exceptionally(rejected -> {
+                finish.run();
+                return null;
+            });
+        });
+        return result;
+    }
+
+    private static Throwable unwrapCompletionException(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            return error.getCause();
+        }
+        return error;
+    }
+
     protected SnapshotTransaction createTransaction(
-            long immutableLockTs,
+            long immutableTimestamp,
             Supplier<Long> startTimestampSupplier,
             ImmutableList<LockRefreshToken> allTokens) {
         return new SnapshotTransaction(
@@ -184,33 +315,31 @@ import com.palantir.timestamp.TimestampService;
                 startTimestampSupplier,
                 conflictDetectionManager,
                 sweepStrategyManager,
-                getImmutableTimestampInternal(immutableLockTs),
+                immutableTimestamp,
                 allTokens,
                 constraintModeSupplier.get(),
                 cleaner.getTransactionReadTimeoutMillis(),
                 TransactionReadSentinelBehavior.THROW_EXCEPTION,
-                allowHiddenTableAccess);
+                allowHiddenTableAccess,
+                options);
     }
 
     @Override
     public <T, E extends Exception> T runTaskReadOnly(TransactionTask<T, E> task) throws E {
         checkOpen();
         long immutableTs = getApproximateImmutableTimestamp();
-        SnapshotTransaction transaction = new SnapshotTransaction(
+        SnapshotTransaction transaction = new ReadOnlySnapshotTransaction(
                 keyValueService,
                 lockService,
-                timestampService,
-                transactionService,
-                NoOpCleaner.INSTANCE,
-                getStartTimestampSupplier(),
-                conflictDetectionManager,
+                readOnlyTransactionService,
+                Suppliers.memoize(() -> readOnlyStartTimestamps.getAtLeast(immutableTs)),
                 sweepStrategyManager,
                 immutableTs,
-                Collections.<LockRefreshToken>emptyList(),
                 constraintModeSupplier.get(),
                 cleaner.getTransactionReadTimeoutMillis(),
                 TransactionReadSentinelBehavior.THROW_EXCEPTION,
-                allowHiddenTableAccess);
+                allowHiddenTableAccess,
+                options);
         return runTaskThrowOnConflict(task, new ReadTransaction(transaction, sweepStrategyManager));
     }
 
@@ -218,6 +347,7 @@ import com.palantir.timestamp.TimestampService;
     public void close() {
         super.close();
         cleaner.close();
+        options.asyncReadExecutor().shutdown();
         keyValueService.close();
     }
 
@@ -227,6 +357,7 @@ import com.palantir.timestamp.TimestampService;
             public Long get() {
                 long freshTimestamp = timestampService.getFreshTimestamp();
                 cleaner.punch(freshTimestamp);
+                readOnlyStartTimestamps.recordIssued(freshTimestamp);
                 return freshTimestamp;
             }
         });
@@ -260,15 +391,19 @@ import com.palantir.timestamp.TimestampService;
     protected long getImmutableTimestampInternal(long ts) {
         Long minLocked = lockService.getMinLockedInVersionId(lockClient.getClientId());
         long ret = minLocked == null ? ts : minLocked;
+        updateRecentImmutableTimestamp(ret);
+        return ret;
+    }
+
+    private void updateRecentImmutableTimestamp(long immutableTs) {
         long recentTs = recentImmutableTs.get();
-        while (recentTs < ret) {
-            if (recentImmutableTs.compareAndSet(recentTs, ret)) {
+        while (recentTs < immutableTs) {
+            if (recentImmutableTs.compareAndSet(recentTs, immutableTs)) {
                 break;
             } else {
                 recentTs = recentImmutableTs.get();
             }
         }
-        return ret;
     }
 
     @Override
@@ -287,4 +422,8 @@ import com.palantir.timestamp.TimestampService;
     public TimestampService getTimestampService() {
         return timestampService;
     }
+
+    public CommitTimestampCache getCommitTimestampCache() {
+        return commitTimestampCache;
+    }
 }
@@ -0,0 +1,88 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.transaction.impl;
+
+import java.util.concurrent.ExecutorService;
+
+import org.immutables.value.Value;
+
+import com.google.common.base.Optional;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.palantir.atlasdb.transaction.api.SerializableReadTracking;
+import com.palantir.lock.TransactionStartService;
+
+/**
+ * Optional settings for a {@link SnapshotTransactionManager} and the transactions it creates. Every setting
+ * that is not given keeps the behaviour of the constructors that take no options.
+ */
+@Value.Immutable
+public abstract class TransactionOptions {
+    public static TransactionOptions defaults() {
+        return ImmutableTransactionOptions.builder().build();
+    }
+
+    public static ImmutableTransactionOptions.Builder builder() {
+        return ImmutableTransactionOptions.builder();
+    }
+
+    /**
+     * Cache of commit timestamps, shared by every transaction created with these options.
+     */
+    @Value.Default
+    public CommitTimestampCache commitTimestampCache() {
+        return new CommitTimestampCache();
+    }
+
+    /**
+     * If present, read-write transactions are started through this service instead of by separate calls
+     * to the timestamp and lock services.
+     */
+    public abstract Optional<TransactionStartService> transactionStartService();
+
+    /**
+     * Runs independent per-table work (conflict checks, writes and multi-table reads) in parallel.
+     */
+    @Value.Default
+    public ParallelTaskRunner tableTaskRunner() {
+        return ParallelTaskRunner.sequential();
+    }
+
+    /**
+     * Runs the reads of asynchronous transactions. The transaction manager shuts it down when it is closed.
+     * By default reads run on the thread issuing them.
+     */
+    @Value.Default
+    public ExecutorService asyncReadExecutor() {
+        return MoreExecutors.newDirectExecutorService();
+    }
+
+    /**
+     * Read only transactions reuse a start timestamp for up to this long after it was issued; zero means
+     * they always get a fresh one.
+     */
+    @Value.Default
+    public long readOnlyTimestampStalenessMillis() {
+        return 0L;
+    }
+
+    /**
+     * What serializable transactions record about their reads to check for read-write conflicts.
+     */
+    @Value.Default
+    public SerializableReadTracking readTracking() {
+        return SerializableReadTracking.VALUES;
+    }
+}
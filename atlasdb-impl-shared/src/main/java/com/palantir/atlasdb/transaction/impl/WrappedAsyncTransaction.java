@@ -0,0 +1,47 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.transaction.impl;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import com.palantir.atlasdb.transaction.api.AsyncTransaction;
+import com.palantir.atlasdb.transaction.api.Transaction;
+
+/**
+ * An {@link AsyncTransaction} whose reads, synchronous or not, go through a wrapper of another
+ * asynchronous transaction. Asynchronous reads are still run, and waited for before commit, by
+ * the wrapped transaction.
+ */
+final class WrappedAsyncTransaction extends ForwardingTransaction implements AsyncTransaction {
+    private final Transaction wrapper;
+    private final AsyncTransaction transaction;
+
+    WrappedAsyncTransaction(Transaction wrapper, AsyncTransaction transaction) {
+        this.wrapper = wrapper;
+        this.transaction = transaction;
+    }
+
+    @Override
+    public Transaction delegate() {
+        return wrapper;
+    }
+
+    @Override
+    public <T> CompletableFuture<T> readAsync(Supplier<T> read) {
+        return transaction.readAsync(read);
+    }
+}
@@ -15,7 +15,11 @@
  */
 package com.palantir.atlasdb.transaction.impl;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 import com.google.common.base.Supplier;
+import com.palantir.atlasdb.transaction.api.AsyncTransactionTask;
 import com.palantir.atlasdb.transaction.api.LockAwareTransactionManager;
 import com.palantir.atlasdb.transaction.api.LockAwareTransactionTask;
 import com.palantir.atlasdb.transaction.api.Transaction;
@@ -50,6 +54,13 @@ public abstract class WrappingTransactionManager extends ForwardingLockAwareTran
         return delegate().runTaskThrowOnConflict(wrapTask(task));
     }
 
+    @Override
+    public <T> CompletableFuture<T> runTaskAsync(AsyncTransactionTask<T> task, Executor executor) {
+        return delegate().runTaskAsync(
+                transaction -> task.execute(new WrappedAsyncTransaction(wrap(transaction), transaction)),
+                executor);
+    }
+
     @Override
     public long getImmutableTimestamp() {
         return delegate().getImmutableTimestamp();
@@ -0,0 +1,126 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.transaction.service;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+import javax.annotation.CheckForNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.palantir.atlasdb.keyvalue.api.KeyAlreadyExistsException;
+import com.palantir.common.base.Throwables;
+
+/**
+ * A {@link TransactionService} which shares reads between concurrent callers: if a commit timestamp is
+ * already being looked up when another caller asks for it, the second caller waits for the first lookup
+ * instead of reading the same cell again.
+ * <p>
+ * A caller may therefore be given a result that was read slightly before it asked. This is safe for
+ * commit timestamps, since a missing entry only ever changes to a present one, and callers already have
+ * to handle missing entries for transactions that are still committing.
+ */
+public final class CoalescingTransactionService implements TransactionService {
+    private final TransactionService delegate;
+    private final ConcurrentMap<Long, CompletableFuture<Long>> inFlight = new ConcurrentHashMap<>();
+
+    public CoalescingTransactionService(TransactionService delegate) {
+        this.delegate = delegate;
+    }
+
+    @CheckForNull
+    @Override
+    public Long get(long startTimestamp) {
+        return get(ImmutableSet.of(startTimestamp)).get(startTimestamp);
+    }
+
+    @Override
+    public Map<Long, Long> get(Iterable<Long> startTimestamps) {
+        Map<Long, CompletableFuture<Long>> ours = Maps.newHashMap();
+        Map<Long, CompletableFuture<Long>> theirs = Maps.newHashMap();
+        for (Long startTimestamp : startTimestamps) {
+            if (ours.containsKey(startTimestamp) || theirs.containsKey(startTimestamp)) {
+                continue;
+            }
+            CompletableFuture<Long> future = new CompletableFuture<>();
+            CompletableFuture<Long> existing = inFlight.putIfAbsent(startTimestamp, future);
+            if (existing == null) {
+                ours.put(startTimestamp, future);
+            } else {
+                theirs.put(startTimestamp, existing);
+            }
+        }
+
+        Map<Long, Long> result = Maps.newHashMap();
+        if (!ours.isEmpty()) {
+            load(ours, result);
+        }
+        for (Map.Entry<Long, CompletableFuture<Long>> entry : theirs.entrySet()) {
+            Long commitTimestamp = await(entry.getValue());
+            if (commitTimestamp != null) {
+                result.put(entry.getKey(), commitTimestamp);
+            }
+        }
+        return result;
+    }
+
+    private void load(Map<Long, CompletableFuture<Long>> ours, Map<Long, Long> result) {
+        try {
+            Map<Long, Long> loaded = delegate.get(ours.keySet());
+            for (Map.Entry<Long, CompletableFuture<Long>> entry : ours.entrySet()) {
+                Long commitTimestamp = loaded.get(entry.getKey());
+                if (commitTimestamp != null) {
+                    result.put(entry.getKey(), commitTimestamp);
+                }
+                entry.getValue().complete(commitTimestamp);
+            }
+        } catch (Throwable t) {
+            for (CompletableFuture<Long> future : ours.values()) {
+                future.completeExceptionally(t);
+            }
+            throw Throwables.throwUncheckedException(t);
+        } finally {
+            for (Map.Entry<Long, CompletableFuture<Long>> entry : ours.entrySet()) {
+                inFlight.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private static Long await(CompletableFuture<Long> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            throw Throwables.throwUncheckedException(e);
+        } catch (ExecutionException e) {
+            throw Throwables.throwUncheckedException(e.getCause());
+        }
+    }
+
+    @Override
+    public void putUnlessExists(long startTimestamp, long commitTimestamp) throws KeyAlreadyExistsException {
+        delegate.putUnlessExists(startTimestamp, commitTimestamp);
+    }
+
+    @VisibleForTesting
+    int getNumberOfInFlightLookups() {
+        return inFlight.size();
+    }
+}
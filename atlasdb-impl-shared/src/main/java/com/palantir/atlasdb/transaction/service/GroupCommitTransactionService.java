@@ -0,0 +1,302 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.transaction.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.concurrent.GuardedBy;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.palantir.atlasdb.keyvalue.api.Cell;
+import com.palantir.atlasdb.keyvalue.api.KeyAlreadyExistsException;
+import com.palantir.atlasdb.keyvalue.api.KeyValueService;
+import com.palantir.atlasdb.transaction.impl.TransactionConstants;
+
+/**
+ * A {@link TransactionService} which groups concurrent calls to {@link #putUnlessExists(long, long)}
+ * into a single multi-cell {@link KeyValueService#putUnlessExists} on the _transactions table.
+ * <p>
+ * Batching follows the same pattern as the rate limited timestamp service: the first caller to find
+ * no write in flight writes every request queued so far, and requests arriving while it does so are
+ * written together by the next caller. Every other caller waits only for its own request, so it returns
+ * as soon as the batch holding its request is written. There is no artificial delay, so under low load
+ * every request is written on its own, just like with the delegate.
+ * <p>
+ * Key value services don't guarantee that a multi-cell putUnlessExists is atomic, so if a batch
+ * fails because some of its cells already exist, the outcome of each request is determined by
+ * reading the cells back. A request whose value is present succeeded, a request with a different
+ * value present fails with {@link KeyAlreadyExistsException}, and a request with no value present is
+ * retried on its own against the delegate.
+ */
+public final class GroupCommitTransactionService implements TransactionService {
+    private static final int DEFAULT_MAX_BATCH_SIZE = 1000;
+
+    private final TransactionService delegate;
+    private final KeyValueService keyValueService;
+    private final int maxBatchSize;
+    private final Queue<CommitRequest> pendingRequests = new ConcurrentLinkedQueue<>();
+    private final Lock writeLock = new ReentrantLock();
+    private final AtomicInteger waitingRequests = new AtomicInteger();
+
+    /**
+     * @param delegate a transaction service storing commit timestamps in
+     *        {@link TransactionConstants#TRANSACTION_TABLE} of {@code keyValueService}, such as
+     *        {@link SimpleTransactionService}
+     */
+    public GroupCommitTransactionService(TransactionService delegate, KeyValueService keyValueService) {
+        this(delegate, keyValueService, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    public GroupCommitTransactionService(TransactionService delegate, KeyValueService keyValueService,
+            int maxBatchSize) {
+        Preconditions.checkArgument(maxBatchSize > 0, "maxBatchSize must be positive");
+        this.delegate = delegate;
+        this.keyValueService = keyValueService;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    public Long get(long startTimestamp) {
+        return delegate.get(startTimestamp);
+    }
+
+    @Override
+    public Map<Long, Long> get(Iterable<Long> startTimestamps) {
+        return delegate.get(startTimestamps);
+    }
+
+    @Override
+    public void putUnlessExists(long startTimestamp, long commitTimestamp) throws KeyAlreadyExistsException {
+        CommitRequest request = new CommitRequest(startTimestamp, commitTimestamp);
+        pendingRequests.add(request);
+        while (!request.isDone()) {
+            if (writeLock.tryLock()) {
+                try {
+                    writeUntilDone(request);
+                } finally {
+                    writeLock.unlock();
+                }
+                // Requests queued while we were writing may have failed to take the lock, so one of
+                // them has to write the rest.
+                CommitRequest next = pendingRequests.peek();
+                if (next != null) {
+                    next.offerTurnToWrite();
+                }
+            } else {
+                waitingRequests.incrementAndGet();
+                try {
+                    request.awaitDoneOrTurnToWrite();
+                } finally {
+                    waitingRequests.decrementAndGet();
+                }
+            }
+        }
+        request.throwIfFailed();
+    }
+
+    @VisibleForTesting
+    int getNumberOfQueuedRequests() {
+        return pendingRequests.size();
+    }
+
+    @VisibleForTesting
+    int getNumberOfWaitingRequests() {
+        return waitingRequests.get();
+    }
+
+    @GuardedBy("writeLock")
+    private void writeUntilDone(CommitRequest request) {
+        while (!request.isDone()) {
+            List<CommitRequest> batch = drainBatch();
+            try {
+                writeBatch(batch);
+            } finally {
+                failUnfinished(batch);
+            }
+        }
+    }
+
+    @GuardedBy("writeLock")
+    private List<CommitRequest> drainBatch() {
+        List<CommitRequest> batch = Lists.newArrayList();
+        CommitRequest request;
+        while (batch.size() < maxBatchSize && (request = pendingRequests.poll()) != null) {
+            batch.add(request);
+        }
+        return batch;
+    }
+
+    @GuardedBy("writeLock")
+    private void failUnfinished(List<CommitRequest> batch) {
+        for (CommitRequest request : batch) {
+            if (!request.isDone()) {
+                request.fail(new IllegalStateException("Writing the commit timestamp failed unexpectedly."));
+            }
+        }
+    }
+
+    @GuardedBy("writeLock")
+    private void writeBatch(List<CommitRequest> batch) {
+        // Several requests for the same start timestamp (e.g. a commit racing with a rollback)
+        // can't share one putUnlessExists, so all but the first are written on their own afterwards.
+        Map<Long, CommitRequest> requestsByStartTs = Maps.newLinkedHashMap();
+        List<CommitRequest> duplicates = Lists.newArrayList();
+        for (CommitRequest request : batch) {
+            if (requestsByStartTs.putIfAbsent(request.startTimestamp, request) != null) {
+                duplicates.add(request);
+            }
+        }
+
+        if (requestsByStartTs.size() == 1) {
+            writeIndividually(requestsByStartTs.values());
+        } else if (!requestsByStartTs.isEmpty()) {
+            Map<Cell, byte[]> values = Maps.newHashMapWithExpectedSize(requestsByStartTs.size());
+            for (CommitRequest request : requestsByStartTs.values()) {
+                values.put(SimpleTransactionService.getTransactionCell(request.startTimestamp),
+                        TransactionConstants.getValueForTimestamp(request.commitTimestamp));
+            }
+            try {
+                keyValueService.putUnlessExists(TransactionConstants.TRANSACTION_TABLE, values);
+                for (CommitRequest request : requestsByStartTs.values()) {
+                    request.succeed();
+                }
+            } catch (KeyAlreadyExistsException e) {
+                resolvePartialFailure(requestsByStartTs);
+            } catch (RuntimeException e) {
+                // As with the delegate, the values may or may not have been written.
+                for (CommitRequest request : requestsByStartTs.values()) {
+                    request.fail(e);
+                }
+            }
+        }
+        writeIndividually(duplicates);
+    }
+
+    @GuardedBy("writeLock")
+    private void resolvePartialFailure(Map<Long, CommitRequest> requestsByStartTs) {
+        Map<Long, Long> existing;
+        try {
+            existing = delegate.get(requestsByStartTs.keySet());
+        } catch (RuntimeException e) {
+            for (CommitRequest request : requestsByStartTs.values()) {
+                request.fail(e);
+            }
+            return;
+        }
+        List<CommitRequest> retries = Lists.newArrayList();
+        for (CommitRequest request : requestsByStartTs.values()) {
+            Long existingCommitTs = existing.get(request.startTimestamp);
+            if (existingCommitTs == null) {
+                retries.add(request);
+            } else if (existingCommitTs == request.commitTimestamp) {
+                request.succeed();
+            } else {
+                request.fail(new KeyAlreadyExistsException(
+                        "Commit timestamp for start timestamp " + request.startTimestamp + " already exists.",
+                        ImmutableList.of(SimpleTransactionService.getTransactionCell(request.startTimestamp))));
+            }
+        }
+        writeIndividually(retries);
+    }
+
+    @GuardedBy("writeLock")
+    private void writeIndividually(Iterable<CommitRequest> requests) {
+        for (CommitRequest request : requests) {
+            try {
+                delegate.putUnlessExists(request.startTimestamp, request.commitTimestamp);
+                request.succeed();
+            } catch (RuntimeException e) {
+                request.fail(e);
+            }
+        }
+    }
+
+    /**
+     * A queued call to {@link #putUnlessExists(long, long)}. Its result is set by whichever caller
+     * writes its batch, and its own caller waits for it unless it is asked to write pending requests.
+     */
+    private static final class CommitRequest {
+        final long startTimestamp;
+        final long commitTimestamp;
+        @GuardedBy("this")
+        private boolean done = false;
+        @GuardedBy("this")
+        private RuntimeException failure = null;
+        @GuardedBy("this")
+        private boolean turnToWrite = false;
+
+        CommitRequest(long startTimestamp, long commitTimestamp) {
+            this.startTimestamp = startTimestamp;
+            this.commitTimestamp = commitTimestamp;
+        }
+
+        synchronized boolean isDone() {
+            return done;
+        }
+
+        synchronized void succeed() {
+            done = true;
+            notifyAll();
+        }
+
+        synchronized void fail(RuntimeException e) {
+            failure = e;
+            done = true;
+            notifyAll();
+        }
+
+        synchronized void throwIfFailed() {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        synchronized void offerTurnToWrite() {
+            turnToWrite = true;
+            notifyAll();
+        }
+
+        /**
+         * Waits until the request is done, or until a caller that stopped writing asks this one to write
+         * the requests that are still pending.
+         */
+        synchronized void awaitDoneOrTurnToWrite() {
+            boolean interrupted = false;
+            while (!done && !turnToWrite) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    // The commit timestamp is written regardless, so wait for the outcome.
+                    interrupted = true;
+                }
+            }
+            turnToWrite = false;
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -26,4 +26,13 @@ public final class TransactionServices {
             KeyValueService keyValueService) {
         return new SimpleTransactionService(keyValueService);
     }
+
+    /**
+     * Creates a transaction service which groups concurrent commits into a single write to the
+     * _transactions table; see {@link GroupCommitTransactionService}.
+     */
+    public static TransactionService createGroupCommitTransactionService(
+            KeyValueService keyValueService) {
+        return new GroupCommitTransactionService(createTransactionService(keyValueService), keyValueService);
+    }
 }
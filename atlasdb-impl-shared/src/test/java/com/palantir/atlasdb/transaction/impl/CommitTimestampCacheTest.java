@@ -0,0 +1,129 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.transaction.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class CommitTimestampCacheTest {
+    private static final long START_TS = 100L;
+    private static final long COMMIT_TS = 200L;
+
+    @Test
+    public void missingEntryIsReportedAsMiss() {
+        CommitTimestampCache cache = new CommitTimestampCache(16);
+
+        assertThat(cache.getCommitTimestamp(START_TS)).isEqualTo(CommitTimestampCache.NO_ENTRY);
+        assertThat(cache.get(START_TS)).isNull();
+    }
+
+    @Test
+    public void returnsCachedCommitTimestamps() {
+        CommitTimestampCache cache = new CommitTimestampCache(16);
+        cache.putCommitTimestamp(START_TS, COMMIT_TS);
+        cache.putCommitTimestamp(START_TS + 1, TransactionConstants.FAILED_COMMIT_TS);
+
+        assertThat(cache.getCommitTimestamp(START_TS)).isEqualTo(COMMIT_TS);
+        assertThat(cache.getCommitTimestamp(START_TS + 1)).isEqualTo(TransactionConstants.FAILED_COMMIT_TS);
+        assertThat(cache.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void neverGrowsBeyondMaxSize() {
+        CommitTimestampCache cache = new CommitTimestampCache(64);
+        for (long ts = 1; ts <= 10000; ts++) {
+            cache.putCommitTimestamp(ts, ts + 1);
+        }
+
+        assertThat(cache.size()).isLessThanOrEqualTo(cache.getMaxCacheSize());
+        assertThat(cache.getMaxCacheSize()).isEqualTo(64);
+    }
+
+    @Test
+    public void roundsMaxSizeUpToPowerOfTwo() {
+        assertThat(new CommitTimestampCache(100).getMaxCacheSize()).isEqualTo(128);
+        assertThat(new CommitTimestampCache(1).getMaxCacheSize()).isEqualTo(2);
+    }
+
+    @Test
+    public void evictsOlderStartTimestampFirst() {
+        CommitTimestampCache cache = new CommitTimestampCache(2);
+        cache.putCommitTimestamp(1L, 2L);
+        cache.putCommitTimestamp(3L, 4L);
+        cache.putCommitTimestamp(5L, 6L);
+
+        assertThat(cache.getCommitTimestamp(1L)).isEqualTo(CommitTimestampCache.NO_ENTRY);
+        assertThat(cache.getCommitTimestamp(3L)).isEqualTo(4L);
+        assertThat(cache.getCommitTimestamp(5L)).isEqualTo(6L);
+    }
+
+    @Test
+    public void tracksHitsAndMisses() {
+        CommitTimestampCache cache = new CommitTimestampCache(16);
+        cache.getCommitTimestamp(START_TS);
+        cache.putCommitTimestamp(START_TS, COMMIT_TS);
+        cache.getCommitTimestamp(START_TS);
+        cache.getCommitTimestamp(START_TS);
+
+        assertThat(cache.getCacheStats().getMissCount()).isEqualTo(1);
+        assertThat(cache.getCacheStats().getHitCount()).isEqualTo(2);
+        assertThat(cache.getCacheStats().getPutCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void resizingClearsTheCache() {
+        CommitTimestampCache cache = new CommitTimestampCache(16);
+        cache.putCommitTimestamp(START_TS, COMMIT_TS);
+        cache.setMaxCacheSize(1024);
+
+        assertThat(cache.getMaxCacheSize()).isEqualTo(1024);
+        assertThat(cache.size()).isEqualTo(0);
+        assertThat(cache.containsKey(START_TS)).isFalse();
+    }
+
+    @Test
+    public void concurrentReadersNeverSeeTornEntries() throws Exception {
+        CommitTimestampCache cache = new CommitTimestampCache(8);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = Lists.newArrayList();
+            for (int thread = 0; thread < 8; thread++) {
+                futures.add(executor.submit(() -> {
+                    for (long ts = 1; ts < 100000; ts++) {
+                        cache.putCommitTimestamp(ts, ts * 2);
+                        long commitTs = cache.getCommitTimestamp(ts - 1);
+                        if (commitTs != CommitTimestampCache.NO_ENTRY) {
+                            assertThat(commitTs).isEqualTo((ts - 1) * 2);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.transaction.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class ParallelTaskRunnerTest {
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void returnsResultsInInputOrder() {
+        ParallelTaskRunner runner = new ParallelTaskRunner(executor, 4);
+
+        List<Integer> results = runner.transform(ImmutableList.of(1, 2, 3, 4, 5, 6), input -> input * 10);
+
+        assertThat(results).containsExactly(10, 20, 30, 40, 50, 60);
+    }
+
+    @Test
+    public void runsTasksConcurrently() throws InterruptedException {
+        ParallelTaskRunner runner = new ParallelTaskRunner(executor, 3);
+        CountDownLatch allStarted = new CountDownLatch(3);
+
+        runner.forEach(ImmutableList.of(1, 2, 3), input -> {
+            allStarted.countDown();
+            try {
+                assertThat(allStarted.await(10, TimeUnit.SECONDS)).isTrue();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    @Test
+    public void neverRunsMoreTasksThanTheParallelism() {
+        ParallelTaskRunner runner = new ParallelTaskRunner(executor, 2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        runner.forEach(ImmutableList.of(1, 2, 3, 4, 5, 6, 7, 8), input -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            sleepQuietly(5);
+            running.decrementAndGet();
+        });
+
+        assertThat(maxRunning.get()).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    public void callerMakesProgressWhenThePoolIsBusy() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 4; i++) {
+            executor.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        try {
+            ParallelTaskRunner runner = new ParallelTaskRunner(executor, 4);
+
+            assertThat(runner.transform(ImmutableList.of(1, 2, 3), input -> input + 1)).containsExactly(2, 3, 4);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void rethrowsTheFirstFailure() {
+        ParallelTaskRunner runner = new ParallelTaskRunner(executor, 4);
+
+        assertThatThrownBy(() -> runner.forEach(ImmutableList.of(1, 2, 3), input -> {
+            if (input == 2) {
+                throw new IllegalStateException("failed on " + input);
+            }
+        })).isInstanceOf(IllegalStateException.class).hasMessage("failed on 2");
+    }
+
+    @Test
+    public void sequentialRunnerUsesTheCallingThread() {
+        Thread caller = Thread.currentThread();
+
+        List<Boolean> onCaller = ParallelTaskRunner.sequential().transform(
+                ImmutableList.of(1, 2, 3), input -> Thread.currentThread() == caller);
+
+        assertThat(onCaller).containsOnly(true);
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.transaction.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.google.common.base.Ticker;
+import com.palantir.timestamp.InMemoryTimestampService;
+
+public class RecentTimestampSupplierTest {
+    private final InMemoryTimestampService timestampService = new InMemoryTimestampService();
+    private final FakeTicker ticker = new FakeTicker();
+
+    @Test
+    public void alwaysGetsFreshTimestampsWithoutStaleness() {
+        RecentTimestampSupplier supplier = new RecentTimestampSupplier(timestampService, 0, ticker);
+
+        assertThat(supplier.get()).isLessThan(supplier.get());
+    }
+
+    @Test
+    public void reusesTimestampsWithinTheStalenessBound() {
+        RecentTimestampSupplier supplier = new RecentTimestampSupplier(timestampService, 10, ticker);
+        long first = supplier.get();
+
+        ticker.advance(10, TimeUnit.MILLISECONDS);
+        assertThat(supplier.get()).isEqualTo(first);
+
+        ticker.advance(1, TimeUnit.MILLISECONDS);
+        assertThat(supplier.get()).isGreaterThan(first);
+    }
+
+    @Test
+    public void reusesTimestampsIssuedForOtherTransactions() {
+        RecentTimestampSupplier supplier = new RecentTimestampSupplier(timestampService, 10, ticker);
+        supplier.get();
+        long issued = timestampService.getFreshTimestamp();
+        supplier.recordIssued(issued);
+
+        assertThat(supplier.get()).isEqualTo(issued);
+    }
+
+    @Test
+    public void stopsReusingTimestampsBeforeACommit() {
+        RecentTimestampSupplier supplier = new RecentTimestampSupplier(timestampService, 10, ticker);
+        long first = supplier.get();
+        long commitTs = timestampService.getFreshTimestamp();
+
+        supplier.invalidateUpTo(commitTs);
+
+        assertThat(supplier.get()).isGreaterThan(commitTs);
+        assertThat(first).isLessThan(commitTs);
+    }
+
+    @Test
+    public void doesNotReuseTimestampsRecordedAfterALaterCommit() {
+        RecentTimestampSupplier supplier = new RecentTimestampSupplier(timestampService, 10, ticker);
+        long startTs = timestampService.getFreshTimestamp();
+        long commitTs = timestampService.getFreshTimestamp();
+
+        supplier.invalidateUpTo(commitTs);
+        supplier.recordIssued(startTs);
+
+        assertThat(supplier.get()).isGreaterThan(commitTs);
+    }
+
+    @Test
+    public void doesNotReuseTimestampsBelowTheGivenMinimum() {
+        RecentTimestampSupplier supplier = new RecentTimestampSupplier(timestampService, 10, ticker);
+        long first = supplier.get();
+        long immutableTs = timestampService.getFreshTimestamp();
+
+        assertThat(supplier.getAtLeast(first)).isEqualTo(first);
+        assertThat(supplier.getAtLeast(immutableTs)).isGreaterThan(immutableTs);
+    }
+
+    private static final class FakeTicker extends Ticker {
+        private final AtomicLong nanos = new AtomicLong();
+
+        @Override
+        public long read() {
+            return nanos.get();
+        }
+
+        void advance(long duration, TimeUnit unit) {
+            nanos.addAndGet(unit.toNanos(duration));
+        }
+    }
+}
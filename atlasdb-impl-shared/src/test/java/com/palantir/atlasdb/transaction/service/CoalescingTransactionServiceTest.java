@@ -0,0 +1,147 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.transaction.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.CheckForNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.palantir.atlasdb.keyvalue.api.KeyAlreadyExistsException;
+import com.palantir.atlasdb.keyvalue.api.KeyValueService;
+import com.palantir.atlasdb.keyvalue.impl.InMemoryKeyValueService;
+import com.palantir.atlasdb.transaction.impl.TransactionTables;
+
+public class CoalescingTransactionServiceTest {
+    private final CountDownLatch readsMayFinish = new CountDownLatch(1);
+    private final AtomicInteger reads = new AtomicInteger();
+    private volatile RuntimeException readFailure = null;
+
+    private ExecutorService executor;
+    private TransactionService delegate;
+    private CoalescingTransactionService transactionService;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newCachedThreadPool();
+        KeyValueService kvs = new InMemoryKeyValueService(false);
+        TransactionTables.createTables(kvs);
+        delegate = TransactionServices.createTransactionService(kvs);
+        transactionService = new CoalescingTransactionService(new TransactionService() {
+            @CheckForNull
+            @Override
+            public Long get(long startTimestamp) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Map<Long, Long> get(Iterable<Long> startTimestamps) {
+                reads.incrementAndGet();
+                Uninterruptibles.awaitUninterruptibly(readsMayFinish);
+                if (readFailure != null) {
+                    throw readFailure;
+                }
+                return delegate.get(startTimestamps);
+            }
+
+            @Override
+            public void putUnlessExists(long startTimestamp, long commitTimestamp)
+                    throws KeyAlreadyExistsException {
+                delegate.putUnlessExists(startTimestamp, commitTimestamp);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        readsMayFinish.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void returnsOnlyTimestampsThatHaveCommitted() {
+        readsMayFinish.countDown();
+        transactionService.putUnlessExists(1L, 2L);
+
+        assertThat(transactionService.get(ImmutableList.of(1L, 3L))).isEqualTo(ImmutableMap.of(1L, 2L));
+        assertThat(transactionService.get(3L)).isNull();
+    }
+
+    @Test
+    public void doesNotRememberMissingTimestampsOnceTheirLookupHasFinished() {
+        readsMayFinish.countDown();
+        assertThat(transactionService.get(1L)).isNull();
+
+        transactionService.putUnlessExists(1L, 2L);
+
+        assertThat(transactionService.get(1L)).isEqualTo(2L);
+        assertThat(transactionService.getNumberOfInFlightLookups()).isZero();
+    }
+
+    @Test
+    public void sharesConcurrentLookupsOfTheSameTimestamp() throws Exception {
+        delegate.putUnlessExists(1L, 2L);
+        Future<Long> first = executor.submit(() -> transactionService.get(1L));
+        awaitReads(1);
+        Future<Map<Long, Long>> second = executor.submit(() -> transactionService.get(ImmutableList.of(1L)));
+        Thread.sleep(100);
+
+        readsMayFinish.countDown();
+
+        assertThat(first.get()).isEqualTo(2L);
+        assertThat(second.get()).isEqualTo(ImmutableMap.of(1L, 2L));
+        assertThat(reads.get()).isEqualTo(1);
+        assertThat(transactionService.getNumberOfInFlightLookups()).isZero();
+    }
+
+    @Test
+    public void failsCallersWaitingForAFailedLookup() throws Exception {
+        readFailure = new IllegalStateException("read failed");
+        Future<Long> first = executor.submit(() -> transactionService.get(1L));
+        awaitReads(1);
+        Future<Long> second = executor.submit(() -> transactionService.get(1L));
+        Thread.sleep(100);
+
+        readsMayFinish.countDown();
+
+        assertThat(catchThrowable(first::get)).isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(catchThrowable(second::get)).isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(transactionService.getNumberOfInFlightLookups()).isZero();
+    }
+
+    private void awaitReads(int expected) throws InterruptedException {
+        while (reads.get() < expected) {
+            Thread.sleep(1);
+        }
+    }
+}
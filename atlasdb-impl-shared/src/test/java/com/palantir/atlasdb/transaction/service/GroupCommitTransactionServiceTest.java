@@ -0,0 +1,189 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.transaction.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.palantir.atlasdb.keyvalue.api.Cell;
+import com.palantir.atlasdb.keyvalue.api.KeyAlreadyExistsException;
+import com.palantir.atlasdb.keyvalue.api.KeyValueService;
+import com.palantir.atlasdb.keyvalue.api.TableReference;
+import com.palantir.atlasdb.keyvalue.impl.ForwardingKeyValueService;
+import com.palantir.atlasdb.keyvalue.impl.InMemoryKeyValueService;
+import com.palantir.atlasdb.transaction.impl.TransactionTables;
+
+public class GroupCommitTransactionServiceTest {
+    private final CountDownLatch firstWriteStarted = new CountDownLatch(1);
+    private final CountDownLatch firstWriteMayFinish = new CountDownLatch(1);
+    private final CountDownLatch thirdWriteStarted = new CountDownLatch(1);
+    private final CountDownLatch thirdWriteMayFinish = new CountDownLatch(1);
+    private final AtomicInteger kvsWrites = new AtomicInteger();
+
+    private ExecutorService executor;
+    private KeyValueService kvs;
+    private GroupCommitTransactionService transactionService;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newCachedThreadPool();
+        KeyValueService delegate = new InMemoryKeyValueService(false);
+        TransactionTables.createTables(delegate);
+        kvs = new ForwardingKeyValueService() {
+            @Override
+            protected KeyValueService delegate() {
+                return delegate;
+            }
+
+            @Override
+            public void putUnlessExists(TableReference tableRef, Map<Cell, byte[]> values) {
+                int write = kvsWrites.getAndIncrement();
+                if (write == 0) {
+                    firstWriteStarted.countDown();
+                    Uninterruptibles.awaitUninterruptibly(firstWriteMayFinish);
+                } else if (write == 2) {
+                    thirdWriteStarted.countDown();
+                    Uninterruptibles.awaitUninterruptibly(thirdWriteMayFinish);
+                }
+                super.putUnlessExists(tableRef, values);
+            }
+        };
+        transactionService = new GroupCommitTransactionService(
+                TransactionServices.createTransactionService(kvs), kvs);
+    }
+
+    @After
+    public void tearDown() {
+        firstWriteMayFinish.countDown();
+        thirdWriteMayFinish.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void writesCommitTimestamps() {
+        firstWriteMayFinish.countDown();
+        transactionService.putUnlessExists(1L, 2L);
+
+        assertThat(transactionService.get(1L)).isEqualTo(2L);
+    }
+
+    @Test
+    public void throwsIfCommitTimestampAlreadyExists() {
+        firstWriteMayFinish.countDown();
+        transactionService.putUnlessExists(1L, 2L);
+
+        assertThat(catchThrowable(() -> transactionService.putUnlessExists(1L, 3L)))
+                .isInstanceOf(KeyAlreadyExistsException.class);
+        assertThat(transactionService.get(1L)).isEqualTo(2L);
+    }
+
+    @Test
+    public void writesConcurrentRequestsTogether() throws Exception {
+        Future<?> first = executor.submit(() -> transactionService.putUnlessExists(1L, 2L));
+        firstWriteStarted.await();
+        List<Future<?>> queued = Lists.newArrayList();
+        for (long startTs = 10; startTs < 20; startTs++) {
+            long commitTs = startTs + 100;
+            queued.add(executor.submit(() -> transactionService.putUnlessExists(commitTs - 100, commitTs)));
+        }
+        awaitQueuedRequests(10);
+
+        firstWriteMayFinish.countDown();
+        first.get();
+        for (Future<?> future : queued) {
+            future.get();
+        }
+
+        assertThat(kvsWrites.get()).isEqualTo(2);
+        for (long startTs = 10; startTs < 20; startTs++) {
+            assertThat(transactionService.get(startTs)).isEqualTo(startTs + 100);
+        }
+    }
+
+    @Test
+    public void reportsConflictsPerRequestWhenPartOfABatchFails() throws Exception {
+        Future<?> first = executor.submit(() -> transactionService.putUnlessExists(1L, 2L));
+        firstWriteStarted.await();
+        Future<?> before = executor.submit(() -> transactionService.putUnlessExists(0L, 5L));
+        awaitQueuedRequests(1);
+        Future<?> conflicting = executor.submit(() -> transactionService.putUnlessExists(1L, -1L));
+        awaitQueuedRequests(2);
+        Future<?> after = executor.submit(() -> transactionService.putUnlessExists(3L, 4L));
+        awaitQueuedRequests(3);
+
+        firstWriteMayFinish.countDown();
+        first.get();
+        before.get();
+        after.get();
+        assertThat(catchThrowable(conflicting::get)).hasCauseInstanceOf(KeyAlreadyExistsException.class);
+
+        assertThat(transactionService.get(0L)).isEqualTo(5L);
+        assertThat(transactionService.get(1L)).isEqualTo(2L);
+        assertThat(transactionService.get(3L)).isEqualTo(4L);
+    }
+
+    @Test
+    public void returnsOnceOwnRequestIsWrittenWhileLaterWritesAreInFlight() throws Exception {
+        Future<?> first = executor.submit(() -> transactionService.putUnlessExists(1L, 2L));
+        firstWriteStarted.await();
+        Future<?> writer = executor.submit(() -> transactionService.putUnlessExists(10L, 110L));
+        awaitWaitingRequests(1);
+        Future<?> batched = executor.submit(() -> transactionService.putUnlessExists(11L, 111L));
+        awaitWaitingRequests(2);
+        Future<?> duplicate = executor.submit(() -> transactionService.putUnlessExists(11L, -1L));
+        awaitWaitingRequests(3);
+
+        // The first queued request writes the batch and then the duplicate on its own, which blocks.
+        firstWriteMayFinish.countDown();
+        first.get();
+        thirdWriteStarted.await();
+        batched.get(10, TimeUnit.SECONDS);
+        assertThat(writer.isDone()).isFalse();
+        assertThat(duplicate.isDone()).isFalse();
+
+        thirdWriteMayFinish.countDown();
+        writer.get();
+        assertThat(catchThrowable(duplicate::get)).hasCauseInstanceOf(KeyAlreadyExistsException.class);
+        assertThat(transactionService.get(11L)).isEqualTo(111L);
+    }
+
+    private void awaitWaitingRequests(int count) throws InterruptedException {
+        while (transactionService.getNumberOfWaitingRequests() < count) {
+            Thread.sleep(1);
+        }
+    }
+
+    private void awaitQueuedRequests(int count) throws InterruptedException {
+        while (transactionService.getNumberOfQueuedRequests() < count) {
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.performance.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Lists;
+import com.palantir.common.concurrent.PTExecutors;
+import com.palantir.lock.LockMode;
+import com.palantir.lock.LockRefreshToken;
+import com.palantir.lock.LockRequest;
+import com.palantir.lock.StringLockDescriptor;
+import com.palantir.lock.impl.LockServiceImpl;
+
+/**
+ * Performance benchmarks for the version ID bookkeeping of {@link LockServiceImpl}.
+ * <p>
+ * Each invocation has {@code numClients} threads run {@link #OPERATIONS_PER_CLIENT} operations each, all as the
+ * same lock client, the way the transaction managers of one service share a lock client. Comparing the time per
+ * invocation across client counts shows how {@code getMinLockedInVersionId} scales with contention.
+ */
+@State(Scope.Benchmark)
+public class LockServiceBenchmarks {
+
+    private static final String CLIENT = "client";
+    private static final int OPERATIONS_PER_CLIENT = 1000;
+
+    @Param({"1", "4", "16", "64"})
+    private int numClients;
+
+    private LockServiceImpl lockService;
+    private ExecutorService executor;
+    private final AtomicLong versionIds = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        lockService = LockServiceImpl.create();
+        executor = PTExecutors.newFixedThreadPool(numClients, PTExecutors.newNamedThreadFactory(true));
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        executor.shutdownNow();
+        lockService.close();
+    }
+
+    /**
+     * Locks in a fresh version ID, reads the minimum locked in version ID and unlocks again,
+     * as starting and finishing a transaction does.
+     */
+    @Benchmark
+    @Warmup(time = 2, timeUnit = TimeUnit.SECONDS)
+    @Measurement(time = 10, timeUnit = TimeUnit.SECONDS)
+    public long lockAndGetMinLockedInVersionId() throws Exception {
+        return runClients(() -> {
+            long min = 0;
+            for (int i = 0; i < OPERATIONS_PER_CLIENT; i++) {
+                LockRefreshToken token = lockVersionId(versionIds.incrementAndGet());
+                min = lockService.getMinLockedInVersionId(CLIENT);
+                lockService.unlock(token);
+            }
+            return min;
+        });
+    }
+
+    /** Reads the minimum locked in version ID while every client holds a lock on its own version ID. */
+    @Benchmark
+    @Warmup(time = 2, timeUnit = TimeUnit.SECONDS)
+    @Measurement(time = 10, timeUnit = TimeUnit.SECONDS)
+    public long getMinLockedInVersionId() throws Exception {
+        return runClients(() -> {
+            LockRefreshToken token = lockVersionId(versionIds.incrementAndGet());
+            try {
+                long min = 0;
+                for (int i = 0; i < OPERATIONS_PER_CLIENT; i++) {
+                    min = lockService.getMinLockedInVersionId(CLIENT);
+                }
+                return min;
+            } finally {
+                lockService.unlock(token);
+            }
+        });
+    }
+
+    private LockRefreshToken lockVersionId(long versionId) throws InterruptedException {
+        LockRequest request = LockRequest.builder(
+                ImmutableSortedMap.of(StringLockDescriptor.of(Long.toString(versionId)), LockMode.READ))
+                .withLockedInVersionId(versionId)
+                .doNotBlock()
+                .build();
+        return lockService.lock(CLIENT, request);
+    }
+
+    private long runClients(Callable<Long> client) throws Exception {
+        List<Future<Long>> futures = Lists.newArrayListWithCapacity(numClients);
+        for (int i = 0; i < numClients; i++) {
+            futures.add(executor.submit(client));
+        }
+        long max = 0;
+        for (Future<Long> future : futures) {
+            max = Math.max(max, future.get());
+        }
+        return max;
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.atlasdb.performance.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.palantir.common.concurrent.PTExecutors;
+import com.palantir.timestamp.PersistentTimestampService;
+import com.palantir.timestamp.TimestampBoundStore;
+
+/**
+ * Performance benchmarks for handing out timestamps from a {@link PersistentTimestampService}.
+ * <p>
+ * Each invocation has {@code numClients} threads fetch {@link #TIMESTAMPS_PER_CLIENT} fresh timestamps each,
+ * so comparing the time per invocation across client counts shows how hand-out throughput scales with
+ * contention. The bound store takes a millisecond to persist, like a remote database would.
+ */
+@State(Scope.Benchmark)
+public class TimestampServiceBenchmarks {
+
+    private static final int TIMESTAMPS_PER_CLIENT = 1000;
+    private static final long STORE_LATENCY_MILLIS = 1;
+
+    @Param({"1", "4", "16", "64"})
+    private int numClients;
+
+    private PersistentTimestampService timestampService;
+    private ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        timestampService = PersistentTimestampService.create(new SlowInMemoryTimestampBoundStore());
+        executor = PTExecutors.newFixedThreadPool(numClients, PTExecutors.newNamedThreadFactory(true));
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    @Warmup(time = 2, timeUnit = TimeUnit.SECONDS)
+    @Measurement(time = 10, timeUnit = TimeUnit.SECONDS)
+    public long getFreshTimestamp() throws Exception {
+        return runClients(() -> {
+            long last = 0;
+            for (int i = 0; i < TIMESTAMPS_PER_CLIENT; i++) {
+                last = timestampService.getFreshTimestamp();
+            }
+            return last;
+        });
+    }
+
+    @Benchmark
+    @Warmup(time = 2, timeUnit = TimeUnit.SECONDS)
+    @Measurement(time = 10, timeUnit = TimeUnit.SECONDS)
+    public long getFreshTimestampsInBatches() throws Exception {
+        return runClients(() -> {
+            long last = 0;
+            for (int i = 0; i < TIMESTAMPS_PER_CLIENT / 100; i++) {
+                last = timestampService.getFreshTimestamps(100).getUpperBound();
+            }
+            return last;
+        });
+    }
+
+    private long runClients(Callable<Long> client) throws Exception {
+        List<Future<Long>> futures = Lists.newArrayListWithCapacity(numClients);
+        for (int i = 0; i < numClients; i++) {
+            futures.add(executor.submit(client));
+        }
+        long max = 0;
+        for (Future<Long> future : futures) {
+            max = Math.max(max, future.get());
+        }
+        return max;
+    }
+
+    private static final class SlowInMemoryTimestampBoundStore implements TimestampBoundStore {
+        private volatile long upperLimit = 0;
+
+        @Override
+        public long getUpperLimit() {
+            return upperLimit;
+        }
+
+        @Override
+        public void storeUpperLimit(long limit) {
+            Uninterruptibles.sleepUninterruptibly(STORE_LATENCY_MILLIS, TimeUnit.MILLISECONDS);
+            upperLimit = limit;
+        }
+    }
+
+}
@@ -16,6 +16,7 @@
 package com.palantir.atlasdb.keyvalue.rocksdb.impl;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -26,6 +27,7 @@ import java.util.Map;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.rocksdb.FlushOptions;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -42,6 +44,14 @@ import com.palantir.atlasdb.keyvalue.api.RangeRequest;
 import com.palantir.atlasdb.keyvalue.api.RowResult;
 import com.palantir.atlasdb.keyvalue.api.TableReference;
 import com.palantir.atlasdb.keyvalue.api.Value;
+import com.palantir.atlasdb.protos.generated.TableMetadataPersistence.CachePriority;
+import com.palantir.atlasdb.protos.generated.TableMetadataPersistence.ExpirationStrategy;
+import com.palantir.atlasdb.protos.generated.TableMetadataPersistence.PartitionStrategy;
+import com.palantir.atlasdb.protos.generated.TableMetadataPersistence.SweepStrategy;
+import com.palantir.atlasdb.table.description.ColumnMetadataDescription;
+import com.palantir.atlasdb.table.description.NameMetadataDescription;
+import com.palantir.atlasdb.table.description.TableMetadata;
+import com.palantir.atlasdb.transaction.api.ConflictHandler;
 import com.palantir.common.base.ClosableIterator;
 
 public final class RocksDbKeyValueServiceTest {
@@ -275,6 +285,65 @@ public final class RocksDbKeyValueServiceTest {
     }
 
 
+    @Test
+    public void testPutUnlessExistsWithNoValues() {
+        db.createTable(TRANSACTION_TABLE, AtlasDbConstants.EMPTY_TABLE_METADATA);
+        db.putUnlessExists(TRANSACTION_TABLE, ImmutableMap.<Cell, byte[]>of());
+        final Cell cell = Cell.create("r1".getBytes(), COMMIT_TS_COLUMN);
+        assertTrue(db.get(TRANSACTION_TABLE, ImmutableMap.of(cell, 1L)).isEmpty());
+    }
+
+
+    @Test
+    public void testGetFromTransactionTable() {
+        db.createTable(TRANSACTION_TABLE, AtlasDbConstants.EMPTY_TABLE_METADATA);
+        final Cell cell = Cell.create("r1".getBytes(), COMMIT_TS_COLUMN);
+        final Cell cell2 = Cell.create("r2".getBytes(), COMMIT_TS_COLUMN);
+        final Cell missingCell = Cell.create("r3".getBytes(), COMMIT_TS_COLUMN);
+        db.putUnlessExists(TRANSACTION_TABLE, ImmutableMap.of(cell, "v1".getBytes(), cell2, "v2".getBytes()));
+
+        final Map<Cell, Value> res = db.get(TRANSACTION_TABLE, ImmutableMap.of(
+                cell, Long.MAX_VALUE, cell2, 0L, missingCell, Long.MAX_VALUE));
+        assertEquals(ImmutableSet.of(cell), res.keySet());
+        assertEquals(0L, res.get(cell).getTimestamp());
+        assertEquals("v1", new String(res.get(cell).getContents()));
+    }
+
+
+    @Test
+    public void testGetManyCellsAtMixedTimestamps() {
+        final int numRows = 12000;
+        Map<Cell, byte[]> oldValues = Maps.newHashMap();
+        Map<Cell, byte[]> newValues = Maps.newHashMap();
+        for (int i = 0; i < numRows; i++) {
+            Cell cell = Cell.create(PtBytes.toBytes("r" + i), PtBytes.toBytes("c"));
+            oldValues.put(cell, PtBytes.toBytes("old" + i));
+            if (i % 3 != 0) {
+                newValues.put(cell, PtBytes.toBytes("new" + i));
+            }
+        }
+        db.put(TABLE, oldValues, 10);
+        db.put(TABLE, newValues, 20);
+
+        // enough cells to be split between read threads, with neighbours at different timestamps
+        Map<Cell, Long> request = Maps.newHashMap();
+        for (int i = 0; i < numRows + 10000; i++) {
+            request.put(Cell.create(PtBytes.toBytes("r" + i), PtBytes.toBytes("c")), i % 2 == 0 ? 15L : 25L);
+        }
+        Map<Cell, Value> values = db.get(TABLE, request);
+        Map<Cell, Long> timestamps = db.getLatestTimestamps(TABLE, request);
+
+        assertEquals(numRows, values.size());
+        assertEquals(numRows, timestamps.size());
+        for (int i = 0; i < numRows; i++) {
+            Cell cell = Cell.create(PtBytes.toBytes("r" + i), PtBytes.toBytes("c"));
+            boolean expectNew = i % 2 != 0 && i % 3 != 0;
+            assertEquals((expectNew ? "new" : "old") + i, PtBytes.toString(values.get(cell).getContents()));
+            assertEquals(expectNew ? 20L : 10L, (long) timestamps.get(cell));
+        }
+    }
+
+
     @Test
     public void testMetadata() {
         db.putMetadataForTable(TABLE, "yoyo".getBytes());
@@ -300,6 +369,72 @@ public final class RocksDbKeyValueServiceTest {
         }
     }
 
+    @Test
+    public void testPooledIteratorsSeeLaterWrites() {
+        db.close();
+        db = RocksDbKeyValueService.create("testdb",
+                ImmutableMap.<String, String>of(),
+                ImmutableMap.<String, String>of(),
+                ImmutableWriteOpts.builder().build(),
+                ImmutableReadOpts.builder().pooledIteratorsPerTable(1).build(),
+                RocksComparatorName.V2.getComparatorName());
+        final Cell cell = Cell.create("r1".getBytes(), "c1".getBytes());
+        db.put(TABLE, ImmutableMap.of(cell, "v1".getBytes()), 1);
+        assertEquals(1, db.get(TABLE, ImmutableMap.of(cell, 10L)).get(cell).getTimestamp());
+
+        db.put(TABLE, ImmutableMap.of(cell, "v2".getBytes()), 5);
+        final Value value = db.get(TABLE, ImmutableMap.of(cell, 10L)).get(cell);
+        assertEquals(5, value.getTimestamp());
+        assertEquals("v2", new String(value.getContents()));
+
+        db.truncateTable(TABLE);
+        assertTrue(db.get(TABLE, ImmutableMap.of(cell, 10L)).isEmpty());
+        assertTrue(db.getRows(TABLE, ImmutableList.of("r1".getBytes()), ColumnSelection.all(), 10L).isEmpty());
+    }
+
+    @Test
+    public void testTablesTunedFromMetadataSurviveFlushAndReopen() throws Exception {
+        final Map<CachePriority, TableReference> tables = Maps.newEnumMap(CachePriority.class);
+        for (CachePriority priority : CachePriority.values()) {
+            TableReference table = TableReference.createWithEmptyNamespace("tuned_" + priority.name().toLowerCase());
+            TableMetadata metadata = new TableMetadata(new NameMetadataDescription(), new ColumnMetadataDescription(),
+                    ConflictHandler.RETRY_ON_WRITE_WRITE, priority, PartitionStrategy.ORDERED, true,
+                    priority == CachePriority.WARM ? 64 : 0, priority == CachePriority.HOT,
+                    SweepStrategy.CONSERVATIVE, ExpirationStrategy.NEVER, priority == CachePriority.COLDEST);
+            db.createTable(table, metadata.persistToBytes());
+            tables.put(priority, table);
+        }
+        final Cell cell = Cell.create("r1".getBytes(), "c1".getBytes());
+        for (TableReference table : tables.values()) {
+            db.put(table, ImmutableMap.of(cell, "v1".getBytes()), 1);
+            try (Disposer d = new Disposer();
+                    ColumnFamilyMap.ColumnFamily cf = db.columnFamilies.get(table.getQualifiedName())) {
+                db.db.flush(d.register(new FlushOptions().setWaitForFlush(true)), cf.getHandle());
+            }
+        }
+        db.truncateTable(tables.get(CachePriority.HOTTEST));
+
+        db.close();
+        db = RocksDbKeyValueService.create("testdb");
+        for (Map.Entry<CachePriority, TableReference> entry : tables.entrySet()) {
+            Map<Cell, Value> result = db.get(entry.getValue(), ImmutableMap.of(cell, 2L));
+            assertEquals(entry.getKey() == CachePriority.HOTTEST ? 0 : 1, result.size());
+        }
+    }
+
+    @Test
+    public void testTablesTunedTheSameWayShareAProfile() {
+        TableMetadata metadata = new TableMetadata(new NameMetadataDescription(), new ColumnMetadataDescription(),
+                ConflictHandler.RETRY_ON_WRITE_WRITE, CachePriority.HOT, PartitionStrategy.ORDERED, true,
+                64, false, SweepStrategy.CONSERVATIVE, ExpirationStrategy.NEVER, false);
+        TableMetadata sameTuning = new TableMetadata(new NameMetadataDescription(), new ColumnMetadataDescription(),
+                ConflictHandler.IGNORE_ALL, CachePriority.HOT, PartitionStrategy.HASH, false,
+                64, false, SweepStrategy.THOROUGH, ExpirationStrategy.NEVER, false);
+        assertEquals(RocksTableTuning.Profile.of(metadata), RocksTableTuning.Profile.of(sameTuning));
+        assertEquals(RocksTableTuning.Profile.of(null), RocksTableTuning.Profile.of(new TableMetadata()));
+        assertFalse(RocksTableTuning.Profile.of(metadata).equals(RocksTableTuning.Profile.of(null)));
+    }
+
     private static <K, V> Map<K, V> putAll(Map<K, V> map, Iterable<? extends Map.Entry<? extends K, ? extends V>> it) {
         for (Map.Entry<? extends K, ? extends V> e : it) {
             map.put(e.getKey(), e.getValue());
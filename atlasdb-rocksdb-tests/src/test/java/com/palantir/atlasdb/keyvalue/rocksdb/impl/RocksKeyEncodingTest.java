@@ -0,0 +1,133 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.keyvalue.rocksdb.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.primitives.UnsignedBytes;
+import com.palantir.atlasdb.keyvalue.api.Cell;
+import com.palantir.atlasdb.keyvalue.api.Value;
+import com.palantir.util.Pair;
+
+public class RocksKeyEncodingTest {
+    private static final Comparator<byte[]> BYTES = UnsignedBytes.lexicographicalComparator();
+
+    // the order RocksComparator imposes on legacy keys
+    private static final Comparator<Pair<Cell, Long>> CELL_ORDER = new Comparator<Pair<Cell, Long>>() {
+        @Override
+        public int compare(Pair<Cell, Long> a, Pair<Cell, Long> b) {
+            int comp = BYTES.compare(a.lhSide.getRowName(), b.lhSide.getRowName());
+            if (comp != 0) {
+                return comp;
+            }
+            comp = BYTES.compare(a.lhSide.getColumnName(), b.lhSide.getColumnName());
+            if (comp != 0) {
+                return comp;
+            }
+            return Long.compare(b.rhSide, a.rhSide);
+        }
+    };
+
+    @Test
+    public void byteComparableKeysRoundTrip() {
+        Random random = new Random(0);
+        for (int i = 0; i < 1000; i++) {
+            Pair<Cell, Long> cellAndTs = randomCellAndTs(random);
+            byte[] key = RocksKeyEncoding.BYTE_COMPARABLE.getKey(cellAndTs.lhSide, cellAndTs.rhSide);
+            Pair<Cell, Long> parsed = RocksKeyEncoding.BYTE_COMPARABLE.parseCellAndTs(key);
+            assertEquals(cellAndTs.lhSide, parsed.lhSide);
+            assertEquals(cellAndTs.rhSide, parsed.rhSide);
+        }
+    }
+
+    @Test
+    public void byteOrderMatchesCellOrder() {
+        Random random = new Random(1);
+        List<Pair<Cell, Long>> cells = Lists.newArrayList();
+        for (int i = 0; i < 1000; i++) {
+            cells.add(randomCellAndTs(random));
+        }
+        Collections.sort(cells, CELL_ORDER);
+
+        for (int i = 1; i < cells.size(); i++) {
+            Pair<Cell, Long> previous = cells.get(i - 1);
+            Pair<Cell, Long> current = cells.get(i);
+            byte[] previousKey = RocksKeyEncoding.BYTE_COMPARABLE.getKey(previous.lhSide, previous.rhSide);
+            byte[] currentKey = RocksKeyEncoding.BYTE_COMPARABLE.getKey(current.lhSide, current.rhSide);
+            assertEquals(Integer.signum(CELL_ORDER.compare(previous, current)),
+                    Integer.signum(BYTES.compare(previousKey, currentKey)));
+        }
+    }
+
+    @Test
+    public void rowStartKeyPrecedesEveryKeyOfTheRow() {
+        byte[] row = {1, 0, 2};
+        byte[] startKey = RocksKeyEncoding.BYTE_COMPARABLE.getRowStartKey(row, 10L);
+        for (byte[] col : new byte[][] {{0}, {0, 0}, {1}, {(byte) 0xFF}}) {
+            byte[] key = RocksKeyEncoding.BYTE_COMPARABLE.getKey(row, col, Long.MAX_VALUE);
+            assertEquals(-1, Integer.signum(BYTES.compare(startKey, key)));
+        }
+        // rows extending this one come after all of its keys
+        byte[] longerRowKey = RocksKeyEncoding.BYTE_COMPARABLE.getKey(new byte[] {1, 0, 2, 0}, new byte[] {0}, 0L);
+        byte[] lastKey = RocksKeyEncoding.BYTE_COMPARABLE.getKey(row, new byte[] {(byte) 0xFF}, Value.INVALID_VALUE_TIMESTAMP);
+        assertEquals(1, Integer.signum(BYTES.compare(longerRowKey, lastKey)));
+    }
+
+    @Test
+    public void legacyKeysRoundTrip() {
+        Cell cell = Cell.create(new byte[] {1, 0, 2}, new byte[] {0, 3});
+        byte[] key = RocksKeyEncoding.LEGACY.getKey(cell, 42L);
+        Pair<Cell, Long> parsed = RocksKeyEncoding.LEGACY.parseCellAndTs(key);
+        assertArrayEquals(cell.getRowName(), parsed.lhSide.getRowName());
+        assertArrayEquals(cell.getColumnName(), parsed.lhSide.getColumnName());
+        assertEquals(42L, (long) parsed.rhSide);
+    }
+
+    private static Pair<Cell, Long> randomCellAndTs(Random random) {
+        // small alphabets so that shared prefixes and zero bytes are common
+        byte[] row = randomBytes(random, 1 + random.nextInt(4));
+        byte[] col = randomBytes(random, 1 + random.nextInt(4));
+        long ts;
+        switch (random.nextInt(4)) {
+            case 0:
+                ts = Value.INVALID_VALUE_TIMESTAMP;
+                break;
+            case 1:
+                ts = Long.MAX_VALUE - random.nextInt(3);
+                break;
+            default:
+                ts = random.nextInt(5);
+        }
+        return Pair.create(Cell.create(row, col), ts);
+    }
+
+    private static byte[] randomBytes(Random random, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = new byte[] {0, 1, (byte) 0x7F, (byte) 0xFF}[random.nextInt(4)];
+        }
+        return bytes;
+    }
+}
@@ -17,16 +17,21 @@ package com.palantir.atlasdb.keyvalue.rocksdb.impl;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.annotation.Nullable;
+
 import org.rocksdb.ColumnFamilyDescriptor;
 import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.ReadOptions;
 import org.rocksdb.RocksDB;
 import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
 
 import com.google.common.base.Charsets;
-import com.google.common.base.Function;
 import com.google.common.collect.Maps;
 
 public class ColumnFamilyMap {
@@ -34,6 +39,9 @@ public class ColumnFamilyMap {
         private final long index;
         private final ColumnFamilyHandle handle;
         private final AtomicInteger refCount = new AtomicInteger();
+        private final Queue<RocksIterator> idleIterators = new ConcurrentLinkedQueue<RocksIterator>();
+        private final AtomicInteger idleIteratorCount = new AtomicInteger();
+        private volatile boolean dropped = false;
 
         public ColumnFamily(long index, ColumnFamilyHandle handle) {
             this.index = index;
@@ -44,16 +52,59 @@ public class ColumnFamilyMap {
             return handle;
         }
 
+        /**
+         * Returns an idle iterator over this column family, or a new one created with the given
+         * options, which should be tailing so that reused iterators see later writes once they seek.
+         */
+        RocksIterator borrowIterator(RocksDB db, ReadOptions tailingOptions) {
+            RocksIterator iter = idleIterators.poll();
+            if (iter != null) {
+                idleIteratorCount.decrementAndGet();
+                return iter;
+            }
+            return db.newIterator(handle, tailingOptions);
+        }
+
+        void returnIterator(RocksIterator iter, int maxIdleIterators) {
+            if (dropped || idleIteratorCount.incrementAndGet() > maxIdleIterators) {
+                if (!dropped) {
+                    idleIteratorCount.decrementAndGet();
+                }
+                iter.dispose();
+                return;
+            }
+            idleIterators.add(iter);
+            if (dropped) {
+                // raced with the column family being dropped
+                disposeIdleIterators();
+            }
+        }
+
+        void disposeIdleIterators() {
+            dropped = true;
+            RocksIterator iter;
+            while ((iter = idleIterators.poll()) != null) {
+                iter.dispose();
+            }
+        }
+
         @Override
         public void close() {
             refCount.decrementAndGet();
         }
     }
     private final Map<String, ColumnFamily> cfs = Maps.newConcurrentMap();
-    private final Function<String, ColumnFamilyDescriptor> cfFactory;
+    /**
+     * Creates the descriptor of a column family from the metadata of the table it holds.
+     */
+    public interface ColumnFamilyFactory {
+        ColumnFamilyDescriptor create(String columnFamilyName, @Nullable byte[] tableMetadata);
+    }
+
+    private final ColumnFamilyFactory cfFactory;
     private final RocksDB db;
 
-    public ColumnFamilyMap(Function<String, ColumnFamilyDescriptor> cfFactory,
+    public ColumnFamilyMap(ColumnFamilyFactory cfFactory,
                            RocksDB db) {
         this.cfFactory = cfFactory;
         this.db = db;
@@ -64,24 +115,36 @@ public class ColumnFamilyMap {
         for (int i = 0; i < cfDescriptors.size(); i++) {
             String fullTableName = new String(cfDescriptors.get(i).columnFamilyName(), Charsets.UTF_8);
             int nameIndex = fullTableName.lastIndexOf("__");
-            String tableName;
-            long index;
-            if (nameIndex == -1) {
-                tableName = fullTableName;
-                index = 0;
-            } else {
-                tableName = fullTableName.substring(0, nameIndex);
-                index = Long.parseLong(fullTableName.substring(nameIndex + 2));
-            }
+            String tableName = getTableName(fullTableName);
+            long index = nameIndex == -1 ? 0 : Long.parseLong(fullTableName.substring(nameIndex + 2));
             ColumnFamily cf = new ColumnFamily(index, cfHandles.get(i));
             ColumnFamily oldCf = cfs.put(tableName, cf);
             if (oldCf != null && !tableName.equals("default")) {
+                oldCf.disposeIdleIterators();
                 db.dropColumnFamily(oldCf.getHandle());
                 oldCf.getHandle().dispose();
             }
         }
     }
 
+    /**
+     * Returns the name of the table stored in a column family, which is suffixed with its
+     * index once the table has been truncated.
+     */
+    public static String getTableName(String columnFamilyName) {
+        int nameIndex = columnFamilyName.lastIndexOf("__");
+        return nameIndex == -1 ? columnFamilyName : columnFamilyName.substring(0, nameIndex);
+    }
+
+    /**
+     * Disposes the pooled iterators of every column family, which must happen before the database closes.
+     */
+    public void disposeIdleIterators() {
+        for (ColumnFamily cf : cfs.values()) {
+            cf.disposeIdleIterators();
+        }
+    }
+
     public Set<String> getTableNames() {
         return cfs.keySet();
     }
@@ -95,10 +158,10 @@ public class ColumnFamilyMap {
         return cf;
     }
 
-    public synchronized void create(String tableName) throws RocksDBException {
+    public synchronized void create(String tableName, @Nullable byte[] tableMetadata) throws RocksDBException {
         ColumnFamily cf = cfs.get(tableName);
         if (cf == null) {
-            ColumnFamilyDescriptor descriptor = cfFactory.apply(tableName);
+            ColumnFamilyDescriptor descriptor = cfFactory.create(tableName, tableMetadata);
             ColumnFamilyHandle handle = db.createColumnFamily(descriptor);
             cfs.put(tableName, new ColumnFamily(0, handle));
         }
@@ -107,24 +170,27 @@ public class ColumnFamilyMap {
     public synchronized void drop(String tableName) throws RocksDBException {
         ColumnFamily cf = cfs.remove(tableName);
         if (cf != null) {
+            cf.disposeIdleIterators();
             db.dropColumnFamily(cf.handle);
             cf.handle.dispose();
         }
     }
 
-    public synchronized void truncate(String tableName) throws InterruptedException, RocksDBException {
+    public synchronized void truncate(String tableName, @Nullable byte[] tableMetadata)
+            throws InterruptedException, RocksDBException {
         ColumnFamily oldCf = cfs.get(tableName);
         if (oldCf == null) {
             throw new IllegalArgumentException("Table " + tableName + " does not exist.");
         }
         long newIndex = (oldCf.index + 1) % 2;
         String realTableName = String.format("%s__%d", tableName, newIndex);
-        ColumnFamilyDescriptor descriptor = cfFactory.apply(realTableName);
+        ColumnFamilyDescriptor descriptor = cfFactory.create(realTableName, tableMetadata);
         ColumnFamilyHandle handle = db.createColumnFamily(descriptor);
         cfs.put(tableName, new ColumnFamily(newIndex, handle));
         while (oldCf.refCount.get() > 0) {
             Thread.sleep(10);
         }
+        oldCf.disposeIdleIterators();
         db.dropColumnFamily(oldCf.handle);
         oldCf.handle.dispose();
     }
@@ -0,0 +1,57 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.keyvalue.rocksdb.impl;
+
+import org.immutables.value.Value;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.google.common.base.Preconditions;
+
+@JsonDeserialize(as = ImmutableReadOpts.class)
+@JsonSerialize(as = ImmutableReadOpts.class)
+@Value.Immutable
+public abstract class ReadOpts {
+
+    @Value.Default
+    public boolean verifyChecksums() {
+        return true;
+    }
+
+    /**
+     * Whether scans over every version of a range, which sweep and partition migration
+     * run over whole tables, add the blocks they read to the block cache.
+     */
+    @Value.Default
+    public boolean fillCacheOnHistoryScans() {
+        return false;
+    }
+
+    /**
+     * Number of idle tailing iterators kept per table for point reads. Zero creates a new
+     * iterator for every read.
+     */
+    @Value.Default
+    public int pooledIteratorsPerTable() {
+        return 0;
+    }
+
+    @Value.Check
+    protected void check() {
+        Preconditions.checkArgument(pooledIteratorsPerTable() >= 0,
+                "pooledIteratorsPerTable must be non-negative, found %s", pooledIteratorsPerTable());
+    }
+}
@@ -20,7 +20,12 @@ import com.fasterxml.jackson.annotation.JsonValue;
 
 public enum RocksComparatorName {
     V1("atlasdb"),
-    V2("atlasdb-v2");
+    V2("atlasdb-v2"),
+    /**
+     * Keys are written by {@link RocksKeyEncoding#BYTE_COMPARABLE} and ordered by rocksdb's
+     * built-in bytewise comparator.
+     */
+    V3("atlasdb-v3");
 
     private final String comparatorName;
 
@@ -23,24 +23,33 @@ import java.lang.reflect.Method;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
 import java.nio.channels.OverlappingFileLockException;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
 import javax.management.MBeanServer;
 import javax.management.ObjectName;
 
 import org.rocksdb.ColumnFamilyDescriptor;
 import org.rocksdb.ColumnFamilyHandle;
 import org.rocksdb.ColumnFamilyOptions;
+import org.rocksdb.Comparator;
 import org.rocksdb.DBOptions;
 import org.rocksdb.Options;
+import org.rocksdb.ReadOptions;
 import org.rocksdb.RocksDB;
 import org.rocksdb.RocksDBException;
 import org.rocksdb.RocksIterator;
+import org.rocksdb.Snapshot;
 import org.rocksdb.WriteBatch;
 import org.rocksdb.WriteOptions;
 import org.slf4j.Logger;
@@ -48,6 +57,7 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Charsets;
 import com.google.common.base.Function;
+import com.google.common.base.Functions;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
@@ -59,7 +69,10 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Ordering;
 import com.google.common.collect.Sets;
+import com.google.common.primitives.UnsignedBytes;
+import com.google.common.util.concurrent.Futures;
 import com.palantir.atlasdb.AtlasDbConstants;
 import com.palantir.atlasdb.keyvalue.api.BatchColumnRangeSelection;
 import com.palantir.atlasdb.keyvalue.api.Cell;
@@ -75,7 +88,13 @@ import com.palantir.atlasdb.keyvalue.api.TableReference;
 import com.palantir.atlasdb.keyvalue.api.Value;
 import com.palantir.atlasdb.keyvalue.impl.KeyValueServices;
 import com.palantir.atlasdb.keyvalue.rocksdb.impl.ColumnFamilyMap.ColumnFamily;
+import com.palantir.atlasdb.keyvalue.rocksdb.impl.ColumnFamilyMap.ColumnFamilyFactory;
+import com.palantir.atlasdb.table.description.TableMetadata;
+import com.palantir.atlasdb.transaction.impl.TransactionConstants;
+import com.palantir.common.annotation.Output;
 import com.palantir.common.base.ClosableIterator;
+import com.palantir.common.concurrent.NamedThreadFactory;
+import com.palantir.common.concurrent.PTExecutors;
 import com.palantir.util.MutuallyExclusiveSetLock;
 import com.palantir.util.MutuallyExclusiveSetLock.LockState;
 import com.palantir.util.file.TempFileUtils;
@@ -86,13 +105,26 @@ public class RocksDbKeyValueService implements KeyValueService {
     private static final TableReference METADATA_TABLE_NAME = TableReference.createWithEmptyNamespace("_metadata");
     private static final long PUT_UNLESS_EXISTS_TS = 0L;
     private static final String LOCK_FILE_PREFIX = ".pt_kv_lock";
+    // point reads of more cells than this are split between the read threads
+    private static final int PARALLEL_READ_THRESHOLD = 10000;
+    private static final int MAX_READ_THREADS = 4;
     final RocksDB db;
     final ColumnFamilyMap columnFamilies;
+    private final Disposer ownedOptions;
     private final FileLock lock;
     private final RandomAccessFile lockFile;
     private final WriteOpts writeOptions;
+    private final ReadOpts readOpts;
+    private final ReadOptions pointReadOptions;
+    private final ReadOptions scanReadOptions;
+    private final ReadOptions historyScanReadOptions;
+    private final ReadOptions exactReadOptions;
+    final RocksKeyEncoding keyEncoding;
     private final MutuallyExclusiveSetLock<Cell> lockSet = MutuallyExclusiveSetLock.<Cell>create(false);
     private volatile boolean closed = false;
+    private final ExecutorService readExecutor = PTExecutors.newFixedThreadPool(
+            Math.min(MAX_READ_THREADS, Runtime.getRuntime().availableProcessors()),
+            new NamedThreadFactory("rocksdb-read", true));
 
     public static RocksDbKeyValueService create(String dataDir) {
         return create(dataDir,
@@ -107,23 +139,61 @@ public class RocksDbKeyValueService implements KeyValueService {
                                                 Map<String, String> cfOptions,
                                                 WriteOpts writeOpts,
                                                 String comparator) {
-        DBOptions dbOpts = new DBOptions().setCreateIfMissing(true);
+        return create(dataDir, dbOptions, cfOptions, writeOpts, ImmutableReadOpts.builder().build(), comparator);
+    }
+
+    public static RocksDbKeyValueService create(String dataDir,
+                                                Map<String, String> dbOptions,
+                                                Map<String, String> cfOptions,
+                                                WriteOpts writeOpts,
+                                                ReadOpts readOpts,
+                                                String comparator) {
+        // options created here are owned by the key value service, which disposes them once it closes
+        final Disposer ownedOptions = new Disposer();
+        DBOptions dbOpts = ownedOptions.register(new DBOptions().setCreateIfMissing(true));
         setReflectionOpts(dbOpts, dbOptions);
-        ColumnFamilyOptions cfMetadataOpts = new ColumnFamilyOptions();
+        ColumnFamilyOptions cfMetadataOpts = ownedOptions.register(new ColumnFamilyOptions());
         setReflectionOpts(cfMetadataOpts, cfOptions);
-        ColumnFamilyOptions cfCommonOpts;
+        final Comparator keyComparator;
         switch (comparator) {
         case "atlasdb-v2":
-            cfCommonOpts = new ColumnFamilyOptions().setComparator(RocksComparator.INSTANCE);
+            keyComparator = RocksComparator.INSTANCE;
             break;
         case "atlasdb":
-            cfCommonOpts = new ColumnFamilyOptions().setComparator(RocksOldComparator.INSTANCE);
+            keyComparator = RocksOldComparator.INSTANCE;
+            break;
+        case "atlasdb-v3":
+            // rocksdb's built-in bytewise comparator orders the keys
+            keyComparator = null;
             break;
         default:
             throw new IllegalArgumentException("Unknown comparator " + comparator);
         }
-        setReflectionOpts(cfCommonOpts, cfOptions);
-        return create(dataDir, dbOpts, cfMetadataOpts, cfCommonOpts, writeOpts);
+        final Map<String, String> cfOptionsCopy = ImmutableMap.copyOf(cfOptions);
+        Function<TableMetadata, ColumnFamilyOptions> cfCommonOpts = new Function<TableMetadata, ColumnFamilyOptions>() {
+            // tables tuned the same way share their options, so creating and truncating tables allocates no new ones
+            @GuardedBy("this")
+            private final Map<RocksTableTuning.Profile, ColumnFamilyOptions> optsByProfile = Maps.newHashMap();
+
+            @Override
+            public synchronized ColumnFamilyOptions apply(@Nullable TableMetadata tableMetadata) {
+                RocksTableTuning.Profile profile = RocksTableTuning.Profile.of(tableMetadata);
+                ColumnFamilyOptions opts = optsByProfile.get(profile);
+                if (opts == null) {
+                    opts = ownedOptions.register(new ColumnFamilyOptions());
+                    if (keyComparator != null) {
+                        opts.setComparator(keyComparator);
+                    }
+                    RocksTableTuning.tune(opts, profile, ownedOptions);
+                    // options set explicitly in the configuration take precedence over the tuning
+                    setReflectionOpts(opts, cfOptionsCopy);
+                    optsByProfile.put(profile, opts);
+                }
+                return opts;
+            }
+        };
+        return create(dataDir, dbOpts, cfMetadataOpts, cfCommonOpts, ownedOptions, writeOpts, readOpts,
+                RocksKeyEncoding.forComparator(comparator));
     }
 
     private static void setReflectionOpts(Object opts,
@@ -156,13 +226,33 @@ public class RocksDbKeyValueService implements KeyValueService {
         }
     }
 
+    /**
+     * Creates a key value service whose tables all use the given column family options,
+     * without the tuning for each table's metadata.
+     */
     public static RocksDbKeyValueService create(String dataDir,
                                                 DBOptions dbOptions,
                                                 ColumnFamilyOptions cfMetadataOptions,
                                                 ColumnFamilyOptions cfCommonOptions,
                                                 WriteOpts writeOptions) {
+        return create(dataDir, dbOptions, cfMetadataOptions, Functions.constant(cfCommonOptions), new Disposer(),
+                writeOptions, ImmutableReadOpts.builder().build(), RocksKeyEncoding.LEGACY);
+    }
+
+    /**
+     * @param ownedOptions the native options the key value service should dispose once it is closed
+     */
+    static RocksDbKeyValueService create(String dataDir,
+                                         DBOptions dbOptions,
+                                         ColumnFamilyOptions cfMetadataOptions,
+                                         Function<? super TableMetadata, ColumnFamilyOptions> cfCommonOptions,
+                                         Disposer ownedOptions,
+                                         WriteOpts writeOptions,
+                                         ReadOpts readOptions,
+                                         RocksKeyEncoding keyEncoding) {
         try {
-            RocksDbKeyValueService kvs = lockAndCreateDb(new File(dataDir), dbOptions, cfMetadataOptions, cfCommonOptions, writeOptions);
+            RocksDbKeyValueService kvs = lockAndCreateDb(new File(dataDir), dbOptions, cfMetadataOptions,
+                    cfCommonOptions, ownedOptions, writeOptions, readOptions, keyEncoding);
             registerMBean(kvs);
             return kvs;
         } catch (Exception e) {
@@ -185,8 +275,11 @@ public class RocksDbKeyValueService implements KeyValueService {
     private static RocksDbKeyValueService lockAndCreateDb(File dbDir,
                                                           final DBOptions dbOptions,
                                                           final ColumnFamilyOptions cfMetadataOptions,
-                                                          final ColumnFamilyOptions cfCommonOptions,
-                                                          final WriteOpts writeOpts) throws IOException, RocksDBException {
+                                                          final Function<? super TableMetadata, ColumnFamilyOptions> cfCommonOptions,
+                                                          final Disposer ownedOptions,
+                                                          final WriteOpts writeOpts,
+                                                          final ReadOpts readOpts,
+                                                          final RocksKeyEncoding keyEncoding) throws IOException, RocksDBException {
         TempFileUtils.mkdirsWithRetry(dbDir);
         Preconditions.checkArgument(dbDir.exists() && dbDir.isDirectory(), "DB file must be a directory: " + dbDir);
         final RandomAccessFile randomAccessFile =
@@ -213,23 +306,28 @@ public class RocksDbKeyValueService implements KeyValueService {
             }
             List<byte[]> initialCfs = MoreObjects.firstNonNull(
                     RocksDB.listColumnFamilies(new Options(dbOptions, cfMetadataOptions), dbDir.getAbsolutePath()), ImmutableList.<byte[]>of());
+            Map<String, byte[]> tableMetadata = readTableMetadata(dbDir, dbOptions, cfMetadataOptions, initialCfs);
             List<ColumnFamilyDescriptor> cfDescriptors = Lists.newArrayListWithCapacity(initialCfs.size());
             List<ColumnFamilyHandle> cfHandles = Lists.newArrayListWithCapacity(1 + initialCfs.size());
             cfDescriptors.add(new ColumnFamilyDescriptor(RocksDB.DEFAULT_COLUMN_FAMILY));
             for (byte[] cf : initialCfs) {
-                String tableName = new String(cf, Charsets.UTF_8);
-                cfDescriptors.add(getCfDescriptor(tableName, cfMetadataOptions, cfCommonOptions));
+                String cfName = new String(cf, Charsets.UTF_8);
+                cfDescriptors.add(getCfDescriptor(cfName,
+                        tableMetadata.get(ColumnFamilyMap.getTableName(cfName)),
+                        cfMetadataOptions,
+                        cfCommonOptions));
             }
             RocksDB db = RocksDB.open(dbOptions, dbDir.getAbsolutePath(), cfDescriptors, cfHandles);
             Preconditions.checkState(cfDescriptors.size() == cfHandles.size());
-            ColumnFamilyMap columnFamilies = new ColumnFamilyMap(new Function<String, ColumnFamilyDescriptor>() {
+            ColumnFamilyMap columnFamilies = new ColumnFamilyMap(new ColumnFamilyFactory() {
                 @Override
-                public ColumnFamilyDescriptor apply(String tableName) {
-                    return getCfDescriptor(tableName, cfMetadataOptions, cfCommonOptions);
+                public ColumnFamilyDescriptor create(String cfName, @Nullable byte[] metadata) {
+                    return getCfDescriptor(cfName, metadata, cfMetadataOptions, cfCommonOptions);
                 }
             }, db);
             columnFamilies.initialize(cfDescriptors, cfHandles);
-            RocksDbKeyValueService ret = new RocksDbKeyValueService(db, columnFamilies, lock, randomAccessFile, writeOpts);
+            RocksDbKeyValueService ret = new RocksDbKeyValueService(
+                    db, columnFamilies, ownedOptions, lock, randomAccessFile, writeOpts, readOpts, keyEncoding);
             ret.createTable(METADATA_TABLE_NAME, AtlasDbConstants.EMPTY_TABLE_METADATA);
             success = true;
             return ret;
@@ -242,26 +340,89 @@ public class RocksDbKeyValueService implements KeyValueService {
         }
     }
 
-    private static ColumnFamilyDescriptor getCfDescriptor(String tableName,
+    /**
+     * Returns whether the keys of the table's column family are encoded cells, rather than
+     * table names as in the metadata table.
+     */
+    static boolean hasCellKeys(String tableName) {
+        return !tableName.equals(METADATA_TABLE_NAME.getQualifiedName())
+                && !tableName.equals(new String(RocksDB.DEFAULT_COLUMN_FAMILY, Charsets.UTF_8));
+    }
+
+    /**
+     * Reads the metadata of every table from a read-only instance of the database, so that
+     * their column families can be opened with the options tuned for them.
+     */
+    private static Map<String, byte[]> readTableMetadata(File dbDir,
+                                                         DBOptions dbOptions,
+                                                         ColumnFamilyOptions cfMetadataOptions,
+                                                         List<byte[]> initialCfs) throws RocksDBException {
+        byte[] metadataCfName = METADATA_TABLE_NAME.getQualifiedName().getBytes(Charsets.UTF_8);
+        boolean hasMetadataTable = false;
+        for (byte[] cf : initialCfs) {
+            hasMetadataTable |= Arrays.equals(cf, metadataCfName);
+        }
+        if (!hasMetadataTable) {
+            return ImmutableMap.of();
+        }
+
+        List<ColumnFamilyDescriptor> cfDescriptors = ImmutableList.of(
+                new ColumnFamilyDescriptor(RocksDB.DEFAULT_COLUMN_FAMILY),
+                new ColumnFamilyDescriptor(metadataCfName, cfMetadataOptions));
+        List<ColumnFamilyHandle> cfHandles = Lists.newArrayListWithCapacity(cfDescriptors.size());
+        RocksDB db = RocksDB.openReadOnly(dbOptions, dbDir.getAbsolutePath(), cfDescriptors, cfHandles);
+        try (Disposer d = new Disposer()) {
+            for (ColumnFamilyHandle handle : cfHandles) {
+                d.register(handle);
+            }
+            Map<String, byte[]> tableMetadata = Maps.newHashMap();
+            RocksIterator iter = d.register(db.newIterator(cfHandles.get(1)));
+            for (iter.seekToFirst(); iter.isValid(); iter.next()) {
+                tableMetadata.put(new String(iter.key(), Charsets.UTF_8), iter.value());
+            }
+            return tableMetadata;
+        } finally {
+            db.close();
+        }
+    }
+
+    private static ColumnFamilyDescriptor getCfDescriptor(String cfName,
+                                                          @Nullable byte[] tableMetadata,
                                                           ColumnFamilyOptions cfMetadataOptions,
-                                                          ColumnFamilyOptions cfCommonOptions) {
-        if (tableName.equals(METADATA_TABLE_NAME.getQualifiedName())) {
-            return new ColumnFamilyDescriptor(tableName.getBytes(Charsets.UTF_8), cfMetadataOptions);
+                                                          Function<? super TableMetadata, ColumnFamilyOptions> cfCommonOptions) {
+        if (cfName.equals(METADATA_TABLE_NAME.getQualifiedName())) {
+            return new ColumnFamilyDescriptor(cfName.getBytes(Charsets.UTF_8), cfMetadataOptions);
         } else {
-            return new ColumnFamilyDescriptor(tableName.getBytes(Charsets.UTF_8), cfCommonOptions);
+            return new ColumnFamilyDescriptor(cfName.getBytes(Charsets.UTF_8),
+                    cfCommonOptions.apply(RocksTableTuning.hydrate(tableMetadata)));
         }
     }
 
     private RocksDbKeyValueService(RocksDB db,
                                    ColumnFamilyMap columnFamilies,
+                                   Disposer ownedOptions,
                                    FileLock lock,
                                    RandomAccessFile file,
-                                   WriteOpts writeOptions) {
+                                   WriteOpts writeOptions,
+                                   ReadOpts readOpts,
+                                   RocksKeyEncoding keyEncoding) {
         this.db = db;
         this.columnFamilies = columnFamilies;
+        this.ownedOptions = ownedOptions;
         this.lock = lock;
         this.lockFile = file;
         this.writeOptions = writeOptions;
+        this.readOpts = readOpts;
+        // pooled iterators are reused across reads, so they must tail the database to see later writes
+        this.pointReadOptions = newReadOptions(true).setTailing(readOpts.pooledIteratorsPerTable() > 0);
+        this.scanReadOptions = newReadOptions(true);
+        this.historyScanReadOptions = newReadOptions(readOpts.fillCacheOnHistoryScans());
+        this.exactReadOptions = newReadOptions(true);
+        this.keyEncoding = keyEncoding;
+    }
+
+    ReadOptions newReadOptions(boolean fillCache) {
+        return new ReadOptions().setVerifyChecksums(readOpts.verifyChecksums()).setFillCache(fillCache);
     }
 
     @Override
@@ -273,7 +434,14 @@ public class RocksDbKeyValueService implements KeyValueService {
     public void close() {
         if (!closed) {
             try {
+                readExecutor.shutdown();
+                columnFamilies.disposeIdleIterators();
                 getDb().close();
+                pointReadOptions.dispose();
+                scanReadOptions.dispose();
+                historyScanReadOptions.dispose();
+                exactReadOptions.dispose();
+                ownedOptions.close();
                 lock.release();
                 lockFile.close();
             } catch (IOException e) {
@@ -299,12 +467,15 @@ public class RocksDbKeyValueService implements KeyValueService {
                                     Iterable<byte[]> rows,
                                     ColumnSelection columnSelection,
                                     long timestamp) {
-        try (Disposer d = new Disposer();
-                ColumnFamily table = columnFamilies.get(tableRef.getQualifiedName())) {
+        try (ColumnFamily table = columnFamilies.get(tableRef.getQualifiedName())) {
             Map<Cell, Value> results = Maps.newHashMap();
-            RocksIterator iter = d.register(getDb().newIterator(table.getHandle()));
-            for (byte[] row : rows) {
-                RocksDbKeyValueServices.getRow(iter, row, columnSelection, timestamp, results);
+            RocksIterator iter = borrowPointReadIterator(table);
+            try {
+                for (byte[] row : Ordering.from(UnsignedBytes.lexicographicalComparator()).sortedCopy(rows)) {
+                    RocksDbKeyValueServices.getRow(keyEncoding, iter, row, columnSelection, timestamp, results);
+                }
+            } finally {
+                returnPointReadIterator(table, iter);
             }
             return results;
         }
@@ -313,37 +484,139 @@ public class RocksDbKeyValueService implements KeyValueService {
     @Override
     public Map<Cell, Value> get(TableReference tableRef,
                                 Map<Cell, Long> timestampByCell) {
-        try (Disposer d = new Disposer();
-                ColumnFamily table = columnFamilies.get(tableRef.getQualifiedName())) {
-            Map<Cell, Value> results = Maps.newHashMap();
-            RocksIterator iter = d.register(getDb().newIterator(table.getHandle()));
-            for (Entry<Cell, Long> entry : timestampByCell.entrySet()) {
-                Value value = RocksDbKeyValueServices.getCell(iter, entry.getKey(), entry.getValue());
-                if (value != null) {
-                    results.put(entry.getKey(), value);
-                }
-            }
-            return results;
+        if (tableRef.equals(TransactionConstants.TRANSACTION_TABLE)) {
+            return getPutUnlessExistsCells(tableRef, timestampByCell);
         }
+        return readSortedCells(tableRef, timestampByCell, new SortedCellReader<Value>() {
+            @Override
+            public void read(RocksIterator iter, List<Entry<Cell, Long>> cells, Map<Cell, Value> results) {
+                RocksDbKeyValueServices.getCells(keyEncoding, iter, cells, results);
+            }
+        });
     }
 
     @Override
     public Map<Cell, Long> getLatestTimestamps(TableReference tableRef,
                                                Map<Cell, Long> timestampByCell) {
-        try (Disposer d = new Disposer();
-                ColumnFamily table = columnFamilies.get(tableRef.getQualifiedName())) {
-            Map<Cell, Long> results = Maps.newHashMap();
-            RocksIterator iter = d.register(getDb().newIterator(table.getHandle()));
-            for (Entry<Cell, Long> entry : timestampByCell.entrySet()) {
-                Long ts = RocksDbKeyValueServices.getTimestamp(iter, entry.getKey(), entry.getValue());
-                if (ts != null) {
-                    results.put(entry.getKey(), ts);
+        return readSortedCells(tableRef, timestampByCell, new SortedCellReader<Long>() {
+            @Override
+            public void read(RocksIterator iter, List<Entry<Cell, Long>> cells, Map<Cell, Long> results) {
+                RocksDbKeyValueServices.getLatestTimestamps(keyEncoding, iter, cells, results);
+            }
+        });
+    }
+
+    /**
+     * Reads cells of a table that is only written at {@link #PUT_UNLESS_EXISTS_TS}, like the
+     * transaction table, so that every cell has at most one key. Unlike seeks, looking those keys
+     * up exactly lets the table's bloom filters skip files that cannot hold them.
+     */
+    private Map<Cell, Value> getPutUnlessExistsCells(TableReference tableRef, Map<Cell, Long> timestampByCell) {
+        List<Cell> cells = Lists.newArrayListWithCapacity(timestampByCell.size());
+        List<byte[]> keys = Lists.newArrayListWithCapacity(timestampByCell.size());
+        for (Entry<Cell, Long> entry : timestampByCell.entrySet()) {
+            if (entry.getValue() > PUT_UNLESS_EXISTS_TS) {
+                cells.add(entry.getKey());
+                keys.add(keyEncoding.getKey(entry.getKey(), PUT_UNLESS_EXISTS_TS));
+            }
+        }
+        Map<Cell, Value> results = Maps.newHashMapWithExpectedSize(cells.size());
+        if (keys.isEmpty()) {
+            // rocksdb's multiGet asserts that it is given at least one key
+            return results;
+        }
+        try (ColumnFamily table = columnFamilies.get(tableRef.getQualifiedName())) {
+            Map<byte[], byte[]> values = getDb().multiGet(
+                    exactReadOptions, Collections.nCopies(keys.size(), table.getHandle()), keys);
+            for (int i = 0; i < cells.size(); i++) {
+                byte[] contents = values.get(keys.get(i));
+                if (contents != null) {
+                    results.put(cells.get(i), Value.create(contents, PUT_UNLESS_EXISTS_TS));
+                }
+            }
+            return results;
+        } catch (RocksDBException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    private interface SortedCellReader<T> {
+        void read(RocksIterator iter, List<Entry<Cell, Long>> cells, @Output Map<Cell, T> results);
+    }
+
+    /**
+     * Reads the cells in key order, so that neighbouring cells can share iterator positioning.
+     * Large requests are split into contiguous runs of keys that are read concurrently
+     * from a shared snapshot, so that every run sees the same state of the table.
+     */
+    private <T> Map<Cell, T> readSortedCells(TableReference tableRef,
+                                             Map<Cell, Long> timestampByCell,
+                                             final SortedCellReader<T> reader) {
+        List<Entry<Cell, Long>> sorted = RocksDbKeyValueServices.sortByKey(timestampByCell);
+        try (final ColumnFamily table = columnFamilies.get(tableRef.getQualifiedName())) {
+            int threads = Math.min(MAX_READ_THREADS, sorted.size() / PARALLEL_READ_THRESHOLD);
+            if (threads <= 1) {
+                Map<Cell, T> results = Maps.newHashMapWithExpectedSize(sorted.size());
+                RocksIterator iter = borrowPointReadIterator(table);
+                try {
+                    reader.read(iter, sorted, results);
+                } finally {
+                    returnPointReadIterator(table, iter);
+                }
+                return results;
+            }
+            List<List<Entry<Cell, Long>>> runs = Lists.partition(sorted, (sorted.size() + threads - 1) / threads);
+
+            Snapshot snapshot = getDb().getSnapshot();
+            try (Disposer d = new Disposer()) {
+                final ReadOptions options = d.register(newReadOptions(true).setSnapshot(snapshot));
+                List<Future<Map<Cell, T>>> futures = Lists.newArrayListWithCapacity(runs.size() - 1);
+                for (final List<Entry<Cell, Long>> run : runs.subList(1, runs.size())) {
+                    futures.add(readExecutor.submit(new Callable<Map<Cell, T>>() {
+                        @Override
+                        public Map<Cell, T> call() {
+                            return readSortedRun(table, options, run, reader);
+                        }
+                    }));
+                }
+                Map<Cell, T> results = readSortedRun(table, options, runs.get(0), reader);
+                for (Future<Map<Cell, T>> future : futures) {
+                    results.putAll(Futures.getUnchecked(future));
                 }
+                return results;
+            } finally {
+                getDb().releaseSnapshot(snapshot);
             }
+        }
+    }
+
+    private <T> Map<Cell, T> readSortedRun(ColumnFamily table,
+                                           ReadOptions options,
+                                           List<Entry<Cell, Long>> run,
+                                           SortedCellReader<T> reader) {
+        try (Disposer d = new Disposer()) {
+            Map<Cell, T> results = Maps.newHashMapWithExpectedSize(run.size());
+            RocksIterator iter = d.register(getDb().newIterator(table.getHandle(), options));
+            reader.read(iter, run, results);
             return results;
         }
     }
 
+    private RocksIterator borrowPointReadIterator(ColumnFamily table) {
+        if (readOpts.pooledIteratorsPerTable() > 0) {
+            return table.borrowIterator(getDb(), pointReadOptions);
+        }
+        return getDb().newIterator(table.getHandle(), pointReadOptions);
+    }
+
+    private void returnPointReadIterator(ColumnFamily table, RocksIterator iter) {
+        if (readOpts.pooledIteratorsPerTable() > 0) {
+            table.returnIterator(iter, readOpts.pooledIteratorsPerTable());
+        } else {
+            iter.dispose();
+        }
+    }
+
     @Override
     public void put(TableReference tableRef, Map<Cell, byte[]> values, long timestamp) {
         try (Disposer d = new Disposer();
@@ -351,7 +624,7 @@ public class RocksDbKeyValueService implements KeyValueService {
             WriteOptions options = d.register(new WriteOptions().setSync(writeOptions.fsyncPut()));
             WriteBatch batch = d.register(new WriteBatch());
             for (Entry<Cell, byte[]> entry : values.entrySet()) {
-                byte[] key = RocksDbKeyValueServices.getKey(entry.getKey(), timestamp);
+                byte[] key = keyEncoding.getKey(entry.getKey(), timestamp);
                 batch.put(table.getHandle(), key, entry.getValue());
             }
             getDb().write(options, batch);
@@ -373,7 +646,7 @@ public class RocksDbKeyValueService implements KeyValueService {
                 for (Entry<TableReference, ? extends Map<Cell, byte[]>> entry : valuesByTable.entrySet()) {
                     ColumnFamilyHandle table = cfs.get(entry.getKey().getQualifiedName()).getHandle();
                     for (Entry<Cell, byte[]> subEntry : entry.getValue().entrySet()) {
-                        byte[] key = RocksDbKeyValueServices.getKey(subEntry.getKey(), timestamp);
+                        byte[] key = keyEncoding.getKey(subEntry.getKey(), timestamp);
                         batch.put(table, key, subEntry.getValue());
                     }
                 }
@@ -396,7 +669,7 @@ public class RocksDbKeyValueService implements KeyValueService {
             WriteBatch batch = d.register(new WriteBatch());
             for (Entry<Cell, Value> entry : cellValues.entries()) {
                 Value value = entry.getValue();
-                byte[] key = RocksDbKeyValueServices.getKey(entry.getKey(), value.getTimestamp());
+                byte[] key = keyEncoding.getKey(entry.getKey(), value.getTimestamp());
                 batch.put(table.getHandle(), key, value.getContents());
             }
             getDb().write(options, batch);
@@ -408,19 +681,29 @@ public class RocksDbKeyValueService implements KeyValueService {
     @Override
     public void putUnlessExists(TableReference tableRef, Map<Cell, byte[]> values)
             throws KeyAlreadyExistsException {
+        if (values.isEmpty()) {
+            // rocksdb's multiGet asserts that it is given at least one key
+            return;
+        }
         LockState<Cell> locks = lockSet.lockOnObjects(values.keySet());
         try (Disposer d = new Disposer();
                 ColumnFamily table = columnFamilies.get(tableRef.getQualifiedName())) {
             Set<Cell> alreadyExists = Sets.newHashSetWithExpectedSize(0);
             WriteOptions options = d.register(new WriteOptions().setSync(writeOptions.fsyncCommit()));
             WriteBatch batch = d.register(new WriteBatch());
-            RocksIterator iter = d.register(getDb().newIterator(table.getHandle()));
-            for (Entry<Cell, byte[]> entry : values.entrySet()) {
-                byte[] key = RocksDbKeyValueServices.getKey(entry.getKey(), PUT_UNLESS_EXISTS_TS);
-                if (RocksDbKeyValueServices.keyExists(iter, key)) {
-                    alreadyExists.add(entry.getKey());
+            List<Cell> cells = Lists.newArrayList(values.keySet());
+            List<byte[]> keys = Lists.newArrayListWithCapacity(cells.size());
+            for (Cell cell : cells) {
+                keys.add(keyEncoding.getKey(cell, PUT_UNLESS_EXISTS_TS));
+            }
+            // these are exact keys, so rocksdb can look them all up in one call
+            Map<byte[], byte[]> existing = getDb().multiGet(
+                    Collections.nCopies(keys.size(), table.getHandle()), keys);
+            for (int i = 0; i < cells.size(); i++) {
+                if (existing.containsKey(keys.get(i))) {
+                    alreadyExists.add(cells.get(i));
                 } else {
-                    batch.put(table.getHandle(), key, entry.getValue());
+                    batch.put(table.getHandle(), keys.get(i), values.get(cells.get(i)));
                 }
             }
             getDb().write(options, batch);
@@ -441,7 +724,7 @@ public class RocksDbKeyValueService implements KeyValueService {
             WriteOptions options = d.register(new WriteOptions().setSync(writeOptions.fsyncPut()));
             WriteBatch batch = d.register(new WriteBatch());
             for (Entry<Cell, Long> entry : keys.entries()) {
-                byte[] key = RocksDbKeyValueServices.getKey(entry.getKey(), entry.getValue());
+                byte[] key = keyEncoding.getKey(entry.getKey(), entry.getValue());
                 batch.remove(table.getHandle(), key);
             }
             getDb().write(options, batch);
@@ -453,7 +736,7 @@ public class RocksDbKeyValueService implements KeyValueService {
     @Override
     public void truncateTable(TableReference tableRef) {
         try {
-            columnFamilies.truncate(tableRef.getQualifiedName());
+            columnFamilies.truncate(tableRef.getQualifiedName(), getMetadataForTable(tableRef));
         } catch (RocksDBException | InterruptedException e) {
             throw Throwables.propagate(e);
         }
@@ -471,8 +754,8 @@ public class RocksDbKeyValueService implements KeyValueService {
                                                        RangeRequest rangeRequest,
                                                        long timestamp) {
         ColumnFamily table = columnFamilies.get(tableRef.getQualifiedName());
-        RocksIterator iter = getDb().newIterator(table.getHandle());
-        return new ValueRangeIterator(table, iter, rangeRequest, timestamp);
+        RocksIterator iter = getDb().newIterator(table.getHandle(), scanReadOptions);
+        return new ValueRangeIterator(table, keyEncoding, iter, rangeRequest, timestamp);
     }
 
     @Override
@@ -480,8 +763,8 @@ public class RocksDbKeyValueService implements KeyValueService {
                                                                        RangeRequest rangeRequest,
                                                                        long timestamp) {
         ColumnFamily table = columnFamilies.get(tableRef.getQualifiedName());
-        RocksIterator iter = getDb().newIterator(table.getHandle());
-        return new HistoryRangeIterator(table, iter, rangeRequest, timestamp);
+        RocksIterator iter = getDb().newIterator(table.getHandle(), historyScanReadOptions);
+        return new HistoryRangeIterator(table, keyEncoding, iter, rangeRequest, timestamp);
     }
 
     @Override
@@ -489,8 +772,8 @@ public class RocksDbKeyValueService implements KeyValueService {
                                                                        RangeRequest rangeRequest,
                                                                        long timestamp) {
         ColumnFamily table = columnFamilies.get(tableRef.getQualifiedName());
-        RocksIterator iter = getDb().newIterator(table.getHandle());
-        return new TimestampRangeIterator(table, iter, rangeRequest, timestamp);
+        RocksIterator iter = getDb().newIterator(table.getHandle(), historyScanReadOptions);
+        return new TimestampRangeIterator(table, keyEncoding, iter, rangeRequest, timestamp);
     }
 
     @Override
@@ -527,9 +810,9 @@ public class RocksDbKeyValueService implements KeyValueService {
     @Override
     public void createTables(Map<TableReference, byte[]> tableRefToTableMetadata)
             throws InsufficientConsistencyException {
-        for (TableReference tableRef : tableRefToTableMetadata.keySet()) {
+        for (Entry<TableReference, byte[]> entry : tableRefToTableMetadata.entrySet()) {
             try {
-                columnFamilies.create(tableRef.getQualifiedName());
+                columnFamilies.create(entry.getKey().getQualifiedName(), entry.getValue());
             } catch (RocksDBException e) {
                 Throwables.propagate(e);
             }
@@ -619,7 +902,7 @@ public class RocksDbKeyValueService implements KeyValueService {
                 WriteOptions options = d.register(new WriteOptions().setSync(true));
                 WriteBatch batch = d.register(new WriteBatch());
                 for (Cell cell : cells) {
-                    byte[] key = RocksDbKeyValueServices.getKey(cell, Value.INVALID_VALUE_TIMESTAMP);
+                    byte[] key = keyEncoding.getKey(cell, Value.INVALID_VALUE_TIMESTAMP);
                     batch.put(table.getHandle(), key, val);
                 }
                 getDb().write(options, batch);
@@ -635,13 +918,13 @@ public class RocksDbKeyValueService implements KeyValueService {
                                                  long timestamp) {
         try (ColumnFamily table = columnFamilies.get(tableRef.getQualifiedName())) {
             Multimap<Cell, Long> results = ArrayListMultimap.create();
-            RocksIterator iter = getDb().newIterator(table.getHandle());
+            RocksIterator iter = borrowPointReadIterator(table);
             try {
-                for (Cell cell : cells) {
-                    RocksDbKeyValueServices.getTimestamps(iter, cell, timestamp, results);
+                for (Cell cell : Ordering.natural().sortedCopy(cells)) {
+                    RocksDbKeyValueServices.getTimestamps(keyEncoding, iter, cell, timestamp, results);
                 }
             } finally {
-                iter.dispose();
+                returnPointReadIterator(table, iter);
             }
             return results;
         }
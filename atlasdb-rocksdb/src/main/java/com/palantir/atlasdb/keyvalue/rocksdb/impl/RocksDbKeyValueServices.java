@@ -15,22 +15,23 @@
  */
 package com.palantir.atlasdb.keyvalue.rocksdb.impl;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.annotation.Nullable;
 
-import org.apache.commons.lang.ArrayUtils;
 import org.rocksdb.RocksIterator;
 
-import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
-import com.google.common.primitives.Longs;
 import com.palantir.atlasdb.encoding.PtBytes;
 import com.palantir.atlasdb.keyvalue.api.Cell;
 import com.palantir.atlasdb.keyvalue.api.ColumnSelection;
 import com.palantir.atlasdb.keyvalue.api.Value;
-import com.palantir.atlasdb.ptobject.EncodingUtils;
 import com.palantir.common.annotation.Output;
 import com.palantir.util.Pair;
 
@@ -41,20 +42,112 @@ public class RocksDbKeyValueServices {
     }
 
 
-    static boolean keyExists(RocksIterator iter, byte[] key) {
-        iter.seek(key);
-        return iter.isValid() && Arrays.equals(key, iter.key());
+    private static final Comparator<Entry<Cell, Long>> CELL_ORDER = new Comparator<Entry<Cell, Long>>() {
+        @Override
+        public int compare(Entry<Cell, Long> a, Entry<Cell, Long> b) {
+            return a.getKey().compareTo(b.getKey());
+        }
+    };
+
+    /**
+     * Returns the requests in the order their keys are stored, so that reading them in turn
+     * walks each column family forwards.
+     */
+    static List<Entry<Cell, Long>> sortByKey(Map<Cell, Long> timestampByCell) {
+        List<Entry<Cell, Long>> sorted = Lists.newArrayList(timestampByCell.entrySet());
+        Collections.sort(sorted, CELL_ORDER);
+        return sorted;
+    }
+
+    static void getCells(RocksKeyEncoding encoding,
+                         RocksIterator iter,
+                         List<Entry<Cell, Long>> sortedTimestampByCell,
+                         @Output Map<Cell, Value> results) {
+        SortedSeeker seeker = new SortedSeeker(encoding, iter);
+        for (Entry<Cell, Long> entry : sortedTimestampByCell) {
+            Pair<Cell, Long> cellAndTs = seeker.seek(entry.getKey(), entry.getValue() - 1);
+            if (cellAndTs != null && cellAndTs.lhSide.equals(entry.getKey())) {
+                results.put(entry.getKey(), Value.create(iter.value(), cellAndTs.rhSide));
+            }
+        }
+    }
+
+    static void getLatestTimestamps(RocksKeyEncoding encoding,
+                                    RocksIterator iter,
+                                    List<Entry<Cell, Long>> sortedTimestampByCell,
+                                    @Output Map<Cell, Long> results) {
+        SortedSeeker seeker = new SortedSeeker(encoding, iter);
+        for (Entry<Cell, Long> entry : sortedTimestampByCell) {
+            Pair<Cell, Long> cellAndTs = seeker.seek(entry.getKey(), entry.getValue() - 1);
+            if (cellAndTs != null && cellAndTs.lhSide.equals(entry.getKey())) {
+                results.put(entry.getKey(), cellAndTs.rhSide);
+            }
+        }
     }
 
-    static void getRow(RocksIterator iter,
+    /**
+     * Positions an iterator at the first key at or after each of a sequence of ascending
+     * (cell, timestamp) targets. When the iterator is already there, or just short of it,
+     * this avoids a fresh seek through every level of the column family.
+     */
+    private static final class SortedSeeker {
+        private static final int MAX_NEXTS_BEFORE_SEEK = 4;
+
+        private final RocksKeyEncoding encoding;
+        private final RocksIterator iter;
+        private Pair<Cell, Long> current = null;
+        private boolean exhausted = false;
+
+        SortedSeeker(RocksKeyEncoding encoding, RocksIterator iter) {
+            this.encoding = encoding;
+            this.iter = iter;
+        }
+
+        @Nullable
+        Pair<Cell, Long> seek(Cell cell, long timestamp) {
+            if (exhausted) {
+                // every later target is past the end as well
+                return null;
+            }
+            for (int nexts = 0; current != null; nexts++) {
+                if (compare(current, cell, timestamp) >= 0) {
+                    return current;
+                }
+                if (nexts == MAX_NEXTS_BEFORE_SEEK) {
+                    break;
+                }
+                iter.next();
+                current = iter.isValid() ? encoding.parseCellAndTs(iter.key()) : null;
+                exhausted = current == null;
+            }
+            if (!exhausted) {
+                iter.seek(encoding.getKey(cell, timestamp));
+                current = iter.isValid() ? encoding.parseCellAndTs(iter.key()) : null;
+                exhausted = current == null;
+            }
+            return current;
+        }
+
+        // keys are ordered by cell and then by descending timestamp
+        private static int compare(Pair<Cell, Long> cellAndTs, Cell cell, long timestamp) {
+            int cmp = cellAndTs.lhSide.compareTo(cell);
+            if (cmp != 0) {
+                return cmp;
+            }
+            return Long.compare(timestamp, cellAndTs.rhSide);
+        }
+    }
+
+    static void getRow(RocksKeyEncoding encoding,
+                       RocksIterator iter,
                        byte[] row,
                        ColumnSelection columnSelection,
                        long timestamp,
                        @Output Map<Cell, Value> results) {
-        iter.seek(getKey(row, timestamp - 1));
+        iter.seek(encoding.getRowStartKey(row, timestamp - 1));
         byte[] col = null;
         for (; iter.isValid(); iter.next()) {
-            Pair<Cell, Long> cellAndTs = parseCellAndTs(iter.key());
+            Pair<Cell, Long> cellAndTs = encoding.parseCellAndTs(iter.key());
             if (!Arrays.equals(row, cellAndTs.lhSide.getRowName())) {
                 return;
             }
@@ -68,39 +161,14 @@ public class RocksDbKeyValueServices {
         }
     }
 
-    static Value getCell(RocksIterator iter,
-                         Cell cell,
-                         long timestamp) {
-        iter.seek(getKey(cell, timestamp - 1));
-        if (iter.isValid()) {
-            Pair<Cell, Long> cellAndTs = parseCellAndTs(iter.key());
-            if (cellAndTs.lhSide.equals(cell)) {
-                return Value.create(iter.value(), cellAndTs.rhSide);
-            }
-        }
-        return null;
-    }
-
-    static Long getTimestamp(RocksIterator iter,
-                             Cell cell,
-                             long timestamp) {
-        iter.seek(getKey(cell, timestamp - 1));
-        if (iter.isValid()) {
-            Pair<Cell, Long> cellAndTs = parseCellAndTs(iter.key());
-            if (cellAndTs.lhSide.equals(cell)) {
-                return cellAndTs.rhSide;
-            }
-        }
-        return null;
-    }
-
-    static void getTimestamps(RocksIterator iter,
+    static void getTimestamps(RocksKeyEncoding encoding,
+                              RocksIterator iter,
                               Cell cell,
                               long timestamp,
                               @Output Multimap<Cell, Long> results) {
-        iter.seek(getKey(cell, timestamp - 1));
+        iter.seek(encoding.getKey(cell, timestamp - 1));
         for (; iter.isValid(); iter.next()) {
-            Pair<Cell, Long> cellAndTs = parseCellAndTs(iter.key());
+            Pair<Cell, Long> cellAndTs = encoding.parseCellAndTs(iter.key());
             if (!cell.equals(cellAndTs.lhSide)) {
                 return;
             }
@@ -108,55 +176,6 @@ public class RocksDbKeyValueServices {
         }
     }
 
-    static byte[] getKey(byte[] row,
-                         long timeStamp) {
-        return getKey(row, new byte[1], timeStamp);
-    }
-
-    static byte[] getKey(Cell cell,
-                         long timeStamp) {
-        return getKey(cell.getRowName(), cell.getColumnName(), timeStamp);
-    }
-
-    static byte[] getKey(byte[] row,
-                         byte[] col,
-                         long timeStamp) {
-        Preconditions.checkArgument(EncodingUtils.sizeOfVarLong(row.length) <= 2);
-        byte[] rowSize = EncodingUtils.encodeVarLong(row.length);
-        ArrayUtils.reverse(rowSize);
-
-        byte[] key = new byte[row.length + col.length + 8 + rowSize.length];
-        ByteBuffer.wrap(key).order(ByteOrder.BIG_ENDIAN)
-                .put(row)
-                .put(col)
-                .putLong(timeStamp)
-                .put(rowSize);
-        return key;
-    }
-
-    static Pair<Cell, Long> parseCellAndTs(byte[] key) {
-        byte[] rowSizeBytes = new byte[2];
-        rowSizeBytes[0] = key[key.length - 1];
-        rowSizeBytes[1] = key[key.length - 2];
-
-        int rowSize = (int) EncodingUtils.decodeVarLong(rowSizeBytes);
-        int colEnd = key.length - 8 - EncodingUtils.sizeOfVarLong(rowSize);
-
-        byte[] rowName = Arrays.copyOf(key, rowSize);
-        byte[] colName = Arrays.copyOfRange(key, rowSize, colEnd);
-        long ts = Longs.fromBytes(
-                key[colEnd+0],
-                key[colEnd+1],
-                key[colEnd+2],
-                key[colEnd+3],
-                key[colEnd+4],
-                key[colEnd+5],
-                key[colEnd+6],
-                key[colEnd+7]);
-
-        return Pair.create(Cell.create(rowName, colName), ts);
-    }
-
     static boolean isInRange(byte[] row, byte[] endRow) {
         return endRow.length == 0 || PtBytes.compareTo(row, endRow) < 0;
     }
@@ -18,20 +18,24 @@ package com.palantir.atlasdb.keyvalue.rocksdb.impl;
 import java.io.File;
 
 import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.ReadOptions;
 import org.rocksdb.RocksIterator;
 import org.rocksdb.WriteOptions;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.guava.GuavaModule;
 import com.google.common.base.Optional;
 import com.palantir.atlasdb.AtlasDbConstants;
 import com.palantir.atlasdb.config.LeaderConfig;
+import com.palantir.atlasdb.keyvalue.api.Cell;
 import com.palantir.atlasdb.keyvalue.api.TableReference;
 import com.palantir.atlasdb.keyvalue.rocksdb.impl.ColumnFamilyMap.ColumnFamily;
 import com.palantir.atlasdb.rocksdb.RocksDbAtlasDbFactory;
 import com.palantir.atlasdb.rocksdb.RocksDbKeyValueServiceConfig;
+import com.palantir.util.Pair;
 
 public class RocksDbUpgrader {
-    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ObjectMapper MAPPER = new ObjectMapper().registerModule(new GuavaModule());
 
     public static void main(String[] args) throws Exception {
         if (args.length != 2) {
@@ -65,12 +69,20 @@ public class RocksDbUpgrader {
             ColumnFamily oldCf = oldKvs.columnFamilies.get(table);
             ColumnFamily newCf = newKvs.columnFamilies.get(table);
             ColumnFamilyHandle newHandle = newCf.getHandle();
+            boolean reencodeKeys = oldKvs.keyEncoding != newKvs.keyEncoding
+                    && RocksDbKeyValueService.hasCellKeys(table);
             WriteOptions opts = new WriteOptions().setDisableWAL(true).setSync(false);
-            RocksIterator iter = oldKvs.db.newIterator(oldCf.getHandle());
+            // a one-off scan of the whole table would only evict the blocks other readers need
+            ReadOptions readOpts = oldKvs.newReadOptions(false);
+            RocksIterator iter = oldKvs.db.newIterator(oldCf.getHandle(), readOpts);
             iter.seekToFirst();
             long count = 0;
             while (iter.isValid()) {
                 byte[] key = iter.key();
+                if (reencodeKeys) {
+                    Pair<Cell, Long> cellAndTs = oldKvs.keyEncoding.parseCellAndTs(key);
+                    key = newKvs.keyEncoding.getKey(cellAndTs.lhSide, cellAndTs.rhSide);
+                }
                 byte[] value = iter.value();
                 newKvs.db.put(newHandle, opts, key, value);
                 iter.next();
@@ -78,6 +90,8 @@ public class RocksDbUpgrader {
                     System.out.println("Migrated " + count + " rows...");
                 }
             }
+            iter.dispose();
+            readOpts.dispose();
             System.out.println("Finished migrating " + count + " rows from " + table + ".");
         }
         System.out.println("Flushing all writes...");
@@ -106,5 +120,10 @@ public class RocksDbUpgrader {
         System.out.println("  new-settings.json");
         System.out.println("    Configuration for your new rocksdb database. The");
         System.out.println("    format is the same as for old-settings.json");
+        System.out.println();
+        System.out.println("  To move to the atlasdb-v3 key format, which lets rocksdb");
+        System.out.println("  order keys without calling back into java, set");
+        System.out.println("    \"comparator\": \"atlasdb-v3\"");
+        System.out.println("  in new-settings.json. Keys are re-encoded as they are copied.");
     }
 }
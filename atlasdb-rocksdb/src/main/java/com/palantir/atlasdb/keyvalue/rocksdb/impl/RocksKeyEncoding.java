@@ -0,0 +1,216 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.keyvalue.rocksdb.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import org.apache.commons.lang.ArrayUtils;
+
+import com.google.common.base.Preconditions;
+import com.google.common.primitives.Longs;
+import com.palantir.atlasdb.keyvalue.api.Cell;
+import com.palantir.atlasdb.ptobject.EncodingUtils;
+import com.palantir.util.Pair;
+
+/**
+ * How (row, column, timestamp) triples are laid out in rocksdb keys.
+ */
+enum RocksKeyEncoding {
+    /**
+     * row, column, timestamp and then the reversed varlong size of the row. Only
+     * {@link RocksComparator} and {@link RocksOldComparator} can order these keys.
+     */
+    LEGACY {
+        @Override
+        byte[] getKey(byte[] row, byte[] col, long timestamp) {
+            Preconditions.checkArgument(EncodingUtils.sizeOfVarLong(row.length) <= 2);
+            byte[] rowSize = EncodingUtils.encodeVarLong(row.length);
+            ArrayUtils.reverse(rowSize);
+
+            byte[] key = new byte[row.length + col.length + 8 + rowSize.length];
+            ByteBuffer.wrap(key).order(ByteOrder.BIG_ENDIAN)
+                    .put(row)
+                    .put(col)
+                    .putLong(timestamp)
+                    .put(rowSize);
+            return key;
+        }
+
+        @Override
+        byte[] getRowStartKey(byte[] row, long timestamp) {
+            return getKey(row, new byte[1], timestamp);
+        }
+
+        @Override
+        Pair<Cell, Long> parseCellAndTs(byte[] key) {
+            byte[] rowSizeBytes = new byte[2];
+            rowSizeBytes[0] = key[key.length - 1];
+            rowSizeBytes[1] = key[key.length - 2];
+
+            int rowSize = (int) EncodingUtils.decodeVarLong(rowSizeBytes);
+            int colEnd = key.length - 8 - EncodingUtils.sizeOfVarLong(rowSize);
+
+            byte[] rowName = Arrays.copyOf(key, rowSize);
+            byte[] colName = Arrays.copyOfRange(key, rowSize, colEnd);
+            long ts = Longs.fromBytes(
+                    key[colEnd+0],
+                    key[colEnd+1],
+                    key[colEnd+2],
+                    key[colEnd+3],
+                    key[colEnd+4],
+                    key[colEnd+5],
+                    key[colEnd+6],
+                    key[colEnd+7]);
+
+            return Pair.create(Cell.create(rowName, colName), ts);
+        }
+    },
+
+    /**
+     * The row and then the column, each with 0x00 escaped as 0x00 0xFF and terminated by 0x00 0x01,
+     * followed by the timestamp with every bit but the sign flipped. Unsigned lexicographic order of
+     * these keys is the order {@link RocksComparator} imposes on legacy keys: by row, then column,
+     * then descending timestamp. They can therefore use rocksdb's built-in bytewise comparator,
+     * which does not call back into java.
+     */
+    BYTE_COMPARABLE {
+        private static final byte ESCAPE = 0x00;
+        private static final byte ESCAPED_ZERO = (byte) 0xFF;
+        private static final byte TERMINATOR = 0x01;
+
+        @Override
+        byte[] getKey(byte[] row, byte[] col, long timestamp) {
+            byte[] key = new byte[encodedSize(row) + encodedSize(col) + 8];
+            int offset = encode(row, key, 0);
+            offset = encode(col, key, offset);
+            putTimestamp(key, offset, timestamp);
+            return key;
+        }
+
+        @Override
+        byte[] getRowStartKey(byte[] row, long timestamp) {
+            // every key of the row starts with the encoded row, and sorts after it
+            byte[] key = new byte[encodedSize(row)];
+            encode(row, key, 0);
+            return key;
+        }
+
+        @Override
+        Pair<Cell, Long> parseCellAndTs(byte[] key) {
+            int rowEnd = componentEnd(key, 0);
+            int colEnd = componentEnd(key, rowEnd);
+            byte[] rowName = decode(key, 0, rowEnd);
+            byte[] colName = decode(key, rowEnd, colEnd);
+            long ts = Longs.fromBytes(
+                    key[colEnd+0],
+                    key[colEnd+1],
+                    key[colEnd+2],
+                    key[colEnd+3],
+                    key[colEnd+4],
+                    key[colEnd+5],
+                    key[colEnd+6],
+                    key[colEnd+7]) ^ Long.MAX_VALUE;
+            return Pair.create(Cell.create(rowName, colName), ts);
+        }
+
+        private int encodedSize(byte[] component) {
+            int size = component.length + 2;
+            for (byte b : component) {
+                if (b == ESCAPE) {
+                    size++;
+                }
+            }
+            return size;
+        }
+
+        private int encode(byte[] component, byte[] key, int offset) {
+            for (byte b : component) {
+                key[offset++] = b;
+                if (b == ESCAPE) {
+                    key[offset++] = ESCAPED_ZERO;
+                }
+            }
+            key[offset++] = ESCAPE;
+            key[offset++] = TERMINATOR;
+            return offset;
+        }
+
+        /**
+         * Returns the offset just past the terminator of the component starting at start.
+         */
+        private int componentEnd(byte[] key, int start) {
+            for (int i = start; i < key.length - 1; i++) {
+                if (key[i] == ESCAPE) {
+                    if (key[i + 1] == TERMINATOR) {
+                        return i + 2;
+                    }
+                    i++;
+                }
+            }
+            throw new IllegalArgumentException("Unterminated key component at " + start);
+        }
+
+        private byte[] decode(byte[] key, int start, int end) {
+            int escapes = 0;
+            for (int i = start; i < end - 2; i++) {
+                if (key[i] == ESCAPE) {
+                    escapes++;
+                    i++;
+                }
+            }
+            int length = end - 2 - start - escapes;
+            if (escapes == 0) {
+                return Arrays.copyOfRange(key, start, start + length);
+            }
+            byte[] component = new byte[length];
+            int offset = 0;
+            for (int i = start; i < end - 2; i++) {
+                component[offset++] = key[i];
+                if (key[i] == ESCAPE) {
+                    i++;
+                }
+            }
+            return component;
+        }
+
+        private void putTimestamp(byte[] key, int offset, long timestamp) {
+            long encoded = timestamp ^ Long.MAX_VALUE;
+            for (int i = 7; i >= 0; i--) {
+                key[offset + i] = (byte) encoded;
+                encoded >>>= 8;
+            }
+        }
+    };
+
+    abstract byte[] getKey(byte[] row, byte[] col, long timestamp);
+
+    /**
+     * Returns a key at or before the first key of the row that is visible at the timestamp.
+     */
+    abstract byte[] getRowStartKey(byte[] row, long timestamp);
+
+    abstract Pair<Cell, Long> parseCellAndTs(byte[] key);
+
+    byte[] getKey(Cell cell, long timestamp) {
+        return getKey(cell.getRowName(), cell.getColumnName(), timestamp);
+    }
+
+    static RocksKeyEncoding forComparator(String comparator) {
+        return RocksComparatorName.V3.getComparatorName().equals(comparator) ? BYTE_COMPARABLE : LEGACY;
+    }
+}
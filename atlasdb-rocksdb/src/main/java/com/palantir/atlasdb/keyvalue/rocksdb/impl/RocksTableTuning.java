@@ -0,0 +1,163 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.keyvalue.rocksdb.impl;
+
+import java.util.Arrays;
+
+import javax.annotation.Nullable;
+
+import org.rocksdb.BlockBasedTableConfig;
+import org.rocksdb.BloomFilter;
+import org.rocksdb.ColumnFamilyOptions;
+import org.rocksdb.CompressionType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Objects;
+import com.palantir.atlasdb.AtlasDbConstants;
+import com.palantir.atlasdb.protos.generated.TableMetadataPersistence.CachePriority;
+import com.palantir.atlasdb.table.description.TableMetadata;
+
+/**
+ * Tunes the column family of a table for how its {@link TableMetadata} says it is read.
+ * Tables whose metadata asks for the same tuning share a {@link Profile}, so that they can
+ * share their column family options rather than each allocating native ones.
+ *
+ * Keys are not split by a prefix extractor: rocksdbjni does not expose total order seeks,
+ * so prefix filtering would apply to every iterator, and range scans and the stepping of
+ * point reads between neighbouring cells would skip files holding other prefixes. The bloom
+ * filters are therefore on whole keys, and RocksDB only consults them for exact key lookups,
+ * not for seeks. They help the multi-gets of {@code putUnlessExists}, reads of the transaction
+ * table and the metadata table, but not reads of other tables, which seek to the latest
+ * version of each cell.
+ */
+final class RocksTableTuning {
+    private static final Logger log = LoggerFactory.getLogger(RocksTableTuning.class);
+    static final int BLOOM_FILTER_BITS_PER_KEY = 10;
+    static final int NEGATIVE_LOOKUPS_BLOOM_FILTER_BITS_PER_KEY = 20;
+
+    private RocksTableTuning() {
+        // Utility class
+    }
+
+    @Nullable
+    static TableMetadata hydrate(@Nullable byte[] rawMetadata) {
+        if (rawMetadata == null
+                || Arrays.equals(rawMetadata, AtlasDbConstants.EMPTY_TABLE_METADATA)
+                || Arrays.equals(rawMetadata, AtlasDbConstants.GENERIC_TABLE_METADATA)) {
+            return null;
+        }
+        try {
+            return TableMetadata.BYTES_HYDRATOR.hydrateFromBytes(rawMetadata);
+        } catch (RuntimeException e) {
+            // the key value service stores whatever metadata it is given, which need not be a TableMetadata
+            log.debug("Could not parse table metadata, using the default options for the table.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Applies the profile to the options. The bloom filter it creates is registered with the
+     * disposer, which must not be closed before the options are.
+     */
+    static ColumnFamilyOptions tune(ColumnFamilyOptions options, Profile profile, Disposer disposer) {
+        BlockBasedTableConfig tableConfig = new BlockBasedTableConfig();
+        if (profile.bloomFilterBitsPerKey != 0) {
+            tableConfig.setFilter(disposer.register(new BloomFilter(profile.bloomFilterBitsPerKey, false)));
+        }
+        if (profile.blockSizeKb != 0) {
+            tableConfig.setBlockSize(profile.blockSizeKb * 1024L);
+        }
+        if (profile.compressionType != null) {
+            options.setCompressionType(profile.compressionType);
+        }
+        return options.setTableFormatConfig(tableConfig);
+    }
+
+    /**
+     * The options a table's metadata asks for.
+     */
+    static final class Profile {
+        final int bloomFilterBitsPerKey;
+        final int blockSizeKb;
+        @Nullable final CompressionType compressionType;
+
+        private Profile(int bloomFilterBitsPerKey, int blockSizeKb, @Nullable CompressionType compressionType) {
+            this.bloomFilterBitsPerKey = bloomFilterBitsPerKey;
+            this.blockSizeKb = blockSizeKb;
+            this.compressionType = compressionType;
+        }
+
+        static Profile of(@Nullable TableMetadata metadata) {
+            boolean negativeLookups = false;
+            boolean appendHeavyAndReadLight = false;
+            int explicitCompressionBlockSizeKb = 0;
+            CachePriority cachePriority = CachePriority.WARM;
+
+            if (metadata != null) {
+                negativeLookups = metadata.hasNegativeLookups();
+                appendHeavyAndReadLight = metadata.isAppendHeavyAndReadLight();
+                explicitCompressionBlockSizeKb = metadata.getExplicitCompressionBlockSizeKB();
+                cachePriority = metadata.getCachePriority();
+            }
+
+            int bloomFilterBitsPerKey = 0;
+            if (negativeLookups) {
+                bloomFilterBitsPerKey = NEGATIVE_LOOKUPS_BLOOM_FILTER_BITS_PER_KEY;
+            } else if (!appendHeavyAndReadLight) {
+                bloomFilterBitsPerKey = BLOOM_FILTER_BITS_PER_KEY;
+            }
+
+            CompressionType compressionType;
+            switch (cachePriority) {
+                case COLDEST:
+                case COLD:
+                    compressionType = CompressionType.ZLIB_COMPRESSION;
+                    break;
+                case WARM:
+                    compressionType = null;
+                    break;
+                case HOT:
+                case HOTTEST:
+                    // hot blocks are read often enough that decompressing them costs more than it saves
+                    compressionType = CompressionType.NO_COMPRESSION;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown cache priority: " + cachePriority);
+            }
+            return new Profile(bloomFilterBitsPerKey, explicitCompressionBlockSizeKb, compressionType);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            Profile other = (Profile) obj;
+            return bloomFilterBitsPerKey == other.bloomFilterBitsPerKey
+                    && blockSizeKb == other.blockSizeKb
+                    && compressionType == other.compressionType;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(bloomFilterBitsPerKey, blockSizeKb, compressionType);
+        }
+    }
+}
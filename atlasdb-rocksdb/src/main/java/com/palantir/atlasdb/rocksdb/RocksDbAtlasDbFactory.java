@@ -23,6 +23,7 @@ import com.google.common.collect.ImmutableMap;
 import com.palantir.atlasdb.config.LeaderConfig;
 import com.palantir.atlasdb.keyvalue.api.KeyValueService;
 import com.palantir.atlasdb.keyvalue.impl.SimpleKvsTimestampBoundStore;
+import com.palantir.atlasdb.keyvalue.rocksdb.impl.ImmutableReadOpts;
 import com.palantir.atlasdb.keyvalue.rocksdb.impl.ImmutableWriteOpts;
 import com.palantir.atlasdb.keyvalue.rocksdb.impl.RocksDbKeyValueService;
 import com.palantir.atlasdb.spi.AtlasDbFactory;
@@ -50,6 +51,7 @@ public class RocksDbAtlasDbFactory implements AtlasDbFactory {
                 MoreObjects.firstNonNull(rocksDbConfig.dbOptions(), ImmutableMap.<String, String>of()),
                 MoreObjects.firstNonNull(rocksDbConfig.cfOptions(), ImmutableMap.<String, String>of()),
                 MoreObjects.firstNonNull(rocksDbConfig.writeOptions(), ImmutableWriteOpts.builder().build()),
+                MoreObjects.firstNonNull(rocksDbConfig.readOptions(), ImmutableReadOpts.builder().build()),
                 rocksDbConfig.getComparator());
     }
 
@@ -26,7 +26,9 @@ import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.google.auto.service.AutoService;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.palantir.atlasdb.keyvalue.rocksdb.impl.ImmutableReadOpts;
 import com.palantir.atlasdb.keyvalue.rocksdb.impl.ImmutableWriteOpts;
+import com.palantir.atlasdb.keyvalue.rocksdb.impl.ReadOpts;
 import com.palantir.atlasdb.keyvalue.rocksdb.impl.RocksComparatorName;
 import com.palantir.atlasdb.keyvalue.rocksdb.impl.WriteOpts;
 import com.palantir.atlasdb.spi.KeyValueServiceConfig;
@@ -50,6 +52,11 @@ public abstract class RocksDbKeyValueServiceConfig implements KeyValueServiceCon
         return ImmutableWriteOpts.builder().build();
     }
 
+    @Value.Default
+    public ReadOpts readOptions() {
+        return ImmutableReadOpts.builder().build();
+    }
+
     public abstract Optional<String> nativeLibTmpDir();
 
     @Value.Default
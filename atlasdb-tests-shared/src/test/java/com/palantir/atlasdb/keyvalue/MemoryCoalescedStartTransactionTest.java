@@ -0,0 +1,51 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.keyvalue;
+
+import com.google.common.base.Suppliers;
+import com.palantir.atlasdb.cleaner.NoOpCleaner;
+import com.palantir.atlasdb.transaction.api.AtlasDbConstraintCheckingMode;
+import com.palantir.atlasdb.transaction.api.TransactionManager;
+import com.palantir.atlasdb.transaction.impl.SerializableTransactionManager;
+import com.palantir.atlasdb.transaction.impl.SweepStrategyManagers;
+import com.palantir.atlasdb.transaction.impl.TransactionOptions;
+import com.palantir.lock.TransactionStartService;
+import com.palantir.lock.client.CoalescingTransactionStartService;
+import com.palantir.lock.impl.TransactionStartServiceImpl;
+
+public class MemoryCoalescedStartTransactionTest extends MemorySerializableTransactionTest {
+
+    @Override
+    protected TransactionManager getManager() {
+        TransactionStartService transactionStartService = new CoalescingTransactionStartService(
+                new TransactionStartServiceImpl(timestampService, lockService));
+        return new SerializableTransactionManager(
+                keyValueService,
+                timestampService,
+                lockClient,
+                lockService,
+                transactionService,
+                Suppliers.ofInstance(AtlasDbConstraintCheckingMode.FULL_CONSTRAINT_CHECKING_THROWS_EXCEPTIONS),
+                conflictDetectionManager,
+                SweepStrategyManagers.createDefault(keyValueService),
+                NoOpCleaner.INSTANCE,
+                false,
+                TransactionOptions.builder()
+                        .transactionStartService(transactionStartService)
+                        .build());
+    }
+
+}
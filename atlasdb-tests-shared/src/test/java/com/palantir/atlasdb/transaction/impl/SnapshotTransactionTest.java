@@ -20,6 +20,7 @@ import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -31,22 +32,28 @@ import java.util.Map;
 import java.util.Random;
 import java.util.SortedMap;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang.mutable.MutableInt;
 import org.jmock.Expectations;
 import org.jmock.Mockery;
 import org.jmock.Sequence;
+import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
@@ -66,6 +73,7 @@ import com.palantir.atlasdb.keyvalue.api.RangeRequest;
 import com.palantir.atlasdb.keyvalue.api.RowResult;
 import com.palantir.atlasdb.keyvalue.api.TableReference;
 import com.palantir.atlasdb.keyvalue.impl.ForwardingKeyValueService;
+import com.palantir.atlasdb.keyvalue.impl.InMemoryKeyValueService;
 import com.palantir.atlasdb.keyvalue.impl.TrackingKeyValueService;
 import com.palantir.atlasdb.protos.generated.TableMetadataPersistence.CachePriority;
 import com.palantir.atlasdb.protos.generated.TableMetadataPersistence.ExpirationStrategy;
@@ -81,6 +89,7 @@ import com.palantir.atlasdb.transaction.api.LockAwareTransactionTask;
 import com.palantir.atlasdb.transaction.api.Transaction;
 import com.palantir.atlasdb.transaction.api.TransactionConflictException;
 import com.palantir.atlasdb.transaction.api.TransactionFailedRetriableException;
+import com.palantir.atlasdb.transaction.api.TransactionManager;
 import com.palantir.atlasdb.transaction.api.TransactionReadSentinelBehavior;
 import com.palantir.atlasdb.transaction.api.TransactionTask;
 import com.palantir.common.base.AbortingVisitor;
@@ -89,11 +98,13 @@ import com.palantir.common.base.BatchingVisitable;
 import com.palantir.common.concurrent.PTExecutors;
 import com.palantir.common.proxy.MultiDelegateProxy;
 import com.palantir.lock.AtlasRowLockDescriptor;
+import com.palantir.lock.AtlasTimestampLockDescriptor;
 import com.palantir.lock.HeldLocksToken;
 import com.palantir.lock.LockClient;
 import com.palantir.lock.LockCollections;
 import com.palantir.lock.LockDescriptor;
 import com.palantir.lock.LockMode;
+import com.palantir.lock.LockRefreshToken;
 import com.palantir.lock.LockRequest;
 import com.palantir.lock.LockService;
 
@@ -145,6 +156,8 @@ public class SnapshotTransactionTest extends AtlasDbTestCase {
 
     static final TableReference TABLE_SWEPT_THOROUGH = TableReference.createFromFullyQualifiedName("default.table2");
 
+    private final ExecutorService asyncExecutor = PTExecutors.newCachedThreadPool();
+
     @Override
     @Before
     public void setUp() throws Exception {
@@ -161,6 +174,13 @@ public class SnapshotTransactionTest extends AtlasDbTestCase {
         keyValueService.createTable(TABLE2, AtlasDbConstants.GENERIC_TABLE_METADATA);
     }
 
+    @Override
+    @After
+    public void tearDown() throws Exception {
+        asyncExecutor.shutdownNow();
+        super.tearDown();
+    }
+
     @Test
     public void testConcurrentWriteChangedConflicts() throws InterruptedException, ExecutionException {
         conflictDetectionManager.setConflictDetectionMode(TABLE, ConflictHandler.RETRY_ON_VALUE_CHANGED);
@@ -579,6 +599,196 @@ public class SnapshotTransactionTest extends AtlasDbTestCase {
                     });
     }
 
+    @Test
+    public void testRunTaskAsyncComposesReadsAndCommits() throws Exception {
+        Cell cell1 = Cell.create("row1".getBytes(), "column1".getBytes());
+        Cell cell2 = Cell.create("row2".getBytes(), "column1".getBytes());
+        Transaction t1 = txManager.createNewTransaction();
+        t1.put(TABLE, ImmutableMap.of(cell1, EncodingUtils.encodeVarLong(1L), cell2, EncodingUtils.encodeVarLong(2L)));
+        t1.commit();
+
+        AtomicInteger executorTasks = new AtomicInteger();
+        Executor executor = task -> {
+            executorTasks.incrementAndGet();
+            asyncExecutor.execute(task);
+        };
+        long sum = txManager.runTaskAsync(t -> {
+            CompletableFuture<Map<Cell, byte[]>> read1 = t.getAsync(TABLE, ImmutableSet.of(cell1));
+            CompletableFuture<SortedMap<byte[], RowResult<byte[]>>> read2 =
+                    t.getRowsAsync(TABLE, ImmutableList.of(cell2.getRowName()), ColumnSelection.all());
+            return read1.thenCombine(read2, (cells, rows) -> {
+                long total = EncodingUtils.decodeVarLong(cells.get(cell1))
+                        + EncodingUtils.decodeVarLong(rows.get(cell2.getRowName()).getOnlyColumnValue());
+                t.put(TABLE, ImmutableMap.of(cell1, EncodingUtils.encodeVarLong(total)));
+                return total;
+            });
+        }, executor).get(10, TimeUnit.SECONDS);
+
+        assertEquals(3L, sum);
+        // The transaction is started and committed on the given executor, and only reads use the read pool.
+        assertEquals(2, executorTasks.get());
+        Transaction t2 = txManager.createNewTransaction();
+        assertEquals(3L, EncodingUtils.decodeVarLong(t2.get(TABLE, ImmutableSet.of(cell1)).get(cell1)));
+    }
+
+    @Test
+    public void testRunTaskAsyncRollsBackFailedTasks() throws Exception {
+        Cell cell = Cell.create("row1".getBytes(), "column1".getBytes());
+        CompletableFuture<Object> result = txManager.runTaskAsync(t -> {
+            t.put(TABLE, ImmutableMap.of(cell, new byte[1]));
+            CompletableFuture<Object> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IllegalStateException("task failed"));
+            return failed;
+        }, asyncExecutor);
+
+        try {
+            result.get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        Transaction t2 = txManager.createNewTransaction();
+        assertTrue(t2.get(TABLE, ImmutableSet.of(cell)).isEmpty());
+    }
+
+    @Test
+    public void testRunTaskAsyncReadsThroughTransactionWrappers() throws Exception {
+        Cell cell = Cell.create("row1".getBytes(), "column1".getBytes());
+        Transaction t1 = txManager.createNewTransaction();
+        t1.put(TABLE, ImmutableMap.of(cell, new byte[] {1}));
+        t1.commit();
+
+        byte[] value = new CachingTransactionManager(txManager).runTaskAsync(t -> {
+            assertTrue(((WrappedAsyncTransaction) t).delegate() instanceof CachingTransaction);
+            return t.getAsync(TABLE, ImmutableSet.of(cell)).thenApply(cells -> cells.get(cell));
+        }, asyncExecutor).get(10, TimeUnit.SECONDS);
+
+        assertArrayEquals(new byte[] {1}, value);
+    }
+
+    @Test
+    public void testDefaultRunTaskAsyncRunsTaskInATransaction() throws Exception {
+        Cell cell = Cell.create("row1".getBytes(), "column1".getBytes());
+        TransactionManager synchronousTxManager = new TransactionManager() {
+            @Override
+            public <T, E extends Exception> T runTaskWithRetry(TransactionTask<T, E> task) throws E {
+                return txManager.runTaskWithRetry(task);
+            }
+
+            @Override
+            public <T, E extends Exception> T runTaskThrowOnConflict(TransactionTask<T, E> task) throws E {
+                return txManager.runTaskThrowOnConflict(task);
+            }
+
+            @Override
+            public <T, E extends Exception> T runTaskReadOnly(TransactionTask<T, E> task) throws E {
+                return txManager.runTaskReadOnly(task);
+            }
+
+            @Override
+            public long getImmutableTimestamp() {
+                return txManager.getImmutableTimestamp();
+            }
+
+            @Override
+            public long getUnreadableTimestamp() {
+                return txManager.getUnreadableTimestamp();
+            }
+
+            @Override
+            public void close() {
+                // the test transaction manager is closed by the test case
+            }
+        };
+
+        byte[] value = synchronousTxManager.runTaskAsync(t -> {
+            t.put(TABLE, ImmutableMap.of(cell, new byte[] {1}));
+            return t.getAsync(TABLE, ImmutableSet.of(cell)).thenApply(cells -> cells.get(cell));
+        }, asyncExecutor).get(10, TimeUnit.SECONDS);
+
+        assertArrayEquals(new byte[] {1}, value);
+        Transaction t2 = txManager.createNewTransaction();
+        assertArrayEquals(new byte[] {1}, t2.get(TABLE, ImmutableSet.of(cell)).get(cell));
+    }
+
+    @Test
+    public void testCloseShutsDownAsyncReadExecutor() {
+        ExecutorService asyncReadExecutor = PTExecutors.newFixedThreadPool(1);
+        SerializableTransactionManager manager = new SerializableTransactionManager(
+                new InMemoryKeyValueService(false),
+                timestampService,
+                lockClient,
+                lockService,
+                transactionService,
+                Suppliers.ofInstance(AtlasDbConstraintCheckingMode.NO_CONSTRAINT_CHECKING),
+                ConflictDetectionManagers.withoutConflictDetection(keyValueService),
+                SweepStrategyManagers.createDefault(keyValueService),
+                NoOpCleaner.INSTANCE,
+                false,
+                TransactionOptions.builder().asyncReadExecutor(asyncReadExecutor).build());
+
+        manager.close();
+
+        assertTrue(asyncReadExecutor.isShutdown());
+    }
+
+    @Test
+    public void testReadOnlyTransactionWaitsForCommittingWriter() throws Exception {
+        Cell cell = Cell.create("row1".getBytes(), "column1".getBytes());
+        long writerStartTs = timestampService.getFreshTimestamp();
+        LockRefreshToken immutableTsLock = lockService.lock(lockClient.getClientId(),
+                LockRequest.builder(ImmutableSortedMap.of(AtlasTimestampLockDescriptor.of(writerStartTs), LockMode.READ))
+                        .withLockedInVersionId(writerStartTs)
+                        .build());
+        ScheduledExecutorService executor = PTExecutors.newSingleThreadScheduledExecutor();
+        try {
+            keyValueService.put(TABLE, ImmutableMap.of(cell, new byte[] {1}), writerStartTs);
+            long writerCommitTs = timestampService.getFreshTimestamp();
+            executor.schedule(() -> transactionService.putUnlessExists(writerStartTs, writerCommitTs),
+                    100, TimeUnit.MILLISECONDS);
+
+            byte[] value = txManager.runTaskReadOnly(t -> t.get(TABLE, ImmutableSet.of(cell)).get(cell));
+
+            assertArrayEquals(new byte[] {1}, value);
+            assertEquals(writerCommitTs, (long) transactionService.get(writerStartTs));
+        } finally {
+            executor.shutdownNow();
+            lockService.unlock(immutableTsLock);
+        }
+    }
+
+    @Test
+    public void testGetRowsFromTables() {
+        Cell cell = Cell.create("row1".getBytes(), "column1".getBytes());
+        Transaction t1 = txManager.createNewTransaction();
+        t1.put(TABLE1, ImmutableMap.of(cell, new byte[] {1}));
+        t1.put(TABLE2, ImmutableMap.of(cell, new byte[] {2}));
+        t1.commit();
+
+        Transaction t2 = txManager.createNewTransaction();
+        Map<TableReference, SortedMap<byte[], RowResult<byte[]>>> results = t2.getRowsFromTables(
+                ImmutableMap.of(TABLE1, ImmutableList.of(cell.getRowName()), TABLE2, ImmutableList.of(cell.getRowName())),
+                ColumnSelection.all());
+
+        assertEquals(ImmutableSet.of(TABLE1, TABLE2), results.keySet());
+        assertArrayEquals(new byte[] {1}, results.get(TABLE1).get(cell.getRowName()).getColumns().get(cell.getColumnName()));
+        assertArrayEquals(new byte[] {2}, results.get(TABLE2).get(cell.getRowName()).getColumns().get(cell.getColumnName()));
+    }
+
+    @Test
+    public void testCommitRecordsStageStats() {
+        long commitsBefore = CommitStageStats.INSTANCE.getCommitCount();
+        Transaction t = txManager.createNewTransaction();
+        t.put(TABLE, ImmutableMap.of(Cell.create("row1".getBytes(), "column1".getBytes()), new byte[1]));
+        t.commit();
+
+        assertEquals(commitsBefore + 1, CommitStageStats.INSTANCE.getCommitCount());
+
+        Transaction readOnly = txManager.createNewTransaction();
+        readOnly.commit();
+        assertEquals(commitsBefore + 1, CommitStageStats.INSTANCE.getCommitCount());
+    }
+
     @Test
     public void testWriteChangedConflictsNoThrow() {
         conflictDetectionManager.setConflictDetectionMode(TABLE, ConflictHandler.RETRY_ON_VALUE_CHANGED);
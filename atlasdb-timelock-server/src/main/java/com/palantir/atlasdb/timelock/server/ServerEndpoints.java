@@ -28,6 +28,7 @@ import com.palantir.atlasdb.timelock.server.modules.TimeAndLockModule;
 import com.palantir.atlasdb.timelock.server.modules.qualifiers.Local;
 import com.palantir.leader.LeaderElectionService;
 import com.palantir.lock.RemoteLockService;
+import com.palantir.lock.TransactionStartService;
 import com.palantir.paxos.PaxosAcceptor;
 import com.palantir.paxos.PaxosLearner;
 import com.palantir.timestamp.TimestampService;
@@ -44,6 +45,7 @@ import dagger.Component;
 public interface ServerEndpoints {
     TimestampService timestamp();
     RemoteLockService lock();
+    TransactionStartService transactionStart();
     LeaderElectionService leaderElection();
     @Local PaxosLearner paxosLearner();
     @Local PaxosAcceptor paxosAcceptor();
@@ -54,7 +56,8 @@ public interface ServerEndpoints {
                 paxosAcceptor(),
                 leaderElection(),
                 timestamp(),
-                lock()
+                lock(),
+                transactionStart()
         ).forEachOrdered(consumer);
     }
 }
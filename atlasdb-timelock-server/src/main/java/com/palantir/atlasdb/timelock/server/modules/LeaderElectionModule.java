@@ -72,7 +72,9 @@ public class LeaderElectionModule {
                 Executors.newSingleThreadExecutor(),
                 config.pingRateMs(),
                 config.randomWaitBeforeProposingLeadershipMs(),
-                config.leaderPingResponseWaitMs());
+                config.leaderPingResponseWaitMs(),
+                config.leaderLeaseMs(),
+                config.maxAllowedClockDriftMs());
     }
 
     @Provides
@@ -103,14 +105,14 @@ public class LeaderElectionModule {
     @Singleton
     @Local
     public PaxosAcceptor providePaxosAcceptor(LeaderConfig config) {
-        return newAcceptor(config.acceptorLogDir().getPath());
+        return newAcceptor(config.acceptorLogDir().getPath(), config.useSegmentedPaxosLog());
     }
 
     @Provides
     @Singleton
     @Local
     public PaxosLearner providePaxosLearner(LeaderConfig config) {
-        return newLearner(config.learnerLogDir().getPath());
+        return newLearner(config.learnerLogDir().getPath(), config.useSegmentedPaxosLog());
     }
 
     @Provides
@@ -126,7 +128,8 @@ public class LeaderElectionModule {
                 allAcceptors,
                 allLearners,
                 config.quorumSize(),
-                newSingleThreadExecutor());
+                newSingleThreadExecutor(),
+                config.useMultiPaxos());
     }
 
     @Provides
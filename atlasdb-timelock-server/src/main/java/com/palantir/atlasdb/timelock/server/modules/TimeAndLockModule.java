@@ -26,7 +26,9 @@ import com.palantir.atlasdb.spi.KeyValueServiceConfig;
 import com.palantir.leader.LeaderElectionService;
 import com.palantir.leader.proxy.AwaitingLeadershipProxy;
 import com.palantir.lock.RemoteLockService;
+import com.palantir.lock.TransactionStartService;
 import com.palantir.lock.impl.LockServiceImpl;
+import com.palantir.lock.impl.TransactionStartServiceImpl;
 import com.palantir.timestamp.TimestampService;
 
 import dagger.Module;
@@ -52,4 +54,10 @@ public class TimeAndLockModule {
     public RemoteLockService provideLockService(LeaderElectionService leaderElectionService) {
         return AwaitingLeadershipProxy.newProxyInstance(RemoteLockService.class, LockServiceImpl::create, leaderElectionService);
     }
+
+    @Provides
+    @Singleton
+    public TransactionStartService provideTransactionStartService(TimestampService timestampService, RemoteLockService lockService) {
+        return new TransactionStartServiceImpl(timestampService, lockService);
+    }
 }
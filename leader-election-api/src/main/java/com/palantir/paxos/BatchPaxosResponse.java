@@ -0,0 +1,53 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.paxos;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableList;
+import com.palantir.common.annotation.Immutable;
+
+/**
+ * The responses to a batch of requests, in the order the requests were made. It is only
+ * successful if every request in the batch was.
+ */
+@Immutable
+public class BatchPaxosResponse implements PaxosResponse {
+    private static final long serialVersionUID = 1L;
+
+    final ImmutableList<Boolean> acks;
+
+    @JsonCreator
+    public BatchPaxosResponse(@JsonProperty("acks") List<Boolean> acks) {
+        this.acks = ImmutableList.copyOf(acks);
+    }
+
+    @Override
+    public boolean isSuccessful() {
+        return !acks.contains(false);
+    }
+
+    public List<Boolean> getAcks() {
+        return acks;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchPaxosResponse [acks=" + acks + "]";
+    }
+}
@@ -15,6 +15,9 @@
  */
 package com.palantir.paxos;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.ws.rs.Consumes;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
@@ -53,6 +56,46 @@ public interface PaxosAcceptor {
     @Consumes(MediaType.APPLICATION_JSON)
     public BooleanPaxosResponse accept(@PathParam("seq") long seq, PaxosProposal proposal);
 
+    /**
+     * The acceptor prepares for a given proposal in every round from seq onwards, so that a stable
+     * proposer can skip straight to the accept phase for all of its future rounds.
+     * <p>
+     * By default the acceptor can only keep promises for single rounds, so it only prepares round
+     * seq and rejects the range, reporting the proposal it has promised for that round. Proposers
+     * then fall back to running both phases for each round.
+     *
+     * @param seq the first instance of paxos to prepare
+     * @param pid the proposal to prepare for
+     * @return a paxos promise not to accept lower numbered proposals in any of those rounds,
+     *         along with the values already accepted in them
+     */
+    @POST
+    @Path("prepare-from/{seq}")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Consumes(MediaType.APPLICATION_JSON)
+    public default PaxosRangePromise prepareFrom(@PathParam("seq") long seq, PaxosProposalId pid) {
+        return new PaxosRangePromise(prepare(seq, pid).getPromisedId()); // nack
+    }
+
+    /**
+     * The acceptor decides whether to accept or reject each of the given proposals, as if
+     * {@link #accept} had been called for each of them in turn with the round of its value.
+     *
+     * @param proposals the proposals in question
+     * @return whether each of the proposals was accepted, in order
+     */
+    @POST
+    @Path("accept-batch")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Consumes(MediaType.APPLICATION_JSON)
+    public default BatchPaxosResponse acceptBatch(List<PaxosProposal> proposals) {
+        List<Boolean> acks = new ArrayList<>(proposals.size());
+        for (PaxosProposal proposal : proposals) {
+            acks.add(accept(proposal.getValue().getRound(), proposal).isSuccessful());
+        }
+        return new BatchPaxosResponse(acks);
+    }
+
     /**
      * Gets the sequence number of the acceptor's most recent known round.
      *
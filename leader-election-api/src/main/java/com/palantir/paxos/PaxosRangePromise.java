@@ -0,0 +1,89 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.paxos;
+
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.palantir.common.annotation.Immutable;
+
+/**
+ * A promise to not accept new proposals less than promisedId for any round at or after the
+ * sequence number that was prepared, along with every such round the acceptor has already
+ * accepted a value for.
+ */
+@Immutable
+public class PaxosRangePromise implements PaxosResponse {
+    private static final long serialVersionUID = 1L;
+
+    final boolean ack;
+
+    @Nonnull final PaxosProposalId promisedId;
+    @Nonnull final ImmutableList<PaxosPromise> acceptedRounds;
+
+    public PaxosRangePromise(PaxosProposalId promisedId) {
+        this(false, promisedId, ImmutableList.<PaxosPromise>of());
+    }
+
+    public PaxosRangePromise(PaxosProposalId promisedId, List<PaxosPromise> acceptedRounds) {
+        this(true, promisedId, acceptedRounds);
+    }
+
+    private PaxosRangePromise(boolean ack, PaxosProposalId promisedId, List<PaxosPromise> acceptedRounds) {
+        this.ack = ack;
+        this.promisedId = Preconditions.checkNotNull(promisedId);
+        this.acceptedRounds = ImmutableList.copyOf(acceptedRounds);
+    }
+
+    @JsonCreator
+    public static PaxosRangePromise create(@JsonProperty("successful") boolean ack,
+                                           @JsonProperty("promisedId") PaxosProposalId promisedId,
+                                           @JsonProperty("acceptedRounds") List<PaxosPromise> acceptedRounds) {
+        if (ack) {
+            return new PaxosRangePromise(promisedId, acceptedRounds);
+        } else {
+            return new PaxosRangePromise(promisedId);
+        }
+    }
+
+    @Override
+    public boolean isSuccessful() {
+        return ack;
+    }
+
+    public PaxosProposalId getPromisedId() {
+        return promisedId;
+    }
+
+    /**
+     * @return a promise for each round with an accepted value, whose value carries the round's
+     *         sequence number
+     */
+    public List<PaxosPromise> getAcceptedRounds() {
+        return acceptedRounds;
+    }
+
+    @Override
+    public String toString() {
+        return "PaxosRangePromise [ack=" + ack + ", promisedId=" + promisedId
+                + ", acceptedRounds=" + acceptedRounds + "]";
+    }
+}
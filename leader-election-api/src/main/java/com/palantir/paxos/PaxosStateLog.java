@@ -16,6 +16,8 @@
 package com.palantir.paxos;
 
 import java.io.IOException;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 import com.palantir.common.persist.Persistable;
 
@@ -43,6 +45,29 @@ public interface PaxosStateLog<V extends Persistable & Versionable> {
      */
     public byte[] readRound(long seq) throws IOException;
 
+    /**
+     * Retrieves all rounds in the given range of sequence numbers from disk. Sequence numbers
+     * with no round in the log are left out of the returned map.
+     * <p>
+     * By default this reads the rounds one at a time; implementations which can read a range
+     * more cheaply should override it.
+     *
+     * @param fromInclusive the least sequence number to read
+     * @param toInclusive the greatest sequence number to read
+     * @return the bytes of data for each round in the range, ordered by sequence number
+     * @throws CorruptLogFileException if any round in the range is corrupted on disk
+     */
+    public default SortedMap<Long, byte[]> readRounds(long fromInclusive, long toInclusive) throws IOException {
+        SortedMap<Long, byte[]> rounds = new TreeMap<Long, byte[]>();
+        for (long seq = fromInclusive; seq <= toInclusive; seq++) {
+            byte[] bytes = readRound(seq);
+            if (bytes != null) {
+                rounds.put(seq, bytes);
+            }
+        }
+        return rounds;
+    }
+
     /**
      * @return the sequence number of the least known log entry or {@value PaxosAcceptor#NO_LOG_ENTRY}
      * if this log has never been truncated.
@@ -30,8 +30,12 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReentrantLock;
 
 import javax.annotation.Nullable;
@@ -49,6 +53,8 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.net.HostAndPort;
 import com.palantir.common.base.Throwables;
+import com.palantir.common.concurrent.NamedThreadFactory;
+import com.palantir.common.concurrent.PTExecutors;
 import com.palantir.paxos.PaxosAcceptor;
 import com.palantir.paxos.PaxosLearner;
 import com.palantir.paxos.PaxosProposer;
@@ -81,6 +87,8 @@ public class PaxosLeaderElectionService implements PingableLeader, LeaderElectio
     final long updatePollingRateInMs;
     final long randomWaitBeforeProposingLeadership;
     final long leaderPingResponseWaitMs;
+    final long leaderLeaseNanos;
+    final long maxClockDriftNanos;
 
     final ExecutorService executor;
 
@@ -95,6 +103,41 @@ public class PaxosLeaderElectionService implements PingableLeader, LeaderElectio
                                       long updatePollingWaitInMs,
                                       long randomWaitBeforeProposingLeadership,
                                       long leaderPingResponseWaitMs) {
+        this(proposer,
+                knowledge,
+                potentialLeadersToHosts,
+                acceptors,
+                learners,
+                executor,
+                updatePollingWaitInMs,
+                randomWaitBeforeProposingLeadership,
+                leaderPingResponseWaitMs,
+                0L,
+                0L);
+    }
+
+    /**
+     * @param leaderLeaseMs how long a successful leadership check lets this node answer
+     *        {@link #isStillLeading(LeadershipToken)} without contacting the acceptors, or 0 to check
+     *        with a quorum every time. Every node in the cluster must use the same lease, because a
+     *        newly elected leader waits out the lease of its predecessor before it starts leading.
+     * @param maxClockDriftMs how much the clocks of two nodes may drift apart over the lease;
+     *        leases are cut short by this much
+     */
+    public PaxosLeaderElectionService(PaxosProposer proposer,
+                                      PaxosLearner knowledge,
+                                      Map<PingableLeader, HostAndPort> potentialLeadersToHosts,
+                                      List<PaxosAcceptor> acceptors,
+                                      List<PaxosLearner> learners,
+                                      ExecutorService executor,
+                                      long updatePollingWaitInMs,
+                                      long randomWaitBeforeProposingLeadership,
+                                      long leaderPingResponseWaitMs,
+                                      long leaderLeaseMs,
+                                      long maxClockDriftMs) {
+        Preconditions.checkArgument(leaderLeaseMs == 0 || leaderLeaseMs > maxClockDriftMs,
+                "The leader lease (%s ms) must be longer than the allowed clock drift (%s ms).",
+                leaderLeaseMs, maxClockDriftMs);
         this.proposer = proposer;
         this.knowledge = knowledge;
         // XXX This map uses something that may be proxied as a key! Be very careful if making a new map from this.
@@ -105,6 +148,8 @@ public class PaxosLeaderElectionService implements PingableLeader, LeaderElectio
         this.updatePollingRateInMs = updatePollingWaitInMs;
         this.randomWaitBeforeProposingLeadership = randomWaitBeforeProposingLeadership;
         this.leaderPingResponseWaitMs = leaderPingResponseWaitMs;
+        this.leaderLeaseNanos = TimeUnit.MILLISECONDS.toNanos(leaderLeaseMs);
+        this.maxClockDriftNanos = TimeUnit.MILLISECONDS.toNanos(maxClockDriftMs);
         lock = new ReentrantLock();
     }
 
@@ -115,9 +160,18 @@ public class PaxosLeaderElectionService implements PingableLeader, LeaderElectio
             LeadershipToken token = genTokenFromValue(greatestLearned);
 
             if (isLastConfirmedLeader(greatestLearned)) {
+                long leadershipSeenAt = noteLeadershipSeen(token);
                 StillLeadingStatus leadingStatus = isStillLeading(token);
                 if (leadingStatus == StillLeadingStatus.LEADING) {
-                    return token;
+                    long previousLeaseRemaining = leadershipSeenAt + leaderLeaseNanos - System.nanoTime();
+                    if (previousLeaseRemaining <= 0 || isFirstLeader(greatestLearned)) {
+                        return token;
+                    }
+                    // the previous leader may still be serving requests under its lease
+                    leaderLog.info("Waiting {} ms for the previous leader's lease to expire",
+                            TimeUnit.NANOSECONDS.toMillis(previousLeaseRemaining));
+                    TimeUnit.NANOSECONDS.sleep(previousLeaseRemaining);
+                    continue;
                 } else if (leadingStatus == StillLeadingStatus.NO_QUORUM) {
                     leaderLog.warn("The most recent known information says this server is the leader, but there is no quorum right now");
                     // If we don't have quorum we should just retry our calls.
@@ -154,11 +208,7 @@ public class PaxosLeaderElectionService implements PingableLeader, LeaderElectio
         }
         final PingableLeader leader = maybeLeader.get();
 
-        CompletionService<Boolean> pingCompletionService = new ExecutorCompletionService<Boolean>(
-                executor);
-
-        // kick off all the requests
-        pingCompletionService.submit(new Callable<Boolean>() {
+        Future<Boolean> pingFuture = executor.submit(new Callable<Boolean>() {
             @Override
             public Boolean call() throws Exception {
                 return leader.ping();
@@ -166,15 +216,16 @@ public class PaxosLeaderElectionService implements PingableLeader, LeaderElectio
         });
 
         try {
-            Future<Boolean> pingFuture = pingCompletionService.poll(
-                    leaderPingResponseWaitMs,
-                    TimeUnit.MILLISECONDS);
-            return pingFuture != null && pingFuture.get();
+            return pingFuture.get(leaderPingResponseWaitMs, TimeUnit.MILLISECONDS);
         } catch (InterruptedException e) {
             return false;
         } catch (ExecutionException e) {
             log.warn("cannot ping leader", e);
             return false;
+        } catch (TimeoutException e) {
+            return false;
+        } finally {
+            pingFuture.cancel(false);
         }
     }
 
@@ -431,8 +482,116 @@ public class PaxosLeaderElectionService implements PingableLeader, LeaderElectio
      */
     private final ConcurrentMap<LeadershipToken, StillLeadingCall> currentIsStillLeadingCall = Maps.newConcurrentMap();
 
+    /* The lease granted by the last successful leadership check, if leases are enabled.
+     */
+    private final AtomicReference<LeaderLease> lease = new AtomicReference<LeaderLease>();
+    private final AtomicBoolean leaseRenewalInProgress = new AtomicBoolean(false);
+    // separate from the executor, which may have too few threads to run the renewal and its requests at once
+    private final ExecutorService leaseRenewalExecutor =
+            PTExecutors.newSingleThreadExecutor(new NamedThreadFactory("leader-lease-renewal", true));
+
+    /* When this node first saw itself as the leader for the token, for waiting out the previous leader's lease.
+     */
+    private final AtomicReference<LeaderLease> leadershipSeen = new AtomicReference<LeaderLease>();
+
+    private static class LeaderLease {
+        final LeadershipToken token;
+        final long nanos;
+
+        LeaderLease(LeadershipToken token, long nanos) {
+            this.token = token;
+            this.nanos = nanos;
+        }
+    }
+
+    private static boolean isFirstLeader(PaxosValue value) {
+        return value.getRound() == Defaults.defaultValue(long.class);
+    }
+
+    private long noteLeadershipSeen(LeadershipToken token) {
+        while (true) {
+            LeaderLease seen = leadershipSeen.get();
+            if (seen != null && seen.token.sameAs(token)) {
+                return seen.nanos;
+            }
+            LeaderLease now = new LeaderLease(token, System.nanoTime());
+            if (leadershipSeen.compareAndSet(seen, now)) {
+                return now.nanos;
+            }
+        }
+    }
+
     @Override
     public StillLeadingStatus isStillLeading(LeadershipToken token) {
+        if (leaderLeaseNanos > 0 && isLeaseValid(token)) {
+            return StillLeadingStatus.LEADING;
+        }
+        return isStillLeadingBatched(token);
+    }
+
+    /**
+     * Returns true if the token is covered by a lease, in which case no other node can have become
+     * leader yet. Once half of the lease has gone, it is renewed in the background.
+     */
+    private boolean isLeaseValid(final LeadershipToken token) {
+        LeaderLease current = lease.get();
+        if (current == null || !current.token.sameAs(token)) {
+            return false;
+        }
+        long remaining = current.nanos - System.nanoTime();
+        if (remaining <= 0) {
+            return false;
+        }
+        // we may have learned of a new leader from a peer since the lease was granted
+        PaxosValue mostRecentValue = knowledge.getGreatestLearnedValue();
+        if (mostRecentValue == null || !token.sameAs(genTokenFromValue(mostRecentValue))) {
+            return false;
+        }
+        if (remaining < leaderLeaseNanos / 2 && leaseRenewalInProgress.compareAndSet(false, true)) {
+            try {
+                leaseRenewalExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            isStillLeadingBatched(token);
+                        } catch (Throwable t) {
+                            log.warn("Failed to renew the leader lease", t);
+                        } finally {
+                            leaseRenewalInProgress.set(false);
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                leaseRenewalInProgress.set(false);
+            }
+        }
+        return true;
+    }
+
+    private void updateLease(LeadershipToken token, long checkStartedAt, StillLeadingStatus status) {
+        if (leaderLeaseNanos <= 0) {
+            return;
+        }
+        if (status != StillLeadingStatus.LEADING) {
+            LeaderLease current = lease.get();
+            if (status == StillLeadingStatus.NOT_LEADING && current != null && current.token.sameAs(token)) {
+                lease.compareAndSet(current, null);
+            }
+            return;
+        }
+        LeaderLease renewed = new LeaderLease(token, checkStartedAt + leaderLeaseNanos - maxClockDriftNanos);
+        while (true) {
+            LeaderLease current = lease.get();
+            if (current != null && current.token.sameAs(token) && current.nanos - renewed.nanos >= 0) {
+                return;
+            }
+            if (lease.compareAndSet(current, renewed)) {
+                return;
+            }
+        }
+    }
+
+    private StillLeadingStatus isStillLeadingBatched(LeadershipToken token) {
         while (true) {
             StillLeadingCallBatch callBatch = getStillLeadingCallBatch(token);
 
@@ -500,7 +659,9 @@ public class PaxosLeaderElectionService implements PingableLeader, LeaderElectio
     private void populateStillLeadingCall(StillLeadingCall batch, LeadershipToken token) {
         try {
             batch.getRequestCountAndSetInvalid();
+            long checkStartedAt = System.nanoTime();
             StillLeadingStatus status = isStillLeadingInternal(token);
+            updateLease(token, checkStartedAt, status);
             batch.populate(status);
         } catch (Throwable t) {
             log.error("Something went wrong while checking leadership", t);
@@ -15,14 +15,32 @@
  */
 package com.palantir.paxos;
 
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Lists;
+import com.palantir.common.base.Throwables;
+import com.palantir.paxos.persistence.generated.PaxosPersistence;
+
 public class PaxosAcceptorImpl implements PaxosAcceptor {
     private static final Logger logger = LoggerFactory.getLogger(PaxosAcceptorImpl.class);
+    private static final String RANGE_PROMISE_FILE = "range-promise";
 
     /**
      * @param logDir string path for directory to place durable logs
@@ -30,23 +48,51 @@ public class PaxosAcceptorImpl implements PaxosAcceptor {
      * @return a new acceptor
      */
     public static PaxosAcceptor newAcceptor(String logDir) {
-        PaxosStateLog<PaxosAcceptorState> log = new PaxosStateLogImpl<PaxosAcceptorState>(logDir);
+        return newAcceptor(logDir, false);
+    }
+
+    /**
+     * @param logDir string path for directory to place durable logs
+     * @param useSegmentedLog whether to keep the log in a {@link SegmentedPaxosStateLog} rather than
+     *        a file per round
+     * @return a new acceptor
+     */
+    public static PaxosAcceptor newAcceptor(String logDir, boolean useSegmentedLog) {
+        PaxosStateLog<PaxosAcceptorState> log = useSegmentedLog
+                ? new SegmentedPaxosStateLog<PaxosAcceptorState>(logDir)
+                : new PaxosStateLogImpl<PaxosAcceptorState>(logDir);
+        File rangePromiseFile = new File(logDir, RANGE_PROMISE_FILE);
         return new PaxosAcceptorImpl(
                 new ConcurrentSkipListMap<Long, PaxosAcceptorState>(),
                 log,
-                log.getGreatestLogEntry());
+                log.getGreatestLogEntry(),
+                rangePromiseFile,
+                readRangePromise(rangePromiseFile));
     }
 
     final ConcurrentSkipListMap<Long, PaxosAcceptorState> state;
     final PaxosStateLog<PaxosAcceptorState> log;
     final long greatestInLogAtStartup;
 
+    /**
+     * Accepts and single round prepares hold the read lock, so that a range prepare, which holds the
+     * write lock, sees every value accepted in its range before promising the whole range.
+     */
+    private final ReentrantReadWriteLock rangeLock = new ReentrantReadWriteLock();
+    private final File rangePromiseFile;
+    @GuardedBy("rangeLock")
+    @Nullable private RangePromise rangePromise;
+
     private PaxosAcceptorImpl(ConcurrentSkipListMap<Long, PaxosAcceptorState> state,
                               PaxosStateLog<PaxosAcceptorState> log,
-                              long greatestInLogAtStartup) {
+                              long greatestInLogAtStartup,
+                              File rangePromiseFile,
+                              @Nullable RangePromise rangePromise) {
         this.state = state;
         this.log = log;
         this.greatestInLogAtStartup = greatestInLogAtStartup;
+        this.rangePromiseFile = rangePromiseFile;
+        this.rangePromise = rangePromise;
     }
 
     @Override
@@ -58,6 +104,19 @@ public class PaxosAcceptorImpl implements PaxosAcceptor {
             return new PaxosPromise(pid); // nack
         }
 
+        rangeLock.readLock().lock();
+        try {
+            RangePromise range = rangePromise;
+            if (range != null && range.covers(seq) && pid.compareTo(range.pid) < 0) {
+                return new PaxosPromise(range.pid);
+            }
+            return prepareInternal(seq, pid);
+        } finally {
+            rangeLock.readLock().unlock();
+        }
+    }
+
+    private PaxosPromise prepareInternal(long seq, PaxosProposalId pid) {
         for (;;) {
             PaxosAcceptorState oldState = state.get(seq);
 
@@ -98,6 +157,19 @@ public class PaxosAcceptorImpl implements PaxosAcceptor {
             return new BooleanPaxosResponse(false); // nack
         }
 
+        rangeLock.readLock().lock();
+        try {
+            RangePromise range = rangePromise;
+            if (range != null && range.covers(seq) && proposal.id.compareTo(range.pid) < 0) {
+                return new BooleanPaxosResponse(false);
+            }
+            return acceptInternal(seq, proposal);
+        } finally {
+            rangeLock.readLock().unlock();
+        }
+    }
+
+    private BooleanPaxosResponse acceptInternal(long seq, PaxosProposal proposal) {
         for (;;) {
             PaxosAcceptorState oldState = state.get(seq);
 
@@ -106,10 +178,18 @@ public class PaxosAcceptorImpl implements PaxosAcceptor {
                 return new BooleanPaxosResponse(false);
             }
 
+            // a proposer never sends two values with the same proposal id, so this can only be a bug
+            if (oldState != null
+                    && proposal.id.equals(oldState.lastAcceptedId)
+                    && !proposal.val.equals(oldState.lastAcceptedValue)) {
+                logger.error("rejecting a second value for round {} and proposal {}", seq, proposal.id);
+                return new BooleanPaxosResponse(false);
+            }
+
             // ack
             PaxosAcceptorState newState = oldState != null
                     ? oldState.withState(proposal.id, proposal.id, proposal.val)
-                    : PaxosAcceptorState.newState(proposal.id);
+                    : PaxosAcceptorState.newState(proposal.id).withState(proposal.id, proposal.id, proposal.val);
             if ((oldState == null && state.putIfAbsent(seq, newState) == null)
                     || (oldState != null && state.replace(seq, oldState, newState))) {
                 log.writeRound(seq, newState);
@@ -118,6 +198,65 @@ public class PaxosAcceptorImpl implements PaxosAcceptor {
         }
     }
 
+    @Override
+    public PaxosRangePromise prepareFrom(long seq, PaxosProposalId pid) {
+        // Reading the log tail can take a while, so do it before blocking accepts with the write lock.
+        // Rounds read from the log only fill in ones missing from memory, which an accept always
+        // updates before it writes the log, so nothing newer can be overwritten.
+        try {
+            loadRoundsFrom(seq);
+        } catch (Exception e) {
+            logger.error("log read failed for range request from: " + seq, e);
+            return new PaxosRangePromise(pid); // nack
+        }
+
+        rangeLock.writeLock().lock();
+        try {
+            RangePromise range = rangePromise;
+            if (range != null && pid.compareTo(range.pid) < 0) {
+                return new PaxosRangePromise(range.pid); // nack
+            }
+
+            List<PaxosPromise> acceptedRounds = getAcceptedRoundsFrom(seq, pid);
+
+            // Promising from further back than was asked only narrows what we will accept.
+            RangePromise newRange = new RangePromise(range == null ? seq : Math.min(seq, range.from), pid);
+            try {
+                writeRangePromise(newRange);
+            } catch (IOException e) {
+                logger.error("problem writing paxos range promise", e);
+                throw Throwables.throwUncheckedException(e);
+            }
+            rangePromise = newRange;
+            return new PaxosRangePromise(pid, acceptedRounds);
+        } finally {
+            rangeLock.writeLock().unlock();
+        }
+    }
+
+    private void loadRoundsFrom(long seq) throws TruncatedStateLogException, IOException {
+        if (seq < log.getLeastLogEntry()) {
+            throw new TruncatedStateLogException("round " + seq + " before truncation cutoff of "
+                    + log.getLeastLogEntry());
+        }
+        for (Map.Entry<Long, byte[]> round : log.readRounds(seq, log.getGreatestLogEntry()).entrySet()) {
+            if (!state.containsKey(round.getKey())) {
+                state.putIfAbsent(round.getKey(), PaxosAcceptorState.BYTES_HYDRATOR.hydrateFromBytes(round.getValue()));
+            }
+        }
+    }
+
+    @GuardedBy("rangeLock")
+    private List<PaxosPromise> getAcceptedRoundsFrom(long seq, PaxosProposalId pid) {
+        List<PaxosPromise> acceptedRounds = Lists.newArrayList();
+        for (PaxosAcceptorState round : state.tailMap(seq).values()) {
+            if (round.lastAcceptedValue != null) {
+                acceptedRounds.add(new PaxosPromise(pid, round.lastAcceptedId, round.lastAcceptedValue));
+            }
+        }
+        return acceptedRounds;
+    }
+
     @Override
     public long getLatestSequencePreparedOrAccepted() {
         if (state.isEmpty()) {
@@ -145,4 +284,55 @@ public class PaxosAcceptorImpl implements PaxosAcceptor {
         }
     }
 
+    private void writeRangePromise(RangePromise range) throws IOException {
+        File tmpFile = new File(rangePromiseFile.getPath() + ".tmp");
+        FileOutputStream fileOut = null;
+        try {
+            fileOut = new FileOutputStream(tmpFile);
+            DataOutputStream out = new DataOutputStream(fileOut);
+            out.writeLong(range.from);
+            out.write(range.pid.persistToProto().toByteArray());
+            out.flush();
+            fileOut.getFD().sync();
+            fileOut.close();
+        } finally {
+            IOUtils.closeQuietly(fileOut);
+        }
+        if (!tmpFile.renameTo(rangePromiseFile)) {
+            throw new IOException("failed to rename " + tmpFile.getAbsolutePath());
+        }
+    }
+
+    @Nullable
+    private static RangePromise readRangePromise(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            byte[] bytes = FileUtils.readFileToByteArray(file);
+            long from = ByteBuffer.wrap(bytes).getLong();
+            PaxosProposalId pid = PaxosProposalId.hydrateFromProto(
+                    PaxosPersistence.PaxosProposalId.parseFrom(Arrays.copyOfRange(bytes, 8, bytes.length)));
+            return new RangePromise(from, pid);
+        } catch (IOException e) {
+            throw new RuntimeException("IO problem reading " + file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * A promise not to accept proposals less than pid in any round from onwards.
+     */
+    private static final class RangePromise {
+        final long from;
+        final PaxosProposalId pid;
+
+        RangePromise(long from, PaxosProposalId pid) {
+            this.from = from;
+            this.pid = pid;
+        }
+
+        boolean covers(long seq) {
+            return seq >= from;
+        }
+    }
 }
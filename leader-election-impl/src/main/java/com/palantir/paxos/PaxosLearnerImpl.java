@@ -34,7 +34,19 @@ public class PaxosLearnerImpl implements PaxosLearner {
      * @return a new learner
      */
     public static PaxosLearner newLearner(String logDir) {
-        PaxosStateLogImpl<PaxosValue> log = new PaxosStateLogImpl<PaxosValue>(logDir);
+        return newLearner(logDir, false);
+    }
+
+    /**
+     * @param logDir string path for directory to place durable logs
+     * @param useSegmentedLog whether to keep the log in a {@link SegmentedPaxosStateLog} rather than
+     *        a file per round
+     * @return a new learner
+     */
+    public static PaxosLearner newLearner(String logDir, boolean useSegmentedLog) {
+        PaxosStateLog<PaxosValue> log = useSegmentedLog
+                ? new SegmentedPaxosStateLog<PaxosValue>(logDir)
+                : new PaxosStateLogImpl<PaxosValue>(logDir);
         ConcurrentSkipListMap<Long, PaxosValue> state = new ConcurrentSkipListMap<Long, PaxosValue>();
 
         byte[] greatestValidValue = PaxosStateLogs.getGreatestValidLogEntry(log);
@@ -67,7 +79,7 @@ public class PaxosLearnerImpl implements PaxosLearner {
             if (!state.containsKey(seq)) {
                 byte[] bytes = log.readRound(seq);
                 if (bytes != null) {
-                    PaxosValue value = PaxosValue.BYTES_HYDRATOR.hydrateFromBytes(log.readRound(seq));
+                    PaxosValue value = PaxosValue.BYTES_HYDRATOR.hydrateFromBytes(bytes);
                     state.put(seq, value);
                 }
             }
@@ -87,9 +99,23 @@ public class PaxosLearnerImpl implements PaxosLearner {
         }
 
         Collection<PaxosValue> values = new ArrayList<PaxosValue>();
+        SortedMap<Long, byte[]> persisted = null;
+        boolean readFromLog = false;
         for (long i = seq; i <= greatestSeq; i++) {
-            PaxosValue value;
-            value = getLearnedValue(i);
+            PaxosValue value = state.get(i);
+            if (value == null) {
+                if (!readFromLog) {
+                    // a single range read for every round not in memory, rather than one read per round
+                    persisted = readRoundsFromLog(i, greatestSeq);
+                    readFromLog = true;
+                }
+                if (persisted == null) {
+                    value = getLearnedValue(i);
+                } else if (persisted.containsKey(i)) {
+                    value = PaxosValue.BYTES_HYDRATOR.hydrateFromBytes(persisted.get(i));
+                    state.put(i, value);
+                }
+            }
             if (value != null) {
                 values.add(value);
             }
@@ -97,6 +123,16 @@ public class PaxosLearnerImpl implements PaxosLearner {
         return values;
     }
 
+    private SortedMap<Long, byte[]> readRoundsFromLog(long fromInclusive, long toInclusive) {
+        try {
+            return log.readRounds(fromInclusive, toInclusive);
+        } catch (IOException e) {
+            logger.error("unable to read learned values from " + fromInclusive + " to " + toInclusive
+                    + ", reading them one at a time", e);
+            return null;
+        }
+    }
+
     @Override
     public PaxosValue getGreatestLearnedValue() {
         if (!state.isEmpty()) {
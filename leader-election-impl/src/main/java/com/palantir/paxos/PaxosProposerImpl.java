@@ -19,11 +19,16 @@ import static com.google.common.collect.ImmutableList.copyOf;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,28 +36,53 @@ import org.slf4j.LoggerFactory;
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.palantir.common.concurrent.CoalescingBatcher;
 
 /**
  * Implementation of a paxos proposer than can be a designated proposer (leader) and designated
  * learner (informer).
+ * <p>
+ * With multi-paxos enabled, the proposer prepares every round from the first one it proposes in
+ * onwards with a single {@link PaxosAcceptor#prepareFrom} and then only runs the accept phase
+ * while its acceptors keep that promise. Accepts from concurrent proposals are sent to each
+ * acceptor as one batch. If the acceptors reject the prepared proposal, or don't support range
+ * prepares at all, it falls back to running both phases for each round.
  *
  * @author rullman
  */
 public class PaxosProposerImpl implements PaxosProposer {
     private static final Logger log = LoggerFactory.getLogger(PaxosProposerImpl.class);
 
+    private static final long RANGE_PREPARE_RETRY_MILLIS = 1000;
+
     public static PaxosProposer newProposer(PaxosLearner localLearner,
                                             List<PaxosAcceptor> allAcceptors,
                                             List<PaxosLearner> allLearners,
                                             int quorumSize,
                                             ExecutorService executor) {
+        return newProposer(localLearner, allAcceptors, allLearners, quorumSize, executor, false);
+    }
+
+    /**
+     * @param useMultiPaxos whether to prepare all future rounds at once and batch accepts, so that
+     *        proposals normally take a single round trip to a quorum instead of two
+     */
+    public static PaxosProposer newProposer(PaxosLearner localLearner,
+                                            List<PaxosAcceptor> allAcceptors,
+                                            List<PaxosLearner> allLearners,
+                                            int quorumSize,
+                                            ExecutorService executor,
+                                            boolean useMultiPaxos) {
         return new PaxosProposerImpl(
                 localLearner,
                 allAcceptors,
                 allLearners,
                 quorumSize,
                 UUID.randomUUID().toString(),
-                executor);
+                executor,
+                useMultiPaxos);
     }
 
     final ImmutableList<PaxosAcceptor> allAcceptors;
@@ -61,15 +91,24 @@ public class PaxosProposerImpl implements PaxosProposer {
     final int quorumSize;
     final String uuid;
     final AtomicLong proposalNum;
+    final boolean useMultiPaxos;
 
     private final ExecutorService executor;
 
+    private final AtomicReference<PreparedRange> preparedRange = new AtomicReference<PreparedRange>();
+    private final Object rangePrepareLock = new Object();
+    @GuardedBy("rangePrepareLock")
+    private long nextRangePrepareMillis = 0;
+
+    private final CoalescingBatcher<PaxosProposal, Boolean> acceptBatcher;
+
     private PaxosProposerImpl(PaxosLearner localLearner,
                               List<PaxosAcceptor> acceptors,
                               List<PaxosLearner> learners,
                               int quorumSize,
                               String uuid,
-                              ExecutorService executor) {
+                              ExecutorService executor,
+                              boolean useMultiPaxos) {
         Preconditions.checkState(
                 quorumSize > acceptors.size() / 2,
                 "quorum size needs to be at least the majority of acceptors");
@@ -80,12 +119,27 @@ public class PaxosProposerImpl implements PaxosProposer {
         this.uuid = uuid;
         this.proposalNum = new AtomicLong();
         this.executor = executor;
+        this.useMultiPaxos = useMultiPaxos;
+        this.acceptBatcher = new CoalescingBatcher<PaxosProposal, Boolean>(
+                new Function<List<PaxosProposal>, List<Boolean>>() {
+                    @Override
+                    public List<Boolean> apply(List<PaxosProposal> proposals) {
+                        return acceptBatch(proposals);
+                    }
+                });
     }
 
     @Override
     public byte[] propose(final long seq, @Nullable byte[] bytes) throws PaxosRoundFailureException {
-        final PaxosProposalId proposalID = new PaxosProposalId(proposalNum.incrementAndGet(), uuid);
         PaxosValue toPropose = new PaxosValue(uuid, seq, bytes);
+        if (useMultiPaxos) {
+            PaxosValue chosenValue = proposeInPreparedRange(seq, toPropose);
+            if (chosenValue != null) {
+                return chosenValue.getData();
+            }
+        }
+
+        final PaxosProposalId proposalID = new PaxosProposalId(proposalNum.incrementAndGet(), uuid);
 
         // paxos phase one (prepare and promise)
         final PaxosValue finalValue = phaseOne(seq, proposalID, toPropose);
@@ -93,6 +147,11 @@ public class PaxosProposerImpl implements PaxosProposer {
         // paxos phase two (accept request and accepted)
         phaseTwo(seq, proposalID, finalValue);
 
+        teachLearners(seq, finalValue);
+        return finalValue.getData();
+    }
+
+    private void teachLearners(final long seq, final PaxosValue finalValue) {
         // broadcast learned value
         for (final PaxosLearner learner : allLearners) {
             // local learner is forced to update later
@@ -114,8 +173,175 @@ public class PaxosProposerImpl implements PaxosProposer {
 
         // force local learner to update
         localLearner.learn(seq, finalValue);
+    }
 
-        return finalValue.getData();
+    /**
+     * Proposes a value in a round covered by the range this proposer has prepared, preparing a
+     * new range first if it has none, so that only the accept phase is needed.
+     *
+     * @return the value chosen for the round, or null if the round has to go through both phases
+     */
+    @Nullable
+    private PaxosValue proposeInPreparedRange(long seq, PaxosValue value) {
+        PreparedRange range = getOrPrepareRange(seq);
+        if (range == null || seq < range.from) {
+            return null;
+        }
+
+        // Every value sent for a round with the same proposal id has to be the same one, so concurrent
+        // proposals for a round all send the value that got there first. A value is only dropped once
+        // it has been learned locally, and later proposals for that round find it there instead.
+        PaxosValue toAccept = range.values.putIfAbsent(seq, value);
+        if (toAccept == null) {
+            toAccept = value;
+            PaxosValue learned = localLearner.getLearnedValue(seq);
+            if (learned != null) {
+                range.values.remove(seq, value);
+                return learned;
+            }
+        }
+
+        if (!acceptInBatch(new PaxosProposal(range.pid, toAccept))) {
+            // another proposer has taken over at least this round, so prepare a new range next time
+            preparedRange.compareAndSet(range, null);
+            return null;
+        }
+        teachLearners(seq, toAccept);
+        range.values.remove(seq, toAccept);
+        return toAccept;
+    }
+
+    @Nullable
+    private PreparedRange getOrPrepareRange(long seq) {
+        PreparedRange range = preparedRange.get();
+        if (range != null) {
+            return range;
+        }
+        synchronized (rangePrepareLock) {
+            range = preparedRange.get();
+            if (range != null || System.currentTimeMillis() < nextRangePrepareMillis) {
+                return range;
+            }
+            range = prepareRange(seq);
+            if (range == null) {
+                nextRangePrepareMillis = System.currentTimeMillis() + RANGE_PREPARE_RETRY_MILLIS;
+            } else {
+                preparedRange.set(range);
+            }
+            return range;
+        }
+    }
+
+    /**
+     * Executes phase one of paxos for every round from seq onwards.
+     *
+     * @return the prepared range, or null if quorum could not be reached
+     */
+    @Nullable
+    private PreparedRange prepareRange(final long seq) {
+        final PaxosProposalId pid = new PaxosProposalId(proposalNum.incrementAndGet(), uuid);
+        List<PaxosRangePromise> receivedPromises =
+                PaxosQuorumChecker.<PaxosAcceptor, PaxosRangePromise> collectQuorumResponses(
+                        allAcceptors,
+                        new Function<PaxosAcceptor, PaxosRangePromise>() {
+                            @Override
+                            @Nullable
+                            public PaxosRangePromise apply(@Nullable PaxosAcceptor acceptor) {
+                                return acceptor.prepareFrom(seq, pid);
+                            }
+                        },
+                        quorumSize,
+                        executor,
+                        PaxosQuorumChecker.DEFAULT_REMOTE_REQUESTS_TIMEOUT_IN_SECONDS,
+                        true);
+
+        if (!PaxosQuorumChecker.hasQuorum(receivedPromises, quorumSize)) {
+            List<PaxosProposalId> promisedIds = Lists.newArrayList();
+            for (PaxosRangePromise promise : receivedPromises) {
+                promisedIds.add(promise.promisedId);
+            }
+            updateProposalNum(promisedIds);
+            log.info("failed to prepare rounds from {}, proposing each round separately", seq);
+            return null;
+        }
+
+        // as in phase one, a round that may already have a value chosen must get the value
+        // accepted with the greatest proposal id
+        Map<Long, PaxosPromise> greatestPromises = Maps.newHashMap();
+        for (PaxosRangePromise promise : receivedPromises) {
+            if (!promise.isSuccessful()) {
+                continue;
+            }
+            for (PaxosPromise accepted : promise.acceptedRounds) {
+                long round = accepted.lastAcceptedValue.getRound();
+                PaxosPromise greatest = greatestPromises.get(round);
+                if (greatest == null || accepted.compareTo(greatest) > 0) {
+                    greatestPromises.put(round, accepted);
+                }
+            }
+        }
+        ConcurrentMap<Long, PaxosValue> values = new ConcurrentHashMap<Long, PaxosValue>();
+        for (Map.Entry<Long, PaxosPromise> round : greatestPromises.entrySet()) {
+            values.put(round.getKey(), round.getValue().lastAcceptedValue);
+        }
+        return new PreparedRange(pid, seq, values);
+    }
+
+    /**
+     * Executes phase two of paxos for the given proposal, sharing the request to each acceptor with
+     * any concurrent proposals.
+     *
+     * @return whether a quorum accepted the proposal
+     */
+    private boolean acceptInBatch(PaxosProposal proposal) {
+        return acceptBatcher.apply(proposal);
+    }
+
+    /**
+     * Executes phase two of paxos for a batch of proposals.
+     *
+     * @return whether a quorum accepted each proposal, in the same order as the proposals
+     */
+    private List<Boolean> acceptBatch(final List<PaxosProposal> proposals) {
+        List<BatchPaxosResponse> responses =
+                PaxosQuorumChecker.<PaxosAcceptor, BatchPaxosResponse> collectQuorumResponses(
+                        allAcceptors,
+                        new Function<PaxosAcceptor, BatchPaxosResponse>() {
+                            @Override
+                            @Nullable
+                            public BatchPaxosResponse apply(@Nullable PaxosAcceptor acceptor) {
+                                return acceptor.acceptBatch(proposals);
+                            }
+                        },
+                        quorumSize,
+                        executor,
+                        PaxosQuorumChecker.DEFAULT_REMOTE_REQUESTS_TIMEOUT_IN_SECONDS);
+
+        List<Boolean> accepted = Lists.newArrayListWithCapacity(proposals.size());
+        for (int i = 0; i < proposals.size(); i++) {
+            int acks = 0;
+            for (BatchPaxosResponse response : responses) {
+                if (i < response.acks.size() && response.acks.get(i)) {
+                    acks++;
+                }
+            }
+            accepted.add(acks >= quorumSize);
+        }
+        return accepted;
+    }
+
+    private void updateProposalNum(List<PaxosProposalId> promisedIds) {
+        for (PaxosProposalId promisedId : promisedIds) {
+            while (true) {
+                long curNum = proposalNum.get();
+                if (promisedId.number <= curNum) {
+                    break;
+                }
+                if (proposalNum.compareAndSet(curNum, promisedId.number)) {
+                    break;
+                }
+            }
+        }
     }
 
     /**
@@ -146,17 +372,11 @@ public class PaxosProposerImpl implements PaxosProposer {
 
         if (!PaxosQuorumChecker.hasQuorum(receivedPromises, quorumSize)) {
             // update proposal number on failure
+            List<PaxosProposalId> promisedIds = Lists.newArrayList();
             for (PaxosPromise promise : receivedPromises) {
-                while (true) {
-                    long curNum = proposalNum.get();
-                    if (promise.promisedId.number <= curNum) {
-                        break;
-                    }
-                    if (proposalNum.compareAndSet(curNum, promise.promisedId.number)) {
-                        break;
-                    }
-                }
+                promisedIds.add(promise.promisedId);
             }
+            updateProposalNum(promisedIds);
             throw new PaxosRoundFailureException("failed to acquire quorum in paxos phase one");
         }
 
@@ -207,4 +427,19 @@ public class PaxosProposerImpl implements PaxosProposer {
         return uuid;
     }
 
+    /**
+     * The rounds this proposer has prepared with a single proposal id, along with the value it has
+     * to send in each round it has started or that some acceptor had already accepted a value in.
+     */
+    private static final class PreparedRange {
+        final PaxosProposalId pid;
+        final long from;
+        final ConcurrentMap<Long, PaxosValue> values;
+
+        PreparedRange(PaxosProposalId pid, long from, ConcurrentMap<Long, PaxosValue> values) {
+            this.pid = pid;
+            this.from = from;
+            this.values = values;
+        }
+    }
 }
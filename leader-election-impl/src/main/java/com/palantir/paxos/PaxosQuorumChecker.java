@@ -18,12 +18,13 @@ package com.palantir.paxos;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
-import java.util.concurrent.CompletionService;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
-import java.util.concurrent.ExecutorCompletionService;
-import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.annotation.concurrent.GuardedBy;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,7 +33,13 @@ import com.google.common.base.Function;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
-import com.palantir.util.Pair;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.palantir.common.base.Throwables;
 
 public final class PaxosQuorumChecker {
 
@@ -69,103 +76,172 @@ public final class PaxosQuorumChecker {
                                                                                                   Executor executor,
                                                                                                   long remoteRequestTimeoutInSec,
                                                                                                   boolean onlyLogOnQuorumFailure) {
-        CompletionService<RESPONSE> responseCompletionService = new ExecutorCompletionService<RESPONSE>(executor);
-
-        // kick off all the requests
-        List<Future<RESPONSE>> allFutures = Lists.newArrayList();
-        for (final SERVICE remote : remotes) {
-            allFutures.add(responseCompletionService.submit(new Callable<RESPONSE>() {
-                @Override
-                public RESPONSE call() throws Exception {
-                    return request.apply(remote);
-                }
-            }));
+        QuorumCollector<SERVICE, RESPONSE> collector =
+                new QuorumCollector<SERVICE, RESPONSE>(remotes, request, quorumSize, onlyLogOnQuorumFailure);
+        collector.start(executor);
+        try {
+            return collector.result.get(remoteRequestTimeoutInSec, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            log.warn("paxos request interrupted", e);
+            Thread.currentThread().interrupt();
+            return collector.finish();
+        } catch (TimeoutException e) {
+            // out of time, so go with the responses we have
+            return collector.finish();
+        } catch (ExecutionException e) {
+            throw Throwables.throwUncheckedException(e.getCause());
         }
+    }
 
-        List<Pair<String, Throwable>> toLog = Lists.newArrayList();
-        boolean interrupted = false;
-        List<RESPONSE> receivedResponses = new ArrayList<RESPONSE>();
-        int acksRecieved = 0;
-        int nacksRecieved = 0;
+    /**
+     * Makes the request on each of the remotes concurrently without blocking the calling thread.
+     * The returned future completes on whichever thread receives the deciding response: as soon as
+     * a quorum of the responses are successful, or enough of them have failed that a quorum is no
+     * longer possible, or every remote has responded. The requests still outstanding at that point
+     * are cancelled, as they are if the returned future is cancelled.
+     *
+     * @param remotes a list endpoints to make the remote call on
+     * @param request the request to make on each of the remote endpoints
+     * @param quorumSize number of acknowledge requests required to reach quorum
+     * @param executor runs the requests
+     * @return the responses received by the time the outcome was known
+     */
+    public static <SERVICE, RESPONSE extends PaxosResponse> ListenableFuture<List<RESPONSE>> collectQuorumResponsesAsync(
+            ImmutableList<SERVICE> remotes,
+            Function<SERVICE, RESPONSE> request,
+            int quorumSize,
+            Executor executor) {
+        QuorumCollector<SERVICE, RESPONSE> collector =
+                new QuorumCollector<SERVICE, RESPONSE>(remotes, request, quorumSize, false);
+        collector.start(executor);
+        return collector.result;
+    }
 
-        try {
-            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(remoteRequestTimeoutInSec);
-            // handle responses
-            while (acksRecieved < quorumSize) {
-                try {
-                    // check if quorum is impossible (nack quorum failure)
-                    if (nacksRecieved > remotes.size() - quorumSize) {
-                        break;
+    public static boolean hasQuorum(List<? extends PaxosResponse> responses, int quorumSize) {
+        return Collections2.filter(responses, PaxosResponses.isSuccessfulPredicate()).size() >= quorumSize;
+    }
+
+    private static final class QuorumCollector<SERVICE, RESPONSE extends PaxosResponse> {
+        private final ImmutableList<SERVICE> remotes;
+        private final Function<SERVICE, RESPONSE> request;
+        private final int quorumSize;
+        private final boolean onlyLogOnQuorumFailure;
+
+        private final List<ListenableFutureTask<RESPONSE>> requests = Lists.newArrayList();
+        final SettableFuture<List<RESPONSE>> result = SettableFuture.create();
+
+        @GuardedBy("this") private final List<RESPONSE> receivedResponses = new ArrayList<RESPONSE>();
+        @GuardedBy("this") private final List<Throwable> failures = Lists.newArrayList();
+        @GuardedBy("this") private int acksReceived = 0;
+        @GuardedBy("this") private int nacksReceived = 0;
+
+        QuorumCollector(ImmutableList<SERVICE> remotes,
+                        Function<SERVICE, RESPONSE> request,
+                        int quorumSize,
+                        boolean onlyLogOnQuorumFailure) {
+            this.remotes = remotes;
+            this.request = request;
+            this.quorumSize = quorumSize;
+            this.onlyLogOnQuorumFailure = onlyLogOnQuorumFailure;
+        }
+
+        void start(Executor executor) {
+            for (final SERVICE remote : remotes) {
+                requests.add(ListenableFutureTask.create(new Callable<RESPONSE>() {
+                    @Override
+                    public RESPONSE call() throws Exception {
+                        return request.apply(remote);
                     }
+                }));
+            }
 
-                    Future<RESPONSE> responseFuture = responseCompletionService.poll(
-                            deadline - System.nanoTime(),
-                            TimeUnit.NANOSECONDS);
-                    // check if out of responses (no quorum failure)
-                    if (responseFuture == null) {
-                        return receivedResponses;
+            // cancel pending requests once the outcome is known, or nobody wants it any more
+            result.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    for (ListenableFutureTask<RESPONSE> future : requests) {
+                        future.cancel(false);
                     }
+                }
+            }, MoreExecutors.directExecutor());
 
-                    // reject invalid or repeat promises
-                    RESPONSE response = responseFuture.get();
-                    if (response.isSuccessful()) {
-                        acksRecieved++;
-                    } else {
-                        nacksRecieved++;
+            for (ListenableFutureTask<RESPONSE> future : requests) {
+                Futures.addCallback(future, new FutureCallback<RESPONSE>() {
+                    @Override
+                    public void onSuccess(RESPONSE response) {
+                        onResponse(response);
                     }
 
-                    // record response
-                    receivedResponses.add(response);
-                } catch (InterruptedException e) {
-                    log.warn("paxos request interrupted", e);
-                    interrupted = true;
-                    break;
-                } catch (ExecutionException e) {
-                    nacksRecieved++;
-                    if (onlyLogOnQuorumFailure) {
-                        toLog.add(Pair.create(PAXOS_MESSAGE_ERROR, e.getCause()));
-                    } else {
-                        log.warn(PAXOS_MESSAGE_ERROR, e.getCause());
+                    @Override
+                    public void onFailure(Throwable t) {
+                        onError(t);
                     }
+                }, MoreExecutors.directExecutor());
+                if (result.isDone()) {
+                    // the rest would only be cancelled
+                    break;
                 }
+                executor.execute(future);
             }
+        }
 
-            // poll for extra completed futures
-            Future<RESPONSE> future;
-            while ((future = responseCompletionService.poll()) != null) {
-                try {
-                    receivedResponses.add(future.get());
-                } catch (InterruptedException e) {
-                    log.warn("paxos request interrupted", e);
-                    interrupted = true;
-                    break;
-                } catch (ExecutionException e) {
-                    log.warn(PAXOS_MESSAGE_ERROR, e.getCause());
+        private void onResponse(RESPONSE response) {
+            synchronized (this) {
+                if (response.isSuccessful()) {
+                    acksReceived++;
+                } else {
+                    nacksReceived++;
                 }
+                receivedResponses.add(response);
             }
+            finishIfDecided();
+        }
 
-        } finally {
-            // cancel pending futures (during failures)
-            for (Future<RESPONSE> future : allFutures) {
-                future.cancel(false);
+        private void onError(Throwable t) {
+            if (t instanceof CancellationException) {
+                return;
+            }
+            synchronized (this) {
+                nacksReceived++;
+                if (onlyLogOnQuorumFailure) {
+                    failures.add(t);
+                }
             }
+            if (!onlyLogOnQuorumFailure) {
+                log.warn(PAXOS_MESSAGE_ERROR, t);
+            }
+            finishIfDecided();
+        }
 
-            // reset interrupted flag
-            if (interrupted) {
-                Thread.currentThread().interrupt();
+        private void finishIfDecided() {
+            boolean decided;
+            synchronized (this) {
+                decided = acksReceived >= quorumSize
+                        || nacksReceived > remotes.size() - quorumSize
+                        || acksReceived + nacksReceived == remotes.size();
+            }
+            if (decided) {
+                finish();
             }
+        }
 
-            if (onlyLogOnQuorumFailure && acksRecieved < quorumSize) {
-                for (Pair<String, Throwable> p : toLog) {
-                    log.warn(p.lhSide, p.rhSide);
+        /**
+         * Completes the result with the responses received so far, unless it has already been completed.
+         */
+        List<RESPONSE> finish() {
+            List<RESPONSE> responses;
+            List<Throwable> toLog;
+            synchronized (this) {
+                responses = ImmutableList.copyOf(receivedResponses);
+                toLog = acksReceived < quorumSize ? ImmutableList.copyOf(failures) : ImmutableList.<Throwable>of();
+            }
+            if (result.set(responses)) {
+                for (Throwable t : toLog) {
+                    log.warn(PAXOS_MESSAGE_ERROR, t);
                 }
+                return responses;
             }
+            return Futures.getUnchecked(result);
         }
-
-        return receivedResponses;
-    }
-
-    public static boolean hasQuorum(List<? extends PaxosResponse> responses, int quorumSize) {
-        return Collections2.filter(responses, PaxosResponses.isSuccessfulPredicate()).size() >= quorumSize;
     }
 }
@@ -22,11 +22,12 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.NoSuchElementException;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.concurrent.locks.ReentrantLock;
 
 import javax.annotation.Nullable;
@@ -51,6 +52,8 @@ public class PaxosStateLogImpl<V extends Persistable & Versionable> implements P
 
     private final ReentrantLock lock = new ReentrantLock();
     private final HashMap<Long, Long> seqToVersionMap = new HashMap<Long, Long>();
+    // sequence numbers with a file on disk, so finding the extremes doesn't need a directory listing
+    private final TreeSet<Long> seqs = new TreeSet<Long>();
 
     private static final String TMP_FILE_SUFFIX = ".tmp";
     private static final Logger log = LoggerFactory.getLogger(PaxosStateLogImpl.class);
@@ -71,33 +74,34 @@ public class PaxosStateLogImpl<V extends Persistable & Versionable> implements P
             }};
     }
 
-    private static final Comparator<File> nameAsLongComparator() {
-        return new Comparator<File>() {
-            @Override
-            public int compare(File f1, File f2) {
-                Long s1 = getSeqFromFilename(f1);
-                Long s2 = getSeqFromFilename(f2);
-                return s1.compareTo(s2);
-            }
-        };
-    }
-
     private static enum Extreme { GREATEST, LEAST }
 
     final String path;
 
     public PaxosStateLogImpl(String path) {
         this.path = path;
+        lock.lock();
         try {
-            FileUtils.forceMkdir(new File(path));
-            if (getGreatestLogEntry() == PaxosAcceptor.NO_LOG_ENTRY) {
+            File dir = new File(path);
+            FileUtils.forceMkdir(dir);
+            List<File> files = getLogEntries(dir);
+            if (files == null) {
+                throw new IOException("could not list log files");
+            }
+            for (File file : files) {
+                seqs.add(getSeqFromFilename(file));
+            }
+            if (seqs.isEmpty()) {
                 // For a brand new log, we create a lowest entry so #getLeastLogEntry will return the right thing
                 // If we didn't add this then we could miss seq 0 and accept seq 1, then when we restart we will
                 // start ignoring seq 0 which may cause things to get stalled
                 FileUtils.touch(new File(path, getFilenameFromSeq(PaxosAcceptor.NO_LOG_ENTRY)));
+                seqs.add(PaxosAcceptor.NO_LOG_ENTRY);
             }
         } catch (IOException e) {
             throw new RuntimeException("IO problem related to the path " + new File(path).getAbsolutePath(), e);
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -147,6 +151,7 @@ public class PaxosStateLogImpl<V extends Persistable & Versionable> implements P
         // overwrite file with tmp
         File file = new File(path, name);
         tmpFile.renameTo(file);
+        seqs.add(seq);
 
         // update version
         seqToVersionMap.put(seq, round.getVersion());
@@ -163,6 +168,26 @@ public class PaxosStateLogImpl<V extends Persistable & Versionable> implements P
         }
     }
 
+    @Override
+    public SortedMap<Long, byte[]> readRounds(long fromInclusive, long toInclusive) throws IOException {
+        lock.lock();
+        try {
+            SortedMap<Long, byte[]> rounds = new TreeMap<Long, byte[]>();
+            if (fromInclusive > toInclusive) {
+                return rounds;
+            }
+            for (long seq : seqs.subSet(fromInclusive, true, toInclusive, true)) {
+                byte[] bytes = getBytesAndCheckChecksum(new File(path, getFilenameFromSeq(seq)));
+                if (bytes != null) {
+                    rounds.put(seq, bytes);
+                }
+            }
+            return rounds;
+        } finally {
+            lock.unlock();
+        }
+    }
+
     private static String getFilenameFromSeq(long seq) {
         return Long.toString(seq);
     }
@@ -184,21 +209,10 @@ public class PaxosStateLogImpl<V extends Persistable & Versionable> implements P
     public long getExtremeLogEntry(Extreme extreme) {
         lock.lock();
         try {
-            File dir = new File(path);
-            List<File> files = getLogEntries(dir);
-            if (files == null) {
-                return PaxosAcceptor.NO_LOG_ENTRY;
-            }
-
-            try {
-                File file = (extreme == Extreme.GREATEST)
-                        ? Collections.max(files, nameAsLongComparator())
-                        : Collections.min(files, nameAsLongComparator());
-                long seq = getSeqFromFilename(file);
-                return seq;
-            } catch (NoSuchElementException e) {
+            if (seqs.isEmpty()) {
                 return PaxosAcceptor.NO_LOG_ENTRY;
             }
+            return (extreme == Extreme.GREATEST) ? seqs.last() : seqs.first();
         } finally {
             lock.unlock();
         }
@@ -213,17 +227,12 @@ public class PaxosStateLogImpl<V extends Persistable & Versionable> implements P
                 // We never want to remove our most recent entry
                 toDeleteInclusive = Math.min(greatestLogEntry - 1, toDeleteInclusive);
             }
-            File dir = new File(path);
-            List<File> files = getLogEntries(dir);
-            Collections.<File> sort(files, nameAsLongComparator());
-            for (File file : files) {
-                long fileSeq = getSeqFromFilename(file);
-                if (fileSeq <= toDeleteInclusive) {
-                    if (file.delete()) {
-                        log.warn("failed to delete log file {}", file.getAbsolutePath());
-                    }
+            for (Iterator<Long> it = seqs.headSet(toDeleteInclusive, true).iterator(); it.hasNext(); ) {
+                File file = new File(path, getFilenameFromSeq(it.next()));
+                if (file.delete() || !file.exists()) {
+                    it.remove();
                 } else {
-                    break;
+                    log.warn("failed to delete log file {}", file.getAbsolutePath());
                 }
             }
         } finally {
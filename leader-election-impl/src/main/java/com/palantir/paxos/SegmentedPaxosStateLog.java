@@ -0,0 +1,674 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.paxos;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
+import com.palantir.common.base.Throwables;
+import com.palantir.common.persist.Persistable;
+
+/**
+ * A {@link PaxosStateLog} that appends rounds to a small number of segment files rather than
+ * writing a file per round.
+ * <p>
+ * Each record carries its sequence number, version and a CRC32 checksum, and an in-memory index
+ * maps every live sequence number to the record holding its latest version. Segments that are no
+ * longer being appended to are memory-mapped, so reading rounds from them, as learners catching up
+ * do, costs no syscalls at all. Concurrent {@link #writeRound} calls share fsyncs: each writer appends under
+ * the lock and then waits until some fsync covering its record completes, and whichever writer
+ * finds no fsync in flight issues the next one on behalf of everyone queued behind it.
+ * <p>
+ * Truncation drops the oldest segments once none of their records are live any more. Only a prefix
+ * of the segments is ever dropped, so the record that superseded or truncated a dead record in a
+ * surviving segment always survives with it. On startup the
+ * segments are scanned in order to rebuild the index, and a torn or corrupt record at the tail of
+ * the newest segment is cut off. A directory written by {@link PaxosStateLogImpl} is imported the
+ * first time it is opened, after which the per-round files are removed.
+ */
+@ThreadSafe
+public class SegmentedPaxosStateLog<V extends Persistable & Versionable> implements PaxosStateLog<V>, Closeable {
+    private static final Logger log = LoggerFactory.getLogger(SegmentedPaxosStateLog.class);
+
+    public static final long DEFAULT_MAX_SEGMENT_BYTES = 1024 * 1024;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String IMPORT_IN_PROGRESS_FILE = "import.tmp";
+    private static final String IMPORT_DONE_FILE = "import.done";
+
+    private static final byte TYPE_ROUND = 1;
+    private static final byte TYPE_TRUNCATE = 2;
+    private static final byte TYPE_PLACEHOLDER = 3;
+
+    /** length (4), type (1), seq (8), version (8), then the CRC32 of all of those and the payload (4). */
+    private static final int HEADER_SIZE = 25;
+    private static final int CHECKSUMMED_HEADER_SIZE = 21;
+    private static final long UNKNOWN_VERSION = Long.MIN_VALUE;
+    private static final byte[] NO_BYTES = new byte[0];
+
+    private final File dir;
+    private final long maxSegmentBytes;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    @GuardedBy("lock")
+    private final TreeMap<Long, Entry> index = new TreeMap<Long, Entry>();
+    @GuardedBy("lock")
+    private final TreeMap<Long, Segment> segments = new TreeMap<Long, Segment>();
+    @GuardedBy("lock")
+    private Segment active;
+    @GuardedBy("lock")
+    private long appendedCount = 0;
+
+    private final Object syncMonitor = new Object();
+    @GuardedBy("syncMonitor")
+    private long syncedCount = 0;
+    @GuardedBy("syncMonitor")
+    private boolean syncInProgress = false;
+
+    public SegmentedPaxosStateLog(String path) {
+        this(path, DEFAULT_MAX_SEGMENT_BYTES);
+    }
+
+    public SegmentedPaxosStateLog(String path, long maxSegmentBytes) {
+        Preconditions.checkArgument(maxSegmentBytes > 0, "maxSegmentBytes must be positive");
+        this.dir = new File(path);
+        this.maxSegmentBytes = maxSegmentBytes;
+        lock.lock();
+        try {
+            FileUtils.forceMkdir(dir);
+            importLegacyLogIfNeeded();
+            recover();
+            if (index.isEmpty()) {
+                // Same as PaxosStateLogImpl: a brand new log gets a lowest entry so #getLeastLogEntry
+                // keeps returning NO_LOG_ENTRY until the log is first truncated.
+                putEntry(PaxosAcceptor.NO_LOG_ENTRY,
+                        append(TYPE_PLACEHOLDER, PaxosAcceptor.NO_LOG_ENTRY, UNKNOWN_VERSION, NO_BYTES));
+                active.channel.force(false);
+            }
+        } catch (IOException e) {
+            closeQuietly();
+            throw new RuntimeException("IO problem related to the path " + dir.getAbsolutePath(), e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void writeRound(long seq, V round) {
+        long appended;
+        lock.lock();
+        try {
+            // reject old state
+            Entry existing = index.get(seq);
+            if (existing != null && round.getVersion() < existing.version) {
+                return;
+            }
+            putEntry(seq, append(TYPE_ROUND, seq, round.getVersion(), round.persistToBytes()));
+            appended = appendedCount;
+        } catch (IOException e) {
+            log.error("problem writing paxos state", e);
+            throw Throwables.throwUncheckedException(e);
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(appended);
+    }
+
+    @Override
+    public byte[] readRound(long seq) throws IOException {
+        lock.lock();
+        try {
+            Entry entry = index.get(seq);
+            if (entry == null || entry.placeholder) {
+                return null;
+            }
+            return getPayload(entry.segment.read(entry.offset, HEADER_SIZE + entry.length), 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public SortedMap<Long, byte[]> readRounds(long fromInclusive, long toInclusive) throws IOException {
+        lock.lock();
+        try {
+            SortedMap<Long, byte[]> rounds = new TreeMap<Long, byte[]>();
+            if (fromInclusive > toInclusive) {
+                return rounds;
+            }
+            SortedMap<Long, Entry> entries = index.subMap(fromInclusive, true, toInclusive, true);
+
+            // Rounds are mostly appended in order, so read the span each segment holds in one go
+            // rather than a round at a time.
+            Map<Segment, Long> spanStarts = new HashMap<Segment, Long>();
+            Map<Segment, Long> spanEnds = new HashMap<Segment, Long>();
+            for (Entry entry : entries.values()) {
+                Long start = spanStarts.get(entry.segment);
+                Long end = spanEnds.get(entry.segment);
+                spanStarts.put(entry.segment, start == null ? entry.offset : Math.min(start, entry.offset));
+                spanEnds.put(entry.segment, end == null ? entry.end() : Math.max(end, entry.end()));
+            }
+            Map<Segment, ByteBuffer> spans = new HashMap<Segment, ByteBuffer>();
+            for (Map.Entry<Segment, Long> start : spanStarts.entrySet()) {
+                Segment segment = start.getKey();
+                int length = Ints.checkedCast(spanEnds.get(segment) - start.getValue());
+                spans.put(segment, segment.read(start.getValue(), length));
+            }
+
+            for (Map.Entry<Long, Entry> e : entries.entrySet()) {
+                Entry entry = e.getValue();
+                if (!entry.placeholder) {
+                    int position = Ints.checkedCast(entry.offset - spanStarts.get(entry.segment));
+                    rounds.put(e.getKey(), getPayload(spans.get(entry.segment), position));
+                }
+            }
+            return rounds;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getLeastLogEntry() {
+        lock.lock();
+        try {
+            return index.isEmpty() ? PaxosAcceptor.NO_LOG_ENTRY : index.firstKey();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getGreatestLogEntry() {
+        lock.lock();
+        try {
+            return index.isEmpty() ? PaxosAcceptor.NO_LOG_ENTRY : index.lastKey();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void truncate(long toDeleteInclusive) {
+        lock.lock();
+        try {
+            long greatestLogEntry = getGreatestLogEntry();
+            if (greatestLogEntry >= 0) {
+                // We never want to remove our most recent entry
+                toDeleteInclusive = Math.min(greatestLogEntry - 1, toDeleteInclusive);
+            }
+            SortedMap<Long, Entry> deleted = index.headMap(toDeleteInclusive, true);
+            if (deleted.isEmpty()) {
+                return;
+            }
+            for (Entry entry : deleted.values()) {
+                entry.segment.liveEntries--;
+            }
+            deleted.clear();
+
+            // Records below the bound can survive in segments that are still partly live, so record
+            // the truncation to stop them reappearing after a restart.
+            append(TYPE_TRUNCATE, toDeleteInclusive, UNKNOWN_VERSION, NO_BYTES);
+            active.channel.force(false);
+
+            for (Iterator<Segment> it = segments.values().iterator(); it.hasNext(); ) {
+                Segment segment = it.next();
+                if (segment == active || segment.liveEntries > 0) {
+                    // a later segment can hold the truncation or newer version that kills a dead
+                    // record in this one, so it has to outlive this segment
+                    break;
+                }
+                it.remove();
+                segment.close();
+                if (!segment.file.delete()) {
+                    log.warn("failed to delete log segment {}", segment.file.getAbsolutePath());
+                }
+            }
+        } catch (IOException e) {
+            log.error("problem truncating paxos state", e);
+            throw Throwables.throwUncheckedException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closeQuietly();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getSegmentCount() {
+        lock.lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @GuardedBy("lock")
+    private Entry append(byte type, long seq, long version, byte[] payload) throws IOException {
+        if (active == null || active.size >= maxSegmentBytes) {
+            roll();
+        }
+        ByteBuffer record = encode(type, seq, version, payload);
+        long offset = active.size;
+        Preconditions.checkState(offset + record.capacity() <= Integer.MAX_VALUE, "segment %s is full", active.file);
+        while (record.hasRemaining()) {
+            active.channel.write(record, offset + record.position());
+        }
+        active.size += record.capacity();
+        appendedCount++;
+        return new Entry(active, offset, payload.length, version, type == TYPE_PLACEHOLDER);
+    }
+
+    @GuardedBy("lock")
+    private void roll() throws IOException {
+        long id = 0;
+        if (active != null) {
+            // Writers waiting on the group commit only fsync the active segment, so a segment has
+            // to be made durable before it stops being the active one.
+            active.channel.force(false);
+            active.sealed = true;
+            id = active.id + 1;
+        }
+        active = Segment.open(new File(dir, getSegmentFilename(id)), id);
+        segments.put(id, active);
+    }
+
+    @GuardedBy("lock")
+    private void putEntry(long seq, Entry entry) {
+        Entry previous = index.put(seq, entry);
+        if (previous != null) {
+            previous.segment.liveEntries--;
+        }
+        entry.segment.liveEntries++;
+    }
+
+    private void awaitDurable(long appended) {
+        boolean interrupted = false;
+        try {
+            for (;;) {
+                synchronized (syncMonitor) {
+                    if (syncedCount >= appended) {
+                        return;
+                    }
+                    if (syncInProgress) {
+                        try {
+                            syncMonitor.wait();
+                        } catch (InterruptedException e) {
+                            interrupted = true;
+                        }
+                        continue;
+                    }
+                    syncInProgress = true;
+                }
+
+                long synced = 0;
+                try {
+                    synced = syncActiveSegment();
+                } finally {
+                    synchronized (syncMonitor) {
+                        syncInProgress = false;
+                        syncedCount = Math.max(syncedCount, synced);
+                        syncMonitor.notifyAll();
+                    }
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return the number of appends that are known to be durable once this returns
+     */
+    private long syncActiveSegment() {
+        Segment segment;
+        long appended;
+        lock.lock();
+        try {
+            segment = active;
+            appended = appendedCount;
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            segment.channel.force(false);
+        } catch (ClosedChannelException e) {
+            // the segment was forced when it was sealed, before anything could close it
+            if (!segment.sealed) {
+                throw Throwables.throwUncheckedException(e);
+            }
+        } catch (IOException e) {
+            log.error("problem syncing paxos state", e);
+            throw Throwables.throwUncheckedException(e);
+        }
+        return appended;
+    }
+
+    @GuardedBy("lock")
+    private void recover() throws IOException {
+        List<Long> ids = Lists.newArrayList();
+        for (File file : listFiles()) {
+            if (file.getName().startsWith(SEGMENT_PREFIX)) {
+                ids.add(Long.parseLong(file.getName().substring(SEGMENT_PREFIX.length())));
+            }
+        }
+        long[] sortedIds = Longs.toArray(ids);
+        Arrays.sort(sortedIds);
+
+        for (int i = 0; i < sortedIds.length; i++) {
+            Segment segment = Segment.open(new File(dir, getSegmentFilename(sortedIds[i])), sortedIds[i]);
+            segments.put(segment.id, segment);
+            active = segment;
+
+            long validBytes = replay(segment);
+            if (validBytes < segment.size) {
+                if (i == sortedIds.length - 1) {
+                    log.warn("discarding {} bytes of torn or corrupt records at the end of {}",
+                            segment.size - validBytes, segment.file.getAbsolutePath());
+                    segment.channel.truncate(validBytes);
+                    segment.channel.force(false);
+                    segment.size = validBytes;
+                } else {
+                    log.error("ignoring {} bytes of corrupt records in the middle of {}",
+                            segment.size - validBytes, segment.file.getAbsolutePath());
+                }
+            }
+        }
+        for (Segment segment : segments.values()) {
+            segment.sealed = segment != active;
+        }
+        if (active != null) {
+            // the active segment is still growing, so it's read through the channel until it's sealed
+            active.mapped = null;
+        }
+    }
+
+    /**
+     * @return the length of the prefix of the segment made up of complete, valid records
+     */
+    @GuardedBy("lock")
+    private long replay(Segment segment) throws IOException {
+        ByteBuffer buffer = segment.map();
+        int offset = 0;
+        while (buffer.limit() - offset >= HEADER_SIZE) {
+            int length = buffer.getInt(offset);
+            byte type = buffer.get(offset + 4);
+            long seq = buffer.getLong(offset + 5);
+            if (length < 0 || length > buffer.limit() - offset - HEADER_SIZE || !isValid(buffer, offset, length)) {
+                break;
+            }
+
+            if (type == TYPE_TRUNCATE) {
+                SortedMap<Long, Entry> deleted = index.headMap(seq, true);
+                for (Entry entry : deleted.values()) {
+                    entry.segment.liveEntries--;
+                }
+                deleted.clear();
+            } else {
+                // Like PaxosStateLogImpl, only versions written since startup are used to reject old
+                // state: rounds read back from the log are rehydrated with their versions reset.
+                putEntry(seq, new Entry(segment, offset, length, UNKNOWN_VERSION, type == TYPE_PLACEHOLDER));
+            }
+            offset += HEADER_SIZE + length;
+        }
+        return offset;
+    }
+
+    /**
+     * Moves the per-round files of a {@link PaxosStateLogImpl} into the first segment. The rounds are
+     * written to a scratch file which is only renamed into place once the old files are gone, so a
+     * crash part way through either redoes the import or finishes it on the next startup.
+     */
+    @GuardedBy("lock")
+    private void importLegacyLogIfNeeded() throws IOException {
+        File inProgress = new File(dir, IMPORT_IN_PROGRESS_FILE);
+        File done = new File(dir, IMPORT_DONE_FILE);
+        FileUtils.deleteQuietly(inProgress);
+
+        SortedMap<Long, File> legacyFiles = new TreeMap<Long, File>();
+        boolean hasSegments = false;
+        for (File file : listFiles()) {
+            hasSegments |= file.getName().startsWith(SEGMENT_PREFIX);
+            Long seq = parseLegacySeq(file);
+            if (seq != null) {
+                legacyFiles.put(seq, file);
+            }
+        }
+
+        if (!done.exists()) {
+            if (legacyFiles.isEmpty()) {
+                return;
+            }
+            Preconditions.checkState(!hasSegments,
+                    "%s contains both log segments and per-round paxos log files; this happens if the log"
+                    + " was written by PaxosStateLogImpl after being converted to segments", dir);
+
+            PaxosStateLogImpl<V> legacyLog = new PaxosStateLogImpl<V>(dir.getPath());
+            Segment segment = Segment.open(inProgress, 0);
+            try {
+                for (long seq : legacyFiles.keySet()) {
+                    byte[] bytes = seq == PaxosAcceptor.NO_LOG_ENTRY ? NO_BYTES : legacyLog.readRound(seq);
+                    if (bytes == null) {
+                        continue;
+                    }
+                    byte type = seq == PaxosAcceptor.NO_LOG_ENTRY ? TYPE_PLACEHOLDER : TYPE_ROUND;
+                    ByteBuffer record = encode(type, seq, UNKNOWN_VERSION, bytes);
+                    while (record.hasRemaining()) {
+                        segment.channel.write(record, segment.size + record.position());
+                    }
+                    segment.size += record.capacity();
+                }
+                segment.channel.force(false);
+            } finally {
+                segment.close();
+            }
+            if (!inProgress.renameTo(done)) {
+                throw new IOException("failed to rename " + inProgress.getAbsolutePath());
+            }
+            log.info("imported {} per-round paxos log files from {}", legacyFiles.size(), dir.getAbsolutePath());
+        }
+
+        for (File file : legacyFiles.values()) {
+            FileUtils.forceDelete(file);
+        }
+        if (!done.renameTo(new File(dir, getSegmentFilename(0)))) {
+            throw new IOException("failed to rename " + done.getAbsolutePath());
+        }
+    }
+
+    private File[] listFiles() throws IOException {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            throw new IOException("could not list " + dir.getAbsolutePath());
+        }
+        return files;
+    }
+
+    private void closeQuietly() {
+        for (Segment segment : segments.values()) {
+            segment.close();
+        }
+    }
+
+    private static Long parseLegacySeq(File file) {
+        try {
+            return Long.parseLong(file.getName());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String getSegmentFilename(long id) {
+        return String.format("%s%020d", SEGMENT_PREFIX, id);
+    }
+
+    private static ByteBuffer encode(byte type, long seq, long version, byte[] payload) {
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        record.putInt(payload.length).put(type).putLong(seq).putLong(version).putInt(0).put(payload);
+        record.putInt(CHECKSUMMED_HEADER_SIZE, checksum(record, 0, payload.length));
+        record.flip();
+        return record;
+    }
+
+    /**
+     * @return the payload of the record starting at the given position of the buffer
+     * @throws CorruptLogFileException if the record doesn't match its checksum
+     */
+    private static byte[] getPayload(ByteBuffer buffer, int position) throws CorruptLogFileException {
+        int length = buffer.getInt(position);
+        if (length < 0 || length > buffer.limit() - position - HEADER_SIZE || !isValid(buffer, position, length)) {
+            throw new CorruptLogFileException();
+        }
+        byte[] payload = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(position + HEADER_SIZE);
+        view.get(payload);
+        return payload;
+    }
+
+    private static boolean isValid(ByteBuffer buffer, int position, int length) {
+        return buffer.getInt(position + CHECKSUMMED_HEADER_SIZE) == checksum(buffer, position, length);
+    }
+
+    private static int checksum(ByteBuffer buffer, int position, int length) {
+        ByteBuffer header = buffer.duplicate();
+        header.limit(position + CHECKSUMMED_HEADER_SIZE).position(position);
+        ByteBuffer payload = buffer.duplicate();
+        payload.limit(position + HEADER_SIZE + length).position(position + HEADER_SIZE);
+        CRC32 crc = new CRC32();
+        crc.update(header);
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new CorruptLogFileException();
+            }
+        }
+    }
+
+    private static final class Entry {
+        final Segment segment;
+        final long offset;
+        final int length;
+        final long version;
+        final boolean placeholder;
+
+        Entry(Segment segment, long offset, int length, long version, boolean placeholder) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.version = version;
+            this.placeholder = placeholder;
+        }
+
+        long end() {
+            return offset + HEADER_SIZE + length;
+        }
+    }
+
+    private static final class Segment {
+        final long id;
+        final File file;
+        final FileChannel channel;
+        long size;
+        int liveEntries = 0;
+        volatile boolean sealed = false;
+        MappedByteBuffer mapped;
+
+        private Segment(long id, File file, FileChannel channel, long size) {
+            this.id = id;
+            this.file = file;
+            this.channel = channel;
+            this.size = size;
+        }
+
+        static Segment open(File file, long id) throws IOException {
+            FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+            return new Segment(id, file, channel, channel.size());
+        }
+
+        /**
+         * Sealed segments never change, so they are mapped once and read without any syscalls.
+         */
+        ByteBuffer read(long offset, int length) throws IOException {
+            if (sealed) {
+                ByteBuffer view = map().duplicate();
+                view.limit(Ints.checkedCast(offset + length)).position(Ints.checkedCast(offset));
+                return view.slice();
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            readFully(channel, buffer, offset);
+            buffer.flip();
+            return buffer;
+        }
+
+        MappedByteBuffer map() throws IOException {
+            if (mapped == null) {
+                Preconditions.checkState(size <= Integer.MAX_VALUE, "segment %s is too large", file);
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            return mapped;
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("failed to close log segment {}", file.getAbsolutePath(), e);
+            }
+        }
+    }
+}
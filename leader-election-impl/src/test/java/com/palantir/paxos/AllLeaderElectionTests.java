@@ -24,7 +24,13 @@ import com.palantir.paxos.persistence.ProtobufTest;
 @RunWith(Suite.class)
 @SuiteClasses({
     ProtobufTest.class,
+    PaxosQuorumCheckerTest.class,
     PaxosConsensusFastTest.class,
+    SegmentedLogPaxosConsensusFastTest.class,
+    SegmentedPaxosStateLogTest.class,
+    MultiPaxosConsensusFastTest.class,
+    MultiPaxosProposerTest.class,
+    LeaderLeaseTest.class,
     PaxosConsensusSlowTest.class
 })
 public class AllLeaderElectionTests {
@@ -0,0 +1,100 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.paxos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.palantir.leader.LeaderElectionService.LeadershipToken;
+import com.palantir.leader.LeaderElectionService.StillLeadingStatus;
+
+public class LeaderLeaseTest {
+    private static final int NUM_POTENTIAL_LEADERS = 3;
+    private static final int QUORUM_SIZE = 2;
+    private static final long LEASE_MS = 2000;
+    private static final long MAX_CLOCK_DRIFT_MS = 200;
+
+    private PaxosTestState state;
+
+    @Before
+    public void setup() {
+        state = PaxosConsensusTestUtils.setup(
+                NUM_POTENTIAL_LEADERS,
+                QUORUM_SIZE,
+                false,
+                false,
+                LEASE_MS,
+                MAX_CLOCK_DRIFT_MS);
+    }
+
+    @After
+    public void teardown() throws Exception {
+        PaxosConsensusTestUtils.teardown(state);
+    }
+
+    @Test
+    public void leaderAnswersFromLeaseWithoutQuorum() throws InterruptedException {
+        LeadershipToken token = state.gainLeadership(0);
+        long start = System.nanoTime();
+        state.goDown(1);
+        state.goDown(2);
+        assertEquals(StillLeadingStatus.LEADING, state.leader(0).isStillLeading(token));
+
+        sleepUntil(start, LEASE_MS);
+        assertEquals(StillLeadingStatus.NO_QUORUM, state.leader(0).isStillLeading(token));
+    }
+
+    @Test
+    public void leaseIsRenewedInBackground() throws InterruptedException {
+        LeadershipToken token = state.gainLeadership(0);
+        long start = System.nanoTime();
+
+        sleepUntil(start, LEASE_MS * 11 / 20);
+        assertEquals(StillLeadingStatus.LEADING, state.leader(0).isStillLeading(token));
+        sleepUntil(start, LEASE_MS * 7 / 10);
+        state.goDown(1);
+        state.goDown(2);
+
+        // past the first lease, but within the renewed one
+        sleepUntil(start, LEASE_MS * 11 / 10);
+        assertEquals(StillLeadingStatus.LEADING, state.leader(0).isStillLeading(token));
+    }
+
+    @Test
+    public void newLeaderWaitsOutPreviousLease() {
+        LeadershipToken oldToken = state.gainLeadership(0);
+
+        long start = System.nanoTime();
+        state.gainLeadership(1);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("new leader started after " + elapsedMs + " ms", elapsedMs >= LEASE_MS);
+
+        assertEquals(StillLeadingStatus.NOT_LEADING, state.leader(0).isStillLeading(oldToken));
+    }
+
+    private static void sleepUntil(long startNanos, long millis) throws InterruptedException {
+        long remaining = startNanos + TimeUnit.MILLISECONDS.toNanos(millis) - System.nanoTime();
+        if (remaining > 0) {
+            TimeUnit.NANOSECONDS.sleep(remaining);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.paxos;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.Longs;
+import com.palantir.common.concurrent.PTExecutors;
+
+public class MultiPaxosProposerTest {
+    private static final int NUM_NODES = 3;
+    private static final int QUORUM_SIZE = 2;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<PaxosAcceptor> acceptors = Lists.newArrayList();
+    private final List<PaxosLearner> learners = Lists.newArrayList();
+    private ExecutorService executor;
+
+    @Before
+    public void setup() throws Exception {
+        executor = PTExecutors.newCachedThreadPool();
+        for (int i = 0; i < NUM_NODES; i++) {
+            acceptors.add(spy(PaxosAcceptorImpl.newAcceptor(folder.newFolder().getPath())));
+            learners.add(PaxosLearnerImpl.newLearner(folder.newFolder().getPath()));
+        }
+    }
+
+    @After
+    public void teardown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void steadyStateProposalsOnlyAccept() throws Exception {
+        PaxosProposer proposer = newProposer(0, true);
+        for (long seq = 0; seq < 10; seq++) {
+            assertArrayEquals(Longs.toByteArray(seq), proposer.propose(seq, Longs.toByteArray(seq)));
+        }
+
+        for (PaxosAcceptor acceptor : acceptors) {
+            verify(acceptor, atLeastOnce()).prepareFrom(anyLong(), any(PaxosProposalId.class));
+            verify(acceptor, never()).prepare(anyLong(), any(PaxosProposalId.class));
+        }
+        for (long seq = 0; seq < 10; seq++) {
+            assertEquals(seq, Longs.fromByteArray(learners.get(0).getLearnedValue(seq).getData()));
+        }
+    }
+
+    @Test
+    public void preparesNewRangeAfterAnotherProposerTakesOver() throws Exception {
+        PaxosProposer proposer = newProposer(0, true);
+        proposer.propose(0, Longs.toByteArray(0));
+
+        // another proposer's prepare outranks the prepared range in round 1
+        for (PaxosAcceptor acceptor : acceptors) {
+            acceptor.prepare(1, new PaxosProposalId(100, "other"));
+        }
+        try {
+            proposer.propose(1, Longs.toByteArray(1));
+            fail();
+        } catch (PaxosRoundFailureException e) {
+            // expected
+        }
+
+        for (PaxosAcceptor acceptor : acceptors) {
+            reset(acceptor);
+        }
+        assertArrayEquals(Longs.toByteArray(1), proposer.propose(1, Longs.toByteArray(1)));
+        assertArrayEquals(Longs.toByteArray(2), proposer.propose(2, Longs.toByteArray(2)));
+        for (PaxosAcceptor acceptor : acceptors) {
+            verify(acceptor, times(1)).prepareFrom(anyLong(), any(PaxosProposalId.class));
+            verify(acceptor, never()).prepare(anyLong(), any(PaxosProposalId.class));
+        }
+    }
+
+    @Test
+    public void newRangeKeepsValuesAlreadyAccepted() throws Exception {
+        // a value accepted by a quorum before the proposer has learned it
+        PaxosProposalId pid = new PaxosProposalId(0, "other");
+        PaxosValue accepted = new PaxosValue("other", 5, Longs.toByteArray(5));
+        for (PaxosAcceptor acceptor : acceptors.subList(0, QUORUM_SIZE)) {
+            acceptor.prepare(5, pid);
+            acceptor.accept(5, new PaxosProposal(pid, accepted));
+        }
+
+        PaxosProposer proposer = newProposer(2, true);
+        assertArrayEquals(Longs.toByteArray(5), proposer.propose(5, Longs.toByteArray(50)));
+        assertArrayEquals(Longs.toByteArray(60), proposer.propose(6, Longs.toByteArray(60)));
+    }
+
+    @Test
+    public void concurrentProposalsAreBatched() throws Exception {
+        final PaxosProposer proposer = newProposer(0, true);
+        proposer.propose(0, Longs.toByteArray(0));
+
+        List<Future<byte[]>> futures = Lists.newArrayList();
+        for (int i = 1; i <= 200; i++) {
+            final long seq = i;
+            futures.add(executor.submit(new Callable<byte[]>() {
+                @Override
+                public byte[] call() throws Exception {
+                    return proposer.propose(seq, Longs.toByteArray(seq));
+                }
+            }));
+        }
+        Set<Long> chosen = Sets.newHashSet();
+        for (Future<byte[]> future : futures) {
+            chosen.add(Longs.fromByteArray(future.get()));
+        }
+        assertEquals(200, chosen.size());
+        for (PaxosAcceptor acceptor : acceptors) {
+            verify(acceptor, never()).prepare(anyLong(), any(PaxosProposalId.class));
+            verify(acceptor, atLeastOnce()).acceptBatch(anyListOf(PaxosProposal.class));
+        }
+    }
+
+    @Test
+    public void rangePromiseSurvivesRestart() throws Exception {
+        String dir = folder.newFolder().getPath();
+        PaxosAcceptor acceptor = PaxosAcceptorImpl.newAcceptor(dir);
+        acceptor.prepareFrom(10, new PaxosProposalId(5, "uuid"));
+
+        PaxosAcceptor restarted = PaxosAcceptorImpl.newAcceptor(dir);
+        PaxosProposalId lower = new PaxosProposalId(4, "uuid");
+        assertFalse(restarted.prepare(12, lower).isSuccessful());
+        assertFalse(restarted.accept(12, new PaxosProposal(lower, new PaxosValue("uuid", 12, null))).isSuccessful());
+        assertFalse(restarted.prepareFrom(0, lower).isSuccessful());
+    }
+
+    @Test
+    public void acceptorsWithoutRangePreparesFallBackToBothPhases() throws Exception {
+        for (int i = 0; i < NUM_NODES; i++) {
+            acceptors.set(i, perRoundAcceptor(PaxosAcceptorImpl.newAcceptor(folder.newFolder().getPath())));
+        }
+        PaxosProposer proposer = newProposer(0, true);
+        for (long seq = 0; seq < 3; seq++) {
+            assertArrayEquals(Longs.toByteArray(seq), proposer.propose(seq, Longs.toByteArray(seq)));
+        }
+        assertFalse(acceptors.get(0).prepareFrom(10, new PaxosProposalId(100, "uuid")).isSuccessful());
+
+        PaxosProposalId pid = new PaxosProposalId(200, "uuid");
+        PaxosAcceptor acceptor = acceptors.get(0);
+        acceptor.prepare(21, new PaxosProposalId(300, "other"));
+        BatchPaxosResponse response = acceptor.acceptBatch(Lists.newArrayList(
+                new PaxosProposal(pid, new PaxosValue("uuid", 20, null)),
+                new PaxosProposal(pid, new PaxosValue("uuid", 21, null))));
+        assertEquals(Lists.newArrayList(true, false), response.getAcks());
+    }
+
+    private static PaxosAcceptor perRoundAcceptor(final PaxosAcceptor delegate) {
+        return new PaxosAcceptor() {
+            @Override
+            public PaxosPromise prepare(long seq, PaxosProposalId pid) {
+                return delegate.prepare(seq, pid);
+            }
+
+            @Override
+            public BooleanPaxosResponse accept(long seq, PaxosProposal proposal) {
+                return delegate.accept(seq, proposal);
+            }
+
+            @Override
+            public long getLatestSequencePreparedOrAccepted() {
+                return delegate.getLatestSequencePreparedOrAccepted();
+            }
+        };
+    }
+
+    private PaxosProposer newProposer(int node, boolean useMultiPaxos) {
+        return PaxosProposerImpl.newProposer(
+                learners.get(node),
+                acceptors,
+                learners,
+                QUORUM_SIZE,
+                executor,
+                useMultiPaxos);
+    }
+}
@@ -15,6 +15,7 @@
  */
 package com.palantir.paxos;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
@@ -23,6 +24,7 @@ import static org.junit.Assert.fail;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Proxy;
+import java.util.Collection;
 import java.util.SortedMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
@@ -47,7 +49,15 @@ public class PaxosConsensusFastTest {
 
     @Before
     public void setup() {
-        state = PaxosConsensusTestUtils.setup(NUM_POTENTIAL_LEADERS, QUORUM_SIZE);
+        state = PaxosConsensusTestUtils.setup(NUM_POTENTIAL_LEADERS, QUORUM_SIZE, useSegmentedLog(), useMultiPaxos());
+    }
+
+    protected boolean useSegmentedLog() {
+        return false;
+    }
+
+    protected boolean useMultiPaxos() {
+        return false;
     }
 
     @After
@@ -157,7 +167,9 @@ public class PaxosConsensusFastTest {
         long seq = 0;
 
         // write to log
-        PaxosStateLog<PaxosValue> log = new PaxosStateLogImpl<PaxosValue>(dir);
+        PaxosStateLog<PaxosValue> log = useSegmentedLog()
+                ? new SegmentedPaxosStateLog<PaxosValue>(dir)
+                : new PaxosStateLogImpl<PaxosValue>(dir);
         log.writeRound(seq, new PaxosValue(leaderUUID, 0, null));
 
         // read back from log
@@ -176,6 +188,18 @@ public class PaxosConsensusFastTest {
         } catch (Exception e) {}
     }
 
+    @Test
+    public void learnerCatchesUpFromLog() {
+        for (int i = 0; i < NUM_POTENTIAL_LEADERS * 3; i++) {
+            state.gainLeadership(i % NUM_POTENTIAL_LEADERS);
+        }
+        Collection<PaxosValue> learned = state.learner(0).getLearnedValuesSince(0);
+
+        PaxosLearner restarted = PaxosLearnerImpl.newLearner(
+                PaxosConsensusTestUtils.getLearnerLogDir(0), useSegmentedLog());
+        assertEquals(learned, restarted.getLearnedValuesSince(0));
+    }
+
     @Test
     public void learnerRecovery() {
         for (int i = 0; i < NUM_POTENTIAL_LEADERS * 3; i++) {
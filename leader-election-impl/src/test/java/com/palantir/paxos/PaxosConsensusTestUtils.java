@@ -46,6 +46,28 @@ public final class PaxosConsensusTestUtils {
 
     public static PaxosTestState setup(int numLeaders,
                                        int quorumSize) {
+        return setup(numLeaders, quorumSize, false);
+    }
+
+    public static PaxosTestState setup(int numLeaders,
+                                       int quorumSize,
+                                       boolean useSegmentedLog) {
+        return setup(numLeaders, quorumSize, useSegmentedLog, false);
+    }
+
+    public static PaxosTestState setup(int numLeaders,
+                                       int quorumSize,
+                                       boolean useSegmentedLog,
+                                       boolean useMultiPaxos) {
+        return setup(numLeaders, quorumSize, useSegmentedLog, useMultiPaxos, 0L, 0L);
+    }
+
+    public static PaxosTestState setup(int numLeaders,
+                                       int quorumSize,
+                                       boolean useSegmentedLog,
+                                       boolean useMultiPaxos,
+                                       long leaderLeaseMs,
+                                       long maxClockDriftMs) {
         List<LeaderElectionService> leaders = Lists.newArrayList();
         List<PaxosAcceptor> acceptors = Lists.newArrayList();
         List<PaxosLearner> learners = Lists.newArrayList();
@@ -56,14 +78,14 @@ public final class PaxosConsensusTestUtils {
         for (int i = 0; i < numLeaders; i++) {
             failureToggles.add(new AtomicBoolean(false));
 
-            PaxosLearner learner = PaxosLearnerImpl.newLearner(getLearnerLogDir(i));
+            PaxosLearner learner = PaxosLearnerImpl.newLearner(getLearnerLogDir(i), useSegmentedLog);
             learners.add(ToggleableExceptionProxy.newProxyInstance(
                     PaxosLearner.class,
                     learner,
                     failureToggles.get(i),
                     e));
 
-            PaxosAcceptor acceptor = PaxosAcceptorImpl.newAcceptor(getAcceptorLogDir(i));
+            PaxosAcceptor acceptor = PaxosAcceptorImpl.newAcceptor(getAcceptorLogDir(i), useSegmentedLog);
             acceptors.add(ToggleableExceptionProxy.newProxyInstance(
                     PaxosAcceptor.class,
                     acceptor,
@@ -77,7 +99,8 @@ public final class PaxosConsensusTestUtils {
                     ImmutableList.<PaxosAcceptor> copyOf(acceptors),
                     ImmutableList.<PaxosLearner> copyOf(learners),
                     quorumSize,
-                    executor);
+                    executor,
+                    useMultiPaxos);
             PaxosLeaderElectionService leader = new PaxosLeaderElectionService(
                     proposer,
                     learners.get(i),
@@ -85,7 +108,9 @@ public final class PaxosConsensusTestUtils {
                     ImmutableList.<PaxosAcceptor> copyOf(acceptors),
                     ImmutableList.<PaxosLearner> copyOf(learners),
                     executor,
-                    0L, 0L, 0L);
+                    0L, 0L, 0L,
+                    leaderLeaseMs,
+                    maxClockDriftMs);
             leaders.add(SimulatingFailingServerProxy.newProxyInstance(
                     LeaderElectionService.class,
                     leader,
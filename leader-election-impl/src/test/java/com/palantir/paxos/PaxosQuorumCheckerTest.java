@@ -0,0 +1,123 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.paxos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.palantir.common.concurrent.PTExecutors;
+
+public class PaxosQuorumCheckerTest {
+    private static final int QUORUM_SIZE = 2;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicBoolean stragglerInterrupted = new AtomicBoolean(false);
+    private ExecutorService executor;
+
+    @Before
+    public void setup() {
+        executor = PTExecutors.newCachedThreadPool();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        release.countDown();
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void completesOnQuorumWithoutWaitingForStragglers() throws Exception {
+        ListenableFuture<List<PaxosResponse>> future = PaxosQuorumChecker.collectQuorumResponsesAsync(
+                ImmutableList.of(Remote.ACK, Remote.HANG, Remote.ACK),
+                respond(),
+                QUORUM_SIZE,
+                executor);
+
+        List<PaxosResponse> responses = future.get(10, TimeUnit.SECONDS);
+        assertTrue(PaxosQuorumChecker.hasQuorum(responses, QUORUM_SIZE));
+        assertEquals(2, responses.size());
+        assertFalse(stragglerInterrupted.get());
+    }
+
+    @Test
+    public void completesOnceQuorumIsImpossible() throws Exception {
+        ListenableFuture<List<PaxosResponse>> future = PaxosQuorumChecker.collectQuorumResponsesAsync(
+                ImmutableList.of(Remote.NACK, Remote.HANG, Remote.FAIL),
+                respond(),
+                QUORUM_SIZE,
+                executor);
+
+        List<PaxosResponse> responses = future.get(10, TimeUnit.SECONDS);
+        assertFalse(PaxosQuorumChecker.hasQuorum(responses, QUORUM_SIZE));
+        assertEquals(1, responses.size());
+    }
+
+    @Test
+    public void blockingCollectionReturnsPartialResponsesOnTimeout() {
+        List<PaxosResponse> responses = PaxosQuorumChecker.collectQuorumResponses(
+                ImmutableList.of(Remote.ACK, Remote.HANG, Remote.HANG),
+                respond(),
+                QUORUM_SIZE,
+                executor,
+                1);
+
+        assertEquals(1, responses.size());
+        assertTrue(responses.get(0).isSuccessful());
+    }
+
+    private enum Remote {
+        ACK, NACK, FAIL, HANG
+    }
+
+    private Function<Remote, PaxosResponse> respond() {
+        return new Function<Remote, PaxosResponse>() {
+            @Override
+            public PaxosResponse apply(Remote remote) {
+                switch (remote) {
+                    case ACK:
+                        return new PaxosResponseImpl(true);
+                    case NACK:
+                        return new PaxosResponseImpl(false);
+                    case FAIL:
+                        throw new IllegalStateException("remote is down");
+                    default:
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            stragglerInterrupted.set(true);
+                            Thread.currentThread().interrupt();
+                        }
+                        return new PaxosResponseImpl(true);
+                }
+            }
+        };
+    }
+}
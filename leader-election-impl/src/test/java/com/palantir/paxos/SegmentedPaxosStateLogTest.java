@@ -0,0 +1,281 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.paxos;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.collect.Lists;
+import com.palantir.paxos.PaxosStateLog.CorruptLogFileException;
+
+public class SegmentedPaxosStateLogTest {
+    private static final PaxosProposalId PROPOSAL_ID = new PaxosProposalId(1, "uuid");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void newLogHasPlaceholderEntry() throws IOException {
+        SegmentedPaxosStateLog<PaxosValue> log = newLog(Long.MAX_VALUE);
+        assertEquals(PaxosAcceptor.NO_LOG_ENTRY, log.getLeastLogEntry());
+        assertEquals(PaxosAcceptor.NO_LOG_ENTRY, log.getGreatestLogEntry());
+        assertNull(log.readRound(PaxosAcceptor.NO_LOG_ENTRY));
+        log.close();
+    }
+
+    @Test
+    public void roundsSurviveReopening() throws IOException {
+        SegmentedPaxosStateLog<PaxosValue> log = newLog(100);
+        for (long seq = 0; seq < 20; seq++) {
+            log.writeRound(seq, value(seq));
+        }
+        log.close();
+
+        log = newLog(100);
+        assertEquals(PaxosAcceptor.NO_LOG_ENTRY, log.getLeastLogEntry());
+        assertEquals(19, log.getGreatestLogEntry());
+        for (long seq = 0; seq < 20; seq++) {
+            assertArrayEquals(value(seq).persistToBytes(), log.readRound(seq));
+        }
+        log.close();
+    }
+
+    @Test
+    public void olderVersionsAreRejected() throws IOException {
+        SegmentedPaxosStateLog<PaxosAcceptorState> log =
+                new SegmentedPaxosStateLog<PaxosAcceptorState>(folder.getRoot().getPath());
+        PaxosAcceptorState first = PaxosAcceptorState.newState(PROPOSAL_ID);
+        PaxosAcceptorState second = first.withPromise(PROPOSAL_ID);
+        log.writeRound(0, second);
+        log.writeRound(0, first);
+        assertArrayEquals(second.persistToBytes(), log.readRound(0));
+        log.close();
+    }
+
+    @Test
+    public void readRoundsSpansSealedAndActiveSegments() throws IOException {
+        SegmentedPaxosStateLog<PaxosValue> log = newLog(100);
+        for (long seq = 0; seq < 30; seq++) {
+            log.writeRound(seq, value(seq));
+        }
+        log.writeRound(5, new PaxosValue("leader", 5, new byte[] {42}));
+        assertTrue(log.getSegmentCount() > 2);
+
+        SortedMap<Long, byte[]> rounds = log.readRounds(3, 40);
+        assertEquals(27, rounds.size());
+        for (long seq = 3; seq < 30; seq++) {
+            byte[] expected = seq == 5
+                    ? new PaxosValue("leader", 5, new byte[] {42}).persistToBytes()
+                    : value(seq).persistToBytes();
+            assertArrayEquals(expected, rounds.get(seq));
+        }
+        assertTrue(log.readRounds(31, 40).isEmpty());
+        log.close();
+    }
+
+    @Test
+    public void truncateDropsWholeSegments() throws IOException {
+        SegmentedPaxosStateLog<PaxosValue> log = newLog(100);
+        for (long seq = 0; seq < 50; seq++) {
+            log.writeRound(seq, value(seq));
+        }
+        int segments = log.getSegmentCount();
+        log.truncate(39);
+        assertEquals(40, log.getLeastLogEntry());
+        assertNull(log.readRound(39));
+        assertTrue(log.getSegmentCount() < segments);
+
+        // the greatest entry is never removed
+        log.truncate(Long.MAX_VALUE);
+        assertEquals(49, log.getLeastLogEntry());
+        log.close();
+
+        log = newLog(100);
+        assertEquals(49, log.getLeastLogEntry());
+        assertEquals(49, log.getGreatestLogEntry());
+        assertArrayEquals(value(49).persistToBytes(), log.readRound(49));
+        log.close();
+    }
+
+    @Test
+    public void versionsAreForgottenOnReopening() throws IOException {
+        SegmentedPaxosStateLog<PaxosAcceptorState> log =
+                new SegmentedPaxosStateLog<PaxosAcceptorState>(folder.getRoot().getPath());
+        PaxosAcceptorState state = PaxosAcceptorState.newState(PROPOSAL_ID).withPromise(PROPOSAL_ID);
+        log.writeRound(0, state);
+        log.close();
+
+        // hydrated acceptor state starts again from version 0
+        PaxosAcceptorState hydrated = PaxosAcceptorState.BYTES_HYDRATOR.hydrateFromBytes(state.persistToBytes());
+        PaxosProposalId newId = new PaxosProposalId(2, "uuid");
+        log = new SegmentedPaxosStateLog<PaxosAcceptorState>(folder.getRoot().getPath());
+        log.writeRound(0, hydrated.withPromise(newId));
+        assertArrayEquals(hydrated.withPromise(newId).persistToBytes(), log.readRound(0));
+        log.close();
+    }
+
+    @Test
+    public void truncatedRoundsDoNotReappearWhenTheirTruncationSegmentIsDead() throws IOException {
+        // one segment holding the placeholder and rounds 5 and 10
+        SegmentedPaxosStateLog<PaxosValue> log = newLog(Long.MAX_VALUE);
+        log.writeRound(5, value(5));
+        log.writeRound(10, value(10));
+        log.close();
+
+        // from here on every record goes into a segment of its own
+        log = newLog(1);
+        log.truncate(5);
+        log.writeRound(3, value(3));
+        // the segment holding the first truncation has no live records left after this
+        log.truncate(3);
+        assertEquals(10, log.getLeastLogEntry());
+        log.close();
+
+        log = newLog(1);
+        assertEquals(10, log.getLeastLogEntry());
+        assertNull(log.readRound(5));
+        assertNull(log.readRound(3));
+        assertArrayEquals(value(10).persistToBytes(), log.readRound(10));
+        log.close();
+    }
+
+    @Test
+    public void tornTailIsDiscardedOnRecovery() throws IOException {
+        SegmentedPaxosStateLog<PaxosValue> log = newLog(Long.MAX_VALUE);
+        log.writeRound(0, value(0));
+        log.writeRound(1, value(1));
+        log.close();
+
+        File segment = onlySegment();
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        try {
+            file.setLength(file.length() - 1);
+        } finally {
+            file.close();
+        }
+
+        log = newLog(Long.MAX_VALUE);
+        assertEquals(0, log.getGreatestLogEntry());
+        log.writeRound(1, value(1));
+        log.close();
+
+        log = newLog(Long.MAX_VALUE);
+        assertArrayEquals(value(1).persistToBytes(), log.readRound(1));
+        log.close();
+    }
+
+    @Test
+    public void corruptRecordFailsRead() throws IOException {
+        SegmentedPaxosStateLog<PaxosValue> log = newLog(Long.MAX_VALUE);
+        log.writeRound(0, value(0));
+
+        RandomAccessFile file = new RandomAccessFile(onlySegment(), "rw");
+        try {
+            file.seek(file.length() - 1);
+            int last = file.read();
+            file.seek(file.length() - 1);
+            file.write(last ^ 0xFF);
+        } finally {
+            file.close();
+        }
+
+        try {
+            log.readRound(0);
+            fail();
+        } catch (CorruptLogFileException e) {
+            // expected
+        }
+        log.close();
+    }
+
+    @Test
+    public void concurrentWritesAreAllPersisted() throws Exception {
+        final SegmentedPaxosStateLog<PaxosValue> log = newLog(1000);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = Lists.newArrayList();
+        for (int i = 0; i < 8; i++) {
+            final int thread = i;
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (long seq = thread; seq < 400; seq += 8) {
+                        log.writeRound(seq, value(seq));
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        log.close();
+
+        SegmentedPaxosStateLog<PaxosValue> reopened = newLog(1000);
+        for (long seq = 0; seq < 400; seq++) {
+            assertArrayEquals(value(seq).persistToBytes(), reopened.readRound(seq));
+        }
+        reopened.close();
+    }
+
+    @Test
+    public void importsPerRoundLog() throws IOException {
+        PaxosStateLogImpl<PaxosValue> legacy = new PaxosStateLogImpl<PaxosValue>(folder.getRoot().getPath());
+        for (long seq = 0; seq < 5; seq++) {
+            legacy.writeRound(seq, value(seq));
+        }
+
+        SegmentedPaxosStateLog<PaxosValue> log = newLog(Long.MAX_VALUE);
+        assertEquals(PaxosAcceptor.NO_LOG_ENTRY, log.getLeastLogEntry());
+        assertEquals(4, log.getGreatestLogEntry());
+        for (long seq = 0; seq < 5; seq++) {
+            assertArrayEquals(value(seq).persistToBytes(), log.readRound(seq));
+        }
+        assertEquals(1, folder.getRoot().list().length);
+        log.close();
+    }
+
+    private SegmentedPaxosStateLog<PaxosValue> newLog(long maxSegmentBytes) {
+        return new SegmentedPaxosStateLog<PaxosValue>(folder.getRoot().getPath(), maxSegmentBytes);
+    }
+
+    private File onlySegment() {
+        File[] files = folder.getRoot().listFiles();
+        assertEquals(1, files.length);
+        return files[0];
+    }
+
+    private static PaxosValue value(long seq) {
+        return new PaxosValue("leader", seq, new byte[] {(byte) seq});
+    }
+}
@@ -68,6 +68,11 @@ public abstract class ForwardingLockService extends ForwardingObject implements
         return delegate().unlockAndFreeze(token);
     }
 
+    @Override
+    public void waitForWriteLocksToBeReleased(Set<LockDescriptor> lockDescriptors) throws InterruptedException {
+        delegate().waitForWriteLocksToBeReleased(lockDescriptors);
+    }
+
     @Override
     public Set<HeldLocksToken> getTokens(LockClient client) {
         return delegate().getTokens(client);
@@ -41,6 +41,11 @@ public abstract class ForwardingRemoteLockService extends ForwardingObject imple
         return delegate().unlock(token);
     }
 
+    @Override
+    public void waitForWriteLocksToBeReleased(Set<LockDescriptor> lockDescriptors) throws InterruptedException {
+        delegate().waitForWriteLocksToBeReleased(lockDescriptors);
+    }
+
     @Override
     public Set<LockRefreshToken> refreshLockRefreshTokens(Iterable<LockRefreshToken> tokens) {
         return delegate().refreshLockRefreshTokens(tokens);
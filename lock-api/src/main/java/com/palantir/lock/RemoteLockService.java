@@ -25,6 +25,7 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
 
+import com.google.common.collect.ImmutableSortedMap;
 import com.palantir.common.annotation.Idempotent;
 import com.palantir.common.annotation.NonIdempotent;
 
@@ -68,6 +69,33 @@ public interface RemoteLockService {
     @Consumes(MediaType.APPLICATION_JSON)
     @NonIdempotent boolean unlock(LockRefreshToken token);
 
+    /**
+     * Blocks until none of the given locks is held in write mode or frozen, without acquiring any
+     * of them. This is equivalent to, but much cheaper than, a
+     * {@link LockRequest.Builder#lockAndRelease()} request for read locks on the same descriptors:
+     * no tokens are created and the waiter never holds a lock that could delay other clients.
+     * Locks are waited on one at a time in descriptor order, so when this returns each lock has
+     * been observed to be free at some point after the call was made.
+     * <p>
+     * By default this makes the equivalent lock-and-release request, so lock services that
+     * don't implement the cheaper wait still support it.
+     */
+    @POST
+    @Path("await-locks-released")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Idempotent default void waitForWriteLocksToBeReleased(Set<LockDescriptor> lockDescriptors)
+            throws InterruptedException {
+        if (lockDescriptors.isEmpty()) {
+            return;
+        }
+        ImmutableSortedMap.Builder<LockDescriptor, LockMode> locks = ImmutableSortedMap.naturalOrder();
+        for (LockDescriptor descriptor : lockDescriptors) {
+            locks.put(descriptor, LockMode.READ);
+        }
+        lock(LockClient.ANONYMOUS.getClientId(), LockRequest.builder(locks.build()).lockAndRelease().build());
+    }
+
     /**
      * Refreshes the given lock tokens.
      *
@@ -0,0 +1,65 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.lock;
+
+import java.io.Serializable;
+
+import javax.annotation.concurrent.Immutable;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Preconditions;
+
+/**
+ * Everything a client needs to begin a read-write transaction: a held lock on the transaction's
+ * immutable timestamp, the immutable timestamp itself and a fresh start timestamp.
+ */
+@Immutable
+public final class StartedTransaction implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final LockRefreshToken immutableTimestampLock;
+    private final long immutableTimestamp;
+    private final long startTimestamp;
+
+    @JsonCreator
+    public StartedTransaction(@JsonProperty("immutableTimestampLock") LockRefreshToken immutableTimestampLock,
+                              @JsonProperty("immutableTimestamp") long immutableTimestamp,
+                              @JsonProperty("startTimestamp") long startTimestamp) {
+        this.immutableTimestampLock = Preconditions.checkNotNull(immutableTimestampLock);
+        this.immutableTimestamp = immutableTimestamp;
+        this.startTimestamp = startTimestamp;
+    }
+
+    public LockRefreshToken getImmutableTimestampLock() {
+        return immutableTimestampLock;
+    }
+
+    public long getImmutableTimestamp() {
+        return immutableTimestamp;
+    }
+
+    public long getStartTimestamp() {
+        return startTimestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "StartedTransaction [immutableTimestampLock=" + immutableTimestampLock
+                + ", immutableTimestamp=" + immutableTimestamp
+                + ", startTimestamp=" + startTimestamp + "]";
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.lock;
+
+import java.util.List;
+
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+
+import com.palantir.common.annotation.NonIdempotent;
+
+/**
+ * Starts read-write transactions in bulk. This does the work of fetching an immutable timestamp lock
+ * timestamp, locking it, reading the minimum locked version and fetching a start timestamp for each
+ * transaction, but in a single call for a whole batch of transactions.
+ */
+@Path("/transactions")
+public interface TransactionStartService {
+    /**
+     * Starts <code>numTransactions</code> transactions for the given client. Each returned transaction holds
+     * its own {@link AtlasTimestampLockDescriptor} read lock, which must be unlocked through the
+     * {@link RemoteLockService} once the transaction is done with it.
+     *
+     * @return exactly <code>numTransactions</code> started transactions
+     */
+    @POST
+    @Path("start-transactions/{client: .*}")
+    @Produces(MediaType.APPLICATION_JSON)
+    @NonIdempotent List<StartedTransaction> startTransactions(
+            @PathParam("client") String client,
+            @QueryParam("number") int numTransactions) throws InterruptedException;
+}
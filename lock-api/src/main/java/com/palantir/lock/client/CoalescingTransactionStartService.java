@@ -0,0 +1,200 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.lock.client;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.palantir.lock.StartedTransaction;
+import com.palantir.lock.TransactionStartService;
+
+/**
+ * Coalesces concurrent requests to start transactions into as few remote calls as possible, in the same
+ * way that RateLimitedTimestampService batches requests for fresh timestamps.
+ * <p>
+ * At most one remote call per client is outstanding at a time. Callers that arrive while it is in flight
+ * join the next batch, which is sent as soon as the outstanding call returns. A batch is closed to new
+ * callers before its remote call is made, so every caller gets start timestamps that are fresh with
+ * respect to the moment it asked for them.
+ * <p>
+ * A caller that is interrupted while waiting for its batch does not take its transaction; the immutable
+ * timestamp lock of that transaction is not refreshed and will expire on the lock server.
+ */
+@ThreadSafe
+public class CoalescingTransactionStartService implements TransactionStartService {
+    private static final Logger log = LoggerFactory.getLogger(CoalescingTransactionStartService.class);
+
+    private final TransactionStartService delegate;
+    private final ConcurrentMap<String, ClientBatcher> batchers = new ConcurrentHashMap<String, ClientBatcher>();
+
+    public CoalescingTransactionStartService(TransactionStartService delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public List<StartedTransaction> startTransactions(String client, int numTransactions)
+            throws InterruptedException {
+        Preconditions.checkArgument(numTransactions > 0,
+                "Must start at least one transaction but asked for %s", numTransactions);
+        return getBatcher(client).startTransactions(numTransactions);
+    }
+
+    private ClientBatcher getBatcher(String client) {
+        ClientBatcher batcher = batchers.get(client);
+        if (batcher == null) {
+            batcher = new ClientBatcher(client);
+            ClientBatcher existing = batchers.putIfAbsent(client, batcher);
+            if (existing != null) {
+                batcher = existing;
+            }
+        }
+        return batcher;
+    }
+
+    private final class ClientBatcher {
+        private final String client;
+
+        /* The batch currently accepting new requests, if any. The thread that installs a batch owns it
+         * and must populate it.
+         */
+        private final AtomicReference</* nullable */ Batch> currentBatch = new AtomicReference<Batch>();
+
+        ClientBatcher(String client) {
+            this.client = client;
+        }
+
+        List<StartedTransaction> startTransactions(int numTransactions) throws InterruptedException {
+            while (true) {
+                Batch batch = currentBatch.get();
+                if (batch == null || !batch.join(numTransactions)) {
+                    /* Either there is no batch, or its owner has already closed it (and so has replaced it with
+                     * null). If the compare and set fails then somebody else installed a batch in the meantime,
+                     * so try to join that one instead.
+                     */
+                    Batch freshBatch = new Batch(numTransactions);
+                    if (!currentBatch.compareAndSet(batch, freshBatch)) {
+                        continue;
+                    }
+                    batch = freshBatch;
+                    populate(batch);
+                }
+
+                try {
+                    batch.awaitPopulation();
+                } catch (InterruptedException e) {
+                    log.warn("Interrupted waiting for a batch of transactions to start.", e);
+                    throw e;
+                }
+                List<StartedTransaction> started = batch.take(numTransactions);
+                if (started != null) {
+                    return started;
+                }
+            }
+        }
+
+        private synchronized void populate(Batch batch) throws InterruptedException {
+            // Stop new requests from joining this batch; they will install a new one instead.
+            currentBatch.compareAndSet(batch, null);
+
+            boolean populated = false;
+            try {
+                int numTransactions = batch.getRequestCountAndClose();
+                Preconditions.checkState(numTransactions > 0,
+                        "Transaction batch has already been closed. numTransactions = %s", numTransactions);
+                batch.populate(delegate.startTransactions(client, numTransactions));
+                populated = true;
+            } finally {
+                if (!populated) {
+                    batch.fail();
+                }
+                batch.becomeReadable();
+            }
+        }
+    }
+
+    private static final class Batch {
+        private final AtomicInteger requestCount;
+        private final CountDownLatch populationLatch = new CountDownLatch(1);
+        private final AtomicInteger nextIndex = new AtomicInteger();
+        private volatile List<StartedTransaction> startedTransactions = null;
+        private volatile boolean failed = false;
+
+        Batch(int numTransactions) {
+            requestCount = new AtomicInteger(numTransactions);
+        }
+
+        /**
+         * @return true if we are included in the batch and false otherwise
+         */
+        boolean join(int numTransactions) {
+            if (requestCount.get() < 0) {
+                return false;
+            }
+            return requestCount.addAndGet(numTransactions) > 0;
+        }
+
+        // The following methods must only be called by the thread that created this batch.
+        int getRequestCountAndClose() {
+            return requestCount.getAndSet(Integer.MIN_VALUE);
+        }
+
+        void populate(List<StartedTransaction> transactions) {
+            startedTransactions = transactions;
+        }
+
+        void fail() {
+            failed = true;
+        }
+
+        void becomeReadable() {
+            populationLatch.countDown();
+        }
+        // End creator-only methods.
+
+        void awaitPopulation() throws InterruptedException {
+            populationLatch.await();
+        }
+
+        /**
+         * Must only be called after {@link #awaitPopulation()}.
+         *
+         * @return this caller's share of the batch, or null if the batch failed
+         */
+        @Nullable
+        List<StartedTransaction> take(int numTransactions) {
+            if (failed) {
+                return null;
+            }
+            int from = nextIndex.getAndAdd(numTransactions);
+            if (from + numTransactions > startedTransactions.size()) {
+                return null;
+            }
+            return ImmutableList.copyOf(startedTransactions.subList(from, from + numTransactions));
+        }
+    }
+}
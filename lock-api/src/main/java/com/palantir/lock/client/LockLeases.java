@@ -0,0 +1,215 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.lock.client;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Function;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.palantir.common.concurrent.CoalescingBatcher;
+import com.palantir.lock.LockRefreshToken;
+import com.palantir.lock.LockRequest;
+import com.palantir.lock.RemoteLockService;
+import com.palantir.lock.TimeDuration;
+
+/**
+ * Keeps track of the locks held by a client, together with a local lease for each lock: a time on the
+ * local monotonic clock before which the lock server cannot have let the lock expire. A lease starts when
+ * the request that granted or last refreshed the lock was sent, and lasts for the lock's timeout, so it is
+ * independent of any offset between the local and the lock server's clocks.
+ * <p>
+ * Locks are only refreshed in the background once less than half of their lease is left. All refreshes,
+ * including those made on behalf of callers, are coalesced by a {@link CoalescingBatcher}, so at most one
+ * refresh call is outstanding at a time and every caller still gets a result that is fresh with respect to
+ * the moment it asked.
+ */
+@ThreadSafe
+final class LockLeases {
+    private static final Logger log = LoggerFactory.getLogger(LockLeases.class);
+    private static final long SLOW_REFRESH_MILLIS = 5000;
+
+    private final RemoteLockService delegate;
+    private final Ticker ticker;
+    private final ConcurrentMap<LockRefreshToken, Lease> leases = Maps.newConcurrentMap();
+
+    private final CoalescingBatcher<Set<LockRefreshToken>, Set<LockRefreshToken>> refresher =
+            new CoalescingBatcher<Set<LockRefreshToken>, Set<LockRefreshToken>>(
+                    new Function<List<Set<LockRefreshToken>>, List<Set<LockRefreshToken>>>() {
+                        @Override
+                        public List<Set<LockRefreshToken>> apply(List<Set<LockRefreshToken>> requests) {
+                            return refreshBatch(requests);
+                        }
+                    });
+
+    LockLeases(RemoteLockService delegate) {
+        this(delegate, Ticker.systemTicker());
+    }
+
+    LockLeases(RemoteLockService delegate, Ticker ticker) {
+        this.delegate = delegate;
+        this.ticker = ticker;
+    }
+
+    /** Returns the local time to pass to {@link #track} for a request sent now. */
+    long now() {
+        return ticker.read();
+    }
+
+    /**
+     * Starts keeping the given lock alive. {@code requestStartNanos} is the value of {@link #now} just
+     * before the request for the lock was sent.
+     */
+    void track(LockRefreshToken token, TimeDuration lockTimeout, long requestStartNanos) {
+        long timeoutNanos = lockTimeout.toNanos();
+        leases.put(token, new Lease(timeoutNanos, requestStartNanos + timeoutNanos));
+    }
+
+    /** Starts keeping alive a lock which was requested with the default lock timeout. */
+    void track(LockRefreshToken token, long requestStartNanos) {
+        track(token, LockRequest.DEFAULT_LOCK_TIMEOUT, requestStartNanos);
+    }
+
+    void untrack(LockRefreshToken token) {
+        leases.remove(token);
+    }
+
+    Set<LockRefreshToken> getTrackedTokens() {
+        return leases.keySet();
+    }
+
+    /**
+     * Returns true if every given lock is tracked, and its lease has at least the given number of
+     * milliseconds left.
+     */
+    boolean areLeasesFresh(Set<LockRefreshToken> tokens, long marginMillis) {
+        long deadline = now() + TimeUnit.MILLISECONDS.toNanos(marginMillis);
+        for (LockRefreshToken token : tokens) {
+            Lease lease = leases.get(token);
+            if (lease == null || lease.expiryNanos - deadline < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Refreshes the tracked locks which have less than half of their lease left.
+     */
+    void refreshExpiringLocks() {
+        long now = now();
+        Set<LockRefreshToken> expiring = Sets.newHashSet();
+        for (Map.Entry<LockRefreshToken, Lease> entry : leases.entrySet()) {
+            Lease lease = entry.getValue();
+            if (lease.expiryNanos - now < lease.timeoutNanos / 2) {
+                expiring.add(entry.getKey());
+            }
+        }
+        if (!expiring.isEmpty()) {
+            refresh(expiring);
+        }
+    }
+
+    /**
+     * Refreshes the given locks, sharing the remote call with concurrent callers, and returns
+     * those which are still held. Tracked locks which are no longer held stop being tracked.
+     */
+    Set<LockRefreshToken> refresh(Set<LockRefreshToken> tokens) {
+        return refresher.apply(tokens);
+    }
+
+    private List<Set<LockRefreshToken>> refreshBatch(List<Set<LockRefreshToken>> requests) {
+        Set<LockRefreshToken> tokens = Sets.newHashSet();
+        for (Set<LockRefreshToken> request : requests) {
+            tokens.addAll(request);
+        }
+        long requestStartNanos = now();
+        Set<LockRefreshToken> refreshed = delegate.refreshLockRefreshTokens(tokens);
+        updateLeases(tokens, refreshed, requestStartNanos);
+        List<Set<LockRefreshToken>> results = Lists.newArrayListWithCapacity(requests.size());
+        for (Set<LockRefreshToken> request : requests) {
+            results.add(ImmutableSet.copyOf(Sets.intersection(request, refreshed)));
+        }
+        return results;
+    }
+
+    private void updateLeases(Set<LockRefreshToken> tokens, Set<LockRefreshToken> refreshed,
+                              long requestStartNanos) {
+        for (LockRefreshToken token : tokens) {
+            Lease lease = leases.get(token);
+            if (lease == null) {
+                continue;
+            }
+            if (refreshed.contains(token)) {
+                Lease renewed = new Lease(lease.timeoutNanos, requestStartNanos + lease.timeoutNanos);
+                if (renewed.expiryNanos - lease.expiryNanos > 0) {
+                    // Only fails if the lock was unlocked or renewed concurrently, which is fine either way.
+                    leases.replace(token, lease, renewed);
+                }
+            } else if (leases.remove(token, lease)) {
+                log.error("failed to refresh lock: " + token);
+            }
+        }
+    }
+
+    /** Starts refreshing expiring locks every {@code refreshFrequencyMillis} on the given executor. */
+    void startRefreshing(ScheduledExecutorService executor, final long refreshFrequencyMillis) {
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                long startTime = System.currentTimeMillis();
+                try {
+                    refreshExpiringLocks();
+                } catch (Throwable t) {
+                    log.error("Failed to refresh locks", t);
+                } finally {
+                    long elapsed = System.currentTimeMillis() - startTime;
+
+                    if (elapsed > LockRequest.DEFAULT_LOCK_TIMEOUT.toMillis()/2) {
+                        log.error("Refreshing locks took " + elapsed + " milliseconds" +
+                                " for tokens: " + getTrackedTokens());
+                    } else if (elapsed > SLOW_REFRESH_MILLIS) {
+                        log.warn("Refreshing locks took " + elapsed + " milliseconds" +
+                                " for tokens: " + getTrackedTokens());
+                    }
+                }
+            }
+        }, 0, refreshFrequencyMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static final class Lease {
+        final long timeoutNanos;
+        final long expiryNanos;
+
+        Lease(long timeoutNanos, long expiryNanos) {
+            this.timeoutNanos = timeoutNanos;
+            this.expiryNanos = expiryNanos;
+        }
+    }
+}
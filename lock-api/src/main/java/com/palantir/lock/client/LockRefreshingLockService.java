@@ -17,13 +17,11 @@ package com.palantir.lock.client;
 
 import java.util.Set;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Sets;
 import com.palantir.common.concurrent.PTExecutors;
 import com.palantir.lock.ForwardingLockService;
 import com.palantir.lock.HeldLocksToken;
@@ -38,40 +36,20 @@ public class LockRefreshingLockService extends ForwardingLockService {
     private static final Logger log = LoggerFactory.getLogger(LockRefreshingLockService.class);
 
     final LockService delegate;
-    final Set<LockRefreshToken> toRefresh;
+    final LockLeases leases;
     final ScheduledExecutorService exec;
-    final long refreshFrequencyMillis = 5000;
+    final long refreshFrequencyMillis = 1000;
     volatile boolean isClosed = false;
 
     public static LockRefreshingLockService create(LockService delegate) {
-        final LockRefreshingLockService ret = new LockRefreshingLockService(delegate);
-        ret.exec.scheduleWithFixedDelay(new Runnable() {
-            @Override
-            public void run() {
-                long startTime = System.currentTimeMillis();
-                try {
-                    ret.refreshLocks();
-                } catch (Throwable t) {
-                    log.error("Failed to refresh locks", t);
-                } finally {
-                    long elapsed = System.currentTimeMillis() - startTime;
-
-                    if (elapsed > LockRequest.DEFAULT_LOCK_TIMEOUT.toMillis()/2) {
-                        log.error("Refreshing locks took " + elapsed + " milliseconds" +
-                                " for tokens: " + ret.toRefresh);
-                    } else if (elapsed > ret.refreshFrequencyMillis) {
-                        log.warn("Refreshing locks took " + elapsed + " milliseconds" +
-                                " for tokens: " + ret.toRefresh);
-                    }
-                }
-            }
-        }, 0, ret.refreshFrequencyMillis, TimeUnit.MILLISECONDS);
+        LockRefreshingLockService ret = new LockRefreshingLockService(delegate);
+        ret.leases.startRefreshing(ret.exec, ret.refreshFrequencyMillis);
         return ret;
     }
 
     private LockRefreshingLockService(LockService delegate) {
         this.delegate = delegate;
-        toRefresh = Sets.newConcurrentHashSet();
+        leases = new LockLeases(delegate);
         exec = PTExecutors.newScheduledThreadPool(1, PTExecutors.newNamedThreadFactory(true));
     }
 
@@ -82,9 +60,10 @@ public class LockRefreshingLockService extends ForwardingLockService {
 
     @Override
     public LockResponse lockWithFullLockResponse(LockClient client, LockRequest request) throws InterruptedException {
+        long requestStartNanos = leases.now();
         LockResponse lock = super.lockWithFullLockResponse(client, request);
         if (lock.getToken() != null) {
-            toRefresh.add(lock.getToken().getLockRefreshToken());
+            leases.track(lock.getToken().getLockRefreshToken(), request.getLockTimeout(), requestStartNanos);
         }
         return lock;
     }
@@ -92,43 +71,34 @@ public class LockRefreshingLockService extends ForwardingLockService {
     @Override
     public LockRefreshToken lock(String client, LockRequest request)
             throws InterruptedException {
+        long requestStartNanos = leases.now();
         LockRefreshToken ret = super.lock(client, request);
         if (ret != null) {
-            toRefresh.add(ret);
+            leases.track(ret, request.getLockTimeout(), requestStartNanos);
         }
         return ret;
     }
 
     @Override
     public boolean unlock(LockRefreshToken token) {
-        toRefresh.remove(token);
+        leases.untrack(token);
         return super.unlock(token);
     }
 
-    private void refreshLocks() {
-        ImmutableSet<LockRefreshToken> refreshCopy = ImmutableSet.copyOf(toRefresh);
-        if (refreshCopy.isEmpty()) {
-            return;
-        }
-        Set<LockRefreshToken> refreshedTokens = delegate().refreshLockRefreshTokens(refreshCopy);
-        for (LockRefreshToken token : refreshCopy) {
-            if (!refreshedTokens.contains(token)
-                    && toRefresh.contains(token)) {
-                log.error("failed to refresh lock: " + token);
-                toRefresh.remove(token);
-            }
-        }
+    @Override
+    public Set<LockRefreshToken> refreshLockRefreshTokens(Iterable<LockRefreshToken> tokens) {
+        return leases.refresh(ImmutableSet.copyOf(tokens));
     }
 
     @Override
     public boolean unlock(HeldLocksToken token) {
-        toRefresh.remove(token.getLockRefreshToken());
+        leases.untrack(token.getLockRefreshToken());
         return super.unlock(token);
     }
 
     @Override
     public boolean unlockSimple(SimpleHeldLocksToken token) {
-        toRefresh.remove(token.asLockRefreshToken());
+        leases.untrack(token.asLockRefreshToken());
         return super.unlockSimple(token);
     }
 
@@ -17,13 +17,11 @@ package com.palantir.lock.client;
 
 import java.util.Set;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Sets;
 import com.palantir.common.concurrent.PTExecutors;
 import com.palantir.lock.ForwardingRemoteLockService;
 import com.palantir.lock.HeldLocksToken;
@@ -35,40 +33,35 @@ public class LockRefreshingRemoteLockService extends ForwardingRemoteLockService
     private static final Logger log = LoggerFactory.getLogger(LockRefreshingRemoteLockService.class);
 
     final RemoteLockService delegate;
-    final Set<LockRefreshToken> toRefresh;
+    private final LockLeases leases;
     final ScheduledExecutorService exec;
-    final long refreshFrequencyMillis = 5000;
+    final long refreshFrequencyMillis = 1000;
+    final long leaseMarginMillis;
     volatile boolean isClosed = false;
 
     public static LockRefreshingRemoteLockService create(RemoteLockService delegate) {
-        final LockRefreshingRemoteLockService ret = new LockRefreshingRemoteLockService(delegate);
-        ret.exec.scheduleWithFixedDelay(new Runnable() {
-            @Override
-            public void run() {
-                long startTime = System.currentTimeMillis();
-                try {
-                    ret.refreshLocks();
-                } catch (Throwable t) {
-                    log.error("Failed to refresh locks", t);
-                } finally {
-                    long elapsed = System.currentTimeMillis() - startTime;
-
-                    if (elapsed > LockRequest.DEFAULT_LOCK_TIMEOUT.toMillis()/2) {
-                        log.error("Refreshing locks took " + elapsed + " milliseconds" +
-                                " for tokens: " + ret.toRefresh);
-                    } else if (elapsed > ret.refreshFrequencyMillis) {
-                        log.warn("Refreshing locks took " + elapsed + " milliseconds" +
-                                " for tokens: " + ret.toRefresh);
-                    }
-                }
-            }
-        }, 0, ret.refreshFrequencyMillis, TimeUnit.MILLISECONDS);
+        return create(delegate, 0L);
+    }
+
+    /**
+     * Creates a lock service which keeps the locks it hands out alive until they are unlocked through it.
+     * <p>
+     * If {@code leaseMarginMillis} is positive, {@link #refreshLockRefreshTokens} does not call the lock
+     * server when every given lock was handed out by this service and has at least that many milliseconds
+     * of its local lease left. Such locks cannot have expired on the lock server, but they may still have
+     * been lost if the lock server restarted or lost leadership in the meantime, so the margin should only
+     * be set where that risk is acceptable.
+     */
+    public static LockRefreshingRemoteLockService create(RemoteLockService delegate, long leaseMarginMillis) {
+        LockRefreshingRemoteLockService ret = new LockRefreshingRemoteLockService(delegate, leaseMarginMillis);
+        ret.leases.startRefreshing(ret.exec, ret.refreshFrequencyMillis);
         return ret;
     }
 
-    private LockRefreshingRemoteLockService(RemoteLockService delegate) {
+    private LockRefreshingRemoteLockService(RemoteLockService delegate, long leaseMarginMillis) {
         this.delegate = delegate;
-        toRefresh = Sets.newConcurrentHashSet();
+        this.leaseMarginMillis = leaseMarginMillis;
+        leases = new LockLeases(delegate);
         exec = PTExecutors.newScheduledThreadPool(1, PTExecutors.newNamedThreadFactory(true));
     }
 
@@ -79,41 +72,54 @@ public class LockRefreshingRemoteLockService extends ForwardingRemoteLockService
 
     @Override
     public LockRefreshToken lock(String client, LockRequest request) throws InterruptedException {
+        long requestStartNanos = leases.now();
         LockRefreshToken ret = super.lock(client, request);
         if (ret != null) {
-            toRefresh.add(ret);
+            leases.track(ret, request.getLockTimeout(), requestStartNanos);
         }
         return ret;
     }
 
     @Override
     public HeldLocksToken lockAndGetHeldLocks(String client, LockRequest request) throws InterruptedException {
+        long requestStartNanos = leases.now();
         HeldLocksToken ret = super.lockAndGetHeldLocks(client, request);
         if (ret != null) {
-            toRefresh.add(ret.getLockRefreshToken());
+            leases.track(ret.getLockRefreshToken(), request.getLockTimeout(), requestStartNanos);
         }
         return ret;
     }
 
+    /**
+     * Returns the time to pass to {@link #trackLockAcquiredElsewhere} for a request which is about to be
+     * sent to another service.
+     */
+    long startRequestElsewhere() {
+        return leases.now();
+    }
+
+    /**
+     * Keeps alive a lock with the default lock timeout which was acquired through another service, until it
+     * is unlocked through this one. {@code requestStartNanos} is the value of {@link #startRequestElsewhere}
+     * just before the request for the lock was sent.
+     */
+    void trackLockAcquiredElsewhere(LockRefreshToken token, long requestStartNanos) {
+        leases.track(token, requestStartNanos);
+    }
+
     @Override
     public boolean unlock(LockRefreshToken token) {
-        toRefresh.remove(token);
+        leases.untrack(token);
         return super.unlock(token);
     }
 
-    private void refreshLocks() {
-        ImmutableSet<LockRefreshToken> refreshCopy = ImmutableSet.copyOf(toRefresh);
-        if (refreshCopy.isEmpty()) {
-            return;
-        }
-        Set<LockRefreshToken> refreshedTokens = delegate().refreshLockRefreshTokens(refreshCopy);
-        for (LockRefreshToken token : refreshCopy) {
-            if (!refreshedTokens.contains(token)
-                    && toRefresh.contains(token)) {
-                log.error("failed to refresh lock: " + token);
-                toRefresh.remove(token);
-            }
+    @Override
+    public Set<LockRefreshToken> refreshLockRefreshTokens(Iterable<LockRefreshToken> tokens) {
+        Set<LockRefreshToken> tokenSet = ImmutableSet.copyOf(tokens);
+        if (leaseMarginMillis > 0 && leases.areLeasesFresh(tokenSet, leaseMarginMillis)) {
+            return tokenSet;
         }
+        return leases.refresh(tokenSet);
     }
 
     @Override
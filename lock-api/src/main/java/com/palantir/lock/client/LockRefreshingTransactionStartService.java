@@ -0,0 +1,47 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.lock.client;
+
+import java.util.List;
+
+import com.palantir.lock.StartedTransaction;
+import com.palantir.lock.TransactionStartService;
+
+/**
+ * Hands the immutable timestamp locks of started transactions over to a
+ * {@link LockRefreshingRemoteLockService}, which keeps them alive until they are unlocked through it.
+ */
+public class LockRefreshingTransactionStartService implements TransactionStartService {
+    private final TransactionStartService delegate;
+    private final LockRefreshingRemoteLockService lockService;
+
+    public LockRefreshingTransactionStartService(TransactionStartService delegate,
+                                                 LockRefreshingRemoteLockService lockService) {
+        this.delegate = delegate;
+        this.lockService = lockService;
+    }
+
+    @Override
+    public List<StartedTransaction> startTransactions(String client, int numTransactions)
+            throws InterruptedException {
+        long requestStartNanos = lockService.startRequestElsewhere();
+        List<StartedTransaction> startedTransactions = delegate.startTransactions(client, numTransactions);
+        for (StartedTransaction startedTransaction : startedTransactions) {
+            lockService.trackLockAcquiredElsewhere(startedTransaction.getImmutableTimestampLock(), requestStartNanos);
+        }
+        return startedTransactions;
+    }
+}
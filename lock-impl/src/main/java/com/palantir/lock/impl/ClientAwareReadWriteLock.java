@@ -35,4 +35,31 @@ public interface ClientAwareReadWriteLock {
 
     /** Returns {@code true} iff the lock is in a frozen state. */
     boolean isFrozen();
+
+    /**
+     * Returns {@code true} iff some client holds the write lock or the lock
+     * is frozen, i.e. iff a new reader would currently be refused.
+     */
+    boolean isWriteLockedOrFrozen();
+
+    /**
+     * Returns the number of times this lock has been released by any client.
+     * Callers of {@link #addReleaseListener(Runnable)} should read this before
+     * trying the lock and check it again after registering their listener: if
+     * it has not changed, then the listener is guaranteed to run on the next
+     * release.
+     */
+    long getReleaseCount();
+
+    /**
+     * Registers a listener to be run once, in the releasing thread, the next
+     * time this lock is released by any client.
+     */
+    void addReleaseListener(Runnable listener);
+
+    /**
+     * Unregisters a listener added with {@link #addReleaseListener(Runnable)}
+     * that has not run yet. Does nothing if the listener is not registered.
+     */
+    void removeReleaseListener(Runnable listener);
 }
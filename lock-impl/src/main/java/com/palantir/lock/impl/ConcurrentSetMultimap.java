@@ -0,0 +1,64 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.lock.impl;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * A set multimap in which every key has its own concurrent set, so operations on
+ * different keys never contend, and none of them takes a lock.
+ * <p>
+ * Keys are never removed, just like {@link LockClientIndices} never forgets a
+ * client: removing an empty set safely would need a lock again, and an unused
+ * key only costs one empty set.
+ */
+@ThreadSafe final class ConcurrentSetMultimap<K, V> {
+    private final ConcurrentMap<K, Set<V>> setsByKey = Maps.newConcurrentMap();
+
+    void put(K key, V value) {
+        Set<V> values = setsByKey.get(key);
+        if (values == null) {
+            values = setsByKey.computeIfAbsent(key, k -> Sets.newConcurrentHashSet());
+        }
+        values.add(value);
+    }
+
+    void remove(Object key, Object value) {
+        Set<V> values = setsByKey.get(key);
+        if (values != null) {
+            values.remove(value);
+        }
+    }
+
+    /** Returns a weakly consistent view of the values for the given key. */
+    Set<V> get(K key) {
+        Set<V> values = setsByKey.get(key);
+        return values == null ? Collections.<V>emptySet() : Collections.unmodifiableSet(values);
+    }
+
+    /** Returns a view of the keys with at least one value, for logging. */
+    Map<K, Set<V>> asMap() {
+        return Maps.filterValues(setsByKey, values -> !values.isEmpty());
+    }
+}
@@ -0,0 +1,223 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.lock.impl;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.palantir.common.time.Clock;
+import com.palantir.lock.ExpiringToken;
+
+/**
+ * Reaps lock tokens which were not refreshed in time, using a timing wheel.
+ * <p>
+ * Tokens are handed to the reaper through a lock-free queue, so {@link #add} is O(1) and
+ * never contends with the reaper thread. Only the reaper thread touches the wheel: every
+ * tick it moves newly added tokens into the bucket for their expiration date, and then
+ * goes through every bucket which has come due. Refreshing a token only updates its
+ * expiration date in the held locks map, so for each due token the reaper looks up the
+ * current token: tokens which were refreshed are moved to the bucket for their new
+ * expiration date, and tokens which really expired are reaped together in one batch.
+ */
+@ThreadSafe final class LockReaper<T extends ExpiringToken> implements Runnable {
+
+    private static final Logger log = LoggerFactory.getLogger(LockReaper.class);
+
+    /** The granularity of the wheel; tokens are reaped at most this late. */
+    @VisibleForTesting static final long TICK_MILLIS = 100;
+
+    /** The number of buckets; tokens expiring more than a full turn away pass through the wheel again. */
+    @VisibleForTesting static final int WHEEL_SIZE = 1024;
+
+    private static final int MAX_TOKENS_TO_LOG = 10;
+
+    /** Gives the reaper access to the tokens it watches. */
+    interface HeldTokens<T> {
+        /**
+         * Returns the current version of the given token, which carries its latest
+         * expiration date, or {@code null} if the token is no longer held.
+         */
+        @Nullable T getCurrentToken(T token);
+
+        /** Releases the locks held by the given token. */
+        void reap(T token);
+    }
+
+    private final HeldTokens<T> heldTokens;
+    private final Clock clock;
+    private final long maxAllowedClockDriftMs;
+
+    /** Tokens added since the last tick. */
+    private final Queue<T> incoming = new ConcurrentLinkedQueue<T>();
+
+    /** The buckets of the wheel; only accessed by the reaper thread. */
+    private final List<ArrayDeque<T>> buckets;
+
+    /** The last tick which was processed; only accessed by the reaper thread. */
+    private long currentTick;
+
+    private final AtomicLong queueDepth = new AtomicLong();
+    private final AtomicLong reapedCount = new AtomicLong();
+    private volatile long lastReapLatencyMillis = 0;
+    private volatile boolean isClosed = false;
+
+    LockReaper(HeldTokens<T> heldTokens, Clock clock, long maxAllowedClockDriftMs) {
+        this.heldTokens = heldTokens;
+        this.clock = clock;
+        this.maxAllowedClockDriftMs = maxAllowedClockDriftMs;
+        this.buckets = Lists.newArrayListWithCapacity(WHEEL_SIZE);
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            buckets.add(new ArrayDeque<T>());
+        }
+        this.currentTick = clock.getTimeMillis() / TICK_MILLIS;
+    }
+
+    /** Starts watching the given token. */
+    void add(T token) {
+        queueDepth.incrementAndGet();
+        incoming.add(token);
+    }
+
+    /** Returns the number of tokens being watched, including ones which have since been unlocked. */
+    long getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /** Returns the number of tokens which have been reaped. */
+    long getReapedCount() {
+        return reapedCount.get();
+    }
+
+    /**
+     * Returns how long after it should have been reaped the most recently
+     * reaped token was actually reaped, in milliseconds.
+     */
+    long getLastReapLatencyMillis() {
+        return lastReapLatencyMillis;
+    }
+
+    /** Makes the reaper thread exit instead of logging a warning once it is interrupted. */
+    void close() {
+        isClosed = true;
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            // shutdownNow() sends interrupt signal to the running threads to terminate them.
+            // If interrupt signal happens right after try {} catch (InterruptedException),
+            // the interrupt state MIGHT be swallowed in catch (Throwable t) {}; so threads will
+            // miss the shutdown signal.
+            if (isClosed) {
+                break;
+            }
+            try {
+                try {
+                    Thread.sleep(TICK_MILLIS - clock.getTimeMillis() % TICK_MILLIS);
+                } catch (InterruptedException e) {
+                    if (isClosed) {
+                        break;
+                    }
+                    log.warn("The lock server reaper thread should not be " +
+                            "interrupted if the server is not shutting down.", e);
+                }
+                tick(clock.getTimeMillis());
+            } catch (Throwable t) {
+                log.error("Something went wrong while reaping locks. Attempting to continue anyway.", t);
+            }
+        }
+    }
+
+    /**
+     * Moves newly added tokens onto the wheel and reaps the tokens in every bucket which is
+     * due by the given time. Must only be called by one thread at a time.
+     */
+    @VisibleForTesting
+    void tick(long now) {
+        for (T token = incoming.poll(); token != null; token = incoming.poll()) {
+            schedule(token);
+        }
+
+        long nowTick = now / TICK_MILLIS;
+        long ticksDue = Math.min(nowTick - currentTick, WHEEL_SIZE);
+        List<T> refreshed = Lists.newArrayList();
+        List<T> expired = Lists.newArrayList();
+        for (long tick = currentTick + 1; tick <= currentTick + ticksDue; tick++) {
+            ArrayDeque<T> bucket = bucketFor(tick);
+            for (T token = bucket.poll(); token != null; token = bucket.poll()) {
+                @Nullable T currentToken = heldTokens.getCurrentToken(token);
+                if (currentToken == null) {
+                    queueDepth.decrementAndGet();
+                } else if (getReapDateMs(currentToken) > now) {
+                    refreshed.add(currentToken);
+                } else {
+                    expired.add(currentToken);
+                }
+            }
+        }
+        currentTick = Math.max(currentTick, nowTick);
+
+        for (T token : refreshed) {
+            schedule(token);
+        }
+        if (!expired.isEmpty()) {
+            reap(expired, now);
+        }
+    }
+
+    private void reap(List<T> expired, long now) {
+        log.warn(expired.size() + " lock tokens were not properly refreshed and are now being reaped: "
+                + Iterables.limit(expired, MAX_TOKENS_TO_LOG));
+        long maxLatencyMillis = 0;
+        for (T token : expired) {
+            maxLatencyMillis = Math.max(maxLatencyMillis, now - getReapDateMs(token));
+            queueDepth.decrementAndGet();
+            try {
+                heldTokens.reap(token);
+                reapedCount.incrementAndGet();
+            } catch (Throwable t) {
+                log.error("Failed to reap lock token " + token, t);
+            }
+        }
+        lastReapLatencyMillis = maxLatencyMillis;
+    }
+
+    private void schedule(T token) {
+        // Round up, so that a token is never looked at before it can be reaped.
+        long tick = (getReapDateMs(token) + TICK_MILLIS - 1) / TICK_MILLIS;
+        bucketFor(Math.max(tick, currentTick + 1)).add(token);
+    }
+
+    private ArrayDeque<T> bucketFor(long tick) {
+        return buckets.get((int) (tick % WHEEL_SIZE));
+    }
+
+    private long getReapDateMs(T token) {
+        return token.getExpirationDateMs() + maxAllowedClockDriftMs;
+    }
+}
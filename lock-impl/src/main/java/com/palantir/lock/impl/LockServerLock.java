@@ -16,6 +16,9 @@
 package com.palantir.lock.impl;
 
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,13 +32,72 @@ import com.palantir.lock.LockMode;
 public class LockServerLock implements ClientAwareReadWriteLock {
     private static final Logger log = LoggerFactory.getLogger(LockServerLock.class);
 
+    /** The value of {@link #pins} once the lock is being removed from its table. */
+    private static final int REMOVED = -1;
+
     private final LockDescriptor descriptor;
     private final LockServerSync sync;
+    private final @Nullable LockTable table;
+    private final AtomicInteger pins = new AtomicInteger();
 
     public LockServerLock(LockDescriptor descriptor,
                           LockClientIndices clients) {
+        this(descriptor, clients, null);
+    }
+
+    LockServerLock(LockDescriptor descriptor,
+                   LockClientIndices clients,
+                   @Nullable LockTable table) {
         this.descriptor = Preconditions.checkNotNull(descriptor);
         this.sync = new LockServerSync(clients);
+        this.table = table;
+    }
+
+    /**
+     * Keeps this lock in its table until {@link #unpin} is called. Returns false if
+     * the lock is already being removed from its table, and must be looked up again.
+     */
+    boolean pin() {
+        while (true) {
+            int current = pins.get();
+            if (current == REMOVED) {
+                return false;
+            }
+            if (pins.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    void unpin() {
+        if (pins.decrementAndGet() == 0) {
+            removeIfUnused();
+        }
+    }
+
+    /**
+     * Removes this lock from its table if nobody holds it, waits for it or has it
+     * pinned. Nobody can pin the lock while we check, and without a pin nobody can
+     * start holding or waiting for it, so a lock which is unused stays unused.
+     * <p>
+     * A holder that releases the lock while another thread is checking fails to
+     * mark it as removed and leaves the removal to that thread, so after giving up
+     * the mark we check again whether the lock became unused in the meantime.
+     */
+    private void removeIfUnused() {
+        if (table == null) {
+            return;
+        }
+        while (pins.compareAndSet(0, REMOVED)) {
+            if (sync.isUnused()) {
+                table.remove(this);
+                return;
+            }
+            pins.set(0);
+            if (!sync.isUnused()) {
+                return;
+            }
+        }
     }
 
     @Override
@@ -47,8 +109,8 @@ public class LockServerLock implements ClientAwareReadWriteLock {
     public KnownClientLock get(LockClient client, LockMode mode) {
         Preconditions.checkNotNull(client);
         switch (mode) {
-        case READ: return new ReadLock(sync, client);
-        case WRITE: return new WriteLock(sync, client);
+        case READ: return new ReadLock(this, client);
+        case WRITE: return new WriteLock(this, client);
         default: throw new EnumConstantNotPresentException(LockMode.class, mode.name());
         }
     }
@@ -58,6 +120,30 @@ public class LockServerLock implements ClientAwareReadWriteLock {
         return sync.isFrozen();
     }
 
+    @Override
+    public boolean isWriteLockedOrFrozen() {
+        return sync.isWriteLockedOrFrozen();
+    }
+
+    @Override
+    public long getReleaseCount() {
+        return sync.getReleaseCount();
+    }
+
+    @Override
+    public void addReleaseListener(Runnable listener) {
+        sync.addReleaseListener(listener);
+    }
+
+    @Override
+    public void removeReleaseListener(Runnable listener) {
+        sync.removeReleaseListener(listener);
+    }
+
+    int getNumberOfReleaseListeners() {
+        return sync.getNumberOfReleaseListeners();
+    }
+
     @Override
     public String toString() {
         return MoreObjects.toStringHelper(getClass().getSimpleName())
@@ -73,11 +159,13 @@ public class LockServerLock implements ClientAwareReadWriteLock {
     }
 
     private static class ReadLock implements KnownClientLock {
+        private final LockServerLock lock;
         private final LockServerSync sync;
         private final int clientIndex;
 
-        public ReadLock(LockServerSync sync, LockClient client) {
-            this.sync = sync;
+        public ReadLock(LockServerLock lock, LockClient client) {
+            this.lock = lock;
+            this.sync = lock.sync;
             this.clientIndex = sync.getClientIndex(client);
         }
 
@@ -132,6 +220,8 @@ public class LockServerLock implements ClientAwareReadWriteLock {
         @Override
         public void unlock() {
             sync.releaseShared(clientIndex);
+            sync.notifyReleased();
+            lock.removeIfUnused();
         }
 
         @Override
@@ -150,11 +240,13 @@ public class LockServerLock implements ClientAwareReadWriteLock {
     }
 
     private static class WriteLock implements KnownClientLock {
+        private final LockServerLock lock;
         private final LockServerSync sync;
         private final int clientIndex;
 
-        public WriteLock(LockServerSync sync, LockClient client) {
-            this.sync = sync;
+        public WriteLock(LockServerLock lock, LockClient client) {
+            this.lock = lock;
+            this.sync = lock.sync;
             this.clientIndex = sync.getClientIndex(client);
         }
 
@@ -209,11 +301,15 @@ public class LockServerLock implements ClientAwareReadWriteLock {
         @Override
         public void unlock() {
             sync.release(clientIndex);
+            sync.notifyReleased();
+            lock.removeIfUnused();
         }
 
         @Override
         public void unlockAndFreeze() {
             sync.unlockAndFreeze(clientIndex);
+            sync.notifyReleased();
+            lock.removeIfUnused();
         }
 
         @Override
@@ -15,6 +15,9 @@
  */
 package com.palantir.lock.impl;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.AbstractQueuedSynchronizer;
 
 import javax.annotation.Nullable;
@@ -23,6 +26,7 @@ import javax.annotation.concurrent.GuardedBy;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import com.google.common.primitives.Ints;
 import com.palantir.lock.LockClient;
 
@@ -37,6 +41,8 @@ class LockServerSync extends AbstractQueuedSynchronizer {
     private @GuardedBy("this") boolean frozen;
     private @GuardedBy("this") int writeLockHolder = 0;
     private @GuardedBy("this") TIntIntMap readLockHolders;
+    private final AtomicLong releaseCount = new AtomicLong();
+    private final @GuardedBy("releaseListeners") List<Runnable> releaseListeners = Lists.newArrayList();
 
     public LockServerSync(LockClientIndices clients) {
         this.clients = Preconditions.checkNotNull(clients);
@@ -221,10 +227,60 @@ class LockServerSync extends AbstractQueuedSynchronizer {
         return getFirstQueuedThread() != Thread.currentThread() && hasQueuedThreads();
     }
 
+    long getReleaseCount() {
+        return releaseCount.get();
+    }
+
+    void addReleaseListener(Runnable listener) {
+        synchronized (releaseListeners) {
+            releaseListeners.add(listener);
+        }
+    }
+
+    void removeReleaseListener(Runnable listener) {
+        synchronized (releaseListeners) {
+            releaseListeners.removeAll(Collections.singleton(listener));
+        }
+    }
+
+    int getNumberOfReleaseListeners() {
+        synchronized (releaseListeners) {
+            return releaseListeners.size();
+        }
+    }
+
+    // Must be called after every release, so that callers who registered a listener
+    // and then saw an unchanged release count are guaranteed to be notified.
+    void notifyReleased() {
+        releaseCount.incrementAndGet();
+        List<Runnable> listeners;
+        synchronized (releaseListeners) {
+            if (releaseListeners.isEmpty()) {
+                return;
+            }
+            listeners = ImmutableList.copyOf(releaseListeners);
+            releaseListeners.clear();
+        }
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+    }
+
+    // Release listeners are not checked: a listener registered while the lock is held
+    // is notified before the lock can become unused, and one registered after the
+    // release is never needed, as its caller sees the changed release count instead.
+    synchronized boolean isUnused() {
+        return getState() == 0 && !isReadLockHeld() && !hasQueuedThreads();
+    }
+
     synchronized boolean isFrozen() {
         return frozen;
     }
 
+    synchronized boolean isWriteLockedOrFrozen() {
+        return frozen || getState() > 0;
+    }
+
     @Override
     public synchronized String toString() {
         return MoreObjects.toStringHelper(getClass().getSimpleName())
@@ -28,17 +28,19 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Queue;
 import java.util.Set;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.Immutable;
 import javax.annotation.concurrent.ThreadSafe;
 
@@ -47,32 +49,27 @@ import org.joda.time.format.ISODateTimeFormat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Supplier;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.ImmutableSortedMap.Builder;
+import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.MapMaker;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Multimap;
-import com.google.common.collect.Multimaps;
-import com.google.common.collect.SetMultimap;
 import com.google.common.collect.Sets;
-import com.google.common.collect.TreeMultiset;
 import com.palantir.common.base.Throwables;
 import com.palantir.common.concurrent.NamedThreadFactory;
 import com.palantir.common.concurrent.PTExecutors;
 import com.palantir.common.random.SecureRandomPool;
 import com.palantir.common.remoting.ServiceNotAvailableException;
+import com.palantir.common.time.Clock;
 import com.palantir.lock.BlockingMode;
 import com.palantir.lock.ExpiringToken;
 import com.palantir.lock.HeldLocksGrant;
@@ -112,6 +109,13 @@ import com.palantir.util.Pair;
     private final ExecutorService executor = PTExecutors.newCachedThreadPool(
             new NamedThreadFactory(LockServiceImpl.class.getName(), true));
 
+    /**
+     * Executor for asynchronous lock requests and callers waiting for locks to be released. Every
+     * waiting request is resumed on this single thread, in the order in which it started waiting.
+     */
+    private final ScheduledExecutorService asyncLockExecutor = PTExecutors.newSingleThreadScheduledExecutor(
+            new NamedThreadFactory(LockServiceImpl.class.getName() + "-async", true));
+
     private static final Function<HeldLocksToken, String> TOKEN_TO_ID =
             new Function<HeldLocksToken, String>() {
         @Override
@@ -161,15 +165,8 @@ import com.palantir.util.Pair;
 
     private final LockClientIndices clientIndices = new LockClientIndices();
 
-    /** The backing client-aware read write lock for each lock descriptor. */
-    private final LoadingCache<LockDescriptor, ClientAwareReadWriteLock> descriptorToLockMap =
-            CacheBuilder.newBuilder().weakValues().build(
-                    new CacheLoader<LockDescriptor, ClientAwareReadWriteLock>() {
-                        @Override
-                        public ClientAwareReadWriteLock load(LockDescriptor from) {
-                            return new LockServerLock(from, clientIndices);
-                        }
-                    });
+    /** The backing client-aware read write lock for each lock descriptor in use. */
+    private final LockTable descriptorToLockMap = new LockTable(clientIndices);
 
     /** The locks (and canonical token) associated with each HeldLocksToken. */
     private final ConcurrentMap<HeldLocksToken, HeldLocks<HeldLocksToken>> heldLocksTokenMap =
@@ -179,31 +176,30 @@ import com.palantir.util.Pair;
     private final ConcurrentMap<HeldLocksGrant, HeldLocks<HeldLocksGrant>> heldLocksGrantMap =
             new MapMaker().makeMap();
 
-    /** The priority queue of lock tokens waiting to be reaped. */
-    private final BlockingQueue<HeldLocksToken> lockTokenReaperQueue =
-            new PriorityBlockingQueue<HeldLocksToken>(1, ExpiringToken.COMPARATOR);
+    /** The reaper of lock tokens which were not refreshed in time. */
+    private final LockReaper<HeldLocksToken> lockTokenReaper;
 
-    /** The priority queue of lock grants waiting to be reaped. */
-    private final BlockingQueue<HeldLocksGrant> lockGrantReaperQueue =
-            new PriorityBlockingQueue<HeldLocksGrant>(1, ExpiringToken.COMPARATOR);
+    /** The reaper of lock grants which were not refreshed in time. */
+    private final LockReaper<HeldLocksGrant> lockGrantReaper;
 
     /** The mapping from lock client to the set of tokens held by that client. */
-    private final SetMultimap<LockClient, HeldLocksToken> lockClientMultimap =
-            Multimaps.synchronizedSetMultimap(HashMultimap.<LockClient, HeldLocksToken>create());
+    private final ConcurrentSetMultimap<LockClient, HeldLocksToken> lockClientMultimap =
+            new ConcurrentSetMultimap<LockClient, HeldLocksToken>();
 
-    private final SetMultimap<LockClient, LockRequest> outstandingLockRequestMultimap =
-        Multimaps.synchronizedSetMultimap(HashMultimap.<LockClient, LockRequest>create());
+    private final ConcurrentSetMultimap<LockClient, LockRequest> outstandingLockRequestMultimap =
+            new ConcurrentSetMultimap<LockClient, LockRequest>();
 
     private final Set<Thread> indefinitelyBlockingThreads =
             Sets.newConcurrentHashSet();
 
-    private final Multimap<LockClient, Long> versionIdMap = Multimaps.synchronizedMultimap(
-            Multimaps.newMultimap(Maps.<LockClient, Collection<Long>>newHashMap(), new Supplier<TreeMultiset<Long>>() {
-                @Override
-                public TreeMultiset<Long> get() {
-                    return TreeMultiset.create();
-                }
-            }));
+    private final Set<AsyncLockRequest> pendingAsyncLockRequests =
+            Sets.newConcurrentHashSet();
+
+    private final Set<ReleaseWaiter> pendingReleaseWaiters =
+            Sets.newConcurrentHashSet();
+
+    /** The version IDs locked in by each client. */
+    private final LockedVersionIds lockedVersionIds = new LockedVersionIds();
 
     private static final AtomicInteger instanceCount = new AtomicInteger();
     private static final int MAX_FAILED_LOCKS_TO_LOG = 20;
@@ -239,18 +235,20 @@ import com.palantir.util.Pair;
         maxAllowedBlockingDuration = SimpleTimeDuration.of(options.getMaxAllowedBlockingDuration());
         maxNormalLockAge = SimpleTimeDuration.of(options.getMaxNormalLockAge());
         randomBitCount = options.getRandomBitCount();
+        lockTokenReaper = createReaper(heldLocksTokenMap);
+        lockGrantReaper = createReaper(heldLocksGrantMap);
         executor.execute(new Runnable() {
             @Override
             public void run() {
                 Thread.currentThread().setName("Held Locks Token Reaper");
-                reapLocks(lockTokenReaperQueue, heldLocksTokenMap);
+                lockTokenReaper.run();
             }
         });
         executor.execute(new Runnable() {
             @Override
             public void run() {
                 Thread.currentThread().setName("Held Locks Grant Reaper");
-                reapLocks(lockGrantReaperQueue, heldLocksGrantMap);
+                lockGrantReaper.run();
             }
         });
     }
@@ -266,7 +264,7 @@ import com.palantir.util.Pair;
                     expirationDateMs, lockDescriptorMap, lockTimeout, versionId);
             HeldLocks<HeldLocksToken> heldLocks = HeldLocks.of(token, heldLocksMap);
             if (heldLocksTokenMap.putIfAbsent(token, heldLocks) == null) {
-                lockTokenReaperQueue.add(token);
+                lockTokenReaper.add(token);
                 if (!client.isAnonymous()) {
                     lockClientMultimap.put(client, token);
                 }
@@ -288,7 +286,7 @@ import com.palantir.util.Pair;
                     expirationDateMs, lockDescriptorMap, lockTimeout, versionId);
             HeldLocks<HeldLocksGrant> newHeldLocks = HeldLocks.of(grant, heldLocksMap);
             if (heldLocksGrantMap.putIfAbsent(grant, newHeldLocks) == null) {
-                lockGrantReaperQueue.add(grant);
+                lockGrantReaper.add(grant);
                 return grant;
             }
             log.error("Lock ID collision! The RANDOM_BIT_COUNT constant must be increased. "
@@ -313,15 +311,7 @@ import com.palantir.util.Pair;
 
     @Override
     public LockResponse lockWithFullLockResponse(LockClient client, LockRequest request) throws InterruptedException {
-        Preconditions.checkNotNull(client);
-        Preconditions.checkArgument(client != INTERNAL_LOCK_GRANT_CLIENT);
-        Preconditions.checkArgument(request.getLockTimeout().compareTo(maxAllowedLockTimeout) <= 0,
-                "Requested lock timeout (%s) is greater than maximum allowed lock timeout (%s)",
-                request.getLockTimeout(), maxAllowedLockTimeout);
-        Preconditions.checkArgument((request.getBlockingMode() != BLOCK_UNTIL_TIMEOUT)
-                || (request.getBlockingDuration().compareTo(maxAllowedBlockingDuration) <= 0),
-                "Requested blocking duration (%s) is greater than maximum allowed blocking duration (%s)",
-                request.getBlockingDuration(), maxAllowedBlockingDuration);
+        checkLockRequest(client, request);
         long startTime = System.currentTimeMillis();
         if (requestLogger.isDebugEnabled()) {
             requestLogger.debug("LockServiceImpl processing lock request {} for requesting thread {}",
@@ -349,72 +339,243 @@ import com.palantir.util.Pair;
             tryLocks(client, request, request.getBlockingMode(), deadline,
                     request.getLockGroupBehavior(), locks, failedLocks);
 
-            if (request.getBlockingMode() == BlockingMode.BLOCK_INDEFINITELY_THEN_RELEASE) {
-                if (log.isTraceEnabled()) {
-                    log.trace(".lock(" + client + ", " + request + ") returns null");
-                }
-                if (requestLogger.isDebugEnabled()) {
-                    requestLogger.debug("Timed out requesting {} for requesting thread {} after {} ms",
-                            request, request.getCreatingThreadName(), System.currentTimeMillis() - startTime);
+            LockResponse response = createLockResponse(client, request, locks, failedLocks, startTime);
+            if (response.success() && Thread.interrupted()) {
+                throw new InterruptedException("Interrupted while locking.");
+            }
+            return response;
+        } finally {
+            outstandingLockRequestMultimap.remove(client, request);
+            indefinitelyBlockingThreads.remove(Thread.currentThread());
+            try {
+                for (Entry<ClientAwareReadWriteLock, LockMode> entry : locks.entrySet()) {
+                    entry.getKey().get(client, entry.getValue()).unlock();
                 }
-                return new LockResponse(failedLocks);
+            } catch (Throwable e) { // (authorized)
+                log.error("Internal lock server error: state has been corrupted!!", e);
+                throw Throwables.throwUncheckedException(e);
+            }
+        }
+    }
+
+    /**
+     * Asynchronous version of {@link #lockWithFullLockResponse(LockClient, LockRequest)}, with the
+     * same {@link LockMode}, {@link LockGroupBehavior} and {@link BlockingMode} semantics.
+     * <p>
+     * Rather than parking a thread for every blocked request, a request that has to wait registers
+     * itself with the lock it is waiting for and is retried when that lock is released. Locks are
+     * still acquired one at a time in descriptor order, so asynchronous requests cannot deadlock
+     * with each other or with synchronous ones, and they never barge ahead of threads already
+     * queued for a lock. All waiting requests are retried on a single thread, which also completes
+     * the returned futures, so dependent actions should either be quick or run asynchronously.
+     * <p>
+     * Cancelling the returned future abandons the request and releases any locks it has acquired.
+     */
+    public CompletableFuture<LockResponse> lockWithFullLockResponseAsync(LockClient client, LockRequest request) {
+        checkLockRequest(client, request);
+        if (request.getBlockingMode() == DO_NOT_BLOCK) {
+            CompletableFuture<LockResponse> future = new CompletableFuture<LockResponse>();
+            try {
+                future.complete(lockWithFullLockResponse(client, request));
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
             }
+            return future;
+        }
+        if (requestLogger.isDebugEnabled()) {
+            requestLogger.debug("LockServiceImpl processing async lock request {} for requesting thread {}",
+                    request, request.getCreatingThreadName());
+        }
+        if (isShutDown) {
+            throw new ServiceNotAvailableException("This lock server is shut down.");
+        }
+        AsyncLockRequest asyncRequest = new AsyncLockRequest(client, request);
+        asyncRequest.start();
+        return asyncRequest.future;
+    }
 
-            if (locks.isEmpty() || ((request.getLockGroupBehavior() == LOCK_ALL_OR_NONE)
-                    && (locks.size() < request.getLockDescriptors().size()))) {
-                if (log.isTraceEnabled()) {
-                    log.trace(".lock(" + client + ", " + request + ") returns null");
+    /**
+     * The state of one asynchronous lock request. The request acquires its locks in order, and
+     * whenever a lock is unavailable it registers itself as a release listener of that lock and
+     * stops; it is resumed on {@link #asyncLockExecutor} when that lock is next released. If the
+     * request times out, is cancelled or fails first, its listener is removed again, as for
+     * {@link ReleaseWaiter}.
+     */
+    private final class AsyncLockRequest implements Runnable {
+        final LockClient client;
+        final LockRequest request;
+        final CompletableFuture<LockResponse> future = new CompletableFuture<LockResponse>();
+        private final long startTime = System.currentTimeMillis();
+        private final List<Entry<LockDescriptor, LockMode>> entries;
+        @GuardedBy("this") private final Map<ClientAwareReadWriteLock, LockMode> locks = Maps.newLinkedHashMap();
+        @GuardedBy("this") private final Map<LockDescriptor, LockClient> failedLocks = Maps.newHashMap();
+        @GuardedBy("this") private int nextEntry = 0;
+        @GuardedBy("this") @Nullable private LockClient currentHolder = null;
+        @GuardedBy("this") @Nullable private ClientAwareReadWriteLock waitingFor = null;
+        @GuardedBy("this") @Nullable private ScheduledFuture<?> timeout = null;
+
+        AsyncLockRequest(LockClient client, LockRequest request) {
+            this.client = client;
+            this.request = request;
+            this.entries = ImmutableList.copyOf(request.getLockDescriptors().entries());
+        }
+
+        synchronized void start() {
+            pendingAsyncLockRequests.add(this);
+            outstandingLockRequestMultimap.put(client, request);
+            future.whenComplete((response, error) -> {
+                if (future.isCancelled()) {
+                    asyncLockExecutor.execute(this::cancel);
                 }
-                if (requestLogger.isDebugEnabled()) {
-                    requestLogger.debug("Failed to acquire all locks for {} for requesting thread {} after {} ms",
-                            request, request.getCreatingThreadName(), System.currentTimeMillis() - startTime);
+            });
+            if (request.getBlockingMode() == BLOCK_UNTIL_TIMEOUT) {
+                timeout = asyncLockExecutor.schedule(
+                        this::timeOut, request.getBlockingDuration().toNanos(), TimeUnit.NANOSECONDS);
+                if (request.getLockGroupBehavior() == LOCK_AS_MANY_AS_POSSIBLE) {
+                    tryRemainingLocksWithoutBlocking();
                 }
-                if (requestLogger.isTraceEnabled()) {
-                    StringBuilder sb = new StringBuilder("Current holders of the first ").append(
-                            MAX_FAILED_LOCKS_TO_LOG).append(" of ").append(failedLocks.size()).append(
-                            " total failed locks were: [");
-                    Iterator<Entry<LockDescriptor, LockClient>> entries = failedLocks.entrySet().iterator();
-                    for (int i = 0; i < MAX_FAILED_LOCKS_TO_LOG; i++) {
-                        if (entries.hasNext()) {
-                            Entry<LockDescriptor, LockClient> entry = entries.next();
-                            sb.append(" Lock: ").append(entry.getKey().toString()).append(
-                                    ", Holder: ").append(entry.getValue().toString()).append(";");
+            }
+            tryLocks();
+        }
+
+        @Override
+        public void run() {
+            try {
+                asyncLockExecutor.execute(this::tryLocks);
+            } catch (RejectedExecutionException e) {
+                // The lock server is shutting down and will fail this request.
+            }
+        }
+
+        private synchronized void tryLocks() {
+            if (future.isDone()) {
+                return;
+            }
+            // Any listener we registered has run by now, so it is no longer registered.
+            waitingFor = null;
+            try {
+                if (isShutDown) {
+                    throw new ServiceNotAvailableException("This lock server is shut down.");
+                }
+                while (nextEntry < entries.size()) {
+                    Entry<LockDescriptor, LockMode> entry = entries.get(nextEntry);
+                    if (request.getBlockingMode() == BlockingMode.BLOCK_INDEFINITELY_THEN_RELEASE
+                            && !descriptorToLockMap.contains(entry.getKey())) {
+                        nextEntry++;
+                        continue;
+                    }
+                    LockServerLock lock = descriptorToLockMap.pin(entry.getKey());
+                    long releaseCount;
+                    try {
+                        if (locks.containsKey(lock)) {
+                            nextEntry++;
+                            continue;
                         }
+                        releaseCount = lock.getReleaseCount();
+                        currentHolder = lock.get(client, entry.getValue()).tryLock();
+                    } finally {
+                        lock.unpin();
                     }
-                    sb.append(" ]");
-                    requestLogger.trace(sb.toString());
+                    if (currentHolder == null) {
+                        locks.put(lock, entry.getValue());
+                        nextEntry++;
+                        continue;
+                    }
+                    lock.addReleaseListener(this);
+                    if (lock.getReleaseCount() == releaseCount) {
+                        // We will be run again when the lock is released.
+                        waitingFor = lock;
+                        return;
+                    }
+                    // The lock was released before our listener was registered; try it again now.
+                    lock.removeReleaseListener(this);
                 }
-                return new LockResponse(null, failedLocks);
+                complete();
+            } catch (Throwable t) {
+                fail(t);
             }
+        }
 
-            Builder<LockDescriptor, LockMode> lockDescriptorMap = ImmutableSortedMap.naturalOrder();
-            for (Entry<ClientAwareReadWriteLock, LockMode> entry : locks.entrySet()) {
-                lockDescriptorMap.put(entry.getKey().getDescriptor(), entry.getValue());
+        private synchronized void timeOut() {
+            if (future.isDone()) {
+                return;
             }
-            if (request.getVersionId() != null) {
-                versionIdMap.put(client, request.getVersionId());
+            try {
+                if (nextEntry < entries.size()) {
+                    if (currentHolder != null) {
+                        failedLocks.put(entries.get(nextEntry).getKey(), currentHolder);
+                    }
+                    nextEntry++;
+                    if (request.getLockGroupBehavior() == LOCK_AS_MANY_AS_POSSIBLE) {
+                        tryRemainingLocksWithoutBlocking();
+                    }
+                }
+                complete();
+            } catch (Throwable t) {
+                fail(t);
             }
-            HeldLocksToken token = createHeldLocksToken(client, LockCollections.of(lockDescriptorMap.build()), LockCollections.of(locks),
-                    request.getLockTimeout(), request.getVersionId());
-            locks.clear();
-            if (log.isTraceEnabled()) {
-                log.trace(".lock(" + client + ", " + request + ") returns " + token);
+        }
+
+        @GuardedBy("this")
+        private void tryRemainingLocksWithoutBlocking() {
+            for (Entry<LockDescriptor, LockMode> entry : entries.subList(nextEntry, entries.size())) {
+                LockServerLock lock = descriptorToLockMap.pin(entry.getKey());
+                @Nullable LockClient holder;
+                try {
+                    if (locks.containsKey(lock)) {
+                        continue;
+                    }
+                    holder = lock.get(client, entry.getValue()).tryLock();
+                } finally {
+                    lock.unpin();
+                }
+                if (holder == null) {
+                    locks.put(lock, entry.getValue());
+                } else {
+                    failedLocks.put(entry.getKey(), holder);
+                }
             }
-            if (Thread.interrupted()) {
-                throw new InterruptedException("Interrupted while locking.");
+        }
+
+        @GuardedBy("this")
+        private void complete() {
+            LockResponse response;
+            try {
+                response = createLockResponse(client, request, locks, failedLocks, startTime);
+            } finally {
+                cleanUp();
             }
-            if (requestLogger.isDebugEnabled()) {
-                requestLogger.debug("Successfully acquired locks {} for requesting thread {} after {} ms",
-                        request, request.getCreatingThreadName(), System.currentTimeMillis() - startTime);
+            if (!future.complete(response) && response.success()) {
+                // The request was cancelled while we were acquiring its last locks.
+                unlock(response.getToken());
             }
-            return new LockResponse(token, failedLocks);
-        } finally {
+        }
+
+        private synchronized void fail(Throwable t) {
+            cleanUp();
+            future.completeExceptionally(t);
+        }
+
+        private synchronized void cancel() {
+            cleanUp();
+        }
+
+        @GuardedBy("this")
+        private void cleanUp() {
+            if (waitingFor != null) {
+                waitingFor.removeReleaseListener(this);
+                waitingFor = null;
+            }
+            pendingAsyncLockRequests.remove(this);
             outstandingLockRequestMultimap.remove(client, request);
-            indefinitelyBlockingThreads.remove(Thread.currentThread());
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
             try {
                 for (Entry<ClientAwareReadWriteLock, LockMode> entry : locks.entrySet()) {
                     entry.getKey().get(client, entry.getValue()).unlock();
                 }
+                locks.clear();
             } catch (Throwable e) { // (authorized)
                 log.error("Internal lock server error: state has been corrupted!!", e);
                 throw Throwables.throwUncheckedException(e);
@@ -422,6 +583,197 @@ import com.palantir.util.Pair;
         }
     }
 
+    @Override
+    public void waitForWriteLocksToBeReleased(Set<LockDescriptor> lockDescriptors) throws InterruptedException {
+        CompletableFuture<Void> future = waitForWriteLocksToBeReleasedAsync(lockDescriptors);
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            throw e;
+        } catch (ExecutionException e) {
+            throw Throwables.throwUncheckedException(e.getCause());
+        }
+    }
+
+    /**
+     * Asynchronous version of {@link #waitForWriteLocksToBeReleased(Set)}. The returned future
+     * completes once every given lock has been observed to be neither write locked nor frozen.
+     * Locks which do not currently exist in the lock server cannot be held, so they are not
+     * waited on at all.
+     */
+    public CompletableFuture<Void> waitForWriteLocksToBeReleasedAsync(Set<LockDescriptor> lockDescriptors) {
+        if (isShutDown) {
+            throw new ServiceNotAvailableException("This lock server is shut down.");
+        }
+        List<ClientAwareReadWriteLock> locks = Lists.newArrayListWithCapacity(lockDescriptors.size());
+        for (LockDescriptor descriptor : ImmutableSortedSet.copyOf(lockDescriptors)) {
+            ClientAwareReadWriteLock lock = descriptorToLockMap.get(descriptor);
+            if (lock != null) {
+                locks.add(lock);
+            }
+        }
+        ReleaseWaiter waiter = new ReleaseWaiter(locks);
+        waiter.start();
+        return waiter.future;
+    }
+
+    /**
+     * Waits for a list of locks to be released, one at a time, without acquiring them. It registers
+     * itself as a release listener of the first lock that is still held and is resumed on
+     * {@link #asyncLockExecutor} when that lock is next released. If the waiter is cancelled or
+     * fails first, its listener is removed again, so that abandoned waiters on a long held lock
+     * do not pile up.
+     */
+    private final class ReleaseWaiter implements Runnable {
+        final CompletableFuture<Void> future = new CompletableFuture<Void>();
+        private final List<ClientAwareReadWriteLock> locks;
+        @GuardedBy("this") private int nextLock = 0;
+
+        ReleaseWaiter(List<ClientAwareReadWriteLock> locks) {
+            this.locks = locks;
+        }
+
+        synchronized void start() {
+            pendingReleaseWaiters.add(this);
+            future.whenComplete((result, error) -> {
+                pendingReleaseWaiters.remove(this);
+                stopListening();
+            });
+            awaitLocks();
+        }
+
+        private synchronized void stopListening() {
+            if (nextLock < locks.size()) {
+                locks.get(nextLock).removeReleaseListener(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                asyncLockExecutor.execute(this::awaitLocks);
+            } catch (RejectedExecutionException e) {
+                // The lock server is shutting down and will fail this waiter.
+            }
+        }
+
+        private synchronized void awaitLocks() {
+            if (future.isDone()) {
+                return;
+            }
+            try {
+                if (isShutDown) {
+                    throw new ServiceNotAvailableException("This lock server is shut down.");
+                }
+                while (nextLock < locks.size()) {
+                    ClientAwareReadWriteLock lock = locks.get(nextLock);
+                    long releaseCount = lock.getReleaseCount();
+                    if (!lock.isWriteLockedOrFrozen()) {
+                        nextLock++;
+                        continue;
+                    }
+                    lock.addReleaseListener(this);
+                    if (lock.getReleaseCount() == releaseCount) {
+                        // We will be run again when the lock is released.
+                        return;
+                    }
+                }
+                future.complete(null);
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }
+    }
+
+    @VisibleForTesting
+    int getNumberOfReleaseListeners(LockDescriptor descriptor) {
+        LockServerLock lock = descriptorToLockMap.pin(descriptor);
+        try {
+            return lock.getNumberOfReleaseListeners();
+        } finally {
+            lock.unpin();
+        }
+    }
+
+    private void checkLockRequest(LockClient client, LockRequest request) {
+        Preconditions.checkNotNull(client);
+        Preconditions.checkArgument(client != INTERNAL_LOCK_GRANT_CLIENT);
+        Preconditions.checkArgument(request.getLockTimeout().compareTo(maxAllowedLockTimeout) <= 0,
+                "Requested lock timeout (%s) is greater than maximum allowed lock timeout (%s)",
+                request.getLockTimeout(), maxAllowedLockTimeout);
+        Preconditions.checkArgument((request.getBlockingMode() != BLOCK_UNTIL_TIMEOUT)
+                || (request.getBlockingDuration().compareTo(maxAllowedBlockingDuration) <= 0),
+                "Requested blocking duration (%s) is greater than maximum allowed blocking duration (%s)",
+                request.getBlockingDuration(), maxAllowedBlockingDuration);
+    }
+
+    /**
+     * Turns the locks acquired for a request into a response. On success, a token is created for
+     * the acquired locks and they are removed from {@code locks}; any locks left in {@code locks}
+     * must be released by the caller.
+     */
+    private LockResponse createLockResponse(LockClient client, LockRequest request,
+            Map<ClientAwareReadWriteLock, LockMode> locks, Map<LockDescriptor, LockClient> failedLocks,
+            long startTime) {
+        if (request.getBlockingMode() == BlockingMode.BLOCK_INDEFINITELY_THEN_RELEASE) {
+            if (log.isTraceEnabled()) {
+                log.trace(".lock(" + client + ", " + request + ") returns null");
+            }
+            if (requestLogger.isDebugEnabled()) {
+                requestLogger.debug("Timed out requesting {} for requesting thread {} after {} ms",
+                        request, request.getCreatingThreadName(), System.currentTimeMillis() - startTime);
+            }
+            return new LockResponse(failedLocks);
+        }
+
+        if (locks.isEmpty() || ((request.getLockGroupBehavior() == LOCK_ALL_OR_NONE)
+                && (locks.size() < request.getLockDescriptors().size()))) {
+            if (log.isTraceEnabled()) {
+                log.trace(".lock(" + client + ", " + request + ") returns null");
+            }
+            if (requestLogger.isDebugEnabled()) {
+                requestLogger.debug("Failed to acquire all locks for {} for requesting thread {} after {} ms",
+                        request, request.getCreatingThreadName(), System.currentTimeMillis() - startTime);
+            }
+            if (requestLogger.isTraceEnabled()) {
+                StringBuilder sb = new StringBuilder("Current holders of the first ").append(
+                        MAX_FAILED_LOCKS_TO_LOG).append(" of ").append(failedLocks.size()).append(
+                        " total failed locks were: [");
+                Iterator<Entry<LockDescriptor, LockClient>> entries = failedLocks.entrySet().iterator();
+                for (int i = 0; i < MAX_FAILED_LOCKS_TO_LOG; i++) {
+                    if (entries.hasNext()) {
+                        Entry<LockDescriptor, LockClient> entry = entries.next();
+                        sb.append(" Lock: ").append(entry.getKey().toString()).append(
+                                ", Holder: ").append(entry.getValue().toString()).append(";");
+                    }
+                }
+                sb.append(" ]");
+                requestLogger.trace(sb.toString());
+            }
+            return new LockResponse(null, failedLocks);
+        }
+
+        Builder<LockDescriptor, LockMode> lockDescriptorMap = ImmutableSortedMap.naturalOrder();
+        for (Entry<ClientAwareReadWriteLock, LockMode> entry : locks.entrySet()) {
+            lockDescriptorMap.put(entry.getKey().getDescriptor(), entry.getValue());
+        }
+        if (request.getVersionId() != null) {
+            lockedVersionIds.add(client, request.getVersionId());
+        }
+        HeldLocksToken token = createHeldLocksToken(client, LockCollections.of(lockDescriptorMap.build()), LockCollections.of(locks),
+                request.getLockTimeout(), request.getVersionId());
+        locks.clear();
+        if (log.isTraceEnabled()) {
+            log.trace(".lock(" + client + ", " + request + ") returns " + token);
+        }
+        if (requestLogger.isDebugEnabled()) {
+            requestLogger.debug("Successfully acquired locks {} for requesting thread {} after {} ms",
+                    request, request.getCreatingThreadName(), System.currentTimeMillis() - startTime);
+        }
+        return new LockResponse(token, failedLocks);
+    }
+
     private boolean isIndefinitelyBlocking(BlockingMode blockingMode) {
         return BlockingMode.BLOCK_INDEFINITELY.equals(blockingMode) ||
                 BlockingMode.BLOCK_INDEFINITELY_THEN_RELEASE.equals(blockingMode);
@@ -437,23 +789,22 @@ import com.palantir.util.Pair;
             previousThreadName = updateThreadName(request);
             for (Entry<LockDescriptor, LockMode> entry : request.getLockDescriptors().entries()) {
                 if (blockingMode == BlockingMode.BLOCK_INDEFINITELY_THEN_RELEASE
-                        && !descriptorToLockMap.asMap().containsKey(entry.getKey())) {
+                        && !descriptorToLockMap.contains(entry.getKey())) {
                     continue;
                 }
 
-                ClientAwareReadWriteLock lock;
+                LockServerLock lock = descriptorToLockMap.pin(entry.getKey());
+                long startTime = System.currentTimeMillis();
+                @Nullable LockClient currentHolder;
                 try {
-                    lock = descriptorToLockMap.get(entry.getKey());
-                } catch (ExecutionException e) {
-                    throw new RuntimeException(e.getCause());
-                }
-                if (locks.containsKey(lock)) {
-                    // This is the 2nd time we are calling tryLocks and we already locked this one.
-                    continue;
+                    if (locks.containsKey(lock)) {
+                        // This is the 2nd time we are calling tryLocks and we already locked this one.
+                        continue;
+                    }
+                    currentHolder = tryLock(lock.get(client, entry.getValue()), blockingMode, deadline);
+                } finally {
+                    lock.unpin();
                 }
-                long startTime = System.currentTimeMillis();
-                @Nullable LockClient currentHolder = tryLock(lock.get(client, entry.getValue()),
-                        blockingMode, deadline);
                 if (log.isDebugEnabled()) {
                     long duration = System.currentTimeMillis() - startTime;
                     if (duration > 100) {
@@ -538,7 +889,7 @@ import com.palantir.util.Pair;
         LockClient client = heldLocks.realToken.getClient();
         if (client.isAnonymous()) {
             heldLocksTokenMap.put(token, heldLocks);
-            lockTokenReaperQueue.add(token);
+            lockTokenReaper.add(token);
             String errorMessage =
                     "Received .unlockAndFreeze() call for anonymous client with token "
                     + heldLocks.realToken;
@@ -547,7 +898,7 @@ import com.palantir.util.Pair;
         }
         if (heldLocks.locks.hasReadLock()) {
             heldLocksTokenMap.put(token, heldLocks);
-            lockTokenReaperQueue.add(token);
+            lockTokenReaper.add(token);
             String errorMessage = "Received .unlockAndFreeze() call for read locks: "
                     + heldLocks.realToken;
             log.warn(errorMessage);
@@ -558,7 +909,7 @@ import com.palantir.util.Pair;
         }
         lockClientMultimap.remove(client, token);
         if (heldLocks.realToken.getVersionId() != null) {
-            versionIdMap.remove(client, heldLocks.realToken.getVersionId());
+            lockedVersionIds.remove(client, heldLocks.realToken.getVersionId());
         }
         if (log.isTraceEnabled()) {
             log.trace(".unlockAndFreeze(" + token + ") returns true");
@@ -588,7 +939,7 @@ import com.palantir.util.Pair;
             entry.getKey().get(client, entry.getValue()).unlock();
         }
         if (heldLocks.realToken.getVersionId() != null) {
-            versionIdMap.remove(client, heldLocks.realToken.getVersionId());
+            lockedVersionIds.remove(client, heldLocks.realToken.getVersionId());
         }
         return true;
     }
@@ -602,12 +953,10 @@ import com.palantir.util.Pair;
             throw new IllegalArgumentException("Illegal client!");
         }
         ImmutableSet.Builder<HeldLocksToken> tokens = ImmutableSet.builder();
-        synchronized (lockClientMultimap) {
-            for (HeldLocksToken token : lockClientMultimap.get(client)) {
-                @Nullable HeldLocks<HeldLocksToken> heldLocks = heldLocksTokenMap.get(token);
-                if ((heldLocks != null) && !isFrozen(heldLocks.locks.getKeys())) {
-                    tokens.add(token);
-                }
+        for (HeldLocksToken token : lockClientMultimap.get(client)) {
+            @Nullable HeldLocks<HeldLocksToken> heldLocks = heldLocksTokenMap.get(token);
+            if ((heldLocks != null) && !isFrozen(heldLocks.locks.getKeys())) {
+                tokens.add(token);
             }
         }
         ImmutableSet<HeldLocksToken> tokenSet = tokens.build();
@@ -760,7 +1109,7 @@ import com.palantir.util.Pair;
         }
         if (isFrozen(heldLocks.locks.getKeys())) {
             heldLocksTokenMap.put(token, heldLocks);
-            lockTokenReaperQueue.add(token);
+            lockTokenReaper.add(token);
             log.warn("Cannot convert to grant because token is frozen: " + token);
             throw new IllegalArgumentException("token is frozen: " + token);
         }
@@ -769,7 +1118,7 @@ import com.palantir.util.Pair;
                     INTERNAL_LOCK_GRANT_CLIENT);
         } catch (IllegalMonitorStateException e) {
             heldLocksTokenMap.put(token, heldLocks);
-            lockTokenReaperQueue.add(token);
+            lockTokenReaper.add(token);
             log.warn("Failure converting " + token + " to grant", e);
             throw e;
         }
@@ -880,66 +1229,35 @@ import com.palantir.util.Pair;
 
     @Override
     @Nullable public Long getMinLockedInVersionId(LockClient client) {
-        Long versionId = null;
-        synchronized (versionIdMap) {
-            Collection<Long> versionsForClient = versionIdMap.get(client);
-            if (versionsForClient != null && !versionsForClient.isEmpty()) {
-                versionId = versionsForClient.iterator().next();
-            }
-        }
+        Long versionId = lockedVersionIds.getMin(client);
         if (log.isTraceEnabled()) {
             log.trace(".getMinLockedInVersionId() returns " + versionId);
         }
         return versionId;
     }
 
-    private <T extends ExpiringToken> void reapLocks(BlockingQueue<T> queue,
-            ConcurrentMap<T, HeldLocks<T>> heldLocksMap) {
-        while (true) {
-            // shutdownNow() sends interrupt signal to the running threads to terminate them.
-            // If interrupt signal happens right after try {} catch (InterruptedException),
-            // the interrupt state MIGHT be swallowed in catch (Throwable t) {}; so threads will
-            // miss the shutdown signal.
-            if (isShutDown) {
-                break;
-            }
-            try {
-                T token = null;
-                try {
-                    token = queue.take();
-                    long sleepTimeMs = token.getExpirationDateMs() - currentTimeMillis()
-                            + maxAllowedClockDrift.toMillis();
-                    if (sleepTimeMs > 0) {
-                        Thread.sleep(sleepTimeMs);
-                    }
-                } catch (InterruptedException e) {
-                    if (isShutDown) {
-                        break;
-                    } else {
-                        log.warn("The lock server reaper thread should not be " +
-                                "interrupted if the server is not shutting down.", e);
-                        if (token == null) {
-                            continue;
-                        }
-                    }
-                }
+    private <T extends ExpiringToken> LockReaper<T> createReaper(
+            final ConcurrentMap<T, HeldLocks<T>> heldLocksMap) {
+        LockReaper.HeldTokens<T> heldTokens = new LockReaper.HeldTokens<T>() {
+            @Override
+            @Nullable
+            public T getCurrentToken(T token) {
                 @Nullable HeldLocks<T> heldLocks = heldLocksMap.get(token);
-                if (heldLocks == null) {
-                    continue;
-                }
-                T realToken = heldLocks.realToken;
-                if (realToken.getExpirationDateMs() > currentTimeMillis()
-                        - maxAllowedClockDrift.toMillis()) {
-                    queue.add(realToken);
-                } else {
-                    log.warn("Lock token " + realToken
-                            + " was not properly refreshed and is now being reaped.");
-                    unlockInternal(realToken, heldLocksMap);
-                }
-            } catch (Throwable t) {
-                log.error("Something went wrong while reaping locks. Attempting to continue anyway.", t);
+                return heldLocks == null ? null : heldLocks.realToken;
             }
-        }
+
+            @Override
+            public void reap(T token) {
+                unlockInternal(token, heldLocksMap);
+            }
+        };
+        Clock clock = new Clock() {
+            @Override
+            public long getTimeMillis() {
+                return currentTimeMillis();
+            }
+        };
+        return new LockReaper<T>(heldTokens, clock, maxAllowedClockDrift.toMillis());
     }
 
     @Override
@@ -968,17 +1286,6 @@ import com.palantir.util.Pair;
         return options;
     }
 
-    private <T> List<T> queueToOrderedList(Queue<T> queue) {
-        List<T> list = Lists.newLinkedList();
-        while (!queue.isEmpty()) {
-            list.add(queue.poll());
-        }
-        for (T element : list) {
-            queue.add(element);
-        }
-        return list;
-    }
-
     /**
      * Prints the current state of the lock server to the logs. Useful for
      * debugging.
@@ -992,15 +1299,15 @@ import com.palantir.util.Pair;
         logString.append("maxAllowedClockDrift = ").append(maxAllowedClockDrift).append("\n");
         logString.append("maxAllowedBlockingDuration = ").append(maxAllowedBlockingDuration).append("\n");
         logString.append("randomBitCount = ").append(randomBitCount).append("\n");
+        logString.append("lockTokenReaperQueueDepth = ").append(lockTokenReaper.getQueueDepth()).append("\n");
+        logString.append("lockGrantReaperQueueDepth = ").append(lockGrantReaper.getQueueDepth()).append("\n");
         for (Pair<String, ? extends Collection<?>> nameValuePair : ImmutableList.of(
-                Pair.create("descriptorToLockMap", descriptorToLockMap.asMap().entrySet()),
+                Pair.create("descriptorToLockMap", descriptorToLockMap.entries()),
                 Pair.create("outstandingLockRequestMultimap", outstandingLockRequestMultimap.asMap().entrySet()),
                 Pair.create("heldLocksTokenMap", heldLocksTokenMap.entrySet()),
                 Pair.create("heldLocksGrantMap", heldLocksGrantMap.entrySet()),
-                Pair.create("lockTokenReaperQueue", queueToOrderedList(lockTokenReaperQueue)),
-                Pair.create("lockGrantReaperQueue", queueToOrderedList(lockGrantReaperQueue)),
                 Pair.create("lockClientMultimap", lockClientMultimap.asMap().entrySet()),
-                Pair.create("versionIdMap", versionIdMap.asMap().entrySet()))) {
+                Pair.create("versionIdMap", lockedVersionIds.asMap().entrySet()))) {
             Collection<?> elements = nameValuePair.getRhSide();
             logString.append(nameValuePair.getLhSide()).append(".size() = ").append(elements.size()).append("\n");
             if (elements.size() > MAX_LOCKS_TO_LOG) {
@@ -1015,14 +1322,57 @@ import com.palantir.util.Pair;
         log.error(logString.toString());
     }
 
+    @Override
+    public long getLockTokenReaperQueueDepth() {
+        return lockTokenReaper.getQueueDepth();
+    }
+
+    @Override
+    public long getLockGrantReaperQueueDepth() {
+        return lockGrantReaper.getQueueDepth();
+    }
+
+    @Override
+    public long getReapedLockTokenCount() {
+        return lockTokenReaper.getReapedCount();
+    }
+
+    @Override
+    public long getReapedLockGrantCount() {
+        return lockGrantReaper.getReapedCount();
+    }
+
+    @Override
+    public long getLastLockTokenReapLatencyMillis() {
+        return lockTokenReaper.getLastReapLatencyMillis();
+    }
+
+    @Override
+    public long getLastLockGrantReapLatencyMillis() {
+        return lockGrantReaper.getLastReapLatencyMillis();
+    }
+
     @Override
     public void close() {
         isShutDown = true;
+        lockTokenReaper.close();
+        lockGrantReaper.close();
         executor.shutdownNow();
         wakeIndefiniteBlockers();
+        failPendingAsyncLockRequests();
+        asyncLockExecutor.shutdownNow();
         callOnClose.run();
     }
 
+    private void failPendingAsyncLockRequests() {
+        for (AsyncLockRequest request : pendingAsyncLockRequests) {
+            request.fail(new ServiceNotAvailableException("This lock server is shut down."));
+        }
+        for (ReleaseWaiter waiter : pendingReleaseWaiters) {
+            waiter.future.completeExceptionally(new ServiceNotAvailableException("This lock server is shut down."));
+        }
+    }
+
     private void wakeIndefiniteBlockers() {
         for (Thread blocked : indefinitelyBlockingThreads) {
             blocked.interrupt();
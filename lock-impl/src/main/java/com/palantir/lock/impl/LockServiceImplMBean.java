@@ -17,4 +17,22 @@ package com.palantir.lock.impl;
 
 public interface LockServiceImplMBean {
     void logCurrentState();
+
+    /** Returns the number of lock tokens the token reaper is watching. */
+    long getLockTokenReaperQueueDepth();
+
+    /** Returns the number of lock grants the grant reaper is watching. */
+    long getLockGrantReaperQueueDepth();
+
+    /** Returns the number of lock tokens reaped because they were not refreshed in time. */
+    long getReapedLockTokenCount();
+
+    /** Returns the number of lock grants reaped because they were not refreshed in time. */
+    long getReapedLockGrantCount();
+
+    /** Returns how late, in milliseconds, the most recently reaped lock token was reaped. */
+    long getLastLockTokenReapLatencyMillis();
+
+    /** Returns how late, in milliseconds, the most recently reaped lock grant was reaped. */
+    long getLastLockGrantReapLatencyMillis();
 }
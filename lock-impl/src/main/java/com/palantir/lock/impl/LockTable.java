@@ -0,0 +1,88 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.lock.impl;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.google.common.collect.Maps;
+import com.palantir.lock.LockDescriptor;
+
+/**
+ * The backing lock for each lock descriptor which is currently in use.
+ * <p>
+ * Locks are kept in a concurrent hash map, so requests for unrelated descriptors
+ * only meet if their descriptors hash to the same bin. Rather than relying on
+ * weakly referenced values and the garbage collector, a lock removes itself from
+ * the table once it is unused: nobody holds or waits for it, and no request is
+ * between looking it up and trying to acquire it. Requests therefore have to
+ * {@link #pin} a lock while they acquire it and {@link LockServerLock#unpin}
+ * it afterwards; a lock that is held stays in the table through its holders.
+ */
+@ThreadSafe final class LockTable {
+    private final ConcurrentMap<LockDescriptor, LockServerLock> locks = Maps.newConcurrentMap();
+    private final LockClientIndices clients;
+
+    LockTable(LockClientIndices clients) {
+        this.clients = clients;
+    }
+
+    /**
+     * Returns the lock for the given descriptor, creating it if necessary, and pins it
+     * so that it stays in the table until it is unpinned.
+     */
+    LockServerLock pin(LockDescriptor descriptor) {
+        while (true) {
+            LockServerLock lock = locks.get(descriptor);
+            if (lock == null) {
+                LockServerLock newLock = new LockServerLock(descriptor, clients, this);
+                lock = locks.putIfAbsent(descriptor, newLock);
+                if (lock == null) {
+                    lock = newLock;
+                }
+            }
+            if (lock.pin()) {
+                return lock;
+            }
+            // The lock is being removed from the table; look it up again once it is gone.
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Returns the lock for the given descriptor, or {@code null} if it is not in use.
+     * The returned lock is not pinned, so it must not be acquired.
+     */
+    @Nullable ClientAwareReadWriteLock get(LockDescriptor descriptor) {
+        return locks.get(descriptor);
+    }
+
+    boolean contains(LockDescriptor descriptor) {
+        return locks.containsKey(descriptor);
+    }
+
+    Collection<Map.Entry<LockDescriptor, LockServerLock>> entries() {
+        return locks.entrySet();
+    }
+
+    void remove(LockServerLock lock) {
+        locks.remove(lock.getDescriptor(), lock);
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.lock.impl;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.google.common.collect.Maps;
+import com.palantir.lock.LockClient;
+
+/**
+ * The version IDs locked in by each client, kept so that the lock server can
+ * answer {@link com.palantir.lock.LockService#getMinLockedInVersionId} quickly.
+ * <p>
+ * Each client has its own concurrent sorted multiset of version IDs, so no
+ * operation takes a lock: adding or removing a version ID only contends with
+ * operations on neighbouring version IDs of the same client, and the minimum is
+ * read off the head of the client's skip list without blocking writers.
+ * <p>
+ * Clients are never removed, as doing so safely would need a lock again; an
+ * empty client costs one empty skip list.
+ */
+@ThreadSafe final class LockedVersionIds {
+
+    private final ConcurrentMap<LockClient, VersionIds> versionIdsByClient = Maps.newConcurrentMap();
+
+    /** Records that the given client locked in the given version ID one more time. */
+    void add(LockClient client, long versionId) {
+        VersionIds versionIds = versionIdsByClient.get(client);
+        if (versionIds == null) {
+            versionIds = versionIdsByClient.computeIfAbsent(client, c -> new VersionIds());
+        }
+        versionIds.add(versionId);
+    }
+
+    /** Records that the given client released one of its locks on the given version ID. */
+    void remove(LockClient client, long versionId) {
+        VersionIds versionIds = versionIdsByClient.get(client);
+        if (versionIds != null) {
+            versionIds.remove(versionId);
+        }
+    }
+
+    /**
+     * Returns the smallest version ID locked in by the given client, or
+     * {@code null} if the client does not hold any version ID.
+     */
+    @Nullable Long getMin(LockClient client) {
+        VersionIds versionIds = versionIdsByClient.get(client);
+        return versionIds == null ? null : versionIds.getMin();
+    }
+
+    /** Returns a view of the version IDs locked in by each client, for logging. */
+    Map<LockClient, ?> asMap() {
+        return Maps.filterValues(versionIdsByClient, versionIds -> versionIds.getMin() != null);
+    }
+
+    /** A concurrent sorted multiset of version IDs. */
+    private static final class VersionIds {
+        private final ConcurrentSkipListMap<Long, Integer> counts = new ConcurrentSkipListMap<Long, Integer>();
+
+        void add(long versionId) {
+            counts.merge(versionId, 1, Integer::sum);
+        }
+
+        void remove(long versionId) {
+            counts.computeIfPresent(versionId, (id, count) -> count == 1 ? null : count - 1);
+        }
+
+        @Nullable Long getMin() {
+            Map.Entry<Long, Integer> first = counts.firstEntry();
+            return first == null ? null : first.getKey();
+        }
+
+        @Override
+        public String toString() {
+            return counts.toString();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.lock.impl;
+
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Lists;
+import com.palantir.lock.AtlasTimestampLockDescriptor;
+import com.palantir.lock.LockMode;
+import com.palantir.lock.LockRefreshToken;
+import com.palantir.lock.LockRequest;
+import com.palantir.lock.RemoteLockService;
+import com.palantir.lock.StartedTransaction;
+import com.palantir.lock.TransactionStartService;
+import com.palantir.timestamp.TimestampRange;
+import com.palantir.timestamp.TimestampService;
+
+/**
+ * Implements {@link TransactionStartService} on top of a co-located timestamp and lock service, so that
+ * starting a batch of transactions costs the client a single round trip.
+ */
+public class TransactionStartServiceImpl implements TransactionStartService {
+    private final TimestampService timestampService;
+    private final RemoteLockService lockService;
+
+    public TransactionStartServiceImpl(TimestampService timestampService, RemoteLockService lockService) {
+        this.timestampService = timestampService;
+        this.lockService = lockService;
+    }
+
+    @Override
+    public List<StartedTransaction> startTransactions(String client, int numTransactions)
+            throws InterruptedException {
+        Preconditions.checkArgument(numTransactions > 0,
+                "Must start at least one transaction but asked for %s", numTransactions);
+        List<Long> immutableLockTimestamps = getFreshTimestamps(numTransactions);
+        List<LockRefreshToken> locks = Lists.newArrayListWithCapacity(numTransactions);
+        try {
+            for (long immutableLockTs : immutableLockTimestamps) {
+                LockRequest lockRequest = LockRequest.builder(ImmutableSortedMap.of(
+                        AtlasTimestampLockDescriptor.of(immutableLockTs), LockMode.READ))
+                        .withLockedInVersionId(immutableLockTs).build();
+                LockRefreshToken lock = lockService.lock(client, lockRequest);
+                Preconditions.checkState(lock != null, "Failed to lock immutable timestamp %s", immutableLockTs);
+                locks.add(lock);
+            }
+
+            // All of our locks are held, so this is no greater than the first immutable lock timestamp.
+            Long minLocked = lockService.getMinLockedInVersionId(client);
+            long immutableTs = minLocked == null ? immutableLockTimestamps.get(0) : minLocked;
+
+            // Start timestamps must be handed out only after the immutable timestamp locks are held.
+            List<Long> startTimestamps = getFreshTimestamps(numTransactions);
+            ImmutableList.Builder<StartedTransaction> startedTransactions = ImmutableList.builder();
+            for (int i = 0; i < numTransactions; i++) {
+                startedTransactions.add(new StartedTransaction(locks.get(i), immutableTs, startTimestamps.get(i)));
+            }
+            return startedTransactions.build();
+        } catch (Throwable t) {
+            for (LockRefreshToken lock : locks) {
+                lockService.unlock(lock);
+            }
+            throw t;
+        }
+    }
+
+    private List<Long> getFreshTimestamps(int numTimestamps) {
+        List<Long> timestamps = Lists.newArrayListWithCapacity(numTimestamps);
+        while (timestamps.size() < numTimestamps) {
+            // The timestamp service may hand out fewer timestamps than we ask for.
+            TimestampRange range = timestampService.getFreshTimestamps(numTimestamps - timestamps.size());
+            for (long ts = range.getLowerBound();
+                    ts <= range.getUpperBound() && timestamps.size() < numTimestamps;
+                    ts++) {
+                timestamps.add(ts);
+            }
+        }
+        return timestamps;
+    }
+}
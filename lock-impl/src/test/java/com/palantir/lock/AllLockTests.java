@@ -20,6 +20,8 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 import com.palantir.lock.client.LockRefreshingLockServiceTest;
+import com.palantir.lock.impl.AsyncLockServiceImplTest;
+import com.palantir.lock.impl.AwaitLocksReleasedTest;
 import com.palantir.lock.impl.ClientAwareLockTest;
 
 /**
@@ -30,6 +32,8 @@ import com.palantir.lock.impl.ClientAwareLockTest;
 @SuiteClasses(value = {
         ClientAwareLockTest.class,
         LockServiceImplTest.class,
+        AsyncLockServiceImplTest.class,
+        AwaitLocksReleasedTest.class,
         LockRefreshingLockServiceTest.class
 }) @RunWith(value = Suite.class) public final class AllLockTests {
     /* Empty; the annotations above take care of everything. */
@@ -0,0 +1,105 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.lock.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.palantir.lock.StartedTransaction;
+import com.palantir.lock.TransactionStartService;
+import com.palantir.lock.impl.LockServiceImpl;
+import com.palantir.lock.impl.TransactionStartServiceImpl;
+import com.palantir.timestamp.InMemoryTimestampService;
+
+public class CoalescingTransactionStartServiceTest {
+    private static final String CLIENT = "client";
+    private static final int NUM_THREADS = 16;
+
+    private final AtomicInteger remoteCalls = new AtomicInteger();
+    private final TransactionStartService server =
+            new TransactionStartServiceImpl(new InMemoryTimestampService(), LockServiceImpl.create());
+
+    @Test
+    public void coalescesConcurrentRequests() throws Exception {
+        CountDownLatch firstCallStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstCall = new CountDownLatch(1);
+        TransactionStartService slowServer = (client, numTransactions) -> {
+            if (remoteCalls.incrementAndGet() == 1) {
+                firstCallStarted.countDown();
+                releaseFirstCall.await();
+            }
+            return server.startTransactions(client, numTransactions);
+        };
+        CoalescingTransactionStartService service = new CoalescingTransactionStartService(slowServer);
+
+        ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS);
+        try {
+            List<Future<List<StartedTransaction>>> futures = Lists.newArrayList();
+            futures.add(executor.submit(() -> service.startTransactions(CLIENT, 1)));
+            firstCallStarted.await();
+            for (int i = 1; i < NUM_THREADS; i++) {
+                futures.add(executor.submit(() -> service.startTransactions(CLIENT, 1)));
+            }
+            // Give the waiting requests a chance to join the second batch before the first call returns.
+            Thread.sleep(500);
+            releaseFirstCall.countDown();
+
+            Set<Long> startTimestamps = Sets.newHashSet();
+            for (Future<List<StartedTransaction>> future : futures) {
+                List<StartedTransaction> started = future.get();
+                assertEquals(1, started.size());
+                startTimestamps.add(started.get(0).getStartTimestamp());
+            }
+            assertEquals(NUM_THREADS, startTimestamps.size());
+            assertEquals(2, remoteCalls.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void requestsAfterAFailedCallAreRetried() throws Exception {
+        TransactionStartService flakyServer = (client, numTransactions) -> {
+            if (remoteCalls.incrementAndGet() == 1) {
+                throw new IllegalStateException("failed");
+            }
+            return server.startTransactions(client, numTransactions);
+        };
+        CoalescingTransactionStartService service = new CoalescingTransactionStartService(flakyServer);
+
+        try {
+            service.startTransactions(CLIENT, 1);
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        List<StartedTransaction> started = service.startTransactions(CLIENT, 2);
+
+        assertEquals(2, started.size());
+        assertTrue(started.get(0).getStartTimestamp() < started.get(1).getStartTimestamp());
+    }
+}
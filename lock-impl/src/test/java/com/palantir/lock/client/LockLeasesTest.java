@@ -0,0 +1,194 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.lock.client;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.palantir.common.concurrent.PTExecutors;
+import com.palantir.lock.ForwardingRemoteLockService;
+import com.palantir.lock.LockMode;
+import com.palantir.lock.LockRefreshToken;
+import com.palantir.lock.LockRequest;
+import com.palantir.lock.RemoteLockService;
+import com.palantir.lock.SimpleTimeDuration;
+import com.palantir.lock.StringLockDescriptor;
+import com.palantir.lock.TimeDuration;
+import com.palantir.lock.impl.LockServiceImpl;
+
+public class LockLeasesTest {
+    private static final String CLIENT = "client";
+    private static final TimeDuration TIMEOUT = SimpleTimeDuration.of(10, TimeUnit.SECONDS);
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final AtomicInteger refreshCalls = new AtomicInteger();
+    private volatile CountDownLatch refreshLatch = new CountDownLatch(0);
+
+    private LockServiceImpl server;
+    private LockLeases leases;
+
+    @Before
+    public void setUp() {
+        server = LockServiceImpl.create();
+        RemoteLockService countingServer = new ForwardingRemoteLockService() {
+            @Override
+            protected RemoteLockService delegate() {
+                return server;
+            }
+
+            @Override
+            public Set<LockRefreshToken> refreshLockRefreshTokens(Iterable<LockRefreshToken> tokens) {
+                refreshCalls.incrementAndGet();
+                Uninterruptibles.awaitUninterruptibly(refreshLatch);
+                return super.refreshLockRefreshTokens(tokens);
+            }
+        };
+        leases = new LockLeases(countingServer, new Ticker() {
+            @Override
+            public long read() {
+                return nanos.get();
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void shouldOnlyRefreshLocksWithLessThanHalfOfTheirLeaseLeft() throws InterruptedException {
+        LockRefreshToken oldLock = lock("old");
+        advanceSeconds(3);
+        LockRefreshToken newLock = lock("new");
+        advanceSeconds(3);
+
+        leases.refreshExpiringLocks();
+        assertThat(refreshCalls.get(), is(1));
+        assertThat(leases.areLeasesFresh(ImmutableSet.of(oldLock), 9000), is(true));
+        assertThat(leases.areLeasesFresh(ImmutableSet.of(newLock), 9000), is(false));
+
+        leases.refreshExpiringLocks();
+        assertThat(refreshCalls.get(), is(1));
+    }
+
+    @Test
+    public void shouldStopTrackingLocksThatAreNoLongerHeld() throws InterruptedException {
+        LockRefreshToken token = lock("lock");
+        server.unlock(token);
+
+        assertThat(leases.refresh(ImmutableSet.of(token)), is(empty()));
+        assertThat(leases.getTrackedTokens(), is(empty()));
+    }
+
+    @Test
+    public void shouldOnlyConsiderTrackedLocksWithEnoughLeaseLeftFresh() throws InterruptedException {
+        LockRefreshToken token = lock("lock");
+        LockRefreshToken untracked = server.lock(CLIENT, request("untracked"));
+
+        assertThat(leases.areLeasesFresh(ImmutableSet.of(token), 5000), is(true));
+        assertThat(leases.areLeasesFresh(ImmutableSet.of(token, untracked), 5000), is(false));
+
+        advanceSeconds(6);
+        assertThat(leases.areLeasesFresh(ImmutableSet.of(token), 5000), is(false));
+    }
+
+    @Test
+    public void shouldCoalesceRefreshesMadeWhileARefreshIsInFlight() throws Exception {
+        List<LockRefreshToken> tokens = Lists.newArrayList();
+        for (int i = 0; i < 10; i++) {
+            tokens.add(lock("lock" + i));
+        }
+        refreshLatch = new CountDownLatch(1);
+        ExecutorService executor = PTExecutors.newCachedThreadPool();
+        try {
+            List<Future<Set<LockRefreshToken>>> futures = Lists.newArrayList();
+            for (final LockRefreshToken token : tokens) {
+                futures.add(executor.submit(new Callable<Set<LockRefreshToken>>() {
+                    @Override
+                    public Set<LockRefreshToken> call() {
+                        return leases.refresh(ImmutableSet.of(token));
+                    }
+                }));
+            }
+            while (refreshCalls.get() == 0) {
+                Thread.sleep(1);
+            }
+            Thread.sleep(100);
+            refreshLatch.countDown();
+
+            Set<LockRefreshToken> refreshed = Sets.newHashSet();
+            for (Future<Set<LockRefreshToken>> future : futures) {
+                Set<LockRefreshToken> result = future.get();
+                assertThat(result.size(), is(1));
+                refreshed.addAll(result);
+            }
+            assertThat(refreshed, containsInAnyOrder(tokens.toArray()));
+            assertThat(refreshCalls.get(), is(2));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldOnlyReturnTheCallersOwnLocks() throws InterruptedException {
+        LockRefreshToken first = lock("first");
+        lock("second");
+
+        assertThat(leases.refresh(ImmutableSet.of(first)), contains(first));
+    }
+
+    private LockRefreshToken lock(String lockName) throws InterruptedException {
+        long requestStartNanos = leases.now();
+        LockRefreshToken token = server.lock(CLIENT, request(lockName));
+        leases.track(token, TIMEOUT, requestStartNanos);
+        return token;
+    }
+
+    private static LockRequest request(String lockName) {
+        return LockRequest.builder(ImmutableSortedMap.of(StringLockDescriptor.of(lockName), LockMode.WRITE))
+                .timeoutAfter(TIMEOUT)
+                .doNotBlock()
+                .build();
+    }
+
+    private void advanceSeconds(long seconds) {
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+    }
+}
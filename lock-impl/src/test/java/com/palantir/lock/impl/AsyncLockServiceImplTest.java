@@ -0,0 +1,202 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.lock.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Lists;
+import com.palantir.lock.HeldLocksToken;
+import com.palantir.lock.LockClient;
+import com.palantir.lock.LockDescriptor;
+import com.palantir.lock.LockMode;
+import com.palantir.lock.LockRequest;
+import com.palantir.lock.LockResponse;
+import com.palantir.lock.SimpleTimeDuration;
+import com.palantir.lock.StringLockDescriptor;
+
+public class AsyncLockServiceImplTest {
+    private static final LockClient CLIENT_A = LockClient.of("a");
+    private static final LockClient CLIENT_B = LockClient.of("b");
+    private static final LockDescriptor LOCK_1 = StringLockDescriptor.of("lock1");
+    private static final LockDescriptor LOCK_2 = StringLockDescriptor.of("lock2");
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private LockServiceImpl server;
+
+    @Before
+    public void setUp() {
+        server = LockServiceImpl.create();
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void grantsFreeLocksImmediately() throws Exception {
+        CompletableFuture<LockResponse> response = server.lockWithFullLockResponseAsync(CLIENT_A, write(LOCK_1));
+
+        assertTrue(response.isDone());
+        assertTrue(response.get().success());
+    }
+
+    @Test
+    public void waitsUntilLockIsReleased() throws Exception {
+        HeldLocksToken held = server.lockWithFullLockResponse(CLIENT_A, write(LOCK_1)).getToken();
+
+        CompletableFuture<LockResponse> response = server.lockWithFullLockResponseAsync(CLIENT_B, write(LOCK_1));
+        Thread.sleep(100);
+        assertFalse(response.isDone());
+
+        server.unlock(held);
+        LockResponse lockResponse = response.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertTrue(lockResponse.success());
+        assertEquals(CLIENT_B, lockResponse.getToken().getClient());
+    }
+
+    @Test
+    public void grantsWaitingRequestsInOrder() throws Exception {
+        HeldLocksToken held = server.lockWithFullLockResponse(CLIENT_A, write(LOCK_1)).getToken();
+        List<Integer> grantOrder = Lists.newCopyOnWriteArrayList();
+        List<CompletableFuture<Void>> futures = Lists.newArrayList();
+        for (int i = 0; i < 1000; i++) {
+            int requestNumber = i;
+            futures.add(server.lockWithFullLockResponseAsync(LockClient.of("client" + i), write(LOCK_1))
+                    .thenAccept(response -> {
+                        grantOrder.add(requestNumber);
+                        server.unlock(response.getToken());
+                    }));
+        }
+
+        server.unlock(held);
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        assertEquals(1000, grantOrder.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(Integer.valueOf(i), grantOrder.get(i));
+        }
+    }
+
+    @Test
+    public void allOrNoneRequestReleasesAcquiredLocksOnTimeout() throws Exception {
+        server.lockWithFullLockResponse(CLIENT_A, write(LOCK_2));
+        LockRequest request = LockRequest.builder(ImmutableSortedMap.of(LOCK_1, LockMode.WRITE, LOCK_2, LockMode.WRITE))
+                .blockForAtMost(SimpleTimeDuration.of(100, TimeUnit.MILLISECONDS))
+                .build();
+
+        LockResponse response = server.lockWithFullLockResponseAsync(CLIENT_B, request)
+                .get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        assertFalse(response.success());
+        assertEquals(CLIENT_A, response.getLockHolders().get(LOCK_2));
+        assertNotNull(server.lockWithFullLockResponse(CLIENT_A, doNotBlock(LOCK_1)).getToken());
+        assertEquals(0, server.getNumberOfReleaseListeners(LOCK_2));
+    }
+
+    @Test
+    public void timedOutRequestStopsListeningForReleases() throws Exception {
+        HeldLocksToken held = server.lockWithFullLockResponse(CLIENT_A, write(LOCK_1)).getToken();
+        LockRequest request = LockRequest.builder(ImmutableSortedMap.of(LOCK_1, LockMode.WRITE))
+                .blockForAtMost(SimpleTimeDuration.of(100, TimeUnit.MILLISECONDS))
+                .build();
+
+        CompletableFuture<LockResponse> response = server.lockWithFullLockResponseAsync(CLIENT_B, request);
+        assertEquals(1, server.getNumberOfReleaseListeners(LOCK_1));
+
+        assertFalse(response.get(TIMEOUT_SECONDS, TimeUnit.SECONDS).success());
+        assertEquals(0, server.getNumberOfReleaseListeners(LOCK_1));
+        server.unlock(held);
+        assertNotNull(server.lockWithFullLockResponse(CLIENT_A, doNotBlock(LOCK_1)).getToken());
+    }
+
+    @Test
+    public void asManyAsPossibleRequestKeepsAcquiredLocksOnTimeout() throws Exception {
+        server.lockWithFullLockResponse(CLIENT_A, write(LOCK_1));
+        LockRequest request = LockRequest.builder(ImmutableSortedMap.of(LOCK_1, LockMode.WRITE, LOCK_2, LockMode.WRITE))
+                .lockAsManyAsPossible()
+                .blockForAtMost(SimpleTimeDuration.of(100, TimeUnit.MILLISECONDS))
+                .build();
+
+        LockResponse response = server.lockWithFullLockResponseAsync(CLIENT_B, request)
+                .get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        assertTrue(response.success());
+        assertEquals(ImmutableList.of(LOCK_2), response.getToken().getLockDescriptors().getKeys());
+        assertEquals(CLIENT_A, response.getLockHolders().get(LOCK_1));
+    }
+
+    @Test
+    public void lockAndReleaseHoldsNothingOnceComplete() throws Exception {
+        HeldLocksToken held = server.lockWithFullLockResponse(CLIENT_A, write(LOCK_1)).getToken();
+        LockRequest request = LockRequest.builder(ImmutableSortedMap.of(LOCK_1, LockMode.READ))
+                .lockAndRelease()
+                .build();
+
+        CompletableFuture<LockResponse> response = server.lockWithFullLockResponseAsync(CLIENT_B, request);
+        Thread.sleep(100);
+        assertFalse(response.isDone());
+
+        server.unlock(held);
+        assertNull(response.get(TIMEOUT_SECONDS, TimeUnit.SECONDS).getToken());
+        assertNotNull(server.lockWithFullLockResponse(CLIENT_A, doNotBlock(LOCK_1)).getToken());
+    }
+
+    @Test
+    public void cancellingReleasesAcquiredLocks() throws Exception {
+        HeldLocksToken held = server.lockWithFullLockResponse(CLIENT_A, write(LOCK_2)).getToken();
+        LockRequest request = LockRequest.builder(ImmutableSortedMap.of(LOCK_1, LockMode.WRITE, LOCK_2, LockMode.WRITE))
+                .build();
+
+        CompletableFuture<LockResponse> response = server.lockWithFullLockResponseAsync(CLIENT_B, request);
+        assertEquals(1, server.getNumberOfReleaseListeners(LOCK_2));
+        response.cancel(false);
+        for (int i = 0; i < 100 && server.getNumberOfReleaseListeners(LOCK_2) > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, server.getNumberOfReleaseListeners(LOCK_2));
+        server.unlock(held);
+
+        HeldLocksToken token = null;
+        for (int i = 0; i < 100 && token == null; i++) {
+            token = server.lockWithFullLockResponse(CLIENT_A, doNotBlock(LOCK_1)).getToken();
+            Thread.sleep(10);
+        }
+        assertNotNull(token);
+    }
+
+    private static LockRequest write(LockDescriptor descriptor) {
+        return LockRequest.builder(ImmutableSortedMap.of(descriptor, LockMode.WRITE)).build();
+    }
+
+    private static LockRequest doNotBlock(LockDescriptor descriptor) {
+        return LockRequest.builder(ImmutableSortedMap.of(descriptor, LockMode.WRITE)).doNotBlock().build();
+    }
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.lock.impl;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedMap;
+import com.palantir.lock.HeldLocksToken;
+import com.palantir.lock.LockClient;
+import com.palantir.lock.LockDescriptor;
+import com.palantir.lock.LockMode;
+import com.palantir.lock.LockRefreshToken;
+import com.palantir.lock.LockRequest;
+import com.palantir.lock.RemoteLockService;
+import com.palantir.lock.StringLockDescriptor;
+
+public class AwaitLocksReleasedTest {
+    private static final LockClient CLIENT_A = LockClient.of("a");
+    private static final LockClient CLIENT_B = LockClient.of("b");
+    private static final LockDescriptor LOCK_1 = StringLockDescriptor.of("lock1");
+    private static final LockDescriptor LOCK_2 = StringLockDescriptor.of("lock2");
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private LockServiceImpl server;
+
+    @Before
+    public void setUp() {
+        server = LockServiceImpl.create();
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void waitingForUnheldLocksReturnsImmediately() throws Exception {
+        server.lockWithFullLockResponse(CLIENT_A, read(LOCK_2));
+
+        CompletableFuture<Void> released = server.waitForWriteLocksToBeReleasedAsync(ImmutableSet.of(LOCK_1, LOCK_2));
+
+        assertTrue(released.isDone());
+    }
+
+    @Test
+    public void waitsForWriteLocksWithoutAcquiringThem() throws Exception {
+        HeldLocksToken held1 = server.lockWithFullLockResponse(CLIENT_A, write(LOCK_1)).getToken();
+        HeldLocksToken held2 = server.lockWithFullLockResponse(CLIENT_A, write(LOCK_2)).getToken();
+
+        CompletableFuture<Void> released = server.waitForWriteLocksToBeReleasedAsync(ImmutableSet.of(LOCK_1, LOCK_2));
+        server.unlock(held1);
+        Thread.sleep(100);
+        assertFalse(released.isDone());
+        assertNotNull(server.lockWithFullLockResponse(CLIENT_B, doNotBlock(LOCK_1)).getToken());
+
+        server.unlock(held2);
+        released.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertNotNull(server.lockWithFullLockResponse(CLIENT_B, doNotBlock(LOCK_2)).getToken());
+    }
+
+    @Test
+    public void defaultWaitLocksAndReleasesReadLocks() throws Exception {
+        RemoteLockService lockService = withoutAwaitLocksReleased(server);
+        HeldLocksToken held = server.lockWithFullLockResponse(CLIENT_A, write(LOCK_1)).getToken();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> released = executor.submit(() -> {
+                lockService.waitForWriteLocksToBeReleased(ImmutableSet.of(LOCK_1, LOCK_2));
+                return null;
+            });
+            Thread.sleep(100);
+            assertFalse(released.isDone());
+
+            server.unlock(held);
+            released.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            assertNotNull(server.lockWithFullLockResponse(CLIENT_B, doNotBlock(LOCK_1)).getToken());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /** A lock service that relies on the default {@link RemoteLockService#waitForWriteLocksToBeReleased}. */
+    private static RemoteLockService withoutAwaitLocksReleased(RemoteLockService delegate) {
+        return new RemoteLockService() {
+            @Override
+            public LockRefreshToken lock(String client, LockRequest request) throws InterruptedException {
+                return delegate.lock(client, request);
+            }
+
+            @Override
+            public HeldLocksToken lockAndGetHeldLocks(String client, LockRequest request)
+                    throws InterruptedException {
+                return delegate.lockAndGetHeldLocks(client, request);
+            }
+
+            @Override
+            public boolean unlock(LockRefreshToken token) {
+                return delegate.unlock(token);
+            }
+
+            @Override
+            public Set<LockRefreshToken> refreshLockRefreshTokens(Iterable<LockRefreshToken> tokens) {
+                return delegate.refreshLockRefreshTokens(tokens);
+            }
+
+            @Override
+            public Long getMinLockedInVersionId(String client) {
+                return delegate.getMinLockedInVersionId(client);
+            }
+
+            @Override
+            public long currentTimeMillis() {
+                return delegate.currentTimeMillis();
+            }
+
+            @Override
+            public void logCurrentState() {
+                delegate.logCurrentState();
+            }
+        };
+    }
+
+    private static LockRequest read(LockDescriptor descriptor) {
+        return LockRequest.builder(ImmutableSortedMap.of(descriptor, LockMode.READ)).build();
+    }
+
+    private static LockRequest write(LockDescriptor descriptor) {
+        return LockRequest.builder(ImmutableSortedMap.of(descriptor, LockMode.WRITE)).build();
+    }
+
+    private static LockRequest doNotBlock(LockDescriptor descriptor) {
+        return LockRequest.builder(ImmutableSortedMap.of(descriptor, LockMode.WRITE)).doNotBlock().build();
+    }
+}
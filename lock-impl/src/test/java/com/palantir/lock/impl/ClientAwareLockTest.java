@@ -23,6 +23,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -391,6 +392,19 @@ public final class ClientAwareLockTest {
         anonymousWriteLock.unlock();
     }
 
+    /** Tests that removed release listeners are not run when the lock is released. */
+    @Test public void testRemovedReleaseListenersAreNotRun() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        Runnable removed = runs::incrementAndGet;
+        Runnable kept = runs::incrementAndGet;
+        Assert.assertNull(knownClientWriteLock.tryLock());
+        readWriteLock.addReleaseListener(removed);
+        readWriteLock.addReleaseListener(kept);
+        readWriteLock.removeReleaseListener(removed);
+        knownClientWriteLock.unlock();
+        Assert.assertEquals(1, runs.get());
+    }
+
     /** Tests that our objects have {@code toString()} methods defined. */
     @Test public void testToStrings() {
         Assert.assertEquals("client", client.getClientId());
@@ -0,0 +1,186 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.lock.impl;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.palantir.common.time.Clock;
+import com.palantir.lock.ExpiringToken;
+import com.palantir.lock.LockClient;
+import com.palantir.lock.SimpleTimeDuration;
+import com.palantir.lock.TimeDuration;
+
+public class LockReaperTest {
+    private static final long START = 1000 * LockReaper.TICK_MILLIS;
+    private static final long CLOCK_DRIFT = 50;
+
+    private final AtomicLong time = new AtomicLong(START);
+    private final Map<String, Token> heldTokens = Maps.newHashMap();
+    private final List<Token> reapedTokens = Lists.newArrayList();
+
+    private LockReaper<Token> reaper;
+
+    @Before
+    public void setUp() {
+        Clock clock = new Clock() {
+            @Override
+            public long getTimeMillis() {
+                return time.get();
+            }
+        };
+        reaper = new LockReaper<Token>(new LockReaper.HeldTokens<Token>() {
+            @Override
+            @Nullable
+            public Token getCurrentToken(Token token) {
+                return heldTokens.get(token.id);
+            }
+
+            @Override
+            public void reap(Token token) {
+                heldTokens.remove(token.id);
+                reapedTokens.add(token);
+            }
+        }, clock, CLOCK_DRIFT);
+    }
+
+    @Test
+    public void shouldReapATokenOnceItHasExpired() {
+        Token token = hold("a", START + 1000);
+
+        tickAt(START + 1000 + CLOCK_DRIFT - 1);
+        assertThat(reapedTokens, is(empty()));
+
+        tickAt(START + 1000 + CLOCK_DRIFT + LockReaper.TICK_MILLIS);
+        assertThat(reapedTokens, contains(token));
+        assertThat(reaper.getReapedCount(), is(1L));
+        assertThat(reaper.getQueueDepth(), is(0L));
+    }
+
+    @Test
+    public void shouldNotReapATokenThatWasRefreshed() {
+        hold("a", START + 1000);
+        Token refreshed = new Token("a", START + 5000);
+        heldTokens.put("a", refreshed);
+
+        tickAt(START + 2000);
+        assertThat(reapedTokens, is(empty()));
+        assertThat(reaper.getQueueDepth(), is(1L));
+
+        tickAt(START + 6000);
+        assertThat(reapedTokens, contains(refreshed));
+    }
+
+    @Test
+    public void shouldStopWatchingATokenThatWasUnlocked() {
+        hold("a", START + 1000);
+        heldTokens.remove("a");
+
+        tickAt(START + 2000);
+        assertThat(reapedTokens, is(empty()));
+        assertThat(reaper.getQueueDepth(), is(0L));
+    }
+
+    @Test
+    public void shouldReapTokensExpiringMoreThanOneTurnOfTheWheelAway() {
+        long turn = LockReaper.TICK_MILLIS * LockReaper.WHEEL_SIZE;
+        Token token = hold("a", START + 2 * turn + 500);
+
+        for (long now = START; now < START + 2 * turn; now += turn / 4) {
+            tickAt(now);
+        }
+        assertThat(reapedTokens, is(empty()));
+
+        tickAt(START + 2 * turn + 1000);
+        assertThat(reapedTokens, contains(token));
+    }
+
+    @Test
+    public void shouldReapAllExpiredTokensTogetherAfterFallingBehind() {
+        Token first = hold("a", START + 1000);
+        Token second = hold("b", START + 3000);
+
+        tickAt(START + 10000);
+        assertThat(reapedTokens, contains(first, second));
+        assertThat(reaper.getLastReapLatencyMillis(), is(10000 - 1000 - CLOCK_DRIFT));
+    }
+
+    private Token hold(String id, long expirationDateMs) {
+        Token token = new Token(id, expirationDateMs);
+        heldTokens.put(id, token);
+        reaper.add(token);
+        return token;
+    }
+
+    private void tickAt(long now) {
+        time.set(now);
+        reaper.tick(now);
+    }
+
+    private static final class Token implements ExpiringToken {
+        final String id;
+        final long expirationDateMs;
+
+        Token(String id, long expirationDateMs) {
+            this.id = id;
+            this.expirationDateMs = expirationDateMs;
+        }
+
+        @Override
+        public long getCreationDateMs() {
+            return START;
+        }
+
+        @Override
+        public long getExpirationDateMs() {
+            return expirationDateMs;
+        }
+
+        @Override
+        public LockClient getClient() {
+            return null;
+        }
+
+        @Override
+        public TimeDuration getLockTimeout() {
+            return SimpleTimeDuration.of(expirationDateMs - START, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public Long getVersionId() {
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return id;
+        }
+    }
+}
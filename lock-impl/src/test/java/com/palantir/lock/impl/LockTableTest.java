@@ -0,0 +1,127 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.lock.impl;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.palantir.lock.LockClient;
+import com.palantir.lock.LockDescriptor;
+import com.palantir.lock.LockMode;
+import com.palantir.lock.StringLockDescriptor;
+
+public class LockTableTest {
+    private static final LockDescriptor DESCRIPTOR = StringLockDescriptor.of("lock");
+    private static final LockClient CLIENT = LockClient.of("client");
+    private static final LockClient OTHER_CLIENT = LockClient.of("other client");
+
+    private final LockTable table = new LockTable(new LockClientIndices());
+
+    @Test
+    public void shouldRemoveALockOnceItIsUnpinnedWithoutBeingAcquired() {
+        LockServerLock lock = table.pin(DESCRIPTOR);
+        assertThat(table.get(DESCRIPTOR), is(sameInstance((ClientAwareReadWriteLock) lock)));
+
+        lock.unpin();
+        assertThat(table.get(DESCRIPTOR), is(nullValue()));
+    }
+
+    @Test
+    public void shouldKeepAHeldLockUntilItIsReleased() {
+        LockServerLock lock = table.pin(DESCRIPTOR);
+        KnownClientLock writeLock = lock.get(CLIENT, LockMode.WRITE);
+        assertThat(writeLock.tryLock(), is(nullValue()));
+        lock.unpin();
+
+        assertThat(table.pin(DESCRIPTOR), is(sameInstance(lock)));
+        lock.unpin();
+
+        writeLock.unlock();
+        assertThat(table.contains(DESCRIPTOR), is(false));
+    }
+
+    @Test
+    public void shouldKeepAPinnedLockAfterItIsReleased() {
+        LockServerLock lock = table.pin(DESCRIPTOR);
+        KnownClientLock readLock = lock.get(CLIENT, LockMode.READ);
+        assertThat(readLock.tryLock(), is(nullValue()));
+
+        LockServerLock samePinnedLock = table.pin(DESCRIPTOR);
+        readLock.unlock();
+        lock.unpin();
+        assertThat(table.get(DESCRIPTOR), is(sameInstance((ClientAwareReadWriteLock) lock)));
+
+        samePinnedLock.unpin();
+        assertThat(table.contains(DESCRIPTOR), is(false));
+    }
+
+    @Test
+    public void shouldCreateANewLockOnceTheOldOneWasRemoved() throws InterruptedException {
+        LockServerLock lock = table.pin(DESCRIPTOR);
+        assertThat(lock.get(CLIENT, LockMode.WRITE).tryLock(), is(nullValue()));
+        assertThat(lock.get(OTHER_CLIENT, LockMode.WRITE).tryLock(10, TimeUnit.MILLISECONDS), is(CLIENT));
+        lock.get(CLIENT, LockMode.WRITE).unlock();
+        lock.unpin();
+
+        LockServerLock newLock = table.pin(DESCRIPTOR);
+        assertThat(newLock, is(not(sameInstance(lock))));
+        assertThat(newLock.get(OTHER_CLIENT, LockMode.WRITE).tryLock(), is(nullValue()));
+        newLock.unpin();
+    }
+
+    @Test
+    public void shouldRemoveALockReleasedConcurrentlyByTwoHolders() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int i = 0; i < 100000; i++) {
+                LockServerLock lock = table.pin(DESCRIPTOR);
+                KnownClientLock readLock = lock.get(CLIENT, LockMode.READ);
+                KnownClientLock otherReadLock = lock.get(OTHER_CLIENT, LockMode.READ);
+                assertThat(readLock.tryLock(), is(nullValue()));
+                assertThat(otherReadLock.tryLock(), is(nullValue()));
+                lock.unpin();
+
+                CyclicBarrier barrier = new CyclicBarrier(2);
+                Future<?> release = executor.submit(() -> {
+                    barrier.await();
+                    readLock.unlock();
+                    return null;
+                });
+                Future<?> otherRelease = executor.submit(() -> {
+                    barrier.await();
+                    otherReadLock.unlock();
+                    return null;
+                });
+                release.get();
+                otherRelease.get();
+                assertThat(table.contains(DESCRIPTOR), is(false));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
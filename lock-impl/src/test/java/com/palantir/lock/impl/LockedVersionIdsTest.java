@@ -0,0 +1,72 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.lock.impl;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+import com.palantir.lock.LockClient;
+
+public class LockedVersionIdsTest {
+    private static final LockClient CLIENT = LockClient.of("client");
+    private static final LockClient OTHER_CLIENT = LockClient.of("other client");
+
+    private final LockedVersionIds versionIds = new LockedVersionIds();
+
+    @Test
+    public void shouldHaveNoMinimumForUnknownClient() {
+        assertThat(versionIds.getMin(CLIENT), is(nullValue()));
+    }
+
+    @Test
+    public void shouldReturnTheSmallestVersionIdOfTheClient() {
+        versionIds.add(CLIENT, 5L);
+        versionIds.add(CLIENT, 3L);
+        versionIds.add(OTHER_CLIENT, 1L);
+
+        assertThat(versionIds.getMin(CLIENT), is(3L));
+        assertThat(versionIds.getMin(OTHER_CLIENT), is(1L));
+    }
+
+    @Test
+    public void shouldKeepAVersionIdUntilEveryLockOnItIsReleased() {
+        versionIds.add(CLIENT, 3L);
+        versionIds.add(CLIENT, 3L);
+        versionIds.add(CLIENT, 5L);
+
+        versionIds.remove(CLIENT, 3L);
+        assertThat(versionIds.getMin(CLIENT), is(3L));
+
+        versionIds.remove(CLIENT, 3L);
+        assertThat(versionIds.getMin(CLIENT), is(5L));
+
+        versionIds.remove(CLIENT, 5L);
+        assertThat(versionIds.getMin(CLIENT), is(nullValue()));
+        assertThat(versionIds.asMap().isEmpty(), is(true));
+    }
+
+    @Test
+    public void shouldIgnoreRemovingAVersionIdThatIsNotHeld() {
+        versionIds.add(CLIENT, 3L);
+        versionIds.remove(CLIENT, 2L);
+        versionIds.remove(OTHER_CLIENT, 3L);
+
+        assertThat(versionIds.getMin(CLIENT), is(3L));
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.lock.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.palantir.lock.LockService;
+import com.palantir.lock.StartedTransaction;
+import com.palantir.timestamp.InMemoryTimestampService;
+import com.palantir.timestamp.TimestampRange;
+import com.palantir.timestamp.TimestampService;
+
+public class TransactionStartServiceImplTest {
+    private static final String CLIENT = "client";
+
+    private LockService lockService;
+
+    @Before
+    public void setUp() {
+        lockService = LockServiceImpl.create();
+    }
+
+    @Test
+    public void startsRequestedNumberOfTransactions() throws InterruptedException {
+        TransactionStartServiceImpl service =
+                new TransactionStartServiceImpl(new InMemoryTimestampService(), lockService);
+
+        List<StartedTransaction> started = service.startTransactions(CLIENT, 3);
+
+        assertEquals(3, started.size());
+        long immutableTs = started.get(0).getImmutableTimestamp();
+        for (StartedTransaction transaction : started) {
+            assertEquals(immutableTs, transaction.getImmutableTimestamp());
+            assertTrue(transaction.getStartTimestamp() > immutableTs);
+        }
+        assertEquals(Long.valueOf(immutableTs), lockService.getMinLockedInVersionId(CLIENT));
+    }
+
+    @Test
+    public void immutableTimestampIsHeldUntilEveryTransactionUnlocks() throws InterruptedException {
+        TransactionStartServiceImpl service =
+                new TransactionStartServiceImpl(new InMemoryTimestampService(), lockService);
+        StartedTransaction first = service.startTransactions(CLIENT, 1).get(0);
+        StartedTransaction second = service.startTransactions(CLIENT, 1).get(0);
+
+        assertEquals(first.getImmutableTimestamp(), second.getImmutableTimestamp());
+
+        lockService.unlock(first.getImmutableTimestampLock());
+        assertTrue(lockService.getMinLockedInVersionId(CLIENT) > first.getImmutableTimestamp());
+
+        lockService.unlock(second.getImmutableTimestampLock());
+        assertEquals(null, lockService.getMinLockedInVersionId(CLIENT));
+    }
+
+    @Test
+    public void keepsAskingForTimestampsUntilItHasEnough() throws InterruptedException {
+        TimestampService oneAtATime = new InMemoryTimestampService() {
+            @Override
+            public TimestampRange getFreshTimestamps(int timestampsToGet) {
+                return super.getFreshTimestamps(1);
+            }
+        };
+        TransactionStartServiceImpl service = new TransactionStartServiceImpl(oneAtATime, lockService);
+
+        List<StartedTransaction> started = service.startTransactions(CLIENT, 5);
+
+        assertEquals(5, started.size());
+        assertEquals(6, started.get(0).getStartTimestamp());
+        assertEquals(10, started.get(4).getStartTimestamp());
+    }
+}
@@ -19,6 +19,15 @@ import static java.util.concurrent.TimeUnit.MINUTES;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
+/**
+ * Hands out timestamps below the persisted upper limit.
+ * <p>
+ * Handing out timestamps does not take a lock: callers race to move the last returned timestamp forward
+ * with a compare-and-set, which is safe as long as the new value is at most the upper limit, since the
+ * upper limit only ever increases. Only when the buffer below the upper limit is exhausted does a caller
+ * persist a new upper limit itself; otherwise this is left to {@link #refreshBuffer()}, which callers
+ * should run in the background once {@link #shouldRefreshBuffer()} returns true.
+ */
 public class AvailableTimestamps {
     static final long ALLOCATION_BUFFER_SIZE = 1000 * 1000;
     private static final long MINIMUM_BUFFER = ALLOCATION_BUFFER_SIZE / 2;
@@ -32,19 +41,39 @@ public class AvailableTimestamps {
         this.upperLimit = upperLimit;
     }
 
-    public synchronized TimestampRange handOut(long numberToHandOut) {
+    public TimestampRange handOut(long numberToHandOut) {
         checkArgument(
                 numberToHandOut <= MAX_TIMESTAMPS_TO_HAND_OUT,
                 "Can only hand out %s timestamps at a time, but %s were requested",
                 MAX_TIMESTAMPS_TO_HAND_OUT, numberToHandOut);
-
-        return handOutTimestamp(lastHandedOut() + numberToHandOut);
+        checkArgument(
+                numberToHandOut > 0,
+                "Must hand out at least one timestamp, but %s were requested",
+                numberToHandOut);
+
+        while (true) {
+            long lastHandedOut = lastHandedOut();
+            long targetTimestamp = lastHandedOut + numberToHandOut;
+            if (targetTimestamp > upperLimit.get()) {
+                allocateEnoughTimestampsToHandOut(targetTimestamp);
+            }
+            if (lastReturnedTimestamp.compareAndSet(lastHandedOut, targetTimestamp)) {
+                return TimestampRange.createInclusiveRange(lastHandedOut + 1, targetTimestamp);
+            }
+        }
     }
 
-    public synchronized void refreshBuffer() {
+    /**
+     * Returns true if fewer than half a buffer of timestamps are left below the upper limit, or if the
+     * upper limit has not been increased for a minute.
+     */
+    public boolean shouldRefreshBuffer() {
         long buffer = upperLimit.get() - lastHandedOut();
+        return buffer < MINIMUM_BUFFER || !upperLimit.hasIncreasedWithin(1, MINUTES);
+    }
 
-        if (buffer < MINIMUM_BUFFER || !upperLimit.hasIncreasedWithin(1, MINUTES)) {
+    public synchronized void refreshBuffer() {
+        if (shouldRefreshBuffer()) {
             allocateEnoughTimestampsToHandOut(lastHandedOut() + ALLOCATION_BUFFER_SIZE);
         }
     }
@@ -58,20 +87,6 @@ public class AvailableTimestamps {
         return lastReturnedTimestamp.get();
     }
 
-    private synchronized TimestampRange handOutTimestamp(long targetTimestamp) {
-        checkArgument(
-                targetTimestamp > lastHandedOut(),
-                "Could not hand out timestamp '%s' as it was earlier than the last handed out timestamp: %s",
-                targetTimestamp, lastHandedOut());
-
-        TimestampRange rangeToHandOut = TimestampRange.createInclusiveRange(lastHandedOut() + 1, targetTimestamp);
-
-        allocateEnoughTimestampsToHandOut(targetTimestamp);
-        lastReturnedTimestamp.increaseToAtLeast(targetTimestamp);
-
-        return rangeToHandOut;
-    }
-
     private void allocateEnoughTimestampsToHandOut(long timestamp) {
         upperLimit.increaseToAtLeast(timestamp);
     }
@@ -15,18 +15,33 @@
  */
 package com.palantir.timestamp;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 public class LastReturnedTimestamp {
-    private long timestamp;
+    private final AtomicLong timestamp;
 
     public LastReturnedTimestamp(long timestamp) {
-        this.timestamp = timestamp;
+        this.timestamp = new AtomicLong(timestamp);
+    }
+
+    public void increaseToAtLeast(long newTimestamp) {
+        while (true) {
+            long current = timestamp.get();
+            if (current >= newTimestamp || timestamp.compareAndSet(current, newTimestamp)) {
+                return;
+            }
+        }
     }
 
-    public synchronized void increaseToAtLeast(long newTimestamp) {
-        this.timestamp = Math.max(this.timestamp, newTimestamp);
+    /**
+     * Moves the timestamp from {@code expected} to {@code newTimestamp}, failing if someone else
+     * has moved it in the meantime.
+     */
+    public boolean compareAndSet(long expected, long newTimestamp) {
+        return timestamp.compareAndSet(expected, newTimestamp);
     }
 
     public long get() {
-        return this.timestamp;
+        return timestamp.get();
     }
 }
@@ -16,6 +16,7 @@
 package com.palantir.timestamp;
 
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.annotation.concurrent.ThreadSafe;
 
@@ -28,6 +29,7 @@ public class PersistentTimestampService implements TimestampService {
 
     private final ExecutorService executor;
     private final AvailableTimestamps availableTimestamps;
+    private final AtomicBoolean refreshPending = new AtomicBoolean(false);
 
     public PersistentTimestampService(AvailableTimestamps availableTimestamps, ExecutorService executor) {
         this.availableTimestamps = availableTimestamps;
@@ -53,10 +55,12 @@ public class PersistentTimestampService implements TimestampService {
     }
 
     @Override
-    public synchronized TimestampRange getFreshTimestamps(int numTimestampsRequested) {
+    public TimestampRange getFreshTimestamps(int numTimestampsRequested) {
         int numTimestampsToHandOut = cleanUpTimestampRequest(numTimestampsRequested);
         TimestampRange handedOut = availableTimestamps.handOut(numTimestampsToHandOut);
-        asynchronouslyRefreshBuffer();
+        if (availableTimestamps.shouldRefreshBuffer()) {
+            asynchronouslyRefreshBuffer();
+        }
         return handedOut;
     }
 
@@ -85,12 +89,25 @@ public class PersistentTimestampService implements TimestampService {
     }
 
     private void asynchronouslyRefreshBuffer() {
-        executor.submit(new Runnable() {
-            @Override
-            public void run() {
-                availableTimestamps.refreshBuffer();
-            }
-        });
+        // Only one refresh is queued at a time, however many callers see the low watermark crossed.
+        if (!refreshPending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        availableTimestamps.refreshBuffer();
+                    } finally {
+                        refreshPending.set(false);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            refreshPending.set(false);
+            throw e;
+        }
     }
 
 }
@@ -19,6 +19,7 @@ import static java.util.concurrent.TimeUnit.MINUTES;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.core.Is.is;
 import static org.mockito.Matchers.anyLong;
@@ -28,10 +29,17 @@ import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import com.google.common.collect.Sets;
+
 public class AvailableTimestampsTest {
 
     public static final long UPPER_LIMIT = 1000 * 1000;
@@ -102,6 +110,54 @@ public class AvailableTimestampsTest {
         verify(persistentUpperLimit).increaseToAtLeast(UPPER_LIMIT + 10);
     }
 
+    @Test public void
+    shouldNotIncreaseUpperLimitWhenHandingOutTimestampsBelowIt() {
+        availableTimestamps.handOut(INITIAL_REMAINING_TIMESTAMPS);
+
+        verify(persistentUpperLimit, never()).increaseToAtLeast(anyLong());
+    }
+
+    @Test public void
+    shouldWantABufferRefreshOnlyOnceHalfOfItIsUsedUp() {
+        when(persistentUpperLimit.hasIncreasedWithin(1, MINUTES)).thenReturn(true);
+        AvailableTimestamps timestamps = new AvailableTimestamps(
+                new LastReturnedTimestamp(UPPER_LIMIT - AvailableTimestamps.ALLOCATION_BUFFER_SIZE / 2 - 5),
+                persistentUpperLimit);
+
+        assertThat(timestamps.shouldRefreshBuffer(), is(false));
+        timestamps.handOut(10);
+        assertThat(timestamps.shouldRefreshBuffer(), is(true));
+    }
+
+    @Test public void
+    shouldHandOutEachTimestampOnceWhenCalledConcurrently() throws InterruptedException {
+        PersistentUpperLimit upperLimit = new PersistentUpperLimit(new InMemoryTimestampBoundStore());
+        AvailableTimestamps timestamps = new AvailableTimestamps(
+                new LastReturnedTimestamp(upperLimit.get()),
+                upperLimit);
+        final Set<Long> handedOut = Sets.newConcurrentHashSet();
+        final AtomicInteger duplicates = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int thread = 0; thread < 8; thread++) {
+            executor.submit(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    TimestampRange range = timestamps.handOut(1 + i % 20);
+                    for (long ts = range.getLowerBound(); ts <= range.getUpperBound(); ts++) {
+                        if (!handedOut.add(ts)) {
+                            duplicates.incrementAndGet();
+                        }
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, MINUTES);
+
+        assertThat(duplicates.get(), is(0));
+        long lastHandedOut = timestamps.handOut(1).getUpperBound();
+        assertThat(upperLimit.get(), is(greaterThanOrEqualTo(lastHandedOut)));
+    }
+
     @Test public void
     shouldNotHandOutMoreThanTenThousandTimestampsAtATime() {
         exception.expect(IllegalArgumentException.class);
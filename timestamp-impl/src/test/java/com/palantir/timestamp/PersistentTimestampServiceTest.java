@@ -20,10 +20,14 @@ import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
 import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -49,14 +53,48 @@ public class PersistentTimestampServiceTest {
     }
 
     @Test
-    public void shouldRequestABufferRefreshAfterEveryTimestampRequest() throws InterruptedException {
+    public void shouldRequestABufferRefreshWhenTheBufferIsLow() throws InterruptedException {
         when(availableTimestamps.handOut(1)).thenReturn(SINGLE_TIMESTAMP_RANGE);
+        when(availableTimestamps.shouldRefreshBuffer()).thenReturn(true);
 
         timestampService.getFreshTimestamp();
         waitForExecutorToFinish();
         verify(availableTimestamps).refreshBuffer();
     }
 
+    @Test
+    public void shouldNotRequestABufferRefreshWhenTheBufferIsFull() throws InterruptedException {
+        when(availableTimestamps.handOut(1)).thenReturn(SINGLE_TIMESTAMP_RANGE);
+        when(availableTimestamps.shouldRefreshBuffer()).thenReturn(false);
+
+        timestampService.getFreshTimestamp();
+        waitForExecutorToFinish();
+        verify(availableTimestamps, never()).refreshBuffer();
+    }
+
+    @Test
+    public void shouldOnlyQueueOneBufferRefreshAtATime() throws InterruptedException {
+        when(availableTimestamps.handOut(1)).thenReturn(SINGLE_TIMESTAMP_RANGE);
+        when(availableTimestamps.shouldRefreshBuffer()).thenReturn(true);
+        CountDownLatch refreshStarted = new CountDownLatch(1);
+        CountDownLatch releaseRefresh = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            refreshStarted.countDown();
+            releaseRefresh.await();
+            return null;
+        }).when(availableTimestamps).refreshBuffer();
+
+        timestampService.getFreshTimestamp();
+        refreshStarted.await();
+        for (int i = 0; i < 10; i++) {
+            timestampService.getFreshTimestamp();
+        }
+        releaseRefresh.countDown();
+        waitForExecutorToFinish();
+
+        verify(availableTimestamps, times(1)).refreshBuffer();
+    }
+
     @Test
     public void shouldLimitRequestsTo10000Timestamps() throws InterruptedException {
         when(availableTimestamps.handOut(anyLong())).thenReturn(RANGE);